@@ -156,6 +156,35 @@ class DirectoryBuildCacheCleanupIntegrationTest extends AbstractIntegrationSpec
         newList.containsAll(recentlyUsed)
     }
 
+    def "cleans up based on LRU recorded in the access index"() {
+        when:
+        runMultiple(MAX_CACHE_SIZE*2)
+        cleanupBuildCacheNow()
+        withBuildCache().succeeds("cacheable")
+        then:
+        def survivors = listCacheFiles()
+        survivors.size() == MAX_CACHE_SIZE-1
+        cacheDir.file(DirectoryBuildCacheAccessIndex.JOURNAL_FILE_NAME).assertIsFile()
+
+        when:
+        def lastModified = survivors.collectEntries { [it, it.lastModified()] }
+        withBuildCache().succeeds("cacheable", "-Prun=${MAX_CACHE_SIZE*2 - 2}")
+        runMultiple(2)
+        then:
+        def recentlyUsed = survivors.findAll { it.lastModified() != lastModified[it] }
+        recentlyUsed.size() == 1
+
+        when:
+        cleanupBuildCacheNow()
+        and:
+        withBuildCache().succeeds("cacheable", "-Prun=3")
+        then:
+        def newList = listCacheFiles()
+        newList.size() == MAX_CACHE_SIZE-1
+        newList.containsAll(recentlyUsed)
+        (survivors - recentlyUsed).every { !it.exists() }
+    }
+
     def "does not cleanup on every build"() {
         when:
         runMultiple(MAX_CACHE_SIZE*2)
@@ -0,0 +1,437 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.CountingInputStream;
+import com.google.common.primitives.Longs;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.UncheckedIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Keeps track of the entries in a directory build cache in least recently used order, so that {@link DirectoryBuildCacheCleanup} can find the entries to remove
+ * without listing and sorting the cache directory.
+ *
+ * <p>Every store, load and removal is appended as a record to a journal file in the cache directory, which is created on first use. Records are only appended
+ * while holding the cache lock. The index is shared by the builds run by a process, and only reads the records appended since it last looked at the journal.
+ * The journal is compacted in place when it contains many more records than there are entries, so that processes which keep the journal open for appending
+ * can continue to do so.</p>
+ *
+ * <p>The modification time of an entry remains the authoritative time it was last used, as other Gradle versions that share the cache only update that.
+ * The first time the journal is read, the index is built from a single scan of the cache directory ordered by the modification time of the entries, so that
+ * entries stored before the journal was created are included.</p>
+ */
+public class DirectoryBuildCacheAccessIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryBuildCacheAccessIndex.class);
+
+    public static final String JOURNAL_FILE_NAME = "access-index.journal";
+    private static final int MAGIC = 0x4742434b;
+    private static final int HEADER_SIZE = 13;
+    private static final byte UNSCANNED = 0;
+    private static final byte SCANNED = 1;
+    private static final byte STORED = 1;
+    private static final byte ACCESSED = 2;
+    private static final byte REMOVED = 3;
+    private static final int MIN_RECORDS_BEFORE_COMPACTION = 1000;
+    // See DefaultPathKeyFileStore
+    private static final String IN_PROGRESS_MARKER_FILE_SUFFIX = ".fslck";
+
+    private final File cacheDir;
+    private final File journalFile;
+    private final String partialFileSuffix;
+    private final String failedFileSuffix;
+    private final Random random = new Random();
+
+    // From least to most recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>();
+    private final List<String> pendingRemovals = Lists.newArrayList();
+    private FileOutputStream appender;
+    private long totalSize;
+    private long generation;
+    private long journalOffset = -1;
+    private long records;
+
+    public DirectoryBuildCacheAccessIndex(File cacheDir, String partialFileSuffix, String failedFileSuffix) {
+        this.cacheDir = cacheDir;
+        this.journalFile = new File(cacheDir, JOURNAL_FILE_NAME);
+        this.partialFileSuffix = partialFileSuffix;
+        this.failedFileSuffix = failedFileSuffix;
+    }
+
+    /**
+     * Records that the given entry has been added to the cache. Must be called while holding the cache lock.
+     */
+    public void stored(String key, File file) {
+        append(STORED, key, file.length(), file.lastModified());
+    }
+
+    /**
+     * Records that the given entry has been used. Must be called while holding the cache lock, after updating the modification time of the entry.
+     */
+    public void accessed(String key, File file) {
+        append(ACCESSED, key, file.length(), file.lastModified());
+    }
+
+    /**
+     * Records that the given entry has been removed from the cache. Must be called while holding the cache lock.
+     */
+    public void removed(String key) {
+        append(REMOVED, key, 0, 0);
+    }
+
+    /**
+     * Applies the records appended to the journal by all processes since it was last read, scanning the cache directory instead when this has not been done yet.
+     * Must be called while holding the cache lock.
+     *
+     * @return the total size of the entries in the cache, in bytes.
+     */
+    public synchronized long refresh() {
+        try {
+            readJournal();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not read access index for build cache in %s.", cacheDir), e);
+        }
+        return totalSize;
+    }
+
+    /**
+     * Returns the least recently used entries that need to be removed to bring the cache to the given size. Must be called while holding the cache lock.
+     *
+     * <p>Entries that have been used since they were last recorded, as shown by their modification time, are moved to the most recently used end instead,
+     * and entries that no longer exist are forgotten.</p>
+     */
+    public synchronized List<File> findEntriesToRemove(long targetSize) {
+        List<File> entriesToRemove = Lists.newArrayList();
+        Map<String, Entry> usedSinceRecorded = new LinkedHashMap<String, Entry>();
+        long remainingSize = totalSize;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (remainingSize > targetSize && iterator.hasNext()) {
+            Map.Entry<String, Entry> mapEntry = iterator.next();
+            String key = mapEntry.getKey();
+            Entry entry = mapEntry.getValue();
+            File file = new File(cacheDir, key);
+            long lastModified = file.lastModified();
+            if (lastModified == 0) {
+                // Removed by something else
+                iterator.remove();
+                totalSize -= entry.size;
+                remainingSize -= entry.size;
+                removed(key);
+                continue;
+            }
+            if (lastModified > entry.lastUsed) {
+                iterator.remove();
+                totalSize -= entry.size;
+                usedSinceRecorded.put(key, new Entry(file.length(), lastModified));
+                continue;
+            }
+            entriesToRemove.add(file);
+            remainingSize -= entry.size;
+        }
+        for (Map.Entry<String, Entry> mapEntry : usedSinceRecorded.entrySet()) {
+            Entry entry = mapEntry.getValue();
+            entries.put(mapEntry.getKey(), entry);
+            totalSize += entry.size;
+            append(ACCESSED, mapEntry.getKey(), entry.size, entry.lastUsed);
+        }
+        return entriesToRemove;
+    }
+
+    /**
+     * Deletes the given entries, unless they have been used since they were chosen. Does not need the cache lock, so that other processes can use the cache
+     * while the entries are deleted. The removals are recorded by {@link #recordRemovals()}.
+     *
+     * @return the number of bytes reclaimed.
+     */
+    public synchronized long remove(List<File> entriesToRemove) {
+        long removedSize = 0;
+        for (File file : entriesToRemove) {
+            String key = file.getName();
+            Entry entry = entries.get(key);
+            try {
+                if (entry != null && file.lastModified() > entry.lastUsed) {
+                    // Used by another process in the meantime
+                    continue;
+                }
+                if (file.delete() || !file.exists()) {
+                    if (entry != null) {
+                        entries.remove(key);
+                        totalSize -= entry.size;
+                        removedSize += entry.size;
+                    }
+                    pendingRemovals.add(key);
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Could not clean up cache " + file, e);
+            }
+        }
+        return removedSize;
+    }
+
+    /**
+     * Records the removal of the entries deleted by {@link #remove(List)}, unless they have been stored again in the meantime. Must be called while holding the cache lock.
+     */
+    public synchronized void recordRemovals() {
+        for (String key : pendingRemovals) {
+            if (!new File(cacheDir, key).exists()) {
+                removed(key);
+            }
+        }
+        pendingRemovals.clear();
+    }
+
+    /**
+     * Rewrites the journal to contain a single record for each entry, when it contains many more records than that. Must be called while holding the cache lock.
+     */
+    public synchronized void compactIfNecessary() {
+        if (records > MIN_RECORDS_BEFORE_COMPACTION && records > 2L * entries.size()) {
+            try {
+                writeJournal();
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("Could not compact access index for build cache in %s.", cacheDir), e);
+            }
+        }
+    }
+
+    /**
+     * Closes the journal for appending. It is opened again by the next record.
+     */
+    public synchronized void close() {
+        IOUtils.closeQuietly(appender);
+        appender = null;
+    }
+
+    private void append(byte type, String key, long size, long lastUsed) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        try {
+            record.writeByte(type);
+            record.writeUTF(key);
+            record.writeLong(size);
+            record.writeLong(lastUsed);
+            synchronized (this) {
+                if (appender == null) {
+                    if (!journalFile.exists()) {
+                        createJournal();
+                    }
+                    appender = new FileOutputStream(journalFile, true);
+                }
+                try {
+                    appender.write(bytes.toByteArray());
+                } catch (IOException e) {
+                    close();
+                    throw e;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not update access index for build cache in %s.", cacheDir), e);
+        }
+    }
+
+    /**
+     * Creates an empty journal, which is replaced by a scan of the cache directory on the next refresh.
+     */
+    private void createJournal() throws IOException {
+        DataOutputStream output = new DataOutputStream(new FileOutputStream(journalFile));
+        try {
+            output.writeInt(MAGIC);
+            output.writeLong(random.nextLong());
+            output.writeByte(UNSCANNED);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Applies the records appended to the journal since it was last read, or reads the whole journal when it has been rewritten.
+     */
+    private void readJournal() throws IOException {
+        if (!journalFile.exists()) {
+            // Cannot append to a journal that has been deleted
+            close();
+            rebuildJournal();
+            return;
+        }
+        CountingInputStream countingInput = new CountingInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+        DataInputStream input = new DataInputStream(countingInput);
+        try {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Unexpected journal header.");
+            }
+            long fileGeneration = input.readLong();
+            if (input.readByte() != SCANNED) {
+                IOUtils.closeQuietly(input);
+                rebuildJournal();
+                return;
+            }
+            if (fileGeneration != generation || journalOffset < 0) {
+                // Rewritten by another process
+                reset(fileGeneration);
+            } else {
+                IOUtils.skipFully(input, journalOffset - HEADER_SIZE);
+            }
+            journalOffset = countingInput.getCount();
+            while (true) {
+                byte type;
+                try {
+                    type = input.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                String key = input.readUTF();
+                long size = input.readLong();
+                long lastUsed = input.readLong();
+                apply(type, key, size, lastUsed);
+                journalOffset = countingInput.getCount();
+            }
+        } catch (IOException e) {
+            // Records are only appended while holding the lock, so a truncated record means the journal is corrupt
+            LOGGER.debug("Could not read build cache access index {}, rebuilding it.", journalFile, e);
+            IOUtils.closeQuietly(input);
+            rebuildJournal();
+            return;
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    private void apply(byte type, String key, long size, long lastUsed) throws IOException {
+        records++;
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            totalSize -= previous.size;
+        }
+        switch (type) {
+            case STORED:
+            case ACCESSED:
+                entries.put(key, new Entry(size, lastUsed));
+                totalSize += size;
+                break;
+            case REMOVED:
+                break;
+            default:
+                throw new IOException("Unexpected journal record type " + type);
+        }
+    }
+
+    private void reset(long generation) {
+        this.generation = generation;
+        entries.clear();
+        totalSize = 0;
+        records = 0;
+    }
+
+    private void rebuildJournal() throws IOException {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            throw new IOException("Could not list " + cacheDir);
+        }
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Longs.compare(lastModified[o1], lastModified[o2]);
+            }
+        });
+        reset(0);
+        for (Integer index : order) {
+            File file = files[index];
+            if (isCacheEntry(file.getName()) && file.isFile()) {
+                long size = file.length();
+                entries.put(file.getName(), new Entry(size, lastModified[index]));
+                totalSize += size;
+            }
+        }
+        writeJournal();
+    }
+
+    private boolean isCacheEntry(String name) {
+        return !(name.startsWith(JOURNAL_FILE_NAME)
+            || name.endsWith(".properties")
+            || name.endsWith(".lock")
+            || name.endsWith(IN_PROGRESS_MARKER_FILE_SUFFIX)
+            || name.endsWith(partialFileSuffix)
+            || name.endsWith(failedFileSuffix));
+    }
+
+    /**
+     * Rewrites the journal in place to contain a single record for each entry. The journal is not replaced, as other processes may keep it open for appending.
+     * The header is written last, so that a journal which has not been completely written is rebuilt.
+     */
+    private void writeJournal() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            output.writeByte(STORED);
+            output.writeUTF(entry.getKey());
+            output.writeLong(entry.getValue().size);
+            output.writeLong(entry.getValue().lastUsed);
+        }
+        long newGeneration = random.nextLong();
+        RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+        try {
+            file.writeInt(0);
+            file.seek(HEADER_SIZE);
+            file.write(bytes.toByteArray());
+            file.setLength(HEADER_SIZE + bytes.size());
+            file.seek(0);
+            file.writeInt(MAGIC);
+            file.writeLong(newGeneration);
+            file.writeByte(SCANNED);
+        } finally {
+            file.close();
+        }
+        generation = newGeneration;
+        journalOffset = HEADER_SIZE + bytes.size();
+        records = entries.size();
+    }
+
+    private static class Entry {
+        final long size;
+        final long lastUsed;
+
+        Entry(long size, long lastUsed) {
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
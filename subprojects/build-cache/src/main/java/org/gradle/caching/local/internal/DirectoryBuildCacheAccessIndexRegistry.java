@@ -0,0 +1,27 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import java.io.File;
+
+/**
+ * Provides the access index of a directory build cache. Indexes are shared by the builds run by a process, so that each build only reads the records
+ * appended to the journal of the cache since the previous build.
+ */
+public interface DirectoryBuildCacheAccessIndexRegistry {
+    DirectoryBuildCacheAccessIndex getAccessIndex(File baseDir);
+}
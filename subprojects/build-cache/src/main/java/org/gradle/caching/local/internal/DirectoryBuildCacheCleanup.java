@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.Action;
+import org.gradle.cache.PersistentCache;
+import org.gradle.internal.Factory;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Removes the least recently used entries of a directory build cache until it is below its target size, using the {@link DirectoryBuildCacheAccessIndex} of the cache
+ * rather than listing and sorting the cache directory. Like {@link org.gradle.cache.internal.FixedSizeOldestCacheCleanup}, this runs periodically when the cache is closed.
+ *
+ * <p>The cache lock is only held while reading and updating the access index, and not while deleting the entries, so that other processes can use the cache in the meantime.</p>
+ */
+public class DirectoryBuildCacheCleanup implements Action<PersistentCache> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryBuildCacheCleanup.class);
+
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final DirectoryBuildCacheAccessIndex accessIndex;
+    private final long targetSizeInMB;
+
+    public DirectoryBuildCacheCleanup(BuildOperationExecutor buildOperationExecutor, DirectoryBuildCacheAccessIndex accessIndex, long targetSizeInMB) {
+        this.buildOperationExecutor = buildOperationExecutor;
+        this.accessIndex = accessIndex;
+        this.targetSizeInMB = targetSizeInMB;
+    }
+
+    @Override
+    public void execute(final PersistentCache persistentCache) {
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                cleanup(persistentCache);
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Clean up " + persistentCache);
+            }
+        });
+    }
+
+    private void cleanup(final PersistentCache persistentCache) {
+        final long targetSize = targetSizeInMB * 1024 * 1024;
+        long totalSize = buildOperationExecutor.call(new CallableBuildOperation<Long>() {
+            @Override
+            public Long call(BuildOperationContext context) {
+                return persistentCache.withFileLock(new Factory<Long>() {
+                    @Override
+                    public Long create() {
+                        return accessIndex.refresh();
+                    }
+                });
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Scan " + persistentCache.getBaseDir());
+            }
+        });
+        LOGGER.info("{} consuming {} (target: {} MB).", persistentCache, FileUtils.byteCountToDisplaySize(totalSize), targetSizeInMB);
+
+        if (totalSize > targetSize) {
+            final List<File> filesForDeletion = buildOperationExecutor.call(new CallableBuildOperation<List<File>>() {
+                @Override
+                public List<File> call(BuildOperationContext context) {
+                    return persistentCache.withFileLock(new Factory<List<File>>() {
+                        @Override
+                        public List<File> create() {
+                            return accessIndex.findEntriesToRemove(targetSize);
+                        }
+                    });
+                }
+
+                @Override
+                public BuildOperationDescriptor.Builder description() {
+                    return BuildOperationDescriptor.displayName("Choose files to delete from " + persistentCache);
+                }
+            });
+
+            if (!filesForDeletion.isEmpty()) {
+                buildOperationExecutor.run(new RunnableBuildOperation() {
+                    @Override
+                    public void run(BuildOperationContext context) {
+                        long removedSize = accessIndex.remove(filesForDeletion);
+                        LOGGER.info("{} removing {} cache entries ({} reclaimed).", persistentCache, filesForDeletion.size(), FileUtils.byteCountToDisplaySize(removedSize));
+                    }
+
+                    @Override
+                    public BuildOperationDescriptor.Builder description() {
+                        return BuildOperationDescriptor.displayName("Delete files for " + persistentCache);
+                    }
+                });
+            }
+        }
+
+        persistentCache.withFileLock(new Runnable() {
+            @Override
+            public void run() {
+                accessIndex.recordRemovals();
+                accessIndex.compactIfNecessary();
+            }
+        });
+    }
+}
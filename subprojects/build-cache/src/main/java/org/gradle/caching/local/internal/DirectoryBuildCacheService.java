@@ -40,12 +40,14 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     private final PathKeyFileStore fileStore;
     private final PersistentCache persistentCache;
     private final BuildCacheTempFileStore tempFileStore;
+    private final DirectoryBuildCacheAccessIndex accessIndex;
     private final String failedFileSuffix;
 
-    public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, String failedFileSuffix) {
+    public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, DirectoryBuildCacheAccessIndex accessIndex, String failedFileSuffix) {
         this.fileStore = fileStore;
         this.persistentCache = persistentCache;
         this.tempFileStore = tempFileStore;
+        this.accessIndex = accessIndex;
         this.failedFileSuffix = failedFileSuffix;
     }
 
@@ -60,9 +62,6 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
         @Override
         public void execute(File file) {
             try {
-                // Mark as recently used
-                GFileUtils.touch(file);
-
                 Closer closer = Closer.create();
                 FileInputStream stream = closer.register(new FileInputStream(file));
                 try {
@@ -93,20 +92,31 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
                 LocallyAvailableResource resource = fileStore.get(key.getHashCode());
                 if (resource != null) {
                     final File file = resource.getFile();
-                    GFileUtils.touch(file); // Mark as recently used
+                    // Mark as recently used
+                    if (!file.setLastModified(System.currentTimeMillis())) {
+                        // Removed by the cleanup of another process
+                        return;
+                    }
 
                     try {
                         reader.execute(file);
                     } catch (Exception e) {
+                        if (!file.exists()) {
+                            // Removed by the cleanup of another process before it could be opened
+                            accessIndex.removed(key.getHashCode());
+                            return;
+                        }
                         // Try to move the file out of the way in case its permanently corrupt
                         // Don't delete, so that it can be potentially used for debugging
                         File failedFile = new File(file.getAbsolutePath() + failedFileSuffix);
                         GFileUtils.deleteQuietly(failedFile);
                         //noinspection ResultOfMethodCallIgnored
                         file.renameTo(failedFile);
+                        accessIndex.removed(key.getHashCode());
 
                         throw UncheckedException.throwAsUncheckedException(e);
                     }
+                    accessIndex.accessed(key.getHashCode(), file);
                 }
             }
         });
@@ -140,7 +150,8 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
         persistentCache.useCache(new Runnable() {
             @Override
             public void run() {
-                fileStore.move(key.getHashCode(), file);
+                LocallyAvailableResource resource = fileStore.move(key.getHashCode(), file);
+                accessIndex.stored(key.getHashCode(), resource.getFile());
             }
         });
     }
@@ -157,6 +168,10 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
 
     @Override
     public void close() {
-        persistentCache.close();
+        try {
+            persistentCache.close();
+        } finally {
+            accessIndex.close();
+        }
     }
 }
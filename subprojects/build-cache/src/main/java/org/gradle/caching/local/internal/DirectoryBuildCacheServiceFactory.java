@@ -22,7 +22,6 @@ import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.internal.CacheScopeMapping;
-import org.gradle.cache.internal.FixedSizeOldestCacheCleanup;
 import org.gradle.cache.internal.VersionStrategy;
 import org.gradle.caching.BuildCacheService;
 import org.gradle.caching.BuildCacheServiceFactory;
@@ -49,14 +48,16 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
     private final PathToFileResolver resolver;
     private final BuildOperationExecutor buildOperationExecutor;
     private final DirectoryBuildCacheFileStoreFactory fileStoreFactory;
+    private final DirectoryBuildCacheAccessIndexRegistry accessIndexRegistry;
 
     @Inject
-    public DirectoryBuildCacheServiceFactory(CacheRepository cacheRepository, CacheScopeMapping cacheScopeMapping, PathToFileResolver resolver, BuildOperationExecutor buildOperationExecutor, DirectoryBuildCacheFileStoreFactory fileStoreFactory) {
+    public DirectoryBuildCacheServiceFactory(CacheRepository cacheRepository, CacheScopeMapping cacheScopeMapping, PathToFileResolver resolver, BuildOperationExecutor buildOperationExecutor, DirectoryBuildCacheFileStoreFactory fileStoreFactory, DirectoryBuildCacheAccessIndexRegistry accessIndexRegistry) {
         this.cacheRepository = cacheRepository;
         this.cacheScopeMapping = cacheScopeMapping;
         this.resolver = resolver;
         this.buildOperationExecutor = buildOperationExecutor;
         this.fileStoreFactory = fileStoreFactory;
+        this.accessIndexRegistry = accessIndexRegistry;
     }
 
     @Override
@@ -77,16 +78,17 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
             config("targetSize", humanReadableCacheSize);
 
         PathKeyFileStore fileStore = fileStoreFactory.createFileStore(target);
+        DirectoryBuildCacheAccessIndex accessIndex = accessIndexRegistry.getAccessIndex(target);
         PersistentCache persistentCache = cacheRepository
             .cache(target)
-            .withCleanup(new FixedSizeOldestCacheCleanup(buildOperationExecutor, targetSizeInMB, BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX))
+            .withCleanup(new DirectoryBuildCacheCleanup(buildOperationExecutor, accessIndex, targetSizeInMB))
             .withDisplayName("Build cache")
             .withLockOptions(mode(None))
             .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
             .open();
         BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(target, BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX);
 
-        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, FAILED_READ_SUFFIX);
+        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, accessIndex, FAILED_READ_SUFFIX);
     }
 
     private static void checkDirectory(File directory) {
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import groovy.io.FileType
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.changedetection.state.DirContentSnapshot
+import org.gradle.api.internal.changedetection.state.FileHashSnapshot
+import org.gradle.api.internal.tasks.OutputType
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginMetadata
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.hash.DefaultStreamHasher
+import org.gradle.internal.hash.Hashing
+import org.gradle.internal.nativeplatform.filesystem.FileSystem
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static org.gradle.api.internal.tasks.OutputType.DIRECTORY
+import static org.gradle.api.internal.tasks.OutputType.FILE
+
+@CleanupTestDirectory
+class ParallelTaskOutputPackerTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def originMetadata = Stub(TaskOutputOriginMetadata)
+    def readOrigin = Stub(TaskOutputOriginReader) {
+        execute(_) >> originMetadata
+    }
+    def writeOrigin = Stub(TaskOutputOriginWriter)
+
+    def fileSystem = Stub(FileSystem) {
+        getUnixMode(_) >> 0644
+    }
+    def stringInterner = new StringInterner()
+    def executorFactory = new DefaultExecutorFactory()
+    def legacyPacker = new GZipTaskOutputPacker(new TarTaskOutputPacker(fileSystem, new DefaultStreamHasher({ Hashing.md5().newHasher() }), stringInterner))
+    def packer = new ParallelTaskOutputPacker(legacyPacker, fileSystem, stringInterner, executorFactory, true, 4, 64)
+
+    def cleanup() {
+        packer.stop()
+        executorFactory.stop()
+    }
+
+    @Unroll
+    def "can pack and unpack output directory when unpacking from #source"() {
+        def sourceDir = temporaryFolder.file("source").createDir()
+        sourceDir.file("empty.txt").createFile()
+        sourceDir.file("small.txt") << "small"
+        sourceDir.file("subdir/compressible.txt") << ("compressible " * 100)
+        sourceDir.file("subdir/incompressible.bin").bytes = randomBytes(100)
+        def targetDir = temporaryFolder.file("target")
+        def cacheEntry = temporaryFolder.file("cache-entry")
+
+        when:
+        def packResult = pack(cacheEntry, prop(DIRECTORY, sourceDir))
+        def unpackResult = unpack(cacheEntry, fromFile, prop(DIRECTORY, targetDir))
+
+        then:
+        packResult.entries == 7
+        unpackResult.entries == 7
+        unpackResult.originMetadata == originMetadata
+        targetDir.file("empty.txt").length() == 0
+        targetDir.file("small.txt").text == "small"
+        targetDir.file("subdir/compressible.txt").text == "compressible " * 100
+        targetDir.file("subdir/incompressible.bin").bytes == sourceDir.file("subdir/incompressible.bin").bytes
+        unpackResult.snapshots.get("test")*.path as Set == [targetDir, targetDir.file("empty.txt"), targetDir.file("small.txt"), targetDir.file("subdir"), targetDir.file("subdir/compressible.txt"), targetDir.file("subdir/incompressible.bin")]*.absolutePath as Set
+        unpackResult.snapshots.get("test").find { it.path == targetDir.file("small.txt").absolutePath }.content.contentMd5 == TestFile.md5(sourceDir.file("small.txt"))
+
+        where:
+        source   | fromFile
+        "file"   | true
+        "stream" | false
+    }
+
+    @Unroll
+    def "can pack and unpack output file and missing output when unpacking from #source"() {
+        def sourceFile = temporaryFolder.file("source.txt") << "output"
+        def targetFile = temporaryFolder.file("target.txt")
+        def targetMissing = temporaryFolder.file("missing").createDir()
+        def cacheEntry = temporaryFolder.file("cache-entry")
+
+        when:
+        pack(cacheEntry, prop("file", FILE, sourceFile), prop("missing", DIRECTORY, temporaryFolder.file("does-not-exist")))
+        def unpackResult = unpack(cacheEntry, fromFile, prop("file", FILE, targetFile), prop("missing", DIRECTORY, targetMissing))
+
+        then:
+        targetFile.text == "output"
+        !targetMissing.exists()
+        unpackResult.snapshots.get("file")*.path == [targetFile.absolutePath]
+        unpackResult.snapshots.get("missing").empty
+
+        where:
+        source   | fromFile
+        "file"   | true
+        "stream" | false
+    }
+
+    @Unroll
+    def "can unpack entries packed with the legacy format when unpacking from #source"() {
+        def sourceFile = temporaryFolder.file("source.txt") << "output"
+        def targetFile = temporaryFolder.file("target.txt")
+        def cacheEntry = temporaryFolder.file("cache-entry")
+
+        when:
+        cacheEntry.withOutputStream { output ->
+            legacyPacker.pack([prop(FILE, sourceFile).property] as SortedSet, [test: prop(FILE, sourceFile).snapshots], output, writeOrigin)
+        }
+        unpack(cacheEntry, fromFile, prop(FILE, targetFile))
+
+        then:
+        targetFile.text == "output"
+
+        where:
+        source   | fromFile
+        "file"   | true
+        "stream" | false
+    }
+
+    def "uses legacy format when parallel packing is not enabled"() {
+        def sourceFile = temporaryFolder.file("source.txt") << "output"
+        def cacheEntry = temporaryFolder.file("cache-entry")
+        packer = new ParallelTaskOutputPacker(legacyPacker, fileSystem, stringInterner, executorFactory, false, 4, 64)
+
+        when:
+        pack(cacheEntry, prop(FILE, sourceFile))
+
+        then:
+        cacheEntry.bytes[0] == (byte) 0x1f
+        cacheEntry.bytes[1] == (byte) 0x8b
+    }
+
+    @Unroll
+    def "detects corrupted compressed content when unpacking from #source"() {
+        def sourceFile = temporaryFolder.file("source.txt") << ("compressible " * 100)
+        def targetFile = temporaryFolder.file("target.txt")
+        def cacheEntry = temporaryFolder.file("cache-entry")
+        packer = new ParallelTaskOutputPacker(legacyPacker, fileSystem, stringInterner, executorFactory, true, 4, 4096)
+
+        given:
+        pack(cacheEntry, prop(FILE, sourceFile))
+        def bytes = cacheEntry.bytes
+        // Corrupt the compressed data of the last chunk, just before the index
+        def indexOffset = new DataInputStream(new ByteArrayInputStream(bytes, bytes.length - 12, 8)).readLong()
+        bytes[(int) indexOffset - 3] ^= 0x55
+        cacheEntry.bytes = bytes
+
+        when:
+        unpack(cacheEntry, fromFile, prop(FILE, targetFile))
+
+        then:
+        thrown(IOException)
+
+        where:
+        source   | fromFile
+        "file"   | true
+        "stream" | false
+    }
+
+    private static byte[] randomBytes(int count) {
+        def bytes = new byte[count]
+        new Random(1L).nextBytes(bytes)
+        return bytes
+    }
+
+    def pack(File cacheEntry, PropertyDefinition... propertyDefs) {
+        def propertySpecs = propertyDefs*.property as SortedSet
+        def outputSnapshots = propertyDefs.collectEntries { [(it.property.propertyName): it.snapshots] }
+        cacheEntry.withOutputStream { output ->
+            packer.pack(propertySpecs, outputSnapshots, output, writeOrigin)
+        }
+    }
+
+    def unpack(File cacheEntry, boolean fromFile, PropertyDefinition... propertyDefs) {
+        def propertySpecs = propertyDefs*.property as SortedSet
+        def input = fromFile ? new FileInputStream(cacheEntry) : new ByteArrayInputStream(cacheEntry.bytes)
+        try {
+            return packer.unpack(propertySpecs, input, readOrigin)
+        } finally {
+            input.close()
+        }
+    }
+
+    def prop(String name = "test", OutputType type, File output) {
+        def snapshots = [:]
+        if (output.isFile()) {
+            snapshots[output.absolutePath] = new FileHashSnapshot(TestFile.md5(output))
+        } else if (output.isDirectory()) {
+            output.traverse(type: FileType.ANY, visitRoot: true) { File file ->
+                snapshots[file.absolutePath] = file.isDirectory() ? DirContentSnapshot.INSTANCE : new FileHashSnapshot(TestFile.md5(file))
+            }
+        }
+        return new PropertyDefinition(property: new ResolvedTaskOutputFilePropertySpec(name, type, output), snapshots: snapshots)
+    }
+
+    private static class PropertyDefinition {
+        ResolvedTaskOutputFilePropertySpec property
+        Map snapshots
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+@CleanupTestDirectory
+class DirectoryBuildCacheAccessIndexTest extends Specification {
+    private static final int KB = 1024
+
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def cacheDir = temporaryFolder.createDir("cache")
+    def indexes = []
+    def index = createIndex()
+    long time = 1000000
+
+    def cleanup() {
+        indexes*.close()
+    }
+
+    def "creates journal from existing cache entries ordered by modification time"() {
+        given:
+        entry("newer", 400).lastModified = 2000
+        entry("older", 400).lastModified = 1000
+        entry("newest", 400).lastModified = 3000
+        cacheDir.file("cache.properties").touch()
+        cacheDir.file("gc.properties").touch()
+        cacheDir.file("other.part").touch()
+        cacheDir.file("corrupt.failed").touch()
+
+        when:
+        def totalSize = index.refresh()
+
+        then:
+        totalSize == 1200 * KB
+        names(index.findEntriesToRemove(0)) == ["older", "newer", "newest"]
+        cacheDir.file(DirectoryBuildCacheAccessIndex.JOURNAL_FILE_NAME).exists()
+    }
+
+    def "records uses from the first use and orders all entries by modification time when first read"() {
+        given:
+        entry("older", 400).lastModified = 2000
+        entry("oldest", 400).lastModified = 1000
+        store(index, "a", 400)
+        store(index, "b", 400)
+        access(index, "a")
+
+        expect:
+        cacheDir.file(DirectoryBuildCacheAccessIndex.JOURNAL_FILE_NAME).exists()
+        index.refresh() == 1600 * KB
+        names(index.findEntriesToRemove(0)) == ["oldest", "older", "b", "a"]
+        names(createIndex().with { refresh(); findEntriesToRemove(0) }) == ["oldest", "older", "b", "a"]
+    }
+
+    def "reads only the records appended since the journal was last read"() {
+        def journal = cacheDir.file(DirectoryBuildCacheAccessIndex.JOURNAL_FILE_NAME)
+
+        given:
+        store(index, "a", 400)
+        index.refresh()
+        store(index, "b", 400)
+        index.refresh()
+        // Only changes the records that have already been read
+        def bytes = journal.bytes
+        bytes[20] = bytes[20] + 1
+        journal.bytes = bytes
+        store(index, "c", 400)
+
+        expect:
+        index.refresh() == 1200 * KB
+        names(index.findEntriesToRemove(0)) == ["a", "b", "c"]
+    }
+
+    def "finds least recently used entries"() {
+        given:
+        index.refresh()
+        store(index, "a", 400)
+        store(index, "b", 400)
+        access(index, "a")
+        store(index, "c", 400)
+
+        expect:
+        index.refresh() == 1200 * KB
+        names(index.findEntriesToRemove(1024 * KB)) == ["b"]
+        names(index.findEntriesToRemove(400 * KB)) == ["b", "a"]
+    }
+
+    def "sees entries used by other processes"() {
+        def otherIndex = createIndex()
+
+        given:
+        index.refresh()
+        store(index, "a", 400)
+        store(otherIndex, "b", 400)
+        access(otherIndex, "a")
+        store(index, "c", 400)
+
+        expect:
+        index.refresh() == 1200 * KB
+        names(index.findEntriesToRemove(1024 * KB)) == ["b"]
+    }
+
+    def "keeps entries that have been used since they were recorded"() {
+        given:
+        index.refresh()
+        store(index, "a", 400)
+        store(index, "b", 400)
+        store(index, "c", 400)
+        // Used by something that does not record its uses, such as an older Gradle version
+        cacheDir.file("a").lastModified = ++time
+
+        when:
+        index.refresh()
+        def entries = index.findEntriesToRemove(1024 * KB)
+
+        then:
+        names(entries) == ["b"]
+
+        when:
+        index.remove(entries)
+        index.recordRemovals()
+
+        then:
+        names(createIndex().with { refresh(); findEntriesToRemove(0) }) == ["c", "a"]
+    }
+
+    def "forgets entries that no longer exist"() {
+        given:
+        index.refresh()
+        store(index, "a", 400)
+        store(index, "b", 400)
+        store(index, "c", 400)
+        cacheDir.file("a").delete()
+
+        expect:
+        index.refresh() == 1200 * KB
+        index.findEntriesToRemove(1024 * KB).empty
+        index.refresh() == 800 * KB
+    }
+
+    def "removes entries"() {
+        given:
+        index.refresh()
+        store(index, "a", 400)
+        store(index, "b", 400)
+        store(index, "c", 400)
+        index.refresh()
+
+        when:
+        def removedSize = index.remove(index.findEntriesToRemove(500 * KB))
+        index.recordRemovals()
+
+        then:
+        removedSize == 800 * KB
+        !cacheDir.file("a").exists()
+        !cacheDir.file("b").exists()
+        cacheDir.file("c").exists()
+        index.refresh() == 400 * KB
+        createIndex().refresh() == 400 * KB
+    }
+
+    def "does not remove entries that have been used since they were chosen"() {
+        given:
+        store(index, "a", 400)
+        store(index, "b", 400)
+        index.refresh()
+        def entries = index.findEntriesToRemove(0)
+        access(createIndex(), "a")
+
+        when:
+        def removedSize = index.remove(entries)
+        index.recordRemovals()
+
+        then:
+        removedSize == 400 * KB
+        cacheDir.file("a").exists()
+        !cacheDir.file("b").exists()
+        index.refresh() == 400 * KB
+        names(index.findEntriesToRemove(0)) == ["a"]
+    }
+
+    def "does not record the removal of entries that have been stored again"() {
+        given:
+        store(index, "a", 400)
+        store(index, "b", 400)
+        index.refresh()
+        index.remove(index.findEntriesToRemove(0))
+        store(createIndex(), "a", 400)
+
+        when:
+        index.recordRemovals()
+
+        then:
+        index.refresh() == 400 * KB
+        names(index.findEntriesToRemove(0)) == ["a"]
+    }
+
+    def "does not count entries that could not be read"() {
+        given:
+        index.refresh()
+        store(index, "a", 400)
+        store(index, "b", 400)
+        cacheDir.file("a").renameTo(cacheDir.file("a.failed"))
+        index.removed("a")
+
+        expect:
+        index.refresh() == 400 * KB
+        names(index.findEntriesToRemove(0)) == ["b"]
+    }
+
+    def "compacts journal and other processes continue to see the entries"() {
+        def otherIndex = createIndex()
+        def journal = cacheDir.file(DirectoryBuildCacheAccessIndex.JOURNAL_FILE_NAME)
+
+        given:
+        store(index, "a", 400)
+        // Keeps the journal open for appending
+        store(otherIndex, "b", 400)
+        otherIndex.refresh()
+        2000.times {
+            access(index, "a")
+        }
+        index.refresh()
+        def journalSize = journal.length()
+
+        when:
+        index.compactIfNecessary()
+
+        then:
+        journal.length() < journalSize
+
+        when:
+        access(otherIndex, "b")
+        store(otherIndex, "c", 400)
+
+        then:
+        otherIndex.refresh() == 1200 * KB
+        names(otherIndex.findEntriesToRemove(1024 * KB)) == ["a"]
+        index.refresh() == 1200 * KB
+        names(index.findEntriesToRemove(1024 * KB)) == ["a"]
+    }
+
+    def "rebuilds corrupt journal"() {
+        given:
+        entry("a", 400).lastModified = 1000
+        entry("b", 400).lastModified = 2000
+        entry("c", 400).lastModified = 3000
+        cacheDir.file(DirectoryBuildCacheAccessIndex.JOURNAL_FILE_NAME).text = "corrupt"
+
+        expect:
+        index.refresh() == 1200 * KB
+        names(index.findEntriesToRemove(1024 * KB)) == ["a"]
+    }
+
+    private DirectoryBuildCacheAccessIndex createIndex() {
+        def index = new DirectoryBuildCacheAccessIndex(cacheDir, ".part", ".failed")
+        indexes << index
+        return index
+    }
+
+    private void store(DirectoryBuildCacheAccessIndex index, String key, int sizeInKB) {
+        def file = entry(key, sizeInKB)
+        file.lastModified = ++time
+        index.stored(key, file)
+    }
+
+    private void access(DirectoryBuildCacheAccessIndex index, String key) {
+        def file = cacheDir.file(key)
+        file.lastModified = ++time
+        index.accessed(key, file)
+    }
+
+    private File entry(String key, int sizeInKB) {
+        def file = cacheDir.file(key)
+        file.bytes = new byte[sizeInKB * KB]
+        return file
+    }
+
+    private static List<String> names(List<File> files) {
+        files*.name
+    }
+}
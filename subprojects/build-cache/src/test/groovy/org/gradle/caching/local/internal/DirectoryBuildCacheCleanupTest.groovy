@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.gradle.cache.PersistentCache
+import org.gradle.internal.Factory
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.internal.operations.CallableBuildOperation
+import org.gradle.internal.operations.RunnableBuildOperation
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+@CleanupTestDirectory
+class DirectoryBuildCacheCleanupTest extends Specification {
+    private static final int MB = 1024 * 1024
+
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def cacheDir = temporaryFolder.createDir("cache")
+    def operations = []
+    def buildOperationExecutor = Stub(BuildOperationExecutor) {
+        run(_) >> { RunnableBuildOperation operation ->
+            operations << operation.description().build().displayName
+            operation.run(Stub(BuildOperationContext))
+        }
+        call(_) >> { CallableBuildOperation operation ->
+            operations << operation.description().build().displayName
+            operation.call(Stub(BuildOperationContext))
+        }
+    }
+    def persistentCache = Stub(PersistentCache) {
+        getBaseDir() >> cacheDir
+        withFileLock(_ as Factory) >> { Factory action -> action.create() }
+        withFileLock(_ as Runnable) >> { Runnable action -> action.run() }
+    }
+    def accessIndex = new DirectoryBuildCacheAccessIndex(cacheDir, ".part", ".failed")
+    def cacheCleanup = new DirectoryBuildCacheCleanup(buildOperationExecutor, accessIndex, 2)
+
+    def cleanup() {
+        accessIndex.close()
+    }
+
+    def "removes least recently used entries until the cache is below its target size"() {
+        given:
+        entry("oldest", 1000)
+        entry("older", 2000)
+        entry("newer", 3000)
+        entry("newest", 4000)
+
+        when:
+        cacheCleanup.execute(persistentCache)
+
+        then:
+        !cacheDir.file("oldest").exists()
+        !cacheDir.file("older").exists()
+        cacheDir.file("newer").exists()
+        cacheDir.file("newest").exists()
+        operations == ["Clean up $persistentCache", "Scan $cacheDir", "Choose files to delete from $persistentCache", "Delete files for $persistentCache"]*.toString()
+    }
+
+    def "does not remove anything when the cache is below its target size"() {
+        given:
+        entry("older", 1000)
+        entry("newer", 2000)
+
+        when:
+        cacheCleanup.execute(persistentCache)
+
+        then:
+        cacheDir.file("older").exists()
+        cacheDir.file("newer").exists()
+        operations == ["Clean up $persistentCache", "Scan $cacheDir"]*.toString()
+    }
+
+    def "uses the order recorded in the access index"() {
+        given:
+        cacheCleanup.execute(persistentCache)
+        accessIndex.stored("a", entry("a", 1000))
+        accessIndex.stored("b", entry("b", 1000))
+        accessIndex.stored("c", entry("c", 1000))
+        accessIndex.accessed("a", cacheDir.file("a"))
+
+        when:
+        cacheCleanup.execute(persistentCache)
+
+        then:
+        cacheDir.file("a").exists()
+        !cacheDir.file("b").exists()
+        cacheDir.file("c").exists()
+    }
+
+    private File entry(String key, long lastModified) {
+        def file = cacheDir.file(key)
+        file.bytes = new byte[MB]
+        file.lastModified = lastModified
+        return file
+    }
+}
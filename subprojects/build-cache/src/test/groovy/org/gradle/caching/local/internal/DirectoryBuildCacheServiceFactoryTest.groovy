@@ -38,7 +38,8 @@ class DirectoryBuildCacheServiceFactoryTest extends Specification {
     def cacheScopeMapping = Mock(CacheScopeMapping)
     def resolver = Mock(FileResolver)
     def fileStoreFactory = Mock(DirectoryBuildCacheFileStoreFactory)
-    def factory = new DirectoryBuildCacheServiceFactory(cacheRepository, cacheScopeMapping, resolver, new TestBuildOperationExecutor(), fileStoreFactory)
+    def accessIndexRegistry = Mock(DirectoryBuildCacheAccessIndexRegistry)
+    def factory = new DirectoryBuildCacheServiceFactory(cacheRepository, cacheScopeMapping, resolver, new TestBuildOperationExecutor(), fileStoreFactory, accessIndexRegistry)
     def cacheBuilder = Stub(CacheBuilder)
     def config = Mock(DirectoryBuildCache)
     def buildCacheDescriber = new NoopBuildCacheDescriber()
@@ -56,6 +57,7 @@ class DirectoryBuildCacheServiceFactoryTest extends Specification {
         1 * config.getTargetSizeInMB() >> 1000
         1 * cacheScopeMapping.getBaseDirectory(null, "build-cache-1", VersionStrategy.SharedCache) >> cacheDir
         1 * fileStoreFactory.createFileStore(cacheDir) >> Mock(PathKeyFileStore)
+        1 * accessIndexRegistry.getAccessIndex(cacheDir) >> Mock(DirectoryBuildCacheAccessIndex)
         1 * cacheRepository.cache(cacheDir) >> cacheBuilder
         0 * _
     }
@@ -71,6 +73,7 @@ class DirectoryBuildCacheServiceFactoryTest extends Specification {
         1 * config.getTargetSizeInMB() >> 1000
         1 * resolver.resolve(cacheDir) >> cacheDir
         1 * fileStoreFactory.createFileStore(cacheDir) >> Mock(PathKeyFileStore)
+        1 * accessIndexRegistry.getAccessIndex(cacheDir) >> Mock(DirectoryBuildCacheAccessIndex)
         1 * cacheRepository.cache(cacheDir) >> cacheBuilder
         0 * _
     }
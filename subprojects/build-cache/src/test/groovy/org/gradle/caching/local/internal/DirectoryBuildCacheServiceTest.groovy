@@ -17,8 +17,10 @@
 package org.gradle.caching.local.internal
 
 import org.gradle.cache.PersistentCache
+import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.resource.local.LocallyAvailableResource
 import org.gradle.internal.resource.local.PathKeyFileStore
 import org.gradle.test.fixtures.file.CleanupTestDirectory
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
@@ -36,7 +38,8 @@ class DirectoryBuildCacheServiceTest extends Specification {
         getBaseDir() >> cacheDir
     }
     def tempFileStore = new DefaultBuildCacheTempFileStore(cacheDir, ".part")
-    def service = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, ".failed")
+    def accessIndex = Mock(DirectoryBuildCacheAccessIndex)
+    def service = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, accessIndex, ".failed")
     def key = Mock(BuildCacheKey)
 
     def "does not store partial result"() {
@@ -68,4 +71,23 @@ class DirectoryBuildCacheServiceTest extends Specification {
         cacheDir.listFiles() as List == []
         1 * key.getHashCode() >> hashCode
     }
+
+    def "treats entry removed by another process as a miss"() {
+        def reader = Mock(BuildCacheEntryReader)
+        def resource = Stub(LocallyAvailableResource) {
+            getFile() >> cacheDir.file("1234abcd")
+        }
+
+        when:
+        def loaded = service.load(key, reader)
+
+        then:
+        !loaded
+        1 * persistentCache.withFileLock(_ as Runnable) >> { Runnable action -> action.run() }
+        _ * key.getHashCode() >> "1234abcd"
+        1 * fileStore.get("1234abcd") >> resource
+        0 * reader._
+        0 * accessIndex._
+        cacheDir.listFiles() as List == []
+    }
 }
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+import org.gradle.api.internal.TaskInternal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs synthetic task graphs with many worker threads, to compare the cost of selecting the next task by scanning the queue of tasks that have not started,
+ * as {@link DefaultTaskExecutionPlan} does by default, with selecting it from a {@link WorkStealingTaskQueue}.
+ *
+ * <p>Each task depends on a few of the tasks that precede it in the plan, and tasks do a small, fixed amount of work. Like the execution plan,
+ * the schedulers are only accessed while holding a single lock.</p>
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TaskSelectionBenchmark {
+    private static final int MAX_DEPENDENCIES = 3;
+    private static final int DEPENDENCY_WINDOW = 500;
+    private static final int WORK_PER_TASK = 200;
+
+    @Param({"10000", "50000", "100000"})
+    int taskCount;
+
+    @Param({"scan", "work-stealing"})
+    String scheduler;
+
+    @Param({"32"})
+    int workerCount;
+
+    private List<TaskInfo> plan;
+
+    @Setup(Level.Invocation)
+    public void createGraph() {
+        plan = createGraph(taskCount, new Random(1L));
+    }
+
+    @Benchmark
+    public int execute() throws InterruptedException {
+        Scheduler scheduler = this.scheduler.equals("scan") ? new ScanningScheduler(plan) : new WorkStealingScheduler(plan);
+        return execute(scheduler, workerCount);
+    }
+
+    /**
+     * Creates the nodes of a plan in which each task depends on up to {@value #MAX_DEPENDENCIES} of the tasks that come shortly before it.
+     */
+    static List<TaskInfo> createGraph(int taskCount, Random random) {
+        List<TaskInfo> plan = Lists.newArrayListWithCapacity(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            TaskInfo taskInfo = new TaskInfo(syntheticTask(i));
+            taskInfo.require();
+            if (i > 0) {
+                int dependencies = random.nextInt(MAX_DEPENDENCIES + 1);
+                for (int j = 0; j < dependencies; j++) {
+                    int window = Math.min(i, DEPENDENCY_WINDOW);
+                    taskInfo.addDependencySuccessor(plan.get(i - 1 - random.nextInt(window)));
+                }
+            }
+            plan.add(taskInfo);
+        }
+        return plan;
+    }
+
+    /**
+     * Executes all tasks of the plan, and returns the number of tasks executed.
+     */
+    static int execute(final Scheduler scheduler, int workerCount) throws InterruptedException {
+        final AtomicInteger executed = new AtomicInteger();
+        List<Thread> workers = Lists.newArrayList();
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (true) {
+                        TaskInfo taskInfo;
+                        synchronized (scheduler) {
+                            while (true) {
+                                if (!scheduler.hasPendingTasks()) {
+                                    return;
+                                }
+                                taskInfo = scheduler.selectNext();
+                                if (taskInfo != null) {
+                                    break;
+                                }
+                                try {
+                                    scheduler.wait();
+                                } catch (InterruptedException e) {
+                                    throw new RuntimeException(e);
+                                }
+                            }
+                        }
+                        Blackhole.consumeCPU(WORK_PER_TASK);
+                        executed.incrementAndGet();
+                        synchronized (scheduler) {
+                            scheduler.complete(taskInfo);
+                            scheduler.notifyAll();
+                        }
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return executed.get();
+    }
+
+    interface Scheduler {
+        boolean hasPendingTasks();
+
+        TaskInfo selectNext();
+
+        void complete(TaskInfo taskInfo);
+    }
+
+    /**
+     * Selects tasks in the same way as {@link DefaultTaskExecutionPlan} does by default.
+     */
+    static class ScanningScheduler implements Scheduler {
+        private final List<TaskInfo> executionQueue;
+        private final Set<TaskInfo> dependenciesCompleteCache = Sets.newHashSet();
+
+        ScanningScheduler(List<TaskInfo> plan) {
+            executionQueue = new LinkedList<TaskInfo>(plan);
+        }
+
+        @Override
+        public boolean hasPendingTasks() {
+            for (TaskInfo taskInfo : executionQueue) {
+                if (!taskInfo.isComplete()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public TaskInfo selectNext() {
+            Iterator<TaskInfo> iterator = executionQueue.iterator();
+            while (iterator.hasNext()) {
+                TaskInfo taskInfo = iterator.next();
+                if (taskInfo.isReady() && allDependenciesComplete(taskInfo)) {
+                    taskInfo.startExecution();
+                    iterator.remove();
+                    return taskInfo;
+                }
+            }
+            return null;
+        }
+
+        private boolean allDependenciesComplete(TaskInfo taskInfo) {
+            if (dependenciesCompleteCache.contains(taskInfo)) {
+                return true;
+            }
+            boolean dependenciesComplete = taskInfo.allDependenciesComplete();
+            if (dependenciesComplete) {
+                dependenciesCompleteCache.add(taskInfo);
+            }
+            return dependenciesComplete;
+        }
+
+        @Override
+        public void complete(TaskInfo taskInfo) {
+            taskInfo.finishExecution();
+        }
+    }
+
+    static class WorkStealingScheduler implements Scheduler {
+        private final WorkStealingTaskQueue queue = new WorkStealingTaskQueue();
+
+        WorkStealingScheduler(List<TaskInfo> plan) {
+            queue.initialize(plan);
+        }
+
+        @Override
+        public boolean hasPendingTasks() {
+            return queue.hasPendingTasks();
+        }
+
+        @Override
+        public TaskInfo selectNext() {
+            TaskInfo taskInfo = queue.poll();
+            if (taskInfo != null) {
+                taskInfo.startExecution();
+                queue.started(taskInfo);
+            }
+            return taskInfo;
+        }
+
+        @Override
+        public void complete(TaskInfo taskInfo) {
+            taskInfo.finishExecution();
+            queue.completed(taskInfo);
+        }
+    }
+
+    /**
+     * Creates a task that can be ordered and named, which is all that the scheduling needs.
+     */
+    private static TaskInternal syntheticTask(final int index) {
+        return (TaskInternal) Proxy.newProxyInstance(TaskSelectionBenchmark.class.getClassLoader(), new Class<?>[]{TaskInternal.class, SyntheticTask.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("compareTo")) {
+                    return Ints.compare(index, ((SyntheticTask) args[0]).getIndex());
+                }
+                if (name.equals("getIndex") || name.equals("hashCode")) {
+                    return index;
+                }
+                if (name.equals("equals")) {
+                    return proxy == args[0];
+                }
+                if (name.equals("getPath") || name.equals("toString")) {
+                    return ":task" + index;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    public interface SyntheticTask {
+        int getIndex();
+    }
+}
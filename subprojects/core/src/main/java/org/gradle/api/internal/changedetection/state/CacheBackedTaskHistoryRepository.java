@@ -41,6 +41,7 @@ import org.gradle.internal.classloader.ClassLoaderHierarchyHasher;
 import org.gradle.internal.file.FileType;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.scopeids.id.BuildInvocationScopeId;
+import org.gradle.internal.serialize.BaseSerializerFactory;
 import org.gradle.internal.serialize.Serializer;
 import org.gradle.normalization.internal.InputNormalizationHandlerInternal;
 import org.gradle.normalization.internal.InputNormalizationStrategy;
@@ -63,6 +64,7 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
     private static final Logger LOGGER = LoggerFactory.getLogger(CacheBackedTaskHistoryRepository.class);
 
     private final PersistentIndexedCache<String, HistoricalTaskExecution> taskHistoryCache;
+    private final PersistentIndexedCache<String, Long> executionTimeCache;
     private final StringInterner stringInterner;
     private final ClassLoaderHierarchyHasher classLoaderHierarchyHasher;
     private final ValueSnapshotter valueSnapshotter;
@@ -88,6 +90,7 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
         this.buildInvocationScopeId = buildInvocationScopeId;
         TaskExecutionSnapshotSerializer serializer = new TaskExecutionSnapshotSerializer(stringInterner, fileCollectionSnapshotSerializer);
         this.taskHistoryCache = cacheAccess.createCache("taskHistory", String.class, serializer, 10000, false);
+        this.executionTimeCache = cacheAccess.createCache("taskExecutionTimes", String.class, BaseSerializerFactory.LONG_SERIALIZER, 10000, false);
     }
 
     @Override
@@ -134,6 +137,17 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
         };
     }
 
+    @Nullable
+    @Override
+    public Long getPreviousExecutionTime(TaskInternal task) {
+        return executionTimeCache.get(task.getPath());
+    }
+
+    @Override
+    public void recordExecutionTime(TaskInternal task, long executionTimeMillis) {
+        executionTimeCache.put(task.getPath(), executionTimeMillis);
+    }
+
     private CurrentTaskExecution createExecution(TaskInternal task, @Nullable HistoricalTaskExecution previousExecution, InputNormalizationStrategy normalizationStrategy) {
         Class<? extends TaskInternal> taskClass = task.getClass();
         List<ContextAwareTaskAction> taskActions = task.getTaskActions();
@@ -16,6 +16,9 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.io.ByteStreams;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.specs.Specs;
 import org.gradle.caching.internal.BuildCacheHasher;
 import org.gradle.caching.internal.DefaultBuildCacheHasher;
 import org.gradle.internal.hash.HashCode;
@@ -26,17 +29,23 @@ import java.util.zip.ZipEntry;
 
 /**
  * Caches the result of hashing a {@link RegularFileSnapshot} with a {@link ResourceHasher}.
- * It does not cache the result of hashing {@link ZipEntry}s.
+ * It caches the result of hashing {@link ZipEntry}s that satisfy the given spec by the content of the entry, so that an entry that is present in many jars is only hashed once.
  * It also caches the absence of a hash.
  */
 public class CachingResourceHasher implements ResourceHasher {
     private final ResourceHasher delegate;
     private final ResourceSnapshotterCacheService resourceSnapshotterCacheService;
+    private final Spec<? super ZipEntry> cachedZipEntries;
     private final byte[] delegateConfigurationHash;
 
     public CachingResourceHasher(ResourceHasher delegate, ResourceSnapshotterCacheService resourceSnapshotterCacheService) {
+        this(delegate, resourceSnapshotterCacheService, Specs.<ZipEntry>satisfyNone());
+    }
+
+    public CachingResourceHasher(ResourceHasher delegate, ResourceSnapshotterCacheService resourceSnapshotterCacheService, Spec<? super ZipEntry> cachedZipEntries) {
         this.delegate = delegate;
         this.resourceSnapshotterCacheService = resourceSnapshotterCacheService;
+        this.cachedZipEntries = cachedZipEntries;
         BuildCacheHasher hasher = new DefaultBuildCacheHasher();
         delegate.appendConfigurationToHasher(hasher);
         this.delegateConfigurationHash = hasher.hash().toByteArray();
@@ -49,6 +58,9 @@ public class CachingResourceHasher implements ResourceHasher {
 
     @Override
     public HashCode hash(ZipEntry zipEntry, InputStream zipInput) throws IOException {
+        if (cachedZipEntries.isSatisfiedBy(zipEntry)) {
+            return resourceSnapshotterCacheService.hashZipEntry(zipEntry, ByteStreams.toByteArray(zipInput), delegate, delegateConfigurationHash);
+        }
         return delegate.hash(zipEntry, zipInput);
     }
 
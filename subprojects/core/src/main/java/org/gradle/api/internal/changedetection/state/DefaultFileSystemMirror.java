@@ -16,22 +16,54 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import org.gradle.api.Action;
+import org.gradle.api.internal.file.FileSystemSubset;
 import org.gradle.api.internal.tasks.execution.TaskOutputsGenerationListener;
 import org.gradle.initialization.RootBuildLifecycleListener;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.classpath.CachedJarFileStore;
+import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.file.DefaultFileHierarchySet;
 import org.gradle.internal.file.FileHierarchySet;
+import org.gradle.internal.filewatch.FileWatcher;
+import org.gradle.internal.filewatch.FileWatcherEvent;
+import org.gradle.internal.filewatch.FileWatcherFactory;
+import org.gradle.internal.filewatch.FileWatcherListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
 
 /**
  * See {@link DefaultFileSystemSnapshotter} for some more details
+ *
+ * <p>By default, all state for files that do not live in an append-only cache is discarded at the end of each build.
+ * When the {@value #RETAIN_BETWEEN_BUILDS_PROPERTY} system property is set, the state is instead kept between builds and the directories that contain
+ * the files are watched for changes. A change to a file evicts the state for the file, for everything below it and for the directory trees that contain it.
+ * The watch for a file is registered when the mirror is asked for the file and does not have it, before the file is snapshotted, and the snapshot is only
+ * retained when no change to the file was seen in between. State for files that cannot be watched, or that was collected while the watcher was not running,
+ * is still discarded at the end of the build.</p>
+ *
+ * <p>File system events are delivered asynchronously. So at the start of each build, a sentinel file is written and the retained state is only used once
+ * the watcher has delivered the event for the sentinel file, and with it the events for the changes made before the build started.</p>
  */
-public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGenerationListener, RootBuildLifecycleListener {
+public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGenerationListener, RootBuildLifecycleListener, Stoppable {
+    public static final String RETAIN_BETWEEN_BUILDS_PROPERTY = "org.gradle.internal.filesystem.mirror.retain";
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultFileSystemMirror.class);
+    private static final long SENTINEL_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
     // Maps from interned absolute path for a file to known details for the file.
     private final Map<String, FileSnapshot> files = new ConcurrentHashMap<String, FileSnapshot>();
     private final Map<String, FileSnapshot> cacheFiles = new ConcurrentHashMap<String, FileSnapshot>();
@@ -41,9 +73,40 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
     // Maps from interned absolute path to a snapshot
     private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
     private final Map<String, Snapshot> cacheSnapshots = new ConcurrentHashMap<String, Snapshot>();
+    // The paths of the entries above that are retained between builds, sorted so that the descendants of a changed directory can be found
+    private final NavigableSet<String> retainedPaths = new ConcurrentSkipListSet<String>();
+    // The paths of the entries above that are not covered by a watch, and so must be discarded at the end of the build
+    private final Set<String> unwatchedPaths = new ConcurrentSkipListSet<String>();
+    // The paths that are being snapshotted and are covered by a watch, and have not changed since the watch was registered
+    private final NavigableSet<String> pendingPaths = new ConcurrentSkipListSet<String>();
     private final FileHierarchySet cachedDirectories;
+    private final FileWatcherFactory fileWatcherFactory;
+    private final File sentinelDir;
+    private final long sentinelTimeoutMillis;
+    private final String sentinelPrefix = "sentinel-" + UUID.randomUUID() + "-";
+    private final FileSystemMirrorStatistics statistics;
+
+    private final Object watchLock = new Object();
+    private FileWatcher watcher;
+    private final Object sentinelLock = new Object();
+    private File currentSentinel;
+    private boolean sentinelSeen;
+    private int sentinelCount;
+    private volatile FileHierarchySet watchedDirectories = DefaultFileHierarchySet.of();
+    private volatile boolean retainBetweenBuilds;
 
     public DefaultFileSystemMirror(List<CachedJarFileStore> fileStores) {
+        this(fileStores, null, null, new FileSystemMirrorStatistics());
+    }
+
+    /**
+     * @param sentinelDir the directory in which to write the sentinel files, required to retain state between builds.
+     */
+    public DefaultFileSystemMirror(List<CachedJarFileStore> fileStores, @Nullable FileWatcherFactory fileWatcherFactory, @Nullable File sentinelDir, FileSystemMirrorStatistics statistics) {
+        this(fileStores, fileWatcherFactory, sentinelDir, statistics, SENTINEL_TIMEOUT_MILLIS);
+    }
+
+    DefaultFileSystemMirror(List<CachedJarFileStore> fileStores, @Nullable FileWatcherFactory fileWatcherFactory, @Nullable File sentinelDir, FileSystemMirrorStatistics statistics, long sentinelTimeoutMillis) {
         FileHierarchySet cachedDirectories = DefaultFileHierarchySet.of();
         for (CachedJarFileStore fileStore : fileStores) {
             for (File file : fileStore.getFileStoreRoots()) {
@@ -51,6 +114,15 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
             }
         }
         this.cachedDirectories = cachedDirectories;
+        this.fileWatcherFactory = fileWatcherFactory;
+        this.sentinelDir = sentinelDir;
+        this.statistics = statistics;
+        this.sentinelTimeoutMillis = sentinelTimeoutMillis;
+        this.retainBetweenBuilds = canRetainBetweenBuilds();
+    }
+
+    private boolean canRetainBetweenBuilds() {
+        return fileWatcherFactory != null && sentinelDir != null && Boolean.getBoolean(RETAIN_BETWEEN_BUILDS_PROPERTY);
     }
 
     @Nullable
@@ -59,9 +131,9 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
         // Could potentially also look whether we have the details for an ancestor directory tree
         // Could possibly infer that the path refers to a directory, if we have details for a descendant path (and it's not a missing file)
         if (cachedDirectories.contains(path)) {
-            return cacheFiles.get(path);
+            return record(cacheFiles.get(path));
         } else {
-            return files.get(path);
+            return record(prepareToRetain(path, files.get(path), new File(path).getParentFile()));
         }
     }
 
@@ -71,6 +143,7 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
             cacheFiles.put(file.getPath(), file);
         } else {
             files.put(file.getPath(), file);
+            retain(file.getPath());
         }
     }
 
@@ -78,9 +151,9 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
     @Override
     public Snapshot getContent(String path) {
         if (cachedDirectories.contains(path)) {
-            return cacheSnapshots.get(path);
+            return record(cacheSnapshots.get(path));
         } else {
-            return snapshots.get(path);
+            return record(prepareToRetain(path, snapshots.get(path), new File(path).getParentFile()));
         }
     }
 
@@ -90,6 +163,7 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
             cacheSnapshots.put(path, snapshot);
         } else {
             snapshots.put(path, snapshot);
+            retain(path);
         }
     }
 
@@ -99,9 +173,9 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
         // Could potentially also look whether we have the details for an ancestor directory tree
         // Could possibly also short-circuit some scanning if we have details for some sub trees
         if (cachedDirectories.contains(path)) {
-            return cacheTrees.get(path);
+            return record(cacheTrees.get(path));
         } else {
-            return trees.get(path);
+            return record(prepareToRetain(path, trees.get(path), new File(path)));
         }
     }
 
@@ -111,30 +185,291 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
             cacheTrees.put(directory.getPath(), directory);
         } else {
             trees.put(directory.getPath(), directory);
+            retain(directory.getPath());
+        }
+    }
+
+    @Nullable
+    private <T> T record(@Nullable T value) {
+        if (value == null) {
+            statistics.miss();
+        } else {
+            statistics.hit();
         }
+        return value;
     }
 
     @Override
     public void beforeTaskOutputsGenerated() {
         // When the task outputs are generated, throw away all state for files that do not live in an append-only cache.
         // This is intentionally very simple, to be improved later
-        files.clear();
-        trees.clear();
-        snapshots.clear();
+        // File system events are delivered asynchronously, so the watcher cannot be relied on to have seen the outputs by the time they are snapshotted
+        discardNonCacheState();
     }
 
     @Override
     public void afterStart() {
+        retainBetweenBuilds = canRetainBetweenBuilds();
+        if (!retainedPaths.isEmpty() && !awaitPendingEvents()) {
+            LOGGER.debug("File system watcher did not deliver the pending changes, discarding retained file system state.");
+            discardNonCacheState();
+        }
     }
 
     @Override
     public void beforeComplete() {
-        // We throw away all state between builds
-        files.clear();
         cacheFiles.clear();
-        trees.clear();
         cacheTrees.clear();
-        snapshots.clear();
         cacheSnapshots.clear();
+        if (retainBetweenBuilds && isWatching()) {
+            // Keep the state that the watcher will invalidate
+            for (String path : unwatchedPaths) {
+                remove(path);
+            }
+            unwatchedPaths.clear();
+            pendingPaths.clear();
+            statistics.retainedBetweenBuilds(true);
+        } else {
+            // We throw away all state between builds
+            stopWatching();
+            files.clear();
+            trees.clear();
+            snapshots.clear();
+            retainedPaths.clear();
+            unwatchedPaths.clear();
+            pendingPaths.clear();
+            statistics.retainedBetweenBuilds(false);
+        }
+    }
+
+    @Override
+    public void stop() {
+        stopWatching();
+    }
+
+    /**
+     * Called when the mirror is asked for a path, before the path is snapshotted when there is no state for it. Registers the watch for the path,
+     * so that a change made while the path is being snapshotted is seen.
+     */
+    @Nullable
+    private <T> T prepareToRetain(String path, @Nullable T value, @Nullable File directory) {
+        if (value == null && retainBetweenBuilds && watch(directory)) {
+            pendingPaths.add(path);
+        }
+        return value;
+    }
+
+    /**
+     * Called after the snapshot for a path has been added. Retains the snapshot between builds when the path was watched before it was snapshotted,
+     * and has not changed since.
+     */
+    private void retain(String path) {
+        if (!retainBetweenBuilds) {
+            return;
+        }
+        retainedPaths.add(path);
+        if (!pendingPaths.remove(path)) {
+            unwatchedPaths.add(path);
+        }
+    }
+
+    private boolean watch(@Nullable File directory) {
+        if (directory == null) {
+            return false;
+        }
+        if (watchedDirectories.contains(directory)) {
+            return true;
+        }
+        if (!directory.isDirectory()) {
+            return false;
+        }
+        synchronized (watchLock) {
+            if (startWatching()) {
+                if (watchedDirectories.contains(directory)) {
+                    return true;
+                }
+                try {
+                    watcher.watch(FileSystemSubset.builder().add(directory).build());
+                    watchedDirectories = watchedDirectories.plus(directory);
+                    return true;
+                } catch (IOException e) {
+                    LOGGER.debug("Could not watch {} for changes, the file system state for it will be discarded at the end of the build.", directory, e);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes a sentinel file and waits for the watcher to deliver its event. Returns false when the watcher is not running or the event does not arrive in time.
+     */
+    private boolean awaitPendingEvents() {
+        if (!retainBetweenBuilds || !isWatching()) {
+            return false;
+        }
+        File sentinel;
+        synchronized (sentinelLock) {
+            sentinel = new File(sentinelDir, sentinelPrefix + (sentinelCount++));
+            currentSentinel = sentinel;
+            sentinelSeen = false;
+        }
+        try {
+            new FileOutputStream(sentinel).close();
+            long deadline = System.currentTimeMillis() + sentinelTimeoutMillis;
+            synchronized (sentinelLock) {
+                while (!sentinelSeen) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    sentinelLock.wait(remaining);
+                }
+                return sentinelSeen;
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not write file system watcher sentinel file {}.", sentinel, e);
+            return false;
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            synchronized (sentinelLock) {
+                currentSentinel = null;
+            }
+            sentinel.delete();
+        }
+    }
+
+    private void sentinelChanged(File file) {
+        synchronized (sentinelLock) {
+            if (file.equals(currentSentinel)) {
+                sentinelSeen = true;
+                sentinelLock.notifyAll();
+            }
+        }
+    }
+
+    private boolean startWatching() {
+        if (watcher != null && watcher.isRunning()) {
+            return true;
+        }
+        if (watcher != null) {
+            // The watcher stopped, so changes may have been missed
+            LOGGER.debug("File system watcher is no longer running, discarding retained file system state.");
+            watcher = null;
+            watchedDirectories = DefaultFileHierarchySet.of();
+            discardNonCacheState();
+        }
+        try {
+            watcher = fileWatcherFactory.watch(new Action<Throwable>() {
+                @Override
+                public void execute(Throwable throwable) {
+                    LOGGER.debug("File system watcher failed, discarding retained file system state.", throwable);
+                    discardNonCacheState();
+                }
+            }, new FileWatcherListener() {
+                @Override
+                public void onChange(FileWatcher watcher, FileWatcherEvent event) {
+                    if (event.getFile() != null && sentinelDir.equals(event.getFile().getParentFile())) {
+                        sentinelChanged(event.getFile());
+                    } else if (event.getType() == FileWatcherEvent.Type.UNDEFINED || event.getFile() == null) {
+                        // Events may have been lost
+                        discardNonCacheState();
+                    } else {
+                        evict(event.getFile().getAbsolutePath());
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            LOGGER.debug("Could not start file system watcher.", e);
+            retainBetweenBuilds = false;
+            return false;
+        }
+        try {
+            sentinelDir.mkdirs();
+            watcher.watch(FileSystemSubset.builder().add(sentinelDir).build());
+            return true;
+        } catch (IOException e) {
+            LOGGER.debug("Could not watch {} for changes, not retaining file system state between builds.", sentinelDir, e);
+            watcher.stop();
+            watcher = null;
+            retainBetweenBuilds = false;
+            return false;
+        }
+    }
+
+    private boolean isWatching() {
+        synchronized (watchLock) {
+            return watcher != null && watcher.isRunning();
+        }
+    }
+
+    private void stopWatching() {
+        synchronized (watchLock) {
+            if (watcher != null) {
+                watcher.stop();
+                watcher = null;
+            }
+            watchedDirectories = DefaultFileHierarchySet.of();
+        }
+    }
+
+    private void evict(String path) {
+        // The changed file and everything below it
+        int evicted = remove(path);
+        String prefix = path + File.separatorChar;
+        Iterator<String> descendants = retainedPaths.tailSet(prefix).iterator();
+        while (descendants.hasNext()) {
+            String descendant = descendants.next();
+            if (!descendant.startsWith(prefix)) {
+                break;
+            }
+            evicted += removeEntries(descendant);
+            descendants.remove();
+        }
+        removeDescendants(pendingPaths, prefix);
+        // Any directory tree containing the changed file
+        for (File parent = new File(path).getParentFile(); parent != null; parent = parent.getParentFile()) {
+            evicted += remove(parent.getPath());
+        }
+        statistics.evicted(evicted);
+    }
+
+    private static void removeDescendants(NavigableSet<String> paths, String prefix) {
+        Iterator<String> descendants = paths.tailSet(prefix).iterator();
+        while (descendants.hasNext()) {
+            if (!descendants.next().startsWith(prefix)) {
+                break;
+            }
+            descendants.remove();
+        }
+    }
+
+    private int remove(String path) {
+        retainedPaths.remove(path);
+        pendingPaths.remove(path);
+        return removeEntries(path);
+    }
+
+    private int removeEntries(String path) {
+        int removed = 0;
+        if (files.remove(path) != null) {
+            removed++;
+        }
+        if (trees.remove(path) != null) {
+            removed++;
+        }
+        if (snapshots.remove(path) != null) {
+            removed++;
+        }
+        return removed;
+    }
+
+    private void discardNonCacheState() {
+        statistics.evicted(files.size() + trees.size() + snapshots.size());
+        files.clear();
+        trees.clear();
+        snapshots.clear();
+        retainedPaths.clear();
+        pendingPaths.clear();
     }
 }
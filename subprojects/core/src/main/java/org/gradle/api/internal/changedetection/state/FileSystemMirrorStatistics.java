@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import net.rubygrapefruit.platform.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss and eviction counters for the {@link FileSystemMirror}, and whether it kept its state at the end of the last build.
+ */
+@ThreadSafe
+public class FileSystemMirrorStatistics {
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private volatile boolean retainedBetweenBuilds;
+
+    public void hit() {
+        hits.incrementAndGet();
+    }
+
+    public void miss() {
+        misses.incrementAndGet();
+    }
+
+    public void evicted(int count) {
+        if (count > 0) {
+            evictions.addAndGet(count);
+        }
+    }
+
+    public void retainedBetweenBuilds(boolean retained) {
+        retainedBetweenBuilds = retained;
+    }
+
+    public boolean isRetainedBetweenBuilds() {
+        return retainedBetweenBuilds;
+    }
+
+    /**
+     * Returns the values counted since the previous call to this method, and starts counting from zero again.
+     */
+    public FileSystemMirrorStatisticsBuildOperationType.Result getAndReset() {
+        return new Result(hits.getAndSet(0), misses.getAndSet(0), evictions.getAndSet(0));
+    }
+
+    private static class Result implements FileSystemMirrorStatisticsBuildOperationType.Result {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        Result(long hits, long misses, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        @Override
+        public long getHits() {
+            return hits;
+        }
+
+        @Override
+        public long getMisses() {
+            return misses;
+        }
+
+        @Override
+        public long getEvictions() {
+            return evictions;
+        }
+
+        @Override
+        public String toString() {
+            return "{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + '}';
+        }
+    }
+}
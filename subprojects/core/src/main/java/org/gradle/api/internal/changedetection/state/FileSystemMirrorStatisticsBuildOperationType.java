@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Reports the usage of the {@link FileSystemMirror} for a root build.
+ *
+ * This operation is executed at the end of each root build that snapshotted files.
+ *
+ * @since 4.5
+ */
+public final class FileSystemMirrorStatisticsBuildOperationType implements BuildOperationType<FileSystemMirrorStatisticsBuildOperationType.Details, FileSystemMirrorStatisticsBuildOperationType.Result> {
+
+    public interface Details {
+
+        /**
+         * Whether the mirror keeps its state between builds, invalidated by file system events.
+         */
+        boolean isRetainedBetweenBuilds();
+
+    }
+
+    public interface Result {
+
+        /**
+         * The number of lookups that were satisfied by the mirror.
+         */
+        long getHits();
+
+        /**
+         * The number of lookups that had to go to the file system.
+         */
+        long getMisses();
+
+        /**
+         * The number of entries that were discarded because the file system may have changed.
+         */
+        long getEvictions();
+
+    }
+
+    private FileSystemMirrorStatisticsBuildOperationType() {
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.buildevents.StatisticsReporter;
+import org.gradle.internal.operations.BuildOperationExecutor;
+
+/**
+ * Emits a {@link FileSystemMirrorStatisticsBuildOperationType} operation at the end of each root build.
+ */
+public class FileSystemMirrorStatisticsReporter extends StatisticsReporter<FileSystemMirrorStatisticsBuildOperationType.Details, FileSystemMirrorStatisticsBuildOperationType.Result> {
+    private final FileSystemMirrorStatistics statistics;
+
+    public FileSystemMirrorStatisticsReporter(FileSystemMirrorStatistics statistics, BuildOperationExecutor buildOperationExecutor) {
+        super("Report file system mirror statistics", buildOperationExecutor);
+        this.statistics = statistics;
+    }
+
+    @Override
+    protected FileSystemMirrorStatisticsBuildOperationType.Details createDetails() {
+        // The mirror is notified at the end of the build before this reporter
+        final boolean retained = statistics.isRetainedBetweenBuilds();
+        return new FileSystemMirrorStatisticsBuildOperationType.Details() {
+            @Override
+            public boolean isRetainedBetweenBuilds() {
+                return retained;
+            }
+        };
+    }
+
+    @Override
+    protected FileSystemMirrorStatisticsBuildOperationType.Result getAndReset() {
+        return statistics.getAndReset();
+    }
+}
@@ -22,6 +22,14 @@ import org.gradle.caching.internal.DefaultBuildCacheHasher;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.Hashing;
 
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+
+/**
+ * Caches the hashes of resources by their content, so that a resource is only hashed once no matter how many classpaths it appears on.
+ */
 public class ResourceSnapshotterCacheService {
     private static final HashCode NO_HASH = Hashing.md5().hashString(CachingResourceHasher.class.getName() + " : no hash");
     private final PersistentIndexedCache<HashCode, HashCode> persistentCache;
@@ -31,7 +39,7 @@ public class ResourceSnapshotterCacheService {
     }
 
     public HashCode hashFile(RegularFileSnapshot fileSnapshot, RegularFileHasher hasher, byte[] configurationHash) {
-        HashCode resourceHashCacheKey = resourceHashCacheKey(fileSnapshot, configurationHash);
+        HashCode resourceHashCacheKey = resourceHashCacheKey(fileSnapshot.getContent().getContentMd5(), configurationHash);
 
         HashCode resourceHash = persistentCache.get(resourceHashCacheKey);
         if (resourceHash != null) {
@@ -42,19 +50,42 @@ public class ResourceSnapshotterCacheService {
         }
 
         resourceHash = hasher.hash(fileSnapshot);
+        store(resourceHashCacheKey, resourceHash);
+        return resourceHash;
+    }
+
+    /**
+     * Hashes the given contents of a zip entry. The result is shared with any other zip entry or file with the same content that is hashed with the same configuration.
+     */
+    @Nullable
+    public HashCode hashZipEntry(ZipEntry zipEntry, byte[] content, ResourceHasher hasher, byte[] configurationHash) throws IOException {
+        HashCode resourceHashCacheKey = resourceHashCacheKey(Hashing.md5().hashBytes(content), configurationHash);
 
+        HashCode resourceHash = persistentCache.get(resourceHashCacheKey);
+        if (resourceHash != null) {
+            if (resourceHash.equals(NO_HASH)) {
+                return null;
+            }
+            return resourceHash;
+        }
+
+        resourceHash = hasher.hash(zipEntry, new ByteArrayInputStream(content));
+        store(resourceHashCacheKey, resourceHash);
+        return resourceHash;
+    }
+
+    private void store(HashCode resourceHashCacheKey, @Nullable HashCode resourceHash) {
         if (resourceHash != null) {
             persistentCache.put(resourceHashCacheKey, resourceHash);
         } else {
             persistentCache.put(resourceHashCacheKey, NO_HASH);
         }
-        return resourceHash;
     }
 
-    private HashCode resourceHashCacheKey(RegularFileSnapshot fileSnapshot, byte[] configurationHash) {
+    private HashCode resourceHashCacheKey(HashCode contentHash, byte[] configurationHash) {
         BuildCacheHasher hasher = new DefaultBuildCacheHasher();
         hasher.putBytes(configurationHash);
-        hasher.putHash(fileSnapshot.getContent().getContentMd5());
+        hasher.putHash(contentHash);
         return hasher.hash();
     }
 }
@@ -24,6 +24,14 @@ import javax.annotation.Nullable;
 public interface TaskHistoryRepository {
     History getHistory(TaskInternal task);
 
+    /**
+     * Returns the time in milliseconds that the given task took the last time it was executed, or null when this is not known.
+     */
+    @Nullable
+    Long getPreviousExecutionTime(TaskInternal task);
+
+    void recordExecutionTime(TaskInternal task, long executionTimeMillis);
+
     interface History {
         @Nullable
         HistoricalTaskExecution getPreviousExecution();
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.gradle.internal.buildevents.StatisticsReporter;
+import org.gradle.internal.operations.BuildOperationExecutor;
+
+/**
+ * Emits a {@link IndexedCacheReadStatisticsBuildOperationType} operation at the end of each root build.
+ */
+public class IndexedCacheReadStatisticsReporter extends StatisticsReporter<IndexedCacheReadStatisticsBuildOperationType.Details, IndexedCacheReadStatisticsBuildOperationType.Result> {
+    private final IndexedCacheReadStatistics statistics;
+
+    public IndexedCacheReadStatisticsReporter(IndexedCacheReadStatistics statistics, BuildOperationExecutor buildOperationExecutor) {
+        super("Report indexed cache read statistics", buildOperationExecutor);
+        this.statistics = statistics;
+    }
+
+    @Override
+    protected IndexedCacheReadStatisticsBuildOperationType.Details createDetails() {
+        final boolean optimisticReads = DefaultCacheAccess.isOptimisticReadsEnabled();
+        return new IndexedCacheReadStatisticsBuildOperationType.Details() {
+            @Override
+            public boolean isOptimisticReadsEnabled() {
+                return optimisticReads;
+            }
+        };
+    }
+
+    @Override
+    protected IndexedCacheReadStatisticsBuildOperationType.Result getAndReset() {
+        return statistics.getAndReset();
+    }
+}
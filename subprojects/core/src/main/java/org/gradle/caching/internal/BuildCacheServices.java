@@ -16,11 +16,17 @@
 
 package org.gradle.caching.internal;
 
+import org.gradle.api.Transformer;
+import org.gradle.cache.internal.CrossBuildInMemoryCache;
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
 import org.gradle.caching.configuration.internal.BuildCacheConfigurationInternal;
 import org.gradle.caching.configuration.internal.BuildCacheServiceRegistration;
 import org.gradle.caching.configuration.internal.DefaultBuildCacheConfiguration;
 import org.gradle.caching.configuration.internal.DefaultBuildCacheServiceRegistration;
 import org.gradle.caching.local.DirectoryBuildCache;
+import org.gradle.caching.local.internal.BuildCacheTempFileStore;
+import org.gradle.caching.local.internal.DirectoryBuildCacheAccessIndex;
+import org.gradle.caching.local.internal.DirectoryBuildCacheAccessIndexRegistry;
 import org.gradle.caching.local.internal.DirectoryBuildCacheFileStoreFactory;
 import org.gradle.caching.local.internal.DirectoryBuildCacheServiceFactory;
 import org.gradle.internal.reflect.Instantiator;
@@ -33,10 +39,32 @@ import java.io.File;
 import java.util.List;
 
 /**
- * Build scoped services for build cache usage.
+ * Services for build cache usage.
  */
 public final class BuildCacheServices extends AbstractPluginServiceRegistry {
 
+    @Override
+    public void registerGlobalServices(ServiceRegistration registration) {
+        registration.addProvider(new Object() {
+
+            DirectoryBuildCacheAccessIndexRegistry createDirectoryBuildCacheAccessIndexRegistry(CrossBuildInMemoryCacheFactory cacheFactory) {
+                final CrossBuildInMemoryCache<File, DirectoryBuildCacheAccessIndex> accessIndexes = cacheFactory.newCache();
+                return new DirectoryBuildCacheAccessIndexRegistry() {
+                    @Override
+                    public DirectoryBuildCacheAccessIndex getAccessIndex(File baseDir) {
+                        return accessIndexes.get(baseDir.getAbsoluteFile(), new Transformer<DirectoryBuildCacheAccessIndex, File>() {
+                            @Override
+                            public DirectoryBuildCacheAccessIndex transform(File baseDir) {
+                                return new DirectoryBuildCacheAccessIndex(baseDir, BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX, DirectoryBuildCacheServiceFactory.FAILED_READ_SUFFIX);
+                            }
+                        });
+                    }
+                };
+            }
+
+        });
+    }
+
     @Override
     public void registerBuildServices(ServiceRegistration registration) {
         registration.addProvider(new Object() {
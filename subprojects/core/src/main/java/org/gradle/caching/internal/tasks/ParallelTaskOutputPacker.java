@@ -0,0 +1,719 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.Futures;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.tools.zip.UnixStat;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.changedetection.state.DirectoryFileSnapshot;
+import org.gradle.api.internal.changedetection.state.FileContentSnapshot;
+import org.gradle.api.internal.changedetection.state.FileHashSnapshot;
+import org.gradle.api.internal.changedetection.state.FileSnapshot;
+import org.gradle.api.internal.changedetection.state.RegularFileSnapshot;
+import org.gradle.api.internal.tasks.OutputType;
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
+import org.gradle.api.internal.tasks.TaskFilePropertySpec;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginMetadata;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.nativeplatform.filesystem.FileSystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.gradle.caching.internal.tasks.TaskOutputPackerUtils.ensureDirectoryForProperty;
+import static org.gradle.caching.internal.tasks.TaskOutputPackerUtils.makeDirectory;
+
+/**
+ * Packages task output in a format that can be packed and unpacked using multiple threads.
+ *
+ * <p>The content of each file is split into chunks that are compressed independently on a pool of threads and then written in order,
+ * so only a bounded number of chunks is held in memory. Chunks that do not get smaller when compressed, like the contents of JAR files, are stored as is.
+ * The entries are followed by an index of their offsets. When unpacking from a file, the index is used to write the files concurrently,
+ * reading their chunks directly from the cache entry. Stored chunks are copied from channel to channel, without going through the heap.
+ * When unpacking from any other stream the entries are read sequentially.</p>
+ *
+ * <p>The content hash of each file is recorded in the entry, so it does not need to be recomputed when unpacking.
+ * Compressed chunks are protected by the Adler-32 checksum of the zlib format.</p>
+ *
+ * <p>Entries written by the delegate are recognized by their header and unpacked by the delegate, so existing cache entries can still be used.
+ * New entries are only written in this format when the {@value #PARALLEL_PACKING_PROPERTY} system property is set, as older Gradle versions cannot read it.</p>
+ */
+@SuppressWarnings("Since15")
+public class ParallelTaskOutputPacker implements TaskOutputPacker, Stoppable {
+    public static final String PARALLEL_PACKING_PROPERTY = "org.gradle.internal.cache.parallel-packing";
+
+    private static final int MAGIC = 0x47524f43;
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+    private static final int TRAILER_SIZE = 12;
+    private static final int CHUNK_HEADER_SIZE = 9;
+    private static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private static final byte END = 0;
+    private static final byte METADATA = 1;
+    private static final byte DIRECTORY = 2;
+    private static final byte FILE = 3;
+    private static final byte MISSING = 4;
+
+    private static final byte STORED = 0;
+    private static final byte DEFLATED = 1;
+
+    private static final String METADATA_PATH = "METADATA";
+    private static final Pattern PROPERTY_PATH = Pattern.compile("(missing-)?property-([^/]+)(?:/(.*))?");
+    @SuppressWarnings("OctalInteger")
+    private static final int FILE_PERMISSION_MASK = 0777;
+
+    private final TaskOutputPacker delegate;
+    private final FileSystem fileSystem;
+    private final StringInterner stringInterner;
+    private final ExecutorFactory executorFactory;
+    private final boolean packInParallel;
+    private final int parallelism;
+    private final int chunkSize;
+    private ManagedExecutor executor;
+
+    public ParallelTaskOutputPacker(TaskOutputPacker delegate, FileSystem fileSystem, StringInterner stringInterner, ExecutorFactory executorFactory) {
+        this(delegate, fileSystem, stringInterner, executorFactory, Boolean.getBoolean(PARALLEL_PACKING_PROPERTY), Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    ParallelTaskOutputPacker(TaskOutputPacker delegate, FileSystem fileSystem, StringInterner stringInterner, ExecutorFactory executorFactory, boolean packInParallel, int parallelism, int chunkSize) {
+        this.delegate = delegate;
+        this.fileSystem = fileSystem;
+        this.stringInterner = stringInterner;
+        this.executorFactory = executorFactory;
+        this.packInParallel = packInParallel;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    private synchronized ManagedExecutor getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("Task output packer", parallelism);
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.stop();
+            executor = null;
+        }
+    }
+
+    @Override
+    public PackResult pack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, Map<String, Map<String, FileContentSnapshot>> outputSnapshots, OutputStream output, TaskOutputOriginWriter writeOrigin) throws IOException {
+        if (!packInParallel) {
+            return delegate.pack(propertySpecs, outputSnapshots, output, writeOrigin);
+        }
+        CountingOutputStream countingOutput = new CountingOutputStream(new BufferedOutputStream(output));
+        DataOutputStream dataOutput = new DataOutputStream(countingOutput);
+        PendingWrites writes = new PendingWrites(dataOutput, countingOutput, parallelism * 4);
+        try {
+            dataOutput.writeInt(MAGIC);
+            dataOutput.writeByte(VERSION);
+
+            ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+            writeOrigin.execute(metadata);
+            Entry metadataEntry = new Entry(METADATA, METADATA_PATH, UnixStat.FILE_FLAG | UnixStat.DEFAULT_FILE_PERM, metadata.size(), null);
+            writes.add(metadataEntry, Futures.immediateFuture(metadata.toByteArray()));
+
+            for (ResolvedTaskOutputFilePropertySpec propertySpec : propertySpecs) {
+                String propertyName = propertySpec.getPropertyName();
+                try {
+                    packProperty(propertySpec, outputSnapshots.get(propertyName), writes);
+                } catch (Exception ex) {
+                    throw new GradleException(String.format("Could not pack property '%s': %s", propertyName, ex.getMessage()), ex);
+                }
+            }
+            writes.flush();
+            dataOutput.writeByte(END);
+
+            long indexOffset = countingOutput.getCount();
+            dataOutput.writeInt(writes.entries.size());
+            for (Entry entry : writes.entries) {
+                entry.write(dataOutput);
+                dataOutput.writeLong(entry.offset);
+            }
+            dataOutput.writeLong(indexOffset);
+            dataOutput.writeInt(MAGIC);
+            dataOutput.flush();
+            return new PackResult(writes.entries.size());
+        } finally {
+            writes.cancel();
+        }
+    }
+
+    private void packProperty(ResolvedTaskOutputFilePropertySpec propertySpec, Map<String, FileContentSnapshot> outputSnapshots, PendingWrites writes) throws IOException {
+        File root = propertySpec.getOutputFile();
+        if (root == null) {
+            return;
+        }
+        String propertyPath = "property-" + propertySpec.getPropertyName();
+        if (outputSnapshots.isEmpty()) {
+            writes.add(new Entry(MISSING, "missing-" + propertyPath, UnixStat.FILE_FLAG | UnixStat.DEFAULT_FILE_PERM, 0, null), null);
+            return;
+        }
+        switch (propertySpec.getOutputType()) {
+            case DIRECTORY:
+                packDirectoryProperty(propertyPath, root, outputSnapshots, writes);
+                break;
+            case FILE:
+                if (!root.isFile()) {
+                    throw new IllegalArgumentException(String.format("Expected '%s' to be a file", root));
+                }
+                packFile(root, propertyPath, outputSnapshots.get(root.getAbsolutePath()), writes);
+                break;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private void packDirectoryProperty(String propertyPath, File directory, Map<String, FileContentSnapshot> outputSnapshots, PendingWrites writes) throws IOException {
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException(String.format("Expected '%s' to be a directory", directory));
+        }
+        writes.add(new Entry(DIRECTORY, propertyPath, UnixStat.DIR_FLAG | UnixStat.DEFAULT_DIR_PERM, 0, null), null);
+
+        String rootAbsolutePath = directory.getAbsolutePath();
+        Path rootPath = directory.toPath();
+        for (Map.Entry<String, FileContentSnapshot> entry : outputSnapshots.entrySet()) {
+            String absolutePath = entry.getKey();
+            // We've already created the directory for the property
+            if (absolutePath.equals(rootAbsolutePath)) {
+                continue;
+            }
+            File file = new File(absolutePath);
+            String targetPath = propertyPath + "/" + rootPath.relativize(file.toPath()).toString();
+            switch (entry.getValue().getType()) {
+                case RegularFile:
+                    packFile(file, targetPath, entry.getValue(), writes);
+                    break;
+                case Directory:
+                    writes.add(new Entry(DIRECTORY, targetPath, UnixStat.DIR_FLAG | fileSystem.getUnixMode(file), 0, null), null);
+                    break;
+                case Missing:
+                    throw new IllegalStateException("File should not be missing: " + file);
+                default:
+                    throw new AssertionError();
+            }
+        }
+    }
+
+    private void packFile(final File file, String path, FileContentSnapshot snapshot, PendingWrites writes) throws IOException {
+        long size = file.length();
+        writes.add(new Entry(FILE, path, UnixStat.FILE_FLAG | fileSystem.getUnixMode(file), size, snapshot.getContentMd5()), null);
+        for (long position = 0; position < size; position += chunkSize) {
+            final long chunkPosition = position;
+            final int chunkLength = (int) Math.min(chunkSize, size - position);
+            writes.add(null, getExecutor().submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    return compressChunk(file, chunkPosition, chunkLength);
+                }
+            }));
+        }
+    }
+
+    private static byte[] compressChunk(File file, long position, int length) throws IOException {
+        byte[] content = new byte[length];
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            input.seek(position);
+            input.readFully(content);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+
+        byte[] compressed = new byte[length];
+        Deflater deflater = new Deflater();
+        int compressedLength;
+        boolean finished;
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            compressedLength = deflater.deflate(compressed);
+            finished = deflater.finished();
+        } finally {
+            deflater.end();
+        }
+
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(CHUNK_HEADER_SIZE + length);
+        DataOutputStream chunkOutput = new DataOutputStream(chunk);
+        if (finished && compressedLength < length) {
+            chunkOutput.writeByte(DEFLATED);
+            chunkOutput.writeInt(length);
+            chunkOutput.writeInt(compressedLength);
+            chunkOutput.write(compressed, 0, compressedLength);
+        } else {
+            chunkOutput.writeByte(STORED);
+            chunkOutput.writeInt(length);
+            chunkOutput.writeInt(length);
+            chunkOutput.write(content);
+        }
+        return chunk.toByteArray();
+    }
+
+    @Override
+    public UnpackResult unpack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, InputStream input, TaskOutputOriginReader readOrigin) throws IOException {
+        if (input instanceof FileInputStream) {
+            FileChannel channel = ((FileInputStream) input).getChannel();
+            long start = channel.position();
+            if (channel.size() - start >= HEADER_SIZE + TRAILER_SIZE && isHeader(read(channel, start, HEADER_SIZE))) {
+                ByteBuffer trailer = ByteBuffer.wrap(read(channel, channel.size() - TRAILER_SIZE, TRAILER_SIZE));
+                long indexOffset = trailer.getLong();
+                if (trailer.getInt() == MAGIC) {
+                    return unpackIndexed(propertySpecs, channel, start, indexOffset, readOrigin);
+                }
+            }
+        }
+
+        PushbackInputStream pushbackInput = new PushbackInputStream(input, HEADER_SIZE);
+        byte[] header = new byte[HEADER_SIZE];
+        int read = IOUtils.read(pushbackInput, header);
+        if (read == HEADER_SIZE && isHeader(header)) {
+            return unpackSequential(propertySpecs, new DataInputStream(new BufferedInputStream(pushbackInput)), readOrigin);
+        }
+        pushbackInput.unread(header, 0, read);
+        return delegate.unpack(propertySpecs, pushbackInput, readOrigin);
+    }
+
+    private static boolean isHeader(byte[] header) {
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        return buffer.getInt() == MAGIC && buffer.get() == VERSION;
+    }
+
+    private UnpackResult unpackSequential(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, DataInputStream input, TaskOutputOriginReader readOrigin) throws IOException {
+        EntryUnpacker unpacker = new EntryUnpacker(propertySpecs);
+        TaskOutputOriginMetadata originMetadata = null;
+        ImmutableListMultimap.Builder<String, FileSnapshot> propertyFileSnapshots = ImmutableListMultimap.builder();
+        long entries = 0;
+        Entry entry;
+        while ((entry = Entry.read(input)) != null) {
+            ++entries;
+            if (entry.kind == METADATA) {
+                byte[] metadata = new byte[(int) entry.size];
+                input.readFully(metadata);
+                originMetadata = readOrigin.execute(new ByteArrayInputStream(metadata));
+                continue;
+            }
+            File outputFile = unpacker.prepare(entry);
+            if (outputFile == null) {
+                continue;
+            }
+            if (entry.kind == FILE) {
+                OutputStream output = new FileOutputStream(outputFile);
+                try {
+                    copyChunks(input, entry.size, output);
+                } finally {
+                    IOUtils.closeQuietly(output);
+                }
+            }
+            propertyFileSnapshots.put(unpacker.propertyName, unpacker.complete(entry, outputFile));
+        }
+        if (originMetadata == null) {
+            throw new IllegalStateException("Cached result format error, no origin metadata was found.");
+        }
+        return new UnpackResult(originMetadata, entries, propertyFileSnapshots.build());
+    }
+
+    private UnpackResult unpackIndexed(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, final FileChannel channel, long start, long indexOffset, TaskOutputOriginReader readOrigin) throws IOException {
+        long indexLength = channel.size() - TRAILER_SIZE - (start + indexOffset);
+        if (indexOffset < HEADER_SIZE || indexLength < 4 || indexLength > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Cached result format error, invalid index offset: " + indexOffset);
+        }
+        DataInputStream index = new DataInputStream(new ByteArrayInputStream(read(channel, start + indexOffset, (int) indexLength)));
+        int entryCount = index.readInt();
+
+        final EntryUnpacker unpacker = new EntryUnpacker(propertySpecs);
+        TaskOutputOriginMetadata originMetadata = null;
+        List<String> propertyNames = Lists.newArrayListWithCapacity(entryCount);
+        List<Future<FileSnapshot>> snapshots = Lists.newArrayListWithCapacity(entryCount);
+        try {
+            for (int i = 0; i < entryCount; i++) {
+                final Entry entry = Entry.read(index);
+                if (entry == null) {
+                    throw new IllegalStateException("Cached result format error, truncated index.");
+                }
+                final long dataOffset = start + index.readLong();
+                if (entry.kind == METADATA) {
+                    originMetadata = readOrigin.execute(new ByteArrayInputStream(read(channel, dataOffset, (int) entry.size)));
+                    continue;
+                }
+                final File outputFile = unpacker.prepare(entry);
+                if (outputFile == null) {
+                    continue;
+                }
+                propertyNames.add(unpacker.propertyName);
+                if (entry.kind == FILE) {
+                    snapshots.add(getExecutor().submit(new Callable<FileSnapshot>() {
+                        @Override
+                        public FileSnapshot call() throws Exception {
+                            transferChunks(channel, dataOffset, entry.size, outputFile);
+                            return unpacker.complete(entry, outputFile);
+                        }
+                    }));
+                } else {
+                    snapshots.add(Futures.immediateFuture(unpacker.complete(entry, outputFile)));
+                }
+            }
+            if (originMetadata == null) {
+                throw new IllegalStateException("Cached result format error, no origin metadata was found.");
+            }
+
+            ImmutableListMultimap.Builder<String, FileSnapshot> propertyFileSnapshots = ImmutableListMultimap.builder();
+            for (int i = 0; i < snapshots.size(); i++) {
+                propertyFileSnapshots.put(propertyNames.get(i), getResult(snapshots.get(i)));
+            }
+            return new UnpackResult(originMetadata, entryCount, propertyFileSnapshots.build());
+        } finally {
+            for (Future<FileSnapshot> snapshot : snapshots) {
+                snapshot.cancel(false);
+            }
+        }
+    }
+
+    private static void copyChunks(DataInputStream input, long size, OutputStream output) throws IOException {
+        long remaining = size;
+        while (remaining > 0) {
+            byte kind = input.readByte();
+            int length = input.readInt();
+            int storedLength = input.readInt();
+            byte[] stored = new byte[storedLength];
+            input.readFully(stored);
+            output.write(kind == STORED ? stored : inflate(stored, length));
+            remaining -= length;
+        }
+    }
+
+    private static void transferChunks(FileChannel channel, long offset, long size, File outputFile) throws IOException {
+        FileOutputStream output = new FileOutputStream(outputFile);
+        try {
+            FileChannel outputChannel = output.getChannel();
+            long position = offset;
+            long remaining = size;
+            while (remaining > 0) {
+                ByteBuffer header = ByteBuffer.wrap(read(channel, position, CHUNK_HEADER_SIZE));
+                byte kind = header.get();
+                int length = header.getInt();
+                int storedLength = header.getInt();
+                position += CHUNK_HEADER_SIZE;
+                if (kind == STORED) {
+                    long transferred = 0;
+                    while (transferred < storedLength) {
+                        long count = channel.transferTo(position + transferred, storedLength - transferred, outputChannel);
+                        if (count <= 0) {
+                            throw new EOFException("Unexpected end of cache entry while unpacking " + outputFile);
+                        }
+                        transferred += count;
+                    }
+                } else {
+                    ByteBuffer content = ByteBuffer.wrap(inflate(read(channel, position, storedLength), length));
+                    while (content.hasRemaining()) {
+                        outputChannel.write(content);
+                    }
+                }
+                position += storedLength;
+                remaining -= length;
+            }
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int length) throws IOException {
+        byte[] content = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int count = inflater.inflate(content, inflated, length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != length || !inflater.finished()) {
+                throw new IOException("Cached result format error, corrupted chunk.");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Cached result format error, corrupted chunk.", e);
+        } finally {
+            inflater.end();
+        }
+        return content;
+    }
+
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of cache entry.");
+            }
+        }
+        return buffer.array();
+    }
+
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+    }
+
+    /**
+     * Creates the output files for the entries of a cache entry, in the order they were packed.
+     */
+    private class EntryUnpacker {
+        private final Map<String, ResolvedTaskOutputFilePropertySpec> propertySpecs;
+        private String propertyName;
+
+        EntryUnpacker(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs) {
+            this.propertySpecs = Maps.uniqueIndex(propertySpecs, new Function<TaskFilePropertySpec, String>() {
+                @Override
+                public String apply(TaskFilePropertySpec propertySpec) {
+                    return propertySpec.getPropertyName();
+                }
+            });
+        }
+
+        /**
+         * Prepares the location of the output for the given entry, returns {@code null} when there is nothing else to unpack.
+         */
+        File prepare(Entry entry) throws IOException {
+            Matcher matcher = PROPERTY_PATH.matcher(entry.path);
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Cached result format error, invalid contents: " + entry.path);
+            }
+            propertyName = matcher.group(2);
+            ResolvedTaskOutputFilePropertySpec propertySpec = propertySpecs.get(propertyName);
+            if (propertySpec == null) {
+                throw new IllegalStateException(String.format("No output property '%s' registered", propertyName));
+            }
+            File propertyRoot = propertySpec.getOutputFile();
+            if (propertyRoot == null) {
+                throw new IllegalStateException("Optional property should have a value: " + propertyName);
+            }
+
+            String childPath = matcher.group(3);
+            if (!Strings.isNullOrEmpty(childPath)) {
+                File outputFile = new File(propertyRoot, childPath);
+                if (entry.kind == DIRECTORY) {
+                    FileUtils.forceMkdir(outputFile);
+                }
+                return outputFile;
+            }
+
+            // We are handling the root of the property here
+            if (entry.kind == MISSING) {
+                if (!makeDirectory(propertyRoot.getParentFile())) {
+                    // Make sure output is removed if it exists already
+                    if (propertyRoot.exists()) {
+                        FileUtils.forceDelete(propertyRoot);
+                    }
+                }
+                return null;
+            }
+            OutputType outputType = propertySpec.getOutputType();
+            if (entry.kind == DIRECTORY) {
+                if (outputType != OutputType.DIRECTORY) {
+                    throw new IllegalStateException("Property should be an output directory property: " + propertyName);
+                }
+            } else if (outputType == OutputType.DIRECTORY) {
+                throw new IllegalStateException("Property should be an output file property: " + propertyName);
+            }
+            ensureDirectoryForProperty(outputType, propertyRoot);
+            return propertyRoot;
+        }
+
+        /**
+         * Applies the file mode to the unpacked output and creates its snapshot.
+         */
+        FileSnapshot complete(Entry entry, File outputFile) {
+            boolean isDirEntry = entry.kind == DIRECTORY;
+            String internedPath = stringInterner.intern(outputFile.getAbsolutePath());
+            Matcher matcher = PROPERTY_PATH.matcher(entry.path);
+            String childPath = matcher.matches() ? matcher.group(3) : null;
+            boolean root = Strings.isNullOrEmpty(childPath);
+            RelativePath relativePath = root ? RelativePath.parse(!isDirEntry, outputFile.getName()) : RelativePath.parse(!isDirEntry, childPath);
+            fileSystem.chmod(outputFile, entry.mode & FILE_PERMISSION_MASK);
+            if (isDirEntry) {
+                return new DirectoryFileSnapshot(internedPath, relativePath, root);
+            }
+            return new RegularFileSnapshot(internedPath, relativePath, root, new FileHashSnapshot(entry.hash, outputFile.lastModified()));
+        }
+    }
+
+    private static class Entry {
+        private final byte kind;
+        private final String path;
+        private final int mode;
+        private final long size;
+        private final HashCode hash;
+        private long offset;
+
+        Entry(byte kind, String path, int mode, long size, HashCode hash) {
+            this.kind = kind;
+            this.path = path;
+            this.mode = mode;
+            this.size = size;
+            this.hash = hash;
+        }
+
+        void write(DataOutputStream output) throws IOException {
+            output.writeByte(kind);
+            byte[] pathBytes = path.getBytes(Charsets.UTF_8);
+            output.writeInt(pathBytes.length);
+            output.write(pathBytes);
+            output.writeInt(mode);
+            output.writeLong(size);
+            if (kind == FILE) {
+                byte[] hashBytes = hash.toByteArray();
+                output.writeByte(hashBytes.length);
+                output.write(hashBytes);
+            }
+        }
+
+        static Entry read(DataInputStream input) throws IOException {
+            byte kind = input.readByte();
+            if (kind == END) {
+                return null;
+            }
+            byte[] pathBytes = new byte[input.readInt()];
+            input.readFully(pathBytes);
+            int mode = input.readInt();
+            long size = input.readLong();
+            HashCode hash = null;
+            if (kind == FILE) {
+                byte[] hashBytes = new byte[input.readUnsignedByte()];
+                input.readFully(hashBytes);
+                hash = HashCode.fromBytes(hashBytes);
+            }
+            return new Entry(kind, new String(pathBytes, Charsets.UTF_8), mode, size, hash);
+        }
+    }
+
+    /**
+     * Writes entries and chunks in the order they were added, while allowing a bounded number of chunks to be compressed ahead.
+     */
+    private static class PendingWrites {
+        private final DataOutputStream output;
+        private final CountingOutputStream countingOutput;
+        private final int maxPending;
+        private final Deque<Entry> pendingEntries = new ArrayDeque<Entry>();
+        private final Deque<Future<byte[]>> pendingContents = new ArrayDeque<Future<byte[]>>();
+        private final List<Entry> entries = Lists.newArrayList();
+
+        PendingWrites(DataOutputStream output, CountingOutputStream countingOutput, int maxPending) {
+            this.output = output;
+            this.countingOutput = countingOutput;
+            this.maxPending = maxPending;
+        }
+
+        /**
+         * Adds an entry header followed by some content, either of which may be {@code null}.
+         */
+        void add(Entry entry, Future<byte[]> content) throws IOException {
+            if (entry != null) {
+                entries.add(entry);
+            }
+            pendingEntries.add(entry == null ? NO_ENTRY : entry);
+            pendingContents.add(content == null ? NO_CONTENT : content);
+            while (pendingContents.size() > maxPending) {
+                writeNext();
+            }
+        }
+
+        void flush() throws IOException {
+            while (!pendingContents.isEmpty()) {
+                writeNext();
+            }
+        }
+
+        void cancel() {
+            for (Future<byte[]> content : pendingContents) {
+                content.cancel(false);
+            }
+        }
+
+        private void writeNext() throws IOException {
+            Entry entry = pendingEntries.remove();
+            Future<byte[]> content = pendingContents.remove();
+            if (entry != NO_ENTRY) {
+                entry.write(output);
+                entry.offset = countingOutput.getCount();
+            }
+            output.write(getResult(content));
+        }
+
+        private static final Entry NO_ENTRY = new Entry(END, "", 0, 0, null);
+        private static final Future<byte[]> NO_CONTENT = Futures.immediateFuture(new byte[0]);
+    }
+}
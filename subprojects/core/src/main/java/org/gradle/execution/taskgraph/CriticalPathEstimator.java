@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Longs;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskHistoryRepository;
+import org.gradle.internal.time.Clock;
+import org.gradle.internal.time.TimeFormatting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+/**
+ * Orders the tasks of an execution plan so that the tasks with the longest chain of dependent tasks still to run after them are started first,
+ * using the time each task took the last time it was executed.
+ *
+ * <p>The time each task takes is recorded in the task history once the tasks have completed, and the estimated critical path is reported
+ * together with the path that turned out to be critical.</p>
+ *
+ * <p>This class is not thread-safe. Apart from {@link #recordExecutionTimes}, it is only used while holding the state lock of the
+ * {@link org.gradle.internal.resources.ResourceLockCoordinationService}.</p>
+ */
+class CriticalPathEstimator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CriticalPathEstimator.class);
+
+    private final TaskHistoryRepository taskHistory;
+    private final Clock clock;
+    private final Map<TaskInfo, Long> remainingTimes = Maps.newIdentityHashMap();
+    private final Map<TaskInfo, TaskInfo> nextOnPath = Maps.newIdentityHashMap();
+    private final Map<TaskInfo, Long> startTimes = Maps.newIdentityHashMap();
+    private final Map<TaskInfo, Long> finishTimes = Maps.newIdentityHashMap();
+    private final List<TaskInfo> estimatedPath = Lists.newArrayList();
+
+    CriticalPathEstimator(TaskHistoryRepository taskHistory, Clock clock) {
+        this.taskHistory = taskHistory;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the given tasks, which must be in execution order, ordered by the estimated time from the start of each task to the end of the longest chain of tasks that depend on it.
+     * Tasks with the same estimate keep their order.
+     */
+    List<TaskInfo> prioritize(Collection<TaskInfo> plan) {
+        clear();
+
+        Map<TaskInfo, Long> executionTimes = Maps.newIdentityHashMap();
+        long totalTime = 0;
+        for (TaskInfo taskInfo : plan) {
+            Long executionTime = taskHistory.getPreviousExecutionTime(taskInfo.getTask());
+            if (executionTime != null) {
+                executionTimes.put(taskInfo, executionTime);
+                totalTime += executionTime;
+            }
+        }
+        // Tasks that have not been executed before are assumed to take an average amount of time
+        long defaultExecutionTime = executionTimes.isEmpty() ? 0 : totalTime / executionTimes.size();
+
+        // The tasks that depend on a task come after it in the plan
+        List<TaskInfo> tasks = Lists.newArrayList(plan);
+        for (ListIterator<TaskInfo> iterator = tasks.listIterator(tasks.size()); iterator.hasPrevious();) {
+            TaskInfo taskInfo = iterator.previous();
+            long longestRemainingTime = 0;
+            TaskInfo next = null;
+            for (TaskInfo dependent : Sets.union(taskInfo.getDependencyPredecessors(), taskInfo.getMustPredecessors())) {
+                Long remainingTime = remainingTimes.get(dependent);
+                if (remainingTime != null && remainingTime > longestRemainingTime) {
+                    longestRemainingTime = remainingTime;
+                    next = dependent;
+                }
+            }
+            long executionTime;
+            if (taskInfo.isComplete()) {
+                executionTime = 0;
+            } else {
+                Long previousExecutionTime = executionTimes.get(taskInfo);
+                executionTime = previousExecutionTime != null ? previousExecutionTime : defaultExecutionTime;
+            }
+            remainingTimes.put(taskInfo, executionTime + longestRemainingTime);
+            if (next != null) {
+                nextOnPath.put(taskInfo, next);
+            }
+        }
+
+        Collections.sort(tasks, new Comparator<TaskInfo>() {
+            @Override
+            public int compare(TaskInfo left, TaskInfo right) {
+                return Longs.compare(remainingTimes.get(right), remainingTimes.get(left));
+            }
+        });
+
+        if (!tasks.isEmpty()) {
+            for (TaskInfo taskInfo = tasks.get(0); taskInfo != null; taskInfo = nextOnPath.get(taskInfo)) {
+                estimatedPath.add(taskInfo);
+            }
+        }
+        return tasks;
+    }
+
+    void taskStarted(TaskInfo taskInfo) {
+        startTimes.put(taskInfo, clock.getCurrentTime());
+    }
+
+    void taskCompleted(TaskInfo taskInfo) {
+        if (startTimes.containsKey(taskInfo)) {
+            finishTimes.put(taskInfo, clock.getCurrentTime());
+        }
+    }
+
+    /**
+     * Reports the estimated and actual critical paths and returns the time taken by the tasks that have been executed, to be passed to {@link #recordExecutionTimes}.
+     */
+    Map<TaskInternal, Long> executionFinished() {
+        Map<TaskInternal, Long> executionTimes = Maps.newLinkedHashMap();
+        for (Map.Entry<TaskInfo, Long> entry : finishTimes.entrySet()) {
+            TaskInfo taskInfo = entry.getKey();
+            executionTimes.put(taskInfo.getTask(), entry.getValue() - startTimes.get(taskInfo));
+        }
+        if (LOGGER.isInfoEnabled() && !estimatedPath.isEmpty()) {
+            LOGGER.info("Estimated critical path: {} for {} task(s): {}", TimeFormatting.formatDurationVerbose(remainingTimes.get(estimatedPath.get(0))), estimatedPath.size(), Joiner.on(" -> ").join(estimatedPath));
+            List<TaskInfo> actualPath = getActualPath();
+            if (!actualPath.isEmpty()) {
+                long actualTime = finishTimes.get(actualPath.get(actualPath.size() - 1)) - startTimes.get(actualPath.get(0));
+                LOGGER.info("Actual critical path: {} for {} task(s): {}", TimeFormatting.formatDurationVerbose(actualTime), actualPath.size(), Joiner.on(" -> ").join(actualPath));
+            }
+        }
+        clear();
+        return executionTimes;
+    }
+
+    /**
+     * Records the given execution times in the task history. Does not use the state of this estimator, so can be called without holding the state lock,
+     * which should not be held while the task history is written.
+     */
+    void recordExecutionTimes(Map<TaskInternal, Long> executionTimes) {
+        for (Map.Entry<TaskInternal, Long> entry : executionTimes.entrySet()) {
+            taskHistory.recordExecutionTime(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Follows the dependencies that completed last, back from the task that completed last.
+     */
+    private List<TaskInfo> getActualPath() {
+        List<TaskInfo> path = Lists.newArrayList();
+        TaskInfo taskInfo = lastCompleted(finishTimes.keySet());
+        while (taskInfo != null) {
+            path.add(taskInfo);
+            taskInfo = lastCompleted(Sets.union(taskInfo.getDependencySuccessors(), taskInfo.getMustSuccessors()));
+        }
+        return Lists.reverse(path);
+    }
+
+    @Nullable
+    private TaskInfo lastCompleted(Collection<TaskInfo> tasks) {
+        TaskInfo last = null;
+        long lastFinishTime = Long.MIN_VALUE;
+        for (TaskInfo taskInfo : tasks) {
+            Long finishTime = finishTimes.get(taskInfo);
+            if (finishTime != null && finishTime > lastFinishTime) {
+                last = taskInfo;
+                lastFinishTime = finishTime;
+            }
+        }
+        return last;
+    }
+
+    void clear() {
+        remainingTimes.clear();
+        nextOnPath.clear();
+        startTimes.clear();
+        finishTimes.clear();
+        estimatedPath.clear();
+    }
+}
@@ -33,6 +33,7 @@ import org.gradle.api.Transformer;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskHistoryRepository;
 import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.internal.tasks.CachingTaskDependencyResolveContext;
 import org.gradle.api.internal.tasks.TaskContainerInternal;
@@ -43,6 +44,7 @@ import org.gradle.api.specs.Specs;
 import org.gradle.execution.MultipleBuildFailures;
 import org.gradle.execution.TaskFailureHandler;
 import org.gradle.initialization.BuildCancellationToken;
+import org.gradle.internal.Factory;
 import org.gradle.internal.Pair;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.graph.CachingDirectedGraphWalker;
@@ -54,6 +56,7 @@ import org.gradle.internal.resources.ResourceDeadlockException;
 import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.resources.ResourceLockState;
+import org.gradle.internal.time.Time;
 import org.gradle.internal.work.WorkerLeaseRegistry.WorkerLease;
 import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.util.CollectionUtils;
@@ -88,8 +91,17 @@ import static org.gradle.internal.resources.ResourceLockState.Disposition.*;
 /**
  * A reusable implementation of TaskExecutionPlan. The {@link #addToTaskGraph(java.util.Collection)} and {@link #clear()} methods are NOT threadsafe, and callers must synchronize access to these
  * methods.
+ *
+ * <p>By default, the next task to run is selected by scanning the queue of tasks that have not started yet. When work stealing is enabled,
+ * the tasks that are ready to run are tracked by a {@link WorkStealingTaskQueue} instead.</p>
+ *
+ * <p>When critical path prioritization is enabled, the tasks are queued in the order determined by a {@link CriticalPathEstimator}, based on
+ * the time the tasks took to execute in previous builds.</p>
  */
 public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
+    public static final String WORK_STEALING_PROPERTY = "org.gradle.internal.taskgraph.work-stealing";
+    public static final String CRITICAL_PATH_PROPERTY = "org.gradle.internal.taskgraph.critical-path";
+
     private final Set<TaskInfo> tasksInUnknownState = new LinkedHashSet<TaskInfo>();
     private final Set<TaskInfo> entryTasks = new LinkedHashSet<TaskInfo>();
     private final TaskInfoFactory nodeFactory = new TaskInfoFactory();
@@ -100,6 +112,8 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private Spec<? super Task> filter = Specs.satisfyAll();
 
     private TaskFailureHandler failureHandler = new RethrowingFailureHandler();
+    private Factory<? extends TaskHistoryRepository> taskHistory;
+    private CriticalPathEstimator criticalPath;
 
     private final BuildCancellationToken cancellationToken;
     private final Set<TaskInfo> runningTasks = Sets.newIdentityHashSet();
@@ -111,14 +125,29 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final ResourceLockCoordinationService coordinationService;
     private final WorkerLeaseService workerLeaseService;
     private final GradleInternal gradle;
+    private final boolean workStealing;
+    private final WorkStealingTaskQueue readyTasks = new WorkStealingTaskQueue();
 
     private boolean tasksCancelled;
 
     public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService, WorkerLeaseService workerLeaseService, GradleInternal gradle) {
+        this(cancellationToken, coordinationService, workerLeaseService, gradle, isWorkStealingEnabled());
+    }
+
+    public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService, WorkerLeaseService workerLeaseService, GradleInternal gradle, boolean workStealing) {
         this.cancellationToken = cancellationToken;
         this.coordinationService = coordinationService;
         this.workerLeaseService = workerLeaseService;
         this.gradle = gradle;
+        this.workStealing = workStealing;
+    }
+
+    public static boolean isWorkStealingEnabled() {
+        return Boolean.getBoolean(WORK_STEALING_PROPERTY);
+    }
+
+    public static boolean isCriticalPathEnabled() {
+        return Boolean.getBoolean(CRITICAL_PATH_PROPERTY);
     }
 
     @Override
@@ -355,8 +384,17 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             }
         }
         executionQueue.clear();
-        executionQueue.addAll(executionPlan.values());
-
+        if (criticalPath == null && taskHistory != null && isCriticalPathEnabled()) {
+            criticalPath = new CriticalPathEstimator(taskHistory.create(), Time.clock());
+        }
+        if (criticalPath != null) {
+            executionQueue.addAll(criticalPath.prioritize(executionPlan.values()));
+        } else {
+            executionQueue.addAll(executionPlan.values());
+        }
+        if (workStealing) {
+            readyTasks.initialize(executionQueue);
+        }
     }
 
     private TaskMutationInfo getOrCreateMutationsOf(TaskInfo taskInfo) {
@@ -510,6 +548,10 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 entryTasks.clear();
                 executionPlan.clear();
                 executionQueue.clear();
+                readyTasks.clear();
+                if (criticalPath != null) {
+                    criticalPath.clear();
+                }
                 projectLocks.clear();
                 failures.clear();
                 taskMutations.clear();
@@ -539,6 +581,13 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         this.failureHandler = handler;
     }
 
+    /**
+     * Sets the task history used to prioritize the tasks on the critical path, when enabled. This needs to be lazy, as the history is only available once the build has been configured.
+     */
+    public void useTaskHistory(Factory<? extends TaskHistoryRepository> taskHistory) {
+        this.taskHistory = taskHistory;
+    }
+
     @Override
     public boolean executeWithTask(final WorkerLease workerLease, final Action<TaskInfo> taskExecution) {
         final AtomicReference<TaskInfo> selected = new AtomicReference<TaskInfo>();
@@ -562,7 +611,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 }
 
                 try {
-                    selected.set(selectNextTask(workerLease));
+                    selected.set(workStealing ? selectNextReadyTask(workerLease) : selectNextTask(workerLease));
                 } catch (Throwable t) {
                     abortAllAndFail(t);
                     workRemaining.set(false);
@@ -617,6 +666,54 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         return selected.get();
     }
 
+    private TaskInfo selectNextReadyTask(final WorkerLease workerLease) {
+        readyTasks.requeueUnblockedTasks();
+        while (true) {
+            final TaskInfo taskInfo = readyTasks.poll();
+            if (taskInfo == null) {
+                return null;
+            }
+            final AtomicBoolean workerLeaseAvailable = new AtomicBoolean(true);
+            boolean selected = coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                @Override
+                public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                    ResourceLock projectLock = getProjectLock(taskInfo);
+                    if (!projectLock.tryLock()) {
+                        readyTasks.waitForProjectLock(taskInfo, projectLock);
+                        return FAILED;
+                    }
+                    if (!workerLease.tryLock()) {
+                        workerLeaseAvailable.set(false);
+                        return FAILED;
+                    }
+                    // TODO: convert output file checks to a resource lock
+                    if (!canRunWithCurrentlyExecutedTasks(taskInfo)) {
+                        readyTasks.waitForRunningTasks(taskInfo);
+                        return FAILED;
+                    }
+
+                    if (taskInfo.allDependenciesSuccessful()) {
+                        recordTaskStarted(taskInfo);
+                        taskInfo.startExecution();
+                        readyTasks.started(taskInfo);
+                    } else {
+                        taskInfo.skipExecution();
+                        readyTasks.skipped(taskInfo);
+                    }
+                    return FINISHED;
+                }
+            });
+
+            if (selected) {
+                return taskInfo;
+            }
+            if (!workerLeaseAvailable.get()) {
+                readyTasks.pushBack(taskInfo);
+                return null;
+            }
+        }
+    }
+
     private void execute(TaskInfo selectedTask, WorkerLease workerLease, Action<TaskInfo> taskExecution) {
         if (selectedTask == null) {
             return;
@@ -815,6 +912,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     private void recordTaskStarted(TaskInfo taskInfo) {
         runningTasks.add(taskInfo);
+        if (criticalPath != null) {
+            criticalPath.taskStarted(taskInfo);
+        }
         TaskMutationInfo taskMutationInfo = taskMutations.get(taskInfo);
         taskMutationInfo.outputPaths.addAll(getOutputPaths(taskInfo));
         taskMutationInfo.destroyablePaths.addAll(getDestroyablePaths(taskInfo));
@@ -822,6 +922,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     private void recordTaskCompleted(TaskInfo taskInfo) {
         runningTasks.remove(taskInfo);
+        if (criticalPath != null) {
+            criticalPath.taskCompleted(taskInfo);
+        }
         TaskMutationInfo taskMutationInfo = taskMutations.get(taskInfo);
         for (TaskInfo producerTask : taskMutationInfo.consumesOutputOf) {
             TaskMutationInfo producerTaskMutationInfo = taskMutations.get(producerTask);
@@ -850,6 +953,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
                 taskInfo.finishExecution();
                 recordTaskCompleted(taskInfo);
+                if (workStealing) {
+                    readyTasks.completed(taskInfo);
+                }
                 return FINISHED;
             }
         });
@@ -874,7 +980,12 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
                 candidateNodes.addAll(node.getDependencySuccessors());
 
-                if (node.isMustNotRun() || node.isRequired()) {
+                if (node.isMustNotRun()) {
+                    node.enforceRun();
+                    if (workStealing) {
+                        readyTasks.enforced(node);
+                    }
+                } else if (node.isRequired()) {
                     node.enforceRun();
                 }
             }
@@ -916,12 +1027,18 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             // Allow currently executing and enforced tasks to complete, but skip everything else.
             if (taskInfo.isRequired()) {
                 taskInfo.skipExecution();
+                if (workStealing) {
+                    readyTasks.skipped(taskInfo);
+                }
                 aborted = true;
             }
 
             // If abortAll is set, also stop enforced tasks.
             if (abortAll && taskInfo.isReady()) {
                 taskInfo.abortExecution();
+                if (workStealing) {
+                    readyTasks.skipped(taskInfo);
+                }
                 aborted = true;
             }
         }
@@ -929,17 +1046,28 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     public void awaitCompletion() {
-        coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
-            @Override
-            public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
-                if (allTasksComplete()) {
-                    rethrowFailures();
-                    return FINISHED;
-                } else {
-                    return RETRY;
+        final Map<TaskInternal, Long> executionTimes = Maps.newLinkedHashMap();
+        try {
+            coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                @Override
+                public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                    if (allTasksComplete()) {
+                        if (criticalPath != null) {
+                            executionTimes.putAll(criticalPath.executionFinished());
+                        }
+                        rethrowFailures();
+                        return FINISHED;
+                    } else {
+                        return RETRY;
+                    }
                 }
+            });
+        } finally {
+            // The task history is a persistent cache, so is written once the state lock has been released
+            if (!executionTimes.isEmpty()) {
+                criticalPath.recordExecutionTimes(executionTimes);
             }
-        });
+        }
     }
 
     private void rethrowFailures() {
@@ -967,6 +1095,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     private boolean workRemaining() {
+        if (workStealing) {
+            return readyTasks.hasPendingTasks();
+        }
         for (TaskInfo taskInfo : executionQueue) {
             if (!taskInfo.isComplete()) {
                 return true;
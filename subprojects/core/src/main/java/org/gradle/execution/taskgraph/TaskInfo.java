@@ -33,8 +33,10 @@ public class TaskInfo implements Comparable<TaskInfo> {
     private final TreeSet<TaskInfo> dependencyPredecessors = new TreeSet<TaskInfo>();
     private final TreeSet<TaskInfo> dependencySuccessors = new TreeSet<TaskInfo>();
     private final TreeSet<TaskInfo> mustSuccessors = new TreeSet<TaskInfo>();
+    private final TreeSet<TaskInfo> mustPredecessors = new TreeSet<TaskInfo>();
     private final TreeSet<TaskInfo> shouldSuccessors = new TreeSet<TaskInfo>();
     private final TreeSet<TaskInfo> finalizers = new TreeSet<TaskInfo>();
+    private int incompleteDependencies;
 
     public TaskInfo(TaskInternal task) {
         this.task = task;
@@ -170,6 +172,10 @@ public class TaskInfo implements Comparable<TaskInfo> {
         return mustSuccessors;
     }
 
+    public TreeSet<TaskInfo> getMustPredecessors() {
+        return mustPredecessors;
+    }
+
     public TreeSet<TaskInfo> getFinalizers() {
         return finalizers;
     }
@@ -178,6 +184,28 @@ public class TaskInfo implements Comparable<TaskInfo> {
         return shouldSuccessors;
     }
 
+    /**
+     * The number of dependencies and must run after successors of this task that are not complete, as maintained by the {@link WorkStealingTaskQueue}.
+     */
+    public int getIncompleteDependencies() {
+        return incompleteDependencies;
+    }
+
+    public void setIncompleteDependencies(int incompleteDependencies) {
+        this.incompleteDependencies = incompleteDependencies;
+    }
+
+    public void dependencyIncomplete() {
+        incompleteDependencies++;
+    }
+
+    /**
+     * @return true when this was the last dependency that was not complete.
+     */
+    public boolean dependencyComplete() {
+        return --incompleteDependencies == 0;
+    }
+
     public boolean getDependenciesProcessed() {
         return dependenciesProcessed;
     }
@@ -193,6 +221,7 @@ public class TaskInfo implements Comparable<TaskInfo> {
 
     public void addMustSuccessor(TaskInfo toNode) {
         mustSuccessors.add(toNode);
+        toNode.mustPredecessors.add(this);
     }
 
     public void addFinalizer(TaskInfo finalizerNode) {
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.gradle.internal.resources.ResourceLock;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the tasks of an execution plan that are ready to run, so that the next task can be selected without scanning the plan.
+ *
+ * <p>Each task keeps a count of its dependencies and must run after successors that are not complete, and is queued as soon as this count drops to zero.
+ * The tasks made ready by a worker are queued on that worker's own deque, so that the worker continues with the tasks that consume what it has just produced.
+ * A worker takes the most recently queued task from its own deque first, then a task from the shared queue, which holds the tasks that were ready
+ * when the plan was created, in the order they were given, and finally steals the oldest task from the deque of another worker.</p>
+ *
+ * <p>Queued tasks are checked again when they are taken from the queue, as a task can be skipped, or a dependency can be enforced, after it was queued.
+ * Tasks that cannot be started yet are set aside until whatever prevents them from starting has changed, and then go to the shared queue.</p>
+ *
+ * <p>This class is not thread-safe. It is only used while holding the state lock of the {@link org.gradle.internal.resources.ResourceLockCoordinationService}.</p>
+ */
+class WorkStealingTaskQueue {
+    private final Set<TaskInfo> plannedTasks = Sets.newIdentityHashSet();
+    private final Set<TaskInfo> tasksWithExternalDependencies = Sets.newIdentityHashSet();
+    private final Deque<TaskInfo> sharedQueue = new ArrayDeque<TaskInfo>();
+    private final Map<Thread, Deque<TaskInfo>> workerQueues = Maps.newLinkedHashMap();
+    private final Map<ResourceLock, List<TaskInfo>> waitingForProjectLock = Maps.newLinkedHashMap();
+    private final List<TaskInfo> waitingForRunningTasks = Lists.newArrayList();
+    private final List<TaskInfo> waitingForExternalDependencies = Lists.newArrayList();
+    private int pendingTasks;
+
+    /**
+     * Calculates the readiness of the given tasks, in the order in which they should preferably be started, and queues those that can run straight away.
+     */
+    public void initialize(Collection<TaskInfo> plan) {
+        clear();
+        plannedTasks.addAll(plan);
+        for (TaskInfo taskInfo : plan) {
+            int incompleteDependencies = 0;
+            for (TaskInfo dependency : Sets.union(taskInfo.getDependencySuccessors(), taskInfo.getMustSuccessors())) {
+                if (dependency.isComplete()) {
+                    continue;
+                }
+                if (plannedTasks.contains(dependency)) {
+                    incompleteDependencies++;
+                } else {
+                    // A task from another build, which completes without us being told about it
+                    tasksWithExternalDependencies.add(taskInfo);
+                }
+            }
+            taskInfo.setIncompleteDependencies(incompleteDependencies);
+            if (!taskInfo.isComplete()) {
+                pendingTasks++;
+            }
+            if (incompleteDependencies == 0 && taskInfo.isReady()) {
+                sharedQueue.add(taskInfo);
+            }
+        }
+    }
+
+    public boolean hasPendingTasks() {
+        return pendingTasks > 0;
+    }
+
+    /**
+     * Returns the next task whose dependencies are complete, or null when there is none.
+     */
+    @Nullable
+    public TaskInfo poll() {
+        TaskInfo taskInfo;
+        while ((taskInfo = nextCandidate()) != null) {
+            if (!taskInfo.isReady() || taskInfo.getIncompleteDependencies() > 0) {
+                // Skipped, or a dependency was enforced after the task was queued
+                continue;
+            }
+            if (tasksWithExternalDependencies.contains(taskInfo) && !taskInfo.allDependenciesComplete()) {
+                waitingForExternalDependencies.add(taskInfo);
+                continue;
+            }
+            return taskInfo;
+        }
+        return null;
+    }
+
+    @Nullable
+    private TaskInfo nextCandidate() {
+        Deque<TaskInfo> ownQueue = workerQueues.get(Thread.currentThread());
+        if (ownQueue != null && !ownQueue.isEmpty()) {
+            return ownQueue.pollLast();
+        }
+        if (!sharedQueue.isEmpty()) {
+            return sharedQueue.pollFirst();
+        }
+        for (Deque<TaskInfo> otherQueue : workerQueues.values()) {
+            if (!otherQueue.isEmpty()) {
+                return otherQueue.pollFirst();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Queues again the tasks that were set aside because their project was locked or because a task from another build had not completed yet.
+     */
+    public void requeueUnblockedTasks() {
+        Iterator<Map.Entry<ResourceLock, List<TaskInfo>>> iterator = waitingForProjectLock.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ResourceLock, List<TaskInfo>> entry = iterator.next();
+            if (!entry.getKey().isLocked()) {
+                sharedQueue.addAll(entry.getValue());
+                iterator.remove();
+            }
+        }
+        requeue(waitingForExternalDependencies);
+    }
+
+    public void waitForProjectLock(TaskInfo taskInfo, ResourceLock projectLock) {
+        List<TaskInfo> waiting = waitingForProjectLock.get(projectLock);
+        if (waiting == null) {
+            waiting = Lists.newArrayList();
+            waitingForProjectLock.put(projectLock, waiting);
+        }
+        waiting.add(taskInfo);
+    }
+
+    public void waitForRunningTasks(TaskInfo taskInfo) {
+        waitingForRunningTasks.add(taskInfo);
+    }
+
+    /**
+     * Returns a task that could not be started by the current worker, so that it is taken next by some worker.
+     */
+    public void pushBack(TaskInfo taskInfo) {
+        sharedQueue.addFirst(taskInfo);
+    }
+
+    public void started(TaskInfo taskInfo) {
+        pendingTasks--;
+    }
+
+    public void skipped(TaskInfo taskInfo) {
+        pendingTasks--;
+        completed(taskInfo);
+    }
+
+    public void completed(TaskInfo taskInfo) {
+        for (TaskInfo dependent : Sets.union(taskInfo.getDependencyPredecessors(), taskInfo.getMustPredecessors())) {
+            if (plannedTasks.contains(dependent) && dependent.dependencyComplete() && dependent.isReady()) {
+                queueForCurrentWorker(dependent);
+            }
+        }
+        // The tasks that conflicted with the running tasks may be able to run now
+        requeue(waitingForRunningTasks);
+    }
+
+    /**
+     * Called when a task that was not going to run has been enforced to run, for example because it is a dependency of a finalizer.
+     */
+    public void enforced(TaskInfo taskInfo) {
+        if (!plannedTasks.contains(taskInfo)) {
+            return;
+        }
+        pendingTasks++;
+        for (TaskInfo dependent : Sets.union(taskInfo.getDependencyPredecessors(), taskInfo.getMustPredecessors())) {
+            if (plannedTasks.contains(dependent)) {
+                dependent.dependencyIncomplete();
+            }
+        }
+        if (taskInfo.getIncompleteDependencies() == 0) {
+            queueForCurrentWorker(taskInfo);
+        }
+    }
+
+    private void queueForCurrentWorker(TaskInfo taskInfo) {
+        Thread worker = Thread.currentThread();
+        Deque<TaskInfo> queue = workerQueues.get(worker);
+        if (queue == null) {
+            queue = new ArrayDeque<TaskInfo>();
+            workerQueues.put(worker, queue);
+        }
+        queue.addLast(taskInfo);
+    }
+
+    private void requeue(List<TaskInfo> waiting) {
+        if (!waiting.isEmpty()) {
+            sharedQueue.addAll(waiting);
+            waiting.clear();
+        }
+    }
+
+    public void clear() {
+        plannedTasks.clear();
+        tasksWithExternalDependencies.clear();
+        sharedQueue.clear();
+        workerQueues.clear();
+        waitingForProjectLock.clear();
+        waitingForRunningTasks.clear();
+        waitingForExternalDependencies.clear();
+        pendingTasks = 0;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.buildevents;
+
+import org.gradle.initialization.RootBuildLifecycleListener;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+
+/**
+ * Emits a build operation at the end of each root build, whose details describe how the statistics were collected and whose result contains the values counted during the build.
+ *
+ * @param <D> the details type of the build operation
+ * @param <R> the result type of the build operation
+ */
+public abstract class StatisticsReporter<D, R> implements RootBuildLifecycleListener {
+    private final String displayName;
+    private final BuildOperationExecutor buildOperationExecutor;
+
+    protected StatisticsReporter(String displayName, BuildOperationExecutor buildOperationExecutor) {
+        this.displayName = displayName;
+        this.buildOperationExecutor = buildOperationExecutor;
+    }
+
+    /**
+     * Returns the details of the build operation, which are captured when it starts.
+     */
+    protected abstract D createDetails();
+
+    /**
+     * Returns the values counted since the previous call to this method, and starts counting from zero again.
+     */
+    protected abstract R getAndReset();
+
+    @Override
+    public void afterStart() {
+    }
+
+    @Override
+    public void beforeComplete() {
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                context.setResult(getAndReset());
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName(displayName).details(createDetails());
+            }
+        });
+    }
+}
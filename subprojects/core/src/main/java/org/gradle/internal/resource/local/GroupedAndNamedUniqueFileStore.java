@@ -19,6 +19,7 @@ import org.gradle.api.Action;
 import org.gradle.api.Transformer;
 import org.gradle.api.internal.file.TemporaryFileProvider;
 import org.gradle.internal.hash.HashUtil;
+import org.gradle.internal.hash.HashValue;
 
 import java.io.File;
 import java.util.Set;
@@ -41,7 +42,11 @@ public class GroupedAndNamedUniqueFileStore<K> implements FileStore<K>, FileStor
     }
 
     public LocallyAvailableResource move(K key, File source) {
-        return delegate.move(toPath(key, getChecksum(source)), source);
+        return move(key, source, HashUtil.sha1(source));
+    }
+
+    public LocallyAvailableResource move(K key, File source, HashValue sha1) {
+        return new HashedResource(delegate.move(toPath(key, sha1.asHexString()), source), sha1);
     }
 
     public LocallyAvailableResource copy(K key, File source) {
@@ -79,4 +84,18 @@ public class GroupedAndNamedUniqueFileStore<K> implements FileStore<K>, FileStor
         final String groupedAndNamedKey = toPath(key, getChecksum(tempFile));
         return delegate.move(groupedAndNamedKey, tempFile);
     }
+
+    private static class HashedResource extends AbstractLocallyAvailableResource {
+        private final LocallyAvailableResource resource;
+
+        HashedResource(LocallyAvailableResource resource, HashValue sha1) {
+            super(sha1);
+            this.resource = resource;
+        }
+
+        @Override
+        public File getFile() {
+            return resource.getFile();
+        }
+    }
 }
@@ -31,6 +31,8 @@ import org.gradle.api.internal.changedetection.state.DefaultCompileClasspathSnap
 import org.gradle.api.internal.changedetection.state.DefaultFileSystemSnapshotter;
 import org.gradle.api.internal.changedetection.state.DefaultGenericFileCollectionSnapshotter;
 import org.gradle.api.internal.changedetection.state.FileSystemMirror;
+import org.gradle.api.internal.changedetection.state.FileSystemMirrorStatistics;
+import org.gradle.api.internal.changedetection.state.FileSystemMirrorStatisticsReporter;
 import org.gradle.api.internal.changedetection.state.FileSystemSnapshotter;
 import org.gradle.api.internal.changedetection.state.GenericFileCollectionSnapshotter;
 import org.gradle.api.internal.changedetection.state.InMemoryCacheDecoratorFactory;
@@ -47,6 +49,8 @@ import org.gradle.cache.internal.CacheRepositoryServices;
 import org.gradle.cache.internal.CacheScopeMapping;
 import org.gradle.cache.internal.DefaultGeneratedGradleJarCache;
 import org.gradle.cache.internal.GeneratedGradleJarCache;
+import org.gradle.cache.internal.IndexedCacheReadStatistics;
+import org.gradle.cache.internal.IndexedCacheReadStatisticsReporter;
 import org.gradle.cache.internal.VersionStrategy;
 import org.gradle.deployment.internal.DefaultDeploymentRegistry;
 import org.gradle.groovy.scripts.internal.DefaultScriptSourceHasher;
@@ -187,7 +191,19 @@ public class BuildSessionScopeServices extends DefaultServiceRegistry {
         return timeStampInspector;
     }
 
-    CrossBuildFileHashCache createCrossBuildFileHashCache(ProjectCacheDir projectCacheDir, CacheScopeMapping cacheScopeMapping, CacheRepository cacheRepository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
+    IndexedCacheReadStatisticsReporter createIndexedCacheReadStatisticsReporter(IndexedCacheReadStatistics statistics, BuildOperationExecutor buildOperationExecutor, ListenerManager listenerManager) {
+        IndexedCacheReadStatisticsReporter reporter = new IndexedCacheReadStatisticsReporter(statistics, buildOperationExecutor);
+        listenerManager.addListener(reporter);
+        return reporter;
+    }
+
+    CrossBuildFileHashCache createCrossBuildFileHashCache(
+        ProjectCacheDir projectCacheDir,
+        CacheScopeMapping cacheScopeMapping,
+        CacheRepository cacheRepository,
+        InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory,
+        @SuppressWarnings("unused") IndexedCacheReadStatisticsReporter indexedCacheReadStatisticsReporter // required in order to init this
+    ) {
         File cacheDir = cacheScopeMapping.getBaseDirectory(projectCacheDir.getDir(), "fileHashes", VersionStrategy.CachePerVersion);
         return new CrossBuildFileHashCache(cacheDir, cacheRepository, inMemoryCacheDecoratorFactory);
     }
@@ -200,7 +216,20 @@ public class BuildSessionScopeServices extends DefaultServiceRegistry {
         return new DefaultScriptSourceHasher(fileHasher, contentHasherFactory);
     }
 
-    FileSystemSnapshotter createFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
+    FileSystemMirrorStatisticsReporter createFileSystemMirrorStatisticsReporter(FileSystemMirrorStatistics statistics, BuildOperationExecutor buildOperationExecutor, ListenerManager listenerManager) {
+        FileSystemMirrorStatisticsReporter reporter = new FileSystemMirrorStatisticsReporter(statistics, buildOperationExecutor);
+        listenerManager.addListener(reporter);
+        return reporter;
+    }
+
+    FileSystemSnapshotter createFileSystemSnapshotter(
+        FileHasher hasher,
+        StringInterner stringInterner,
+        FileSystem fileSystem,
+        DirectoryFileTreeFactory directoryFileTreeFactory,
+        FileSystemMirror fileSystemMirror,
+        @SuppressWarnings("unused") FileSystemMirrorStatisticsReporter fileSystemMirrorStatisticsReporter // required in order to init this
+    ) {
         return new DefaultFileSystemSnapshotter(hasher, stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror);
     }
 
@@ -52,6 +52,7 @@ import org.gradle.cache.FileLockManager;
 import org.gradle.cache.internal.CacheFactory;
 import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
 import org.gradle.cache.internal.DefaultCacheFactory;
+import org.gradle.cache.internal.IndexedCacheReadStatistics;
 import org.gradle.cli.CommandLineConverter;
 import org.gradle.configuration.DefaultImportsReader;
 import org.gradle.configuration.ImportsReader;
@@ -195,8 +196,12 @@ public class GlobalScopeServices extends BasicGlobalScopeServices {
     }
 
 
-    protected CacheFactory createCacheFactory(FileLockManager fileLockManager, ExecutorFactory executorFactory) {
-        return new DefaultCacheFactory(fileLockManager, executorFactory);
+    IndexedCacheReadStatistics createIndexedCacheReadStatistics() {
+        return new IndexedCacheReadStatistics();
+    }
+
+    protected CacheFactory createCacheFactory(FileLockManager fileLockManager, ExecutorFactory executorFactory, IndexedCacheReadStatistics readStatistics) {
+        return new DefaultCacheFactory(fileLockManager, executorFactory, readStatistics);
     }
 
     ClassLoaderRegistry createClassLoaderRegistry(ClassPathRegistry classPathRegistry, LegacyTypesSupport legacyTypesSupport) {
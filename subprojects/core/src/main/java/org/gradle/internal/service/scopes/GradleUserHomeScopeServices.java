@@ -28,6 +28,7 @@ import org.gradle.api.internal.changedetection.state.DefaultFileSystemMirror;
 import org.gradle.api.internal.changedetection.state.DefaultFileSystemSnapshotter;
 import org.gradle.api.internal.changedetection.state.DefaultGenericFileCollectionSnapshotter;
 import org.gradle.api.internal.changedetection.state.FileSystemMirror;
+import org.gradle.api.internal.changedetection.state.FileSystemMirrorStatistics;
 import org.gradle.api.internal.changedetection.state.FileSystemSnapshotter;
 import org.gradle.api.internal.changedetection.state.GenericFileCollectionSnapshotter;
 import org.gradle.api.internal.changedetection.state.GlobalScopeFileTimeStampInspector;
@@ -47,6 +48,7 @@ import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.internal.CacheRepositoryServices;
 import org.gradle.cache.internal.CacheScopeMapping;
 import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
+import org.gradle.cache.internal.VersionStrategy;
 import org.gradle.groovy.scripts.internal.CrossBuildInMemoryCachingScriptClassCache;
 import org.gradle.groovy.scripts.internal.DefaultScriptSourceHasher;
 import org.gradle.groovy.scripts.internal.RegistryAwareClassLoaderHierarchyHasher;
@@ -63,6 +65,7 @@ import org.gradle.internal.classpath.CachedJarFileStore;
 import org.gradle.internal.classpath.DefaultCachedClasspathTransformer;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.file.JarCache;
+import org.gradle.internal.filewatch.FileWatcherFactory;
 import org.gradle.internal.hash.ContentHasherFactory;
 import org.gradle.internal.hash.DefaultFileHasher;
 import org.gradle.internal.hash.FileHasher;
@@ -83,6 +86,7 @@ import org.gradle.process.internal.worker.DefaultWorkerProcessFactory;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
 import org.gradle.process.internal.worker.child.WorkerProcessClassPathProvider;
 
+import java.io.File;
 import java.util.List;
 
 /**
@@ -138,8 +142,13 @@ public class GradleUserHomeScopeServices {
         return new RegistryAwareClassLoaderHierarchyHasher(registry, classLoaderHasher);
     }
 
-    FileSystemMirror createFileSystemMirror(ListenerManager listenerManager, List<CachedJarFileStore> fileStores) {
-        DefaultFileSystemMirror fileSystemMirror = new DefaultFileSystemMirror(fileStores);
+    FileSystemMirrorStatistics createFileSystemMirrorStatistics() {
+        return new FileSystemMirrorStatistics();
+    }
+
+    FileSystemMirror createFileSystemMirror(ListenerManager listenerManager, List<CachedJarFileStore> fileStores, FileWatcherFactory fileWatcherFactory, CacheScopeMapping cacheScopeMapping, FileSystemMirrorStatistics statistics) {
+        File sentinelDir = cacheScopeMapping.getBaseDirectory(null, "file-system-mirror", VersionStrategy.CachePerVersion);
+        DefaultFileSystemMirror fileSystemMirror = new DefaultFileSystemMirror(fileStores, fileWatcherFactory, sentinelDir, statistics);
         listenerManager.addListener(fileSystemMirror);
         return fileSystemMirror;
     }
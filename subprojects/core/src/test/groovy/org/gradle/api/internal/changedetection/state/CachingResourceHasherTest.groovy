@@ -17,6 +17,7 @@
 package org.gradle.api.internal.changedetection.state
 
 import org.gradle.api.file.RelativePath
+import org.gradle.api.specs.Spec
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.serialize.HashCodeSerializer
 import org.gradle.testfixtures.internal.InMemoryIndexedCache
@@ -27,7 +28,8 @@ import java.util.zip.ZipEntry
 class CachingResourceHasherTest extends Specification {
     def delegate = Mock(ResourceHasher)
     def fileSnapshot = new RegularFileSnapshot("path", RelativePath.parse(true, "path"), false, new FileHashSnapshot(HashCode.fromInt(456)))
-    def cachingHasher = new CachingResourceHasher(delegate, new ResourceSnapshotterCacheService(new InMemoryIndexedCache(new HashCodeSerializer())))
+    def cacheService = new ResourceSnapshotterCacheService(new InMemoryIndexedCache(new HashCodeSerializer()))
+    def cachingHasher = new CachingResourceHasher(delegate, cacheService)
 
     def "returns result from delegate"() {
         def expectedHash = HashCode.fromInt(123)
@@ -94,4 +96,48 @@ class CachingResourceHasherTest extends Specification {
 
         actualHash == expectedHash
     }
+
+    def "caches zip entries that satisfy the spec by their content"() {
+        def expectedHash = HashCode.fromInt(123)
+        def hasher = new CachingResourceHasher(delegate, cacheService, { ZipEntry entry -> entry.name.endsWith(".class") } as Spec<ZipEntry>)
+        def content = "content".bytes
+
+        when:
+        def actualHash = hasher.hash(new ZipEntry("Foo.class"), new ByteArrayInputStream(content))
+
+        then:
+        1 * delegate.hash({ it.name == "Foo.class" }, _) >> { ZipEntry entry, InputStream input ->
+            assert input.bytes == content
+            expectedHash
+        }
+        0 * _
+
+        actualHash == expectedHash
+
+        when:
+        actualHash = hasher.hash(new ZipEntry("other/Bar.class"), new ByteArrayInputStream(content))
+
+        then:
+        0 * _
+
+        actualHash == expectedHash
+
+        when:
+        actualHash = hasher.hash(new ZipEntry("Foo.class"), new ByteArrayInputStream("changed".bytes))
+
+        then:
+        1 * delegate.hash(_, _) >> null
+        0 * _
+
+        actualHash == null
+
+        when:
+        actualHash = hasher.hash(new ZipEntry("resource.txt"), new ByteArrayInputStream(content))
+
+        then:
+        1 * delegate.hash({ it.name == "resource.txt" }, _) >> expectedHash
+        0 * _
+
+        actualHash == expectedHash
+    }
 }
@@ -19,14 +19,21 @@ package org.gradle.api.internal.changedetection.state
 import org.gradle.BuildResult
 import org.gradle.api.internal.GradleInternal
 import org.gradle.internal.classpath.CachedJarFileStore
+import org.gradle.internal.filewatch.FileWatcher
+import org.gradle.internal.filewatch.FileWatcherEvent
+import org.gradle.internal.filewatch.FileWatcherFactory
+import org.gradle.internal.filewatch.FileWatcherListener
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.SetSystemProperties
 import org.junit.Rule
 import spock.lang.Specification
 
 class DefaultFileSystemMirrorTest extends Specification {
     @Rule
     TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    @Rule
+    SetSystemProperties systemProperties = new SetSystemProperties()
 
     DefaultFileSystemMirror mirror
     TestFile cacheDir
@@ -141,4 +148,223 @@ class DefaultFileSystemMirrorTest extends Specification {
         mirror.getDirectoryTree(file.path) == null
         mirror.getContent(file.path) == null
     }
+
+    def "counts hits and misses"() {
+        def file = tmpDir.file("a")
+        def fileSnapshot = Stub(FileSnapshot)
+        def statistics = new FileSystemMirrorStatistics()
+        def mirror = new DefaultFileSystemMirror([], null, null, statistics)
+
+        given:
+        _ * fileSnapshot.path >> file.path
+
+        when:
+        mirror.getFile(file.path)
+        mirror.putFile(fileSnapshot)
+        mirror.getFile(file.path)
+        mirror.getFile(file.path)
+        mirror.beforeTaskOutputsGenerated()
+        def result = statistics.getAndReset()
+
+        then:
+        result.hits == 2
+        result.misses == 1
+        result.evictions == 1
+
+        and:
+        statistics.getAndReset().hits == 0
+    }
+
+    def "retains state between builds and evicts changed files when requested"() {
+        def dir = tmpDir.createDir("dir")
+        def file = dir.createFile("a")
+        def other = tmpDir.createDir("other").createFile("b")
+        def fileSnapshot = Stub(FileSnapshot)
+        def otherSnapshot = Stub(FileSnapshot)
+        def treeSnapshot = Stub(FileTreeSnapshot)
+        def statistics = new FileSystemMirrorStatistics()
+
+        given:
+        _ * fileSnapshot.path >> file.path
+        _ * otherSnapshot.path >> other.path
+        _ * treeSnapshot.path >> dir.path
+
+        when:
+        def mirror = retainingMirror(statistics)
+        mirror.afterStart()
+        snapshotFile(mirror, fileSnapshot)
+        snapshotFile(mirror, otherSnapshot)
+        mirror.getDirectoryTree(dir.path)
+        mirror.putDirectory(treeSnapshot)
+        mirror.beforeComplete()
+
+        then:
+        3 * watcher.watch(_)
+
+        and:
+        statistics.retainedBetweenBuilds
+        mirror.getFile(file.path) == fileSnapshot
+        mirror.getFile(other.path) == otherSnapshot
+        mirror.getDirectoryTree(dir.path) == treeSnapshot
+
+        when:
+        statistics.getAndReset()
+        listener.onChange(watcher, FileWatcherEvent.modify(file))
+
+        then:
+        mirror.getFile(file.path) == null
+        mirror.getDirectoryTree(dir.path) == null
+        mirror.getFile(other.path) == otherSnapshot
+        statistics.getAndReset().evictions == 2
+
+        when:
+        listener.onChange(watcher, FileWatcherEvent.undefined())
+
+        then:
+        mirror.getFile(other.path) == null
+    }
+
+    def "does not retain state for a file that changes while it is snapshotted"() {
+        def file = tmpDir.createDir("dir").createFile("a")
+        def fileSnapshot = Stub(FileSnapshot)
+
+        given:
+        _ * fileSnapshot.path >> file.path
+
+        when:
+        def mirror = retainingMirror()
+        mirror.afterStart()
+        mirror.getFile(file.path)
+        listener.onChange(watcher, FileWatcherEvent.modify(file))
+        mirror.putFile(fileSnapshot)
+
+        then:
+        mirror.getFile(file.path) == fileSnapshot
+
+        when:
+        mirror.beforeComplete()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    def "does not retain state for a file that was not watched before it was snapshotted"() {
+        def file = tmpDir.createDir("dir").createFile("a")
+        def fileSnapshot = Stub(FileSnapshot)
+
+        given:
+        _ * fileSnapshot.path >> file.path
+
+        when:
+        def mirror = retainingMirror()
+        mirror.afterStart()
+        mirror.putFile(fileSnapshot)
+        mirror.beforeComplete()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    def "waits for the watcher to deliver the changes made before the build starts"() {
+        def file = tmpDir.createDir("dir").createFile("a")
+        def other = tmpDir.createDir("other").createFile("b")
+        def fileSnapshot = Stub(FileSnapshot)
+        def otherSnapshot = Stub(FileSnapshot)
+
+        given:
+        _ * fileSnapshot.path >> file.path
+        _ * otherSnapshot.path >> other.path
+        def mirror = retainingMirror()
+        mirror.afterStart()
+        snapshotFile(mirror, fileSnapshot)
+        snapshotFile(mirror, otherSnapshot)
+        mirror.beforeComplete()
+
+        when:
+        def build = Thread.start {
+            mirror.afterStart()
+        }
+        def sentinel = awaitSentinel()
+        listener.onChange(watcher, FileWatcherEvent.modify(file))
+        listener.onChange(watcher, FileWatcherEvent.create(sentinel))
+        build.join()
+
+        then:
+        mirror.getFile(file.path) == null
+        mirror.getFile(other.path) == otherSnapshot
+        !sentinel.exists()
+    }
+
+    def "discards retained state when the watcher does not catch up in time"() {
+        def file = tmpDir.createDir("dir").createFile("a")
+        def fileSnapshot = Stub(FileSnapshot)
+
+        given:
+        _ * fileSnapshot.path >> file.path
+        def mirror = retainingMirror(new FileSystemMirrorStatistics(), 100)
+        mirror.afterStart()
+        snapshotFile(mirror, fileSnapshot)
+        mirror.beforeComplete()
+
+        when:
+        mirror.afterStart()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    def "discards state at end of build when the watcher is not running"() {
+        def file = tmpDir.createDir("dir").createFile("a")
+        def fileSnapshot = Stub(FileSnapshot)
+        def watcherFactory = Mock(FileWatcherFactory)
+        def watcher = Mock(FileWatcher)
+
+        given:
+        System.setProperty(DefaultFileSystemMirror.RETAIN_BETWEEN_BUILDS_PROPERTY, "true")
+        _ * fileSnapshot.path >> file.path
+        _ * watcherFactory.watch(_, _) >> watcher
+        _ * watcher.running >> false
+
+        when:
+        def mirror = new DefaultFileSystemMirror([], watcherFactory, tmpDir.file("sentinels"), new FileSystemMirrorStatistics())
+        snapshotFile(mirror, fileSnapshot)
+        mirror.beforeComplete()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    FileWatcher watcher
+    FileWatcherListener listener
+
+    private DefaultFileSystemMirror retainingMirror(FileSystemMirrorStatistics statistics = new FileSystemMirrorStatistics(), long sentinelTimeoutMillis = 10000) {
+        System.setProperty(DefaultFileSystemMirror.RETAIN_BETWEEN_BUILDS_PROPERTY, "true")
+        watcher = Mock(FileWatcher) {
+            isRunning() >> true
+        }
+        def watcherFactory = Stub(FileWatcherFactory) {
+            watch(_, _) >> { onError, l ->
+                listener = l
+                return watcher
+            }
+        }
+        return new DefaultFileSystemMirror([], watcherFactory, tmpDir.file("sentinels"), statistics, sentinelTimeoutMillis)
+    }
+
+    private static void snapshotFile(DefaultFileSystemMirror mirror, FileSnapshot snapshot) {
+        mirror.getFile(snapshot.path)
+        mirror.putFile(snapshot)
+    }
+
+    private TestFile awaitSentinel() {
+        def sentinelDir = tmpDir.file("sentinels")
+        for (int i = 0; i < 100; i++) {
+            def files = sentinelDir.listFiles()
+            if (files) {
+                return new TestFile(files[0])
+            }
+            Thread.sleep(10)
+        }
+        throw new AssertionError("Sentinel file was not written")
+    }
 }
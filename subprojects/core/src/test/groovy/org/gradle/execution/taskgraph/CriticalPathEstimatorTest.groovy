@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.changedetection.state.TaskHistoryRepository
+import org.gradle.internal.time.Clock
+import spock.lang.Specification
+
+class CriticalPathEstimatorTest extends Specification {
+    def executionTimes = [:]
+    def taskHistory = Mock(TaskHistoryRepository) {
+        getPreviousExecutionTime(_) >> { TaskInternal task -> executionTimes[task.name] }
+    }
+    def clock = Mock(Clock)
+    def estimator = new CriticalPathEstimator(taskHistory, clock)
+
+    def "starts the tasks with the longest chain of dependents first"() {
+        def a = node('a', 10)
+        def b = node('b', 1)
+        def c = node('c', 1, b)
+        def d = node('d', 50, c)
+
+        expect:
+        estimator.prioritize([a, b, c, d]) == [b, c, d, a]
+    }
+
+    def "keeps plan order for tasks with the same estimate"() {
+        def a = node('a', 5)
+        def b = node('b', 5)
+        def c = node('c', 5)
+
+        expect:
+        estimator.prioritize([a, b, c]) == [a, b, c]
+    }
+
+    def "assumes tasks without history take the average time"() {
+        def a = node('a', 10)
+        def b = node('b', 30)
+        def c = node('c', null)
+        def d = node('d', null, c)
+
+        expect:
+        // c -> d is estimated to take 40ms
+        estimator.prioritize([a, b, c, d]) == [c, b, d, a]
+    }
+
+    def "takes must run after relationships into account"() {
+        def a = node('a', 10)
+        def b = node('b', 1)
+        def c = node('c', 20)
+        c.addMustSuccessor(b)
+
+        expect:
+        estimator.prioritize([a, b, c]) == [b, c, a]
+    }
+
+    def "does not count the time of tasks that will not run"() {
+        def a = node('a', 100)
+        def b = node('b', 10)
+        def c = node('c', 20)
+        a.doNotRequire()
+
+        expect:
+        estimator.prioritize([a, b, c]) == [c, b, a]
+    }
+
+    def "records the time taken by the executed tasks"() {
+        def a = node('a', null)
+        def b = node('b', null, a)
+        def c = node('c', null)
+
+        given:
+        estimator.prioritize([a, b, c])
+
+        when:
+        estimator.taskStarted(a)
+        estimator.taskStarted(c)
+        estimator.taskCompleted(a)
+        estimator.taskStarted(b)
+        estimator.taskCompleted(c)
+        estimator.taskCompleted(b)
+        def executionTimes = estimator.executionFinished()
+
+        then:
+        _ * clock.currentTime >>> [0, 5, 10, 10, 12, 30]
+        executionTimes == [(a.task): 10L, (b.task): 20L, (c.task): 7L]
+        0 * taskHistory.recordExecutionTime(_, _)
+
+        when:
+        estimator.recordExecutionTimes(executionTimes)
+
+        then:
+        1 * taskHistory.recordExecutionTime(a.task, 10)
+        1 * taskHistory.recordExecutionTime(b.task, 20)
+        1 * taskHistory.recordExecutionTime(c.task, 7)
+        0 * taskHistory.recordExecutionTime(_, _)
+    }
+
+    def "does not record the time of tasks that did not start"() {
+        def a = node('a', null)
+
+        given:
+        estimator.prioritize([a])
+
+        when:
+        estimator.taskCompleted(a)
+        def executionTimes = estimator.executionFinished()
+
+        then:
+        executionTimes.isEmpty()
+    }
+
+    private TaskInfo node(String name, Long executionTime, TaskInfo... dependencies) {
+        def task = Mock(TaskInternal) {
+            getName() >> name
+            compareTo(_) >> { args -> name.compareTo(args[0].name) }
+        }
+        executionTimes[name] = executionTime
+        def taskInfo = new TaskInfo(task)
+        taskInfo.require()
+        dependencies.each { taskInfo.addDependencySuccessor(it) }
+        return taskInfo
+    }
+}
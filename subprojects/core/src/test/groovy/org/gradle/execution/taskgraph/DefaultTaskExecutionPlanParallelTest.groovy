@@ -68,10 +68,14 @@ class DefaultTaskExecutionPlanParallelTest extends ConcurrentSpec {
 
     def setup() {
         root = createRootProject(temporaryFolder.testDirectory)
-        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, Mock(GradleInternal))
+        executionPlan = createExecutionPlan()
         parentWorkerLease.start()
     }
 
+    DefaultTaskExecutionPlan createExecutionPlan() {
+        new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, Mock(GradleInternal), false)
+    }
+
     def "multiple tasks with async work from the same project can run in parallel"() {
         given:
         def foo = root.task("foo", type: Async)
@@ -59,7 +59,7 @@ class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
 
     def setup() {
         root = createRootProject(temporaryFolder.testDirectory);
-        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, Mock(GradleInternal))
+        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, Mock(GradleInternal), workStealing)
         _ * workerLeaseService.getProjectLock(_, _) >> Mock(ResourceLock) {
             _ * isLocked() >> false
             _ * tryLock() >> true
@@ -71,6 +71,10 @@ class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
         }
     }
 
+    boolean isWorkStealing() {
+        false
+    }
+
     def "schedules tasks in dependency order"() {
         given:
         Task a = task("a");
@@ -548,7 +552,8 @@ class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
         addToGraphAndPopulate([e, h])
 
         then:
-        executedTasks == [a, d, e, b, c, f, g, h]
+        // With work stealing, f is made ready by the worker that completed e and runs on that worker before the tasks in the shared queue
+        executedTasks == (workStealing ? [a, d, e, f, b, c, g, h] : [a, d, e, b, c, f, g, h])
     }
 
     @Issue("GRADLE-3166")
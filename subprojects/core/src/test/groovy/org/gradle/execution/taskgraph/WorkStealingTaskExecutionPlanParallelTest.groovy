@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import org.gradle.api.internal.GradleInternal
+
+class WorkStealingTaskExecutionPlanParallelTest extends DefaultTaskExecutionPlanParallelTest {
+    @Override
+    DefaultTaskExecutionPlan createExecutionPlan() {
+        new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, Mock(GradleInternal), true)
+    }
+
+    def "runs tasks made ready by a worker on that worker"() {
+        given:
+        def a = root.task("a", type: Async)
+        def b = root.task("b", type: Async).dependsOn(a)
+        def c = root.task("c", type: Async)
+
+        when:
+        executionPlan.addToTaskGraph([b, c])
+        executionPlan.determineExecutionPlan()
+        async {
+            def taskWorker1 = taskWorker()
+            def task1 = taskWorker1.take()
+            def taskWorker2 = taskWorker()
+            def task2 = taskWorker2.take()
+
+            releaseTasks(task1.task)
+            def task3 = taskWorker1.take()
+            releaseTasks(task2.task, task3.task)
+
+            assert task1.task == a
+            assert task2.task == c
+            assert task3.task == b
+        }
+
+        then:
+        executionPlan.executionPlan[b].isSuccessful()
+    }
+}
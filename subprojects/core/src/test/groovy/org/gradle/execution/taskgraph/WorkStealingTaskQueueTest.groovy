@@ -0,0 +1,232 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import org.gradle.api.internal.TaskInternal
+import org.gradle.internal.resources.ResourceLock
+import spock.lang.Specification
+
+class WorkStealingTaskQueueTest extends Specification {
+    def queue = new WorkStealingTaskQueue()
+
+    def "queues tasks without dependencies in plan order"() {
+        def a = node('a')
+        def b = node('b')
+        def c = node('c', a)
+
+        when:
+        queue.initialize([a, b, c])
+
+        then:
+        queue.hasPendingTasks()
+        start() == a
+        start() == b
+        queue.poll() == null
+    }
+
+    def "queues task when its last dependency completes"() {
+        def a = node('a')
+        def b = node('b')
+        def c = node('c', a, b)
+
+        given:
+        queue.initialize([a, b, c])
+
+        when:
+        start()
+        complete(a)
+
+        then:
+        c.incompleteDependencies == 1
+        start() == b
+        queue.poll() == null
+
+        when:
+        complete(b)
+
+        then:
+        c.incompleteDependencies == 0
+        start() == c
+        !queue.hasPendingTasks()
+    }
+
+    def "waits for must run after successors"() {
+        def a = node('a')
+        def b = node('b')
+        b.addMustSuccessor(a)
+
+        given:
+        queue.initialize([a, b])
+
+        expect:
+        start() == a
+        queue.poll() == null
+
+        when:
+        complete(a)
+
+        then:
+        start() == b
+    }
+
+    def "worker prefers the tasks it made ready and steals from other workers when it has none"() {
+        def a = node('a')
+        def b = node('b')
+        def c = node('c', a)
+        def d = node('d', a)
+
+        given:
+        queue.initialize([a, b, c, d])
+        def first = start()
+
+        when:
+        async {
+            complete(first)
+        }
+
+        then:
+        first == a
+        // The current worker takes the remaining initially ready task, then steals the oldest task queued by the other worker
+        start() == b
+        start() == c
+        start() == d
+    }
+
+    def "does not select skipped tasks"() {
+        def a = node('a')
+        def b = node('b')
+        def c = node('c', b)
+
+        given:
+        queue.initialize([a, b, c])
+
+        when:
+        a.skipExecution()
+        queue.skipped(a)
+        def selected = queue.poll()
+        selected.skipExecution()
+        queue.skipped(selected)
+
+        then:
+        selected == b
+        start() == c
+        !queue.hasPendingTasks()
+    }
+
+    def "task waits for enforced dependency"() {
+        def a = node('a')
+        def b = node('b')
+        def c = node('c', b)
+        b.mustNotRun()
+
+        given:
+        queue.initialize([a, b, c])
+        def selected = start()
+
+        when:
+        b.enforceRun()
+        queue.enforced(b)
+
+        then:
+        selected == a
+        c.incompleteDependencies == 1
+        start() == b
+        queue.poll() == null
+
+        when:
+        complete(b)
+
+        then:
+        start() == c
+    }
+
+    def "task waiting for a project lock is queued again once the lock is released"() {
+        def a = node('a')
+        def lock = Mock(ResourceLock)
+
+        given:
+        queue.initialize([a])
+
+        when:
+        queue.waitForProjectLock(queue.poll(), lock)
+        queue.requeueUnblockedTasks()
+
+        then:
+        1 * lock.isLocked() >> true
+        queue.poll() == null
+        queue.hasPendingTasks()
+
+        when:
+        queue.requeueUnblockedTasks()
+
+        then:
+        1 * lock.isLocked() >> false
+        queue.poll() == a
+    }
+
+    def "task waiting for running tasks is queued again when a task completes"() {
+        def a = node('a')
+        def b = node('b')
+
+        given:
+        queue.initialize([a, b])
+        start()
+
+        when:
+        queue.waitForRunningTasks(queue.poll())
+
+        then:
+        queue.poll() == null
+
+        when:
+        complete(a)
+
+        then:
+        queue.poll() == b
+    }
+
+    private TaskInfo start() {
+        def taskInfo = queue.poll()
+        if (taskInfo != null) {
+            taskInfo.startExecution()
+            queue.started(taskInfo)
+        }
+        return taskInfo
+    }
+
+    private void complete(TaskInfo taskInfo) {
+        taskInfo.finishExecution()
+        queue.completed(taskInfo)
+    }
+
+    private static void async(Closure closure) {
+        def thread = new Thread(closure)
+        thread.start()
+        thread.join()
+    }
+
+    private TaskInfo node(String name, TaskInfo... dependencies) {
+        def task = Mock(TaskInternal) {
+            getName() >> name
+            compareTo(_) >> { args -> name.compareTo(args[0].name) }
+        }
+        def taskInfo = new TaskInfo(task)
+        taskInfo.require()
+        dependencies.each { taskInfo.addDependencySuccessor(it) }
+        return taskInfo
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.buildevents
+
+import org.gradle.api.internal.changedetection.state.FileSystemMirrorStatistics
+import org.gradle.api.internal.changedetection.state.FileSystemMirrorStatisticsBuildOperationType
+import org.gradle.api.internal.changedetection.state.FileSystemMirrorStatisticsReporter
+import org.gradle.cache.internal.IndexedCacheReadStatistics
+import org.gradle.cache.internal.IndexedCacheReadStatisticsBuildOperationType
+import org.gradle.cache.internal.IndexedCacheReadStatisticsReporter
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import spock.lang.Specification
+
+class StatisticsReporterTest extends Specification {
+    def buildOperationExecutor = new TestBuildOperationExecutor()
+
+    def "reports file system mirror statistics counted during each build"() {
+        def statistics = new FileSystemMirrorStatistics()
+        def reporter = new FileSystemMirrorStatisticsReporter(statistics, buildOperationExecutor)
+
+        when:
+        statistics.hit()
+        statistics.hit()
+        statistics.miss()
+        reporter.beforeComplete()
+
+        then:
+        def result = buildOperationExecutor.log.mostRecentResult(FileSystemMirrorStatisticsBuildOperationType)
+        result.hits == 2
+        result.misses == 1
+        result.evictions == 0
+        !buildOperationExecutor.log.mostRecentDetails(FileSystemMirrorStatisticsBuildOperationType).retainedBetweenBuilds
+
+        when:
+        statistics.miss()
+        reporter.beforeComplete()
+
+        then:
+        def next = buildOperationExecutor.log.mostRecentResult(FileSystemMirrorStatisticsBuildOperationType)
+        next.hits == 0
+        next.misses == 1
+
+        when:
+        statistics.retainedBetweenBuilds(true)
+        reporter.beforeComplete()
+
+        then:
+        buildOperationExecutor.log.mostRecentDetails(FileSystemMirrorStatisticsBuildOperationType).retainedBetweenBuilds
+    }
+
+    def "reports indexed cache read statistics counted during each build"() {
+        def statistics = new IndexedCacheReadStatistics()
+        def reporter = new IndexedCacheReadStatisticsReporter(statistics, buildOperationExecutor)
+
+        when:
+        statistics.optimisticRead()
+        statistics.conflict()
+        statistics.lockedRead()
+        reporter.beforeComplete()
+
+        then:
+        def result = buildOperationExecutor.log.mostRecentResult(IndexedCacheReadStatisticsBuildOperationType)
+        result.optimisticReads == 1
+        result.conflicts == 1
+        result.lockedReads == 1
+        buildOperationExecutor.log.descriptors*.displayName == ["Report indexed cache read statistics"]
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+import org.gradle.internal.nativeintegration.services.FileSystems;
+import org.gradle.internal.nativeintegration.services.NativeServices;
+import org.gradle.internal.resource.local.LocalFileStandInExternalResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parses a corpus of real-world POMs, by default the POMs found in the local Maven repository. Another directory can be
+ * used by setting the {@code pomCorpus} system property.
+ *
+ * <p>The {@code domParsing} benchmark builds a W3C DOM for each POM, as POMs used to be parsed, and serves as a baseline
+ * for the streaming parser used by {@link PomReader}.</p>
+ */
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class PomParsingBenchmark {
+    private static final int MAX_POMS = 2000;
+
+    List<File> poms;
+    File tempDir;
+    FileSystem fileSystem;
+    ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    DocumentBuilderFactory documentBuilderFactory;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        File corpus = new File(System.getProperty("pomCorpus", new File(System.getProperty("user.home"), ".m2/repository").getPath()));
+        poms = new ArrayList<File>();
+        collectPoms(corpus, poms);
+        if (poms.isEmpty()) {
+            throw new IllegalStateException("No POMs found in " + corpus);
+        }
+        Collections.sort(poms);
+
+        tempDir = File.createTempFile("pom-parsing-benchmark", "");
+        FileUtils.forceDelete(tempDir);
+        FileUtils.forceMkdir(tempDir);
+        NativeServices.initialize(tempDir);
+        fileSystem = FileSystems.getDefault();
+        moduleIdentifierFactory = new DefaultImmutableModuleIdentifierFactory();
+        documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setValidating(false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        FileUtils.forceDelete(tempDir);
+    }
+
+    private static void collectPoms(File dir, List<File> poms) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (poms.size() >= MAX_POMS) {
+                return;
+            }
+            if (file.isDirectory()) {
+                collectPoms(file, poms);
+            } else if (file.getName().endsWith(".pom")) {
+                poms.add(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void streamingParsing(Blackhole blackhole) throws Exception {
+        for (File pom : poms) {
+            PomReader pomReader;
+            try {
+                pomReader = new PomReader(new LocalFileStandInExternalResource(pom, fileSystem), moduleIdentifierFactory);
+            } catch (Exception e) {
+                // Some repositories contain POMs that are not well formed
+                blackhole.consume(e);
+                continue;
+            }
+            blackhole.consume(pomReader.parseDependencyMgt());
+            blackhole.consume(pomReader.getProperties());
+        }
+    }
+
+    @Benchmark
+    public void domParsing(Blackhole blackhole) throws Exception {
+        for (File pom : poms) {
+            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+            InputStream inputStream = new FileInputStream(pom);
+            try {
+                Document document = documentBuilder.parse(inputStream, pom.toURI().toASCIIString());
+                blackhole.consume(document);
+            } catch (Exception e) {
+                blackhole.consume(e);
+            } finally {
+                inputStream.close();
+            }
+        }
+    }
+}
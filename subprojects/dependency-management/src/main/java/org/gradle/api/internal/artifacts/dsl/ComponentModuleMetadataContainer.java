@@ -73,6 +73,11 @@ public class ComponentModuleMetadataContainer implements ModuleReplacementsData
         return targets.contains(moduleId) || replacements.keySet().contains(moduleId);
     }
 
+    @Override
+    public boolean hasReplacements() {
+        return !replacements.isEmpty();
+    }
+
     private static void detectCycles(Map<ModuleIdentifier, ModuleIdentifier> replacements, ModuleIdentifier source, ModuleIdentifier target) {
         if (source.equals(target)) {
             throw new InvalidUserDataException(String.format("Cannot declare module replacement that replaces self: %s->%s", source, target));
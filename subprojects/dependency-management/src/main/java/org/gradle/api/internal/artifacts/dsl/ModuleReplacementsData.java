@@ -32,9 +32,16 @@ public interface ModuleReplacementsData {
         public boolean participatesInReplacements(ModuleIdentifier moduleId) {
             return false;
         }
+
+        @Override
+        public boolean hasReplacements() {
+            return false;
+        }
     };
 
     @Nullable ModuleIdentifier getReplacementFor(ModuleIdentifier sourceModule);
 
     boolean participatesInReplacements(ModuleIdentifier moduleId);
+
+    boolean hasReplacements();
 }
@@ -16,39 +16,19 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
 
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
 import java.io.*;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
 
 public final class PomDomParser {
     private PomDomParser() {}
 
-    public static String getTextContent(Element element) {
-        StringBuilder result = new StringBuilder();
-
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++) {
-            Node child = childNodes.item(i);
-
-            switch (child.getNodeType()) {
-                case Node.CDATA_SECTION_NODE:
-                case Node.TEXT_NODE:
-                    result.append(child.getNodeValue());
-                    break;
-                default:
-                    break;
-            }
-        }
-
-        return result.toString();
+    public static String getTextContent(PomElement element) {
+        return element.getTextContent();
     }
 
-    public static String getFirstChildText(Element parentElem, String name) {
-        Element node = getFirstChildElement(parentElem, name);
+    public static String getFirstChildText(PomElement parentElem, String name) {
+        PomElement node = getFirstChildElement(parentElem, name);
         if (node != null) {
             return getTextContent(node);
         } else {
@@ -56,32 +36,23 @@ public final class PomDomParser {
         }
     }
 
-    public static Element getFirstChildElement(Element parentElem, String name) {
+    public static PomElement getFirstChildElement(PomElement parentElem, String name) {
         if (parentElem == null) {
             return null;
         }
-        NodeList childs = parentElem.getChildNodes();
-        for (int i = 0; i < childs.getLength(); i++) {
-            Node node = childs.item(i);
-            if (node instanceof Element && name.equals(node.getNodeName())) {
-                return (Element) node;
+        for (PomElement node : parentElem.getChildren()) {
+            if (name.equals(node.getName())) {
+                return node;
             }
         }
         return null;
     }
 
-    public static List<Element> getAllChilds(Element parent) {
-        List<Element> r = new LinkedList<Element>();
-        if (parent != null) {
-            NodeList childs = parent.getChildNodes();
-            for (int i = 0; i < childs.getLength(); i++) {
-                Node node = childs.item(i);
-                if (node instanceof Element) {
-                    r.add((Element) node);
-                }
-            }
+    public static List<PomElement> getAllChilds(PomElement parent) {
+        if (parent == null) {
+            return Collections.emptyList();
         }
-        return r;
+        return parent.getChildren();
     }
 
     public static final class AddDTDFilterInputStream extends FilterInputStream {
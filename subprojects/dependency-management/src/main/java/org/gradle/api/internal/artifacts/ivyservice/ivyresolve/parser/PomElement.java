@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import com.google.common.collect.ImmutableSet;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A lightweight element of a POM, holding the element name, its text content and its child elements.
+ *
+ * <p>POMs are streamed through a SAX parser into a tree of these elements rather than into a W3C DOM. Only the parts of the POM
+ * that contribute to the module metadata are retained: sections such as {@code build}, {@code reporting} or {@code developers}
+ * are skipped while parsing.</p>
+ */
+public final class PomElement {
+    private final String name;
+    private List<PomElement> children = Collections.emptyList();
+    private StringBuilder text;
+    private String textContent = "";
+
+    private PomElement(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the text directly contained in this element, excluding the text of its child elements.
+     */
+    public String getTextContent() {
+        return textContent;
+    }
+
+    public List<PomElement> getChildren() {
+        return children;
+    }
+
+    private void addChild(PomElement child) {
+        if (children.isEmpty()) {
+            children = new ArrayList<PomElement>(4);
+        }
+        children.add(child);
+    }
+
+    private void appendText(char[] ch, int start, int length) {
+        if (text == null) {
+            text = new StringBuilder(length);
+        }
+        text.append(ch, start, length);
+    }
+
+    private void finish() {
+        if (text != null) {
+            textContent = text.toString();
+            text = null;
+        }
+        if (!children.isEmpty()) {
+            children = Collections.unmodifiableList(children);
+        }
+    }
+
+    /**
+     * Builds the tree of retained elements from SAX events.
+     */
+    static class TreeBuilder extends DefaultHandler {
+        private static final Set<String> ROOT_ELEMENTS = ImmutableSet.of("project", "model");
+        private static final Set<String> RETAINED_SECTIONS = ImmutableSet.of(
+            "groupId", "artifactId", "version", "packaging", "parent", "properties", "dependencies", "dependencyManagement",
+            "distributionManagement", "profiles", "id", "activation");
+
+        private final Deque<PomElement> elements = new ArrayDeque<PomElement>();
+        private PomElement root;
+        private int skippedDepth;
+
+        public PomElement getRoot() {
+            return root;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (skippedDepth > 0) {
+                skippedDepth++;
+                return;
+            }
+            PomElement element = new PomElement(qName);
+            if (root == null) {
+                root = element;
+            } else if (!isRetained(qName)) {
+                skippedDepth = 1;
+                return;
+            } else {
+                elements.peek().addChild(element);
+            }
+            elements.push(element);
+        }
+
+        /**
+         * Children of the root element and of its profiles are only retained when they contribute to the module metadata.
+         */
+        private boolean isRetained(String name) {
+            PomElement parent = elements.peek();
+            if (parent == root) {
+                return ROOT_ELEMENTS.contains(root.name) && RETAINED_SECTIONS.contains(name);
+            }
+            if (elements.size() == 3 && parent.name.equals("profile")) {
+                return RETAINED_SECTIONS.contains(name);
+            }
+            return true;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (skippedDepth > 0) {
+                skippedDepth--;
+                return;
+            }
+            elements.pop().finish();
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (skippedDepth == 0 && !elements.isEmpty()) {
+                elements.peek().appendText(ch, start, length);
+            }
+        }
+    }
+}
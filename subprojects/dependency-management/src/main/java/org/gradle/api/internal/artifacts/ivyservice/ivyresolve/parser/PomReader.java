@@ -29,18 +29,14 @@ import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.data.PomPr
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.classloader.ClassLoaderUtils;
 import org.gradle.internal.resource.local.LocallyAvailableExternalResource;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -85,7 +81,7 @@ public class PomReader implements PomParent {
     private static final String PROFILE_ACTIVATION_ACTIVE_BY_DEFAULT = "activeByDefault";
     private static final String PROFILE_ACTIVATION_PROPERTY = "property";
     private static final byte[] M2_ENTITIES_RESOURCE;
-    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY;
+    private static final SAXParserFactory SAX_PARSER_FACTORY;
 
     static {
         byte[] bytes;
@@ -101,8 +97,8 @@ public class PomReader implements PomParent {
         ClassLoader original = Thread.currentThread().getContextClassLoader();
         Thread.currentThread().setContextClassLoader(ClassLoaderUtils.getPlatformClassLoader());
         try {
-            DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
-            DOCUMENT_BUILDER_FACTORY.setValidating(false);
+            SAX_PARSER_FACTORY = SAXParserFactory.newInstance();
+            SAX_PARSER_FACTORY.setValidating(false);
         } finally {
             Thread.currentThread().setContextClassLoader(original);
         }
@@ -128,24 +124,24 @@ public class PomReader implements PomParent {
     private Map<MavenDependencyKey, PomDependencyData> resolvedDependencies;
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
 
-    private final Element projectElement;
-    private final Element parentElement;
+    private final String systemId;
+    private final PomElement projectElement;
+    private final PomElement parentElement;
 
     public PomReader(final LocallyAvailableExternalResource resource, ImmutableModuleIdentifierFactory moduleIdentifierFactory, Map<String, String> childPomProperties) throws SAXException {
         this.moduleIdentifierFactory = moduleIdentifierFactory;
         setPomProperties(childPomProperties);
-        final String systemId = resource.getFile().toURI().toASCIIString();
-        Document pomDomDoc = resource.withContent(new Transformer<Document, InputStream>() {
-            public Document transform(InputStream inputStream) {
+        systemId = resource.getFile().toURI().toASCIIString();
+        projectElement = resource.withContent(new Transformer<PomElement, InputStream>() {
+            public PomElement transform(InputStream inputStream) {
                 try {
-                    return parseToDom(inputStream, systemId);
+                    return parseToTree(inputStream, systemId);
                 } catch (Exception e) {
                     throw new MetaDataParseException("POM", resource, e);
                 }
             }
         }).getResult();
-        projectElement = pomDomDoc.getDocumentElement();
-        if (!PROJECT.equals(projectElement.getNodeName()) && !MODEL.equals(projectElement.getNodeName())) {
+        if (!PROJECT.equals(projectElement.getName()) && !MODEL.equals(projectElement.getName())) {
             throw new SAXParseException("project must be the root tag", systemId, systemId, 0, 0);
         }
         parentElement = getFirstChildElement(projectElement, PARENT);
@@ -230,29 +226,37 @@ public class PomReader implements PomParent {
 
     @Override
     public String toString() {
-        return projectElement.getOwnerDocument().getDocumentURI();
+        return systemId;
     }
 
-    private static DocumentBuilder getDocBuilder(EntityResolver entityResolver) {
+    private static XMLReader getXmlReader(EntityResolver entityResolver) throws SAXException {
         try {
-            DocumentBuilder docBuilder = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+            XMLReader xmlReader = SAX_PARSER_FACTORY.newSAXParser().getXMLReader();
             if (entityResolver != null) {
-                docBuilder.setEntityResolver(entityResolver);
+                xmlReader.setEntityResolver(entityResolver);
             }
-            return docBuilder;
+            return xmlReader;
         } catch (ParserConfigurationException e) {
             throw UncheckedException.throwAsUncheckedException(e);
         }
     }
 
-    private static Document parseToDom(InputStream stream, String systemId) throws IOException, SAXException {
+    /**
+     * Streams the POM into a tree that retains only the elements contributing to the module metadata.
+     */
+    private static PomElement parseToTree(InputStream stream, String systemId) throws IOException, SAXException {
         // Set the context classloader the bootstrap classloader, to work around the way that JAXP locates implementation classes
         // This should ensure that the JAXP classes provided by the JVM are used, rather than some other implementation
         ClassLoader original = Thread.currentThread().getContextClassLoader();
         Thread.currentThread().setContextClassLoader(ClassLoaderUtils.getPlatformClassLoader());
         try {
-            InputStream dtdStream = new AddDTDFilterInputStream(stream);
-            return getDocBuilder(M2_ENTITY_RESOLVER).parse(dtdStream, systemId);
+            InputSource source = new InputSource(new AddDTDFilterInputStream(stream));
+            source.setSystemId(systemId);
+            PomElement.TreeBuilder treeBuilder = new PomElement.TreeBuilder();
+            XMLReader xmlReader = getXmlReader(M2_ENTITY_RESOLVER);
+            xmlReader.setContentHandler(treeBuilder);
+            xmlReader.parse(source);
+            return treeBuilder.getRoot();
         } finally {
             Thread.currentThread().setContextClassLoader(original);
         }
@@ -345,8 +349,8 @@ public class PomReader implements PomParent {
     }
 
     public ModuleVersionIdentifier getRelocation() {
-        Element distrMgt = getFirstChildElement(projectElement, DISTRIBUTION_MGT);
-        Element relocation = getFirstChildElement(distrMgt, RELOCATION);
+        PomElement distrMgt = getFirstChildElement(projectElement, DISTRIBUTION_MGT);
+        PomElement relocation = getFirstChildElement(distrMgt, RELOCATION);
         if (relocation == null) {
             return null;
         } else {
@@ -393,16 +397,12 @@ public class PomReader implements PomParent {
         return dependencies;
     }
 
-    private List<PomDependencyData> getDependencyData(Element parentElement) {
+    private List<PomDependencyData> getDependencyData(PomElement parentElement) {
         List<PomDependencyData> depElements = new ArrayList<PomDependencyData>();
-        Element dependenciesElement = getFirstChildElement(parentElement, DEPENDENCIES);
-        if (dependenciesElement != null) {
-            NodeList childs = dependenciesElement.getChildNodes();
-            for (int i = 0; i < childs.getLength(); i++) {
-                Node node = childs.item(i);
-                if (node instanceof Element && DEPENDENCY.equals(node.getNodeName())) {
-                    depElements.add(new PomDependencyData((Element) node));
-                }
+        PomElement dependenciesElement = getFirstChildElement(parentElement, DEPENDENCIES);
+        for (PomElement node : getAllChilds(dependenciesElement)) {
+            if (DEPENDENCY.equals(node.getName())) {
+                depElements.add(new PomDependencyData(node));
             }
         }
 
@@ -450,18 +450,14 @@ public class PomReader implements PomParent {
         return declaredDependencyMgts;
     }
 
-    private List<PomDependencyMgt> getDependencyMgt(Element parentElement) {
+    private List<PomDependencyMgt> getDependencyMgt(PomElement parentElement) {
         List<PomDependencyMgt> depMgmtElements = new ArrayList<PomDependencyMgt>();
-        Element dependenciesElement = getFirstChildElement(parentElement, DEPENDENCY_MGT);
+        PomElement dependenciesElement = getFirstChildElement(parentElement, DEPENDENCY_MGT);
         dependenciesElement = getFirstChildElement(dependenciesElement, DEPENDENCIES);
 
-        if (dependenciesElement != null) {
-            NodeList childs = dependenciesElement.getChildNodes();
-            for (int i = 0; i < childs.getLength(); i++) {
-                Node node = childs.item(i);
-                if (node instanceof Element && DEPENDENCY.equals(node.getNodeName())) {
-                    depMgmtElements.add(new PomDependencyMgtElement((Element) node));
-                }
+        for (PomElement node : getAllChilds(dependenciesElement)) {
+            if (DEPENDENCY.equals(node.getName())) {
+                depMgmtElements.add(new PomDependencyMgtElement(node));
             }
         }
 
@@ -485,9 +481,9 @@ public class PomReader implements PomParent {
     }
 
     public class PomDependencyMgtElement implements PomDependencyMgt {
-        private final Element depElement;
+        private final PomElement depElement;
 
-        PomDependencyMgtElement(Element depElement) {
+        PomDependencyMgtElement(PomElement depElement) {
             this.depElement = depElement;
         }
 
@@ -543,15 +539,13 @@ public class PomReader implements PomParent {
         }
 
         public List<ModuleIdentifier> getExcludedModules() {
-            Element exclusionsElement = getFirstChildElement(depElement, EXCLUSIONS);
+            PomElement exclusionsElement = getFirstChildElement(depElement, EXCLUSIONS);
             if (exclusionsElement != null) {
-                NodeList childs = exclusionsElement.getChildNodes();
                 List<ModuleIdentifier> exclusions = Lists.newArrayList();
-                for (int i = 0; i < childs.getLength(); i++) {
-                    Node node = childs.item(i);
-                    if (node instanceof Element && EXCLUSION.equals(node.getNodeName())) {
-                        String groupId = getFirstChildText((Element) node, GROUP_ID);
-                        String artifactId = getFirstChildText((Element) node, ARTIFACT_ID);
+                for (PomElement node : exclusionsElement.getChildren()) {
+                    if (EXCLUSION.equals(node.getName())) {
+                        String groupId = getFirstChildText(node, GROUP_ID);
+                        String artifactId = getFirstChildText(node, ARTIFACT_ID);
                         if ((groupId != null) && (artifactId != null)) {
                             exclusions.add(moduleIdentifierFactory.module(groupId, artifactId));
                         }
@@ -564,25 +558,25 @@ public class PomReader implements PomParent {
     }
 
     public class PomDependencyData extends PomDependencyMgtElement {
-        private final Element depElement;
+        private final PomElement depElement;
 
-        PomDependencyData(Element depElement) {
+        PomDependencyData(PomElement depElement) {
             super(depElement);
             this.depElement = depElement;
         }
 
         public boolean isOptional() {
-            Element e = getFirstChildElement(depElement, OPTIONAL);
+            PomElement e = getFirstChildElement(depElement, OPTIONAL);
             return (e != null) && "true".equalsIgnoreCase(getTextContent(e));
         }
     }
 
     public class PomProfileElement implements PomProfile {
-        private final Element element;
+        private final PomElement element;
         private List<PomDependencyMgt> declaredDependencyMgts;
         private List<PomDependencyData> declaredDependencies;
 
-        PomProfileElement(Element element) {
+        PomProfileElement(PomElement element) {
             this.element = element;
         }
 
@@ -620,12 +614,12 @@ public class PomReader implements PomParent {
         if (declaredActivePomProfiles == null) {
             List<PomProfile> activeByDefaultPomProfiles = new ArrayList<PomProfile>();
             List<PomProfile> activeByAbsenceOfPropertyPomProfiles = new ArrayList<PomProfile>();
-            Element profilesElement = getFirstChildElement(projectElement, PROFILES);
+            PomElement profilesElement = getFirstChildElement(projectElement, PROFILES);
 
             if (profilesElement != null) {
-                for (Element profileElement : getAllChilds(profilesElement)) {
-                    if (PROFILE.equals(profileElement.getNodeName())) {
-                        Element activationElement = getFirstChildElement(profileElement, PROFILE_ACTIVATION);
+                for (PomElement profileElement : getAllChilds(profilesElement)) {
+                    if (PROFILE.equals(profileElement.getName())) {
+                        PomElement activationElement = getFirstChildElement(profileElement, PROFILE_ACTIVATION);
 
                         if (activationElement != null) {
                             String activeByDefault = getFirstChildText(activationElement, PROFILE_ACTIVATION_ACTIVE_BY_DEFAULT);
@@ -633,7 +627,7 @@ public class PomReader implements PomParent {
                             if (activeByDefault != null && "true".equals(activeByDefault)) {
                                 activeByDefaultPomProfiles.add(new PomProfileElement(profileElement));
                             } else {
-                                Element propertyElement = getFirstChildElement(activationElement, PROFILE_ACTIVATION_PROPERTY);
+                                PomElement propertyElement = getFirstChildElement(activationElement, PROFILE_ACTIVATION_PROPERTY);
 
                                 if (propertyElement != null) {
                                     if (isActivationPropertyActivated(propertyElement)) {
@@ -671,7 +665,7 @@ public class PomReader implements PomParent {
      * @return Activation indicator
      * @see <a href="http://books.sonatype.com/mvnref-book/reference/profiles-sect-activation.html#profiles-sect-activation-config">Maven documentation</a>
      */
-    private boolean isActivationPropertyActivated(Element propertyElement) {
+    private boolean isActivationPropertyActivated(PomElement propertyElement) {
         String propertyName = getFirstChildText(propertyElement, "name");
         return propertyName.startsWith("!");
     }
@@ -683,14 +677,11 @@ public class PomReader implements PomParent {
         return pomProperties;
     }
 
-    private Map<String, String> parseProperties(Element parentElement) {
+    private Map<String, String> parseProperties(PomElement parentElement) {
         Map<String, String> pomProperties = new HashMap<String, String>();
-        Element propsEl = getFirstChildElement(parentElement, PROPERTIES);
-        if (propsEl != null) {
-            propsEl.normalize();
-        }
-        for (Element prop : getAllChilds(propsEl)) {
-            pomProperties.put(prop.getNodeName(), getTextContent(prop));
+        PomElement propsEl = getFirstChildElement(parentElement, PROPERTIES);
+        for (PomElement prop : getAllChilds(propsEl)) {
+            pomProperties.put(prop.getName(), getTextContent(prop));
         }
         return pomProperties;
     }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.gradle.cache.internal.CrossBuildInMemoryCache;
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
+import org.gradle.internal.Factory;
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata;
+
+import java.io.File;
+
+/**
+ * Retains the module metadata decoded from the files of the {@link ModuleMetadataStore} across builds, so that a long lived process does not
+ * decode the same descriptor files over and over again.
+ *
+ * <p>Entries are keyed by the path, length and modification time of the descriptor file, so that a descriptor that is rewritten, for example
+ * by another process sharing the cache, is decoded again. The decoded metadata is kept in its immutable form, and a mutable copy is handed
+ * out for each lookup as callers adjust the metadata they get.</p>
+ */
+public class CrossBuildModuleMetadataCache {
+    private final CrossBuildInMemoryCache<DescriptorFile, ModuleComponentResolveMetadata> cache;
+
+    public CrossBuildModuleMetadataCache(CrossBuildInMemoryCacheFactory cacheFactory) {
+        this.cache = cacheFactory.newCache();
+    }
+
+    /**
+     * Returns the metadata stored in the given descriptor file, using the given decoder when the file has not been decoded yet or has changed.
+     */
+    MutableModuleComponentResolveMetadata get(File descriptorFile, Factory<MutableModuleComponentResolveMetadata> decoder) {
+        DescriptorFile key = DescriptorFile.of(descriptorFile);
+        ModuleComponentResolveMetadata metadata = cache.get(key);
+        if (metadata != null) {
+            return metadata.asMutable();
+        }
+        MutableModuleComponentResolveMetadata decoded = decoder.create();
+        cache.put(key, decoded.asImmutable());
+        return decoded;
+    }
+
+    private static class DescriptorFile {
+        private final String path;
+        private final long length;
+        private final long lastModified;
+
+        private DescriptorFile(String path, long length, long lastModified) {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        static DescriptorFile of(File file) {
+            return new DescriptorFile(file.getAbsolutePath(), file.length(), file.lastModified());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            DescriptorFile that = (DescriptorFile) o;
+            return length == that.length && lastModified == that.lastModified && path.equals(that.path);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = path.hashCode();
+            result = 31 * result + (int) (length ^ (length >>> 32));
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+            return result;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.gradle.api.internal.artifacts.ivyservice.modulecache;
 import org.gradle.api.Action;
 import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.internal.Factory;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
 import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata;
@@ -35,31 +36,42 @@ public class ModuleMetadataStore {
     private final PathKeyFileStore metaDataStore;
     private final ModuleMetadataSerializer moduleMetadataSerializer;
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final CrossBuildModuleMetadataCache decodedMetadataCache;
 
-    public ModuleMetadataStore(PathKeyFileStore metaDataStore, ModuleMetadataSerializer moduleMetadataSerializer, ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+    public ModuleMetadataStore(PathKeyFileStore metaDataStore, ModuleMetadataSerializer moduleMetadataSerializer, ImmutableModuleIdentifierFactory moduleIdentifierFactory, CrossBuildModuleMetadataCache decodedMetadataCache) {
         this.metaDataStore = metaDataStore;
         this.moduleMetadataSerializer = moduleMetadataSerializer;
         this.moduleIdentifierFactory = moduleIdentifierFactory;
+        this.decodedMetadataCache = decodedMetadataCache;
     }
 
     public MutableModuleComponentResolveMetadata getModuleDescriptor(ModuleComponentAtRepositoryKey component) {
         String filePath = getFilePath(component);
         final LocallyAvailableResource resource = metaDataStore.get(filePath);
         if (resource != null) {
-            try {
-                KryoBackedDecoder decoder = new KryoBackedDecoder(new FileInputStream(resource.getFile()));
-                try {
-                    return moduleMetadataSerializer.read(decoder, moduleIdentifierFactory);
-                } finally {
-                    decoder.close();
+            return decodedMetadataCache.get(resource.getFile(), new Factory<MutableModuleComponentResolveMetadata>() {
+                @Override
+                public MutableModuleComponentResolveMetadata create() {
+                    return readModuleDescriptor(resource);
                 }
-            } catch (Exception e) {
-                throw new RuntimeException("Could not load module metadata from " + resource.getDisplayName(), e);
-            }
+            });
         }
         return null;
     }
 
+    private MutableModuleComponentResolveMetadata readModuleDescriptor(LocallyAvailableResource resource) {
+        try {
+            KryoBackedDecoder decoder = new KryoBackedDecoder(new FileInputStream(resource.getFile()));
+            try {
+                return moduleMetadataSerializer.read(decoder, moduleIdentifierFactory);
+            } finally {
+                decoder.close();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Could not load module metadata from " + resource.getDisplayName(), e);
+        }
+    }
+
     public LocallyAvailableResource putModuleDescriptor(ModuleComponentAtRepositoryKey component, final ModuleComponentResolveMetadata metadata) {
         String filePath = getFilePath(component);
         return metaDataStore.add(filePath, new Action<File>() {
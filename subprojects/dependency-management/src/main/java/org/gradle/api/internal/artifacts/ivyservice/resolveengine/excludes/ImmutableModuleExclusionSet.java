@@ -32,10 +32,8 @@ final class ImmutableModuleExclusionSet implements Set<AbstractModuleExclusion>
     final AbstractModuleExclusion[] elements;
     private final int hashCode;
 
-    // the following fields are used as optimizations, to avoid iterating on the whole set of exclusions
-    private ImmutableSet<ModuleIdentifier> excludedModules;
-    private ImmutableList<AbstractModuleExclusion> otherExcludes;
-    private ImmutableList<AbstractModuleExclusion> artifactExcludes;
+    // used as an optimization, to avoid iterating on the whole set of exclusions
+    private volatile Lookup lookup;
 
     ImmutableModuleExclusionSet(ImmutableSet<AbstractModuleExclusion> delegate) {
         this.delegate = delegate;
@@ -43,26 +41,13 @@ final class ImmutableModuleExclusionSet implements Set<AbstractModuleExclusion>
         this.hashCode = delegate.hashCode();
     }
 
-    private void precomputeCaches() {
-        if (excludedModules != null) {
-            return;
+    private Lookup getLookup() {
+        Lookup result = lookup;
+        if (result == null) {
+            result = new Lookup(elements);
+            lookup = result;
         }
-        ImmutableSet.Builder<ModuleIdentifier> modules = ImmutableSet.builder();
-        ImmutableList.Builder<AbstractModuleExclusion> other = ImmutableList.builder();
-        ImmutableList.Builder<AbstractModuleExclusion> artifacts = ImmutableList.builder();
-        for (AbstractModuleExclusion exclusion : delegate) {
-            if (exclusion instanceof ModuleIdExcludeSpec) {
-                modules.add(((ModuleIdExcludeSpec) exclusion).moduleId);
-            } else {
-                other.add(exclusion);
-                if (exclusion instanceof ArtifactExcludeSpec || exclusion instanceof IvyPatternMatcherExcludeRuleSpec) {
-                    artifacts.add(exclusion);
-                }
-            }
-        }
-        excludedModules = modules.build();
-        otherExcludes = other.build();
-        artifactExcludes = artifacts.build();
+        return result;
     }
 
     @Override
@@ -86,18 +71,22 @@ final class ImmutableModuleExclusionSet implements Set<AbstractModuleExclusion>
     }
 
     /**
-     * This method optimizes module exclusion lookup, based on empirical data showing that the set can be very large, but would contain mostly direct module exclusion nodes. So instead of always
-     * iterating over all excluded modules, we can perform a fast lookup using a set of excluded modules first, then only iterate on the remaining exclusions.
+     * This method optimizes module exclusion lookup, based on empirical data showing that the set can be very large, but would contain mostly direct module, group or module name
+     * exclusion nodes. So instead of always iterating over all excluded modules, we can perform a fast lookup using the sets of excluded modules, groups and module names first,
+     * then only iterate on the remaining exclusions.
      *
      * @param id the module to check
      * @return true if it's excluded
      */
     boolean excludesModule(ModuleIdentifier id) {
-        precomputeCaches();
-        if (excludedModules.contains(id)) {
+        Lookup lookup = getLookup();
+        if (lookup.excludesAllModules
+            || lookup.excludedModules.contains(id)
+            || lookup.excludedGroups.contains(id.getGroup())
+            || lookup.excludedModuleNames.contains(id.getName())) {
             return true;
         }
-        for (AbstractModuleExclusion excludeSpec : otherExcludes) {
+        for (AbstractModuleExclusion excludeSpec : lookup.otherExcludes) {
             if (excludeSpec.excludeModule(id)) {
                 return true;
             }
@@ -106,8 +95,7 @@ final class ImmutableModuleExclusionSet implements Set<AbstractModuleExclusion>
     }
 
     boolean excludesArtifact(ModuleIdentifier module, IvyArtifactName artifact) {
-        precomputeCaches();
-        for (AbstractModuleExclusion excludeSpec : artifactExcludes) {
+        for (AbstractModuleExclusion excludeSpec : getLookup().artifactExcludes) {
             if (excludeSpec.excludeArtifact(module, artifact)) {
                 return true;
             }
@@ -182,4 +170,47 @@ final class ImmutableModuleExclusionSet implements Set<AbstractModuleExclusion>
     public int hashCode() {
         return hashCode;
     }
+
+    private static final class Lookup {
+        private final boolean excludesAllModules;
+        private final ImmutableSet<ModuleIdentifier> excludedModules;
+        private final ImmutableSet<String> excludedGroups;
+        private final ImmutableSet<String> excludedModuleNames;
+        private final ImmutableList<AbstractModuleExclusion> otherExcludes;
+        private final ImmutableList<AbstractModuleExclusion> artifactExcludes;
+
+        private Lookup(AbstractModuleExclusion[] elements) {
+            boolean all = false;
+            ImmutableSet.Builder<ModuleIdentifier> modules = ImmutableSet.builder();
+            ImmutableSet.Builder<String> groups = ImmutableSet.builder();
+            ImmutableSet.Builder<String> moduleNames = ImmutableSet.builder();
+            ImmutableList.Builder<AbstractModuleExclusion> other = ImmutableList.builder();
+            ImmutableList.Builder<AbstractModuleExclusion> artifacts = ImmutableList.builder();
+            for (AbstractModuleExclusion exclusion : elements) {
+                if (exclusion instanceof ModuleIdExcludeSpec) {
+                    modules.add(((ModuleIdExcludeSpec) exclusion).moduleId);
+                } else if (exclusion instanceof GroupNameExcludeSpec) {
+                    groups.add(((GroupNameExcludeSpec) exclusion).group);
+                } else if (exclusion instanceof ModuleNameExcludeSpec) {
+                    moduleNames.add(((ModuleNameExcludeSpec) exclusion).module);
+                } else if (exclusion instanceof ExcludeAllModulesSpec) {
+                    all = true;
+                } else if (exclusion instanceof ArtifactExcludeSpec) {
+                    // Excludes no modules
+                    artifacts.add(exclusion);
+                } else {
+                    other.add(exclusion);
+                    if (exclusion instanceof IvyPatternMatcherExcludeRuleSpec) {
+                        artifacts.add(exclusion);
+                    }
+                }
+            }
+            excludesAllModules = all;
+            excludedModules = modules.build();
+            excludedGroups = groups.build();
+            excludedModuleNames = moduleNames.build();
+            otherExcludes = other.build();
+            artifactExcludes = artifacts.build();
+        }
+    }
 }
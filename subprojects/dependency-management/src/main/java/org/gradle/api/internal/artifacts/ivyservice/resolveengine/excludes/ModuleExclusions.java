@@ -50,6 +50,9 @@ import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.exclude
  * <ul> <li>When a module dependency has multiple exclusions, then the resulting exclusion is the _intersection_ of those exclusions (module is excluded if excluded by _any_).</li> <li>When a module
  * is depended on via a transitive path, then the resulting exclusion is the _intersection_ of the exclusions on each leg of the path (module is excluded if excluded by _any_).</li> <li>When a module
  * is depended on via multiple paths in the graph, then the resulting exclusion is the _union_ of the exclusions on each of those paths (module is excluded if excluded by _all_).</li> </ul>
+ *
+ * <p>Exclusions are hash-consed: equal intersections and unions are represented by the same instance, and the results of intersecting or unioning
+ * 2 exclusions are memoized for the lifetime of the build, as the same pairs of exclusions are combined for many edges of the graph.</p>
  */
 public class ModuleExclusions {
     private static final ExcludeNone EXCLUDE_NONE = new ExcludeNone();
@@ -61,6 +64,9 @@ public class ModuleExclusions {
     private final Map<MergeOperation, AbstractModuleExclusion> mergeCache = Maps.newConcurrentMap();
     private final Map<ImmutableList<Exclude>, AbstractModuleExclusion> excludeAnyCache = Maps.newConcurrentMap();
     private final Map<ImmutableSet<AbstractModuleExclusion>, IntersectionExclusion> intersectionCache = Maps.newConcurrentMap();
+    private final Map<ImmutableList<AbstractModuleExclusion>, UnionExclusion> unionCache = Maps.newConcurrentMap();
+    private final Map<ExclusionPair, ModuleExclusion> intersectResults = Maps.newConcurrentMap();
+    private final Map<ExclusionPair, ModuleExclusion> unionResults = Maps.newConcurrentMap();
     private final Map<AbstractModuleExclusion[], Map<AbstractModuleExclusion[], MergeOperation>> mergeOperationCache = Maps.newIdentityHashMap();
     private final Map<ModuleIdentifier, ModuleIdExcludeSpec> moduleIdSpecs = Maps.newConcurrentMap();
     private final Map<String, ModuleNameExcludeSpec> moduleNameSpecs = Maps.newConcurrentMap();
@@ -104,6 +110,15 @@ public class ModuleExclusions {
         return cached;
     }
 
+    private UnionExclusion asUnion(ImmutableList<AbstractModuleExclusion> excludes) {
+        UnionExclusion cached = unionCache.get(excludes);
+        if (cached == null) {
+            cached = new UnionExclusion(excludes);
+            unionCache.put(excludes, cached);
+        }
+        return cached;
+    }
+
     /**
      * Returns a spec that excludes nothing.
      */
@@ -219,6 +234,16 @@ public class ModuleExclusions {
             return two;
         }
 
+        ExclusionPair key = new ExclusionPair(one, two);
+        ModuleExclusion result = intersectResults.get(key);
+        if (result == null) {
+            result = doIntersect(one, two);
+            intersectResults.put(key, result);
+        }
+        return result;
+    }
+
+    private ModuleExclusion doIntersect(ModuleExclusion one, ModuleExclusion two) {
         AbstractModuleExclusion aOne = (AbstractModuleExclusion) one;
         AbstractModuleExclusion aTwo = (AbstractModuleExclusion) two;
 
@@ -251,6 +276,16 @@ public class ModuleExclusions {
             return one;
         }
 
+        ExclusionPair key = new ExclusionPair(one, two);
+        ModuleExclusion result = unionResults.get(key);
+        if (result == null) {
+            result = doUnion(one, two);
+            unionResults.put(key, result);
+        }
+        return result;
+    }
+
+    private ModuleExclusion doUnion(ModuleExclusion one, ModuleExclusion two) {
         List<AbstractModuleExclusion> specs = new ArrayList<AbstractModuleExclusion>();
         ((AbstractModuleExclusion) one).unpackUnion(specs);
         ((AbstractModuleExclusion) two).unpackUnion(specs);
@@ -275,7 +310,7 @@ public class ModuleExclusions {
         if (specs.size() == 1) {
             return specs.get(0);
         }
-        return new UnionExclusion(specs);
+        return asUnion(ImmutableList.copyOf(specs));
     }
 
     /**
@@ -438,6 +473,39 @@ public class ModuleExclusions {
         }
     }
 
+    /**
+     * The operands of an intersection or a union of 2 exclusions.
+     */
+    private static final class ExclusionPair {
+        private final ModuleExclusion one;
+        private final ModuleExclusion two;
+        private final int hashCode;
+
+        private ExclusionPair(ModuleExclusion one, ModuleExclusion two) {
+            this.one = one;
+            this.two = two;
+            this.hashCode = 31 * one.hashCode() + two.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            ExclusionPair that = (ExclusionPair) o;
+            return hashCode == that.hashCode && one.equals(that.one) && two.equals(that.two);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
     private static final class MergeOperation {
         private final AbstractModuleExclusion[] one;
         private final AbstractModuleExclusion[] two;
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import com.google.common.collect.Sets;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Speculatively resolves the metadata of the components that a dependency graph is likely to contain, ahead of the traversal of the graph.
+ *
+ * <p>Starting from the outgoing edges of each node that is visited, the dependencies declared by the metadata of each resolved component are
+ * prefetched in turn, breadth first. This way the metadata of the whole frontier of the graph is downloaded at the same time, rather than one
+ * level of the graph at a time. The resolved metadata ends up in the metadata caches of the repositories, where the traversal of the graph finds it.</p>
+ *
+ * <p>Only dependencies on fixed versions of external modules are prefetched, and failures are ignored: the traversal of the graph reports them.
+ * The number of concurrent downloads is bounded, and shared by all resolutions of the build. Prefetching is disabled unless a maximum concurrency is
+ * set using the {@value #MAX_CONCURRENCY_PROPERTY} system property.</p>
+ */
+public class ComponentMetadataPrefetcher implements Stoppable {
+    public static final String MAX_CONCURRENCY_PROPERTY = "org.gradle.internal.resolution.prefetch.max-concurrency";
+    public static final ComponentMetadataPrefetcher DISABLED = new ComponentMetadataPrefetcher(null, null, 0);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ComponentMetadataPrefetcher.class);
+
+    private final ExecutorFactory executorFactory;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final int maxConcurrency;
+    private ManagedExecutor executor;
+
+    public ComponentMetadataPrefetcher(ExecutorFactory executorFactory, VersionSelectorScheme versionSelectorScheme, int maxConcurrency) {
+        this.executorFactory = executorFactory;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public static int getConfiguredMaxConcurrency() {
+        return Integer.getInteger(MAX_CONCURRENCY_PROPERTY, 0);
+    }
+
+    public boolean isEnabled() {
+        return maxConcurrency > 0;
+    }
+
+    /**
+     * Starts prefetching metadata for a single resolution, using the given resolver.
+     */
+    Session startSession(ComponentMetaDataResolver resolver) {
+        return new Session(resolver, isEnabled() ? getExecutor() : null);
+    }
+
+    private synchronized Executor getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("Metadata prefetch", maxConcurrency);
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.stop();
+            executor = null;
+        }
+    }
+
+    class Session {
+        private final ComponentMetaDataResolver resolver;
+        private final Executor executor;
+        private final Set<ModuleComponentIdentifier> seen = Sets.newConcurrentHashSet();
+        private volatile boolean stopped;
+
+        private Session(ComponentMetaDataResolver resolver, Executor executor) {
+            this.resolver = resolver;
+            this.executor = executor;
+        }
+
+        /**
+         * Prefetches the metadata of the targets of the given edges, and then of their dependencies.
+         */
+        void prefetchTargetsOf(List<EdgeState> edges) {
+            if (executor == null) {
+                return;
+            }
+            for (EdgeState edge : edges) {
+                prefetch(edge.getDependencyMetadata());
+            }
+        }
+
+        private void prefetchDependenciesOf(ComponentResolveMetadata metadata) {
+            ConfigurationMetadata defaultConfiguration = metadata.getConfiguration(Dependency.DEFAULT_CONFIGURATION);
+            List<? extends DependencyMetadata> dependencies = defaultConfiguration != null ? defaultConfiguration.getDependencies() : metadata.getDependencies();
+            for (DependencyMetadata dependency : dependencies) {
+                if (!dependency.isOptional()) {
+                    prefetch(dependency);
+                }
+            }
+        }
+
+        void prefetch(DependencyMetadata dependency) {
+            ComponentSelector selector = dependency.getSelector();
+            if (stopped || !(selector instanceof ModuleComponentSelector)) {
+                return;
+            }
+            ModuleComponentSelector moduleSelector = (ModuleComponentSelector) selector;
+            if (moduleSelector.getVersion().isEmpty() || versionSelectorScheme.parseSelector(moduleSelector.getVersion()).isDynamic()) {
+                return;
+            }
+            ModuleComponentIdentifier id = DefaultModuleComponentIdentifier.newId(moduleSelector.getGroup(), moduleSelector.getModule(), moduleSelector.getVersion());
+            if (!seen.add(id)) {
+                return;
+            }
+            try {
+                executor.execute(new PrefetchMetadata(id, dependency));
+            } catch (RejectedExecutionException e) {
+                // The build has finished
+            }
+        }
+
+        private class PrefetchMetadata implements Runnable {
+            private final ModuleComponentIdentifier id;
+            private final DependencyMetadata dependency;
+
+            PrefetchMetadata(ModuleComponentIdentifier id, DependencyMetadata dependency) {
+                this.id = id;
+                this.dependency = dependency;
+            }
+
+            @Override
+            public void run() {
+                if (stopped) {
+                    return;
+                }
+                DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+                try {
+                    resolver.resolve(id, DefaultComponentOverrideMetadata.forDependency(dependency), result);
+                } catch (Exception e) {
+                    LOGGER.debug("Could not prefetch metadata for {}.", id, e);
+                    return;
+                }
+                if (result.getFailure() == null && dependency.isTransitive()) {
+                    prefetchDependenciesOf(result.getMetaData());
+                }
+            }
+        }
+
+        /**
+         * Stops prefetching. Metadata that is being downloaded is still added to the caches.
+         */
+        void stop() {
+            stopped = true;
+        }
+    }
+}
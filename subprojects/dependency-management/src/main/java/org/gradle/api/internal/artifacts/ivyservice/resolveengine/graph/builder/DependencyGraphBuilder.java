@@ -72,6 +72,7 @@ public class DependencyGraphBuilder {
     private final ModuleReplacementsData moduleReplacementsData;
     private final DependencySubstitutionApplicator dependencySubstitutionApplicator;
     private final ComponentSelectorConverter componentSelectorConverter;
+    private final ComponentMetadataPrefetcher metadataPrefetcher;
 
     public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver, ComponentMetaDataResolver componentMetaDataResolver,
                                   ResolveContextToComponentResolver resolveContextToComponentResolver,
@@ -79,7 +80,8 @@ public class DependencyGraphBuilder {
                                   AttributesSchemaInternal attributesSchema,
                                   ModuleExclusions moduleExclusions,
                                   BuildOperationExecutor buildOperationExecutor, ModuleReplacementsData moduleReplacementsData,
-                                  DependencySubstitutionApplicator dependencySubstitutionApplicator, ComponentSelectorConverter componentSelectorConverter) {
+                                  DependencySubstitutionApplicator dependencySubstitutionApplicator, ComponentSelectorConverter componentSelectorConverter,
+                                  ComponentMetadataPrefetcher metadataPrefetcher) {
         this.idResolver = componentIdResolver;
         this.metaDataResolver = componentMetaDataResolver;
         this.moduleResolver = resolveContextToComponentResolver;
@@ -91,6 +93,7 @@ public class DependencyGraphBuilder {
         this.moduleReplacementsData = moduleReplacementsData;
         this.dependencySubstitutionApplicator = dependencySubstitutionApplicator;
         this.componentSelectorConverter = componentSelectorConverter;
+        this.metadataPrefetcher = metadataPrefetcher;
     }
 
     public void resolve(final ResolveContext resolveContext, final DependencyGraphVisitor modelVisitor) {
@@ -102,7 +105,12 @@ public class DependencyGraphBuilder {
         final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, metaDataResolver, edgeFilter, attributesSchema, moduleExclusions, moduleReplacementsData, dependencySubstitutionApplicator, componentSelectorConverter);
         conflictHandler.registerResolver(new DirectDependencyForcingResolver(resolveState.getRoot().getComponent()));
 
-        traverseGraph(resolveState);
+        ComponentMetadataPrefetcher.Session prefetchSession = metadataPrefetcher.startSession(metaDataResolver);
+        try {
+            traverseGraph(resolveState, prefetchSession);
+        } finally {
+            prefetchSession.stop();
+        }
 
         resolveState.getRoot().getComponent().setSelectionReason(VersionSelectionReasons.ROOT);
 
@@ -113,7 +121,7 @@ public class DependencyGraphBuilder {
     /**
      * Traverses the dependency graph, resolving conflicts and building the paths from the root configuration.
      */
-    private void traverseGraph(final ResolveState resolveState) {
+    private void traverseGraph(final ResolveState resolveState, final ComponentMetadataPrefetcher.Session prefetchSession) {
         resolveState.onMoreSelected(resolveState.getRoot());
         final List<EdgeState> dependencies = Lists.newArrayList();
         final List<EdgeState> dependenciesMissingLocalMetadata = Lists.newArrayList();
@@ -133,7 +141,7 @@ public class DependencyGraphBuilder {
                 dependenciesMissingLocalMetadata.clear();
                 node.visitOutgoingDependencies(dependencies, optionalDependenciesHandler);
 
-                resolveEdges(node, dependencies, dependenciesMissingLocalMetadata, resolveState, componentIdentifierCache);
+                resolveEdges(node, dependencies, dependenciesMissingLocalMetadata, resolveState, componentIdentifierCache, prefetchSession);
             } else {
                 // We have some batched up conflicts. Resolve the first, and continue traversing the graph
                 conflictHandler.resolveNextConflict(resolveState.getReplaceSelectionWithConflictResultAction());
@@ -212,10 +220,12 @@ public class DependencyGraphBuilder {
                               final List<EdgeState> dependencies,
                               final List<EdgeState> dependenciesMissingMetadataLocally,
                               final ResolveState resolveState,
-                              final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+                              final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache,
+                              final ComponentMetadataPrefetcher.Session prefetchSession) {
         if (dependencies.isEmpty()) {
             return;
         }
+        prefetchSession.prefetchTargetsOf(dependencies);
         performSelectionSerially(dependencies, resolveState);
         computePreemptiveDownloadList(dependencies, dependenciesMissingMetadataLocally, componentIdentifierCache);
         downloadMetadataConcurrently(node, dependenciesMissingMetadataLocally);
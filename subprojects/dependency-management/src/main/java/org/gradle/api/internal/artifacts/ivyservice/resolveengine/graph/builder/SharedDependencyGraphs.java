@@ -0,0 +1,639 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.gradle.api.artifacts.ClientModule;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.DependencyArtifact;
+import org.gradle.api.artifacts.ExcludeRule;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.artifacts.ModuleDependency;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.artifacts.result.ComponentSelectionReason;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ResolveContext;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusion;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.CompositeDependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphEdge;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.internal.attributes.AttributeContainerInternal;
+import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.internal.attributes.HashableRuleChain;
+import org.gradle.cache.internal.ProducerGuard;
+import org.gradle.caching.internal.DefaultBuildCacheHasher;
+import org.gradle.internal.Factory;
+import org.gradle.internal.component.local.model.LocalFileDependencyMetadata;
+import org.gradle.internal.component.model.ComponentArtifactMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.resolve.ModuleVersionResolveException;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shares the dependency graphs traversed during a build between the configurations that declare the same dependencies, such as the
+ * classpath configurations of projects that apply the same conventions.
+ *
+ * <p>Configurations share a graph when they only depend on external modules, are not affected by any dependency rules, and declare the
+ * same dependencies, excludes, attributes, forced modules, conflict resolution and repositories, in the same order. Their attribute
+ * schemas must also declare the same matching rules, identified by their types and parameters. The graph is traversed
+ * for the first of these configurations, and replayed to the visitors of the others with the root of the graph replaced by the root
+ * of the configuration. As the visitors build all results again, the artifacts of the graph are selected for each configuration.</p>
+ *
+ * <p>A graph is not shared when it contains failures, dynamic versions or changing modules, which may resolve differently for each
+ * configuration, or when it contains the module of the configuration, which would be in conflict with the root of the graph. Shared
+ * graphs are kept in memory until the end of the build. Sharing is disabled unless the {@value #ENABLED_PROPERTY} system property is set.</p>
+ */
+public class SharedDependencyGraphs {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.resolution.shared-graphs";
+
+    private static final SharedGraph NOT_SHAREABLE = new SharedGraph();
+    private static final Comparator<Attribute<?>> ATTRIBUTE_ORDER = new Comparator<Attribute<?>>() {
+        @Override
+        public int compare(Attribute<?> left, Attribute<?> right) {
+            return left.getName().compareTo(right.getName());
+        }
+    };
+
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final boolean enabled;
+    private final ConcurrentMap<HashCode, SharedGraph> graphs = new ConcurrentHashMap<HashCode, SharedGraph>();
+    private final ProducerGuard<HashCode> producing = ProducerGuard.adaptive();
+
+    public SharedDependencyGraphs(VersionSelectorScheme versionSelectorScheme, ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+        this(versionSelectorScheme, moduleIdentifierFactory, Boolean.getBoolean(ENABLED_PROPERTY));
+    }
+
+    SharedDependencyGraphs(VersionSelectorScheme versionSelectorScheme, ImmutableModuleIdentifierFactory moduleIdentifierFactory, boolean enabled) {
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.moduleIdentifierFactory = moduleIdentifierFactory;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Resolves the dependency graph of the given context using the given builder, or replays the graph traversed for another configuration with the same inputs.
+     */
+    public void resolve(DependencyGraphBuilder builder, ResolveContext resolveContext, List<? extends ResolutionAwareRepository> repositories, GlobalDependencyResolutionRules globalRules, AttributesSchemaInternal consumerSchema, DependencyGraphVisitor visitor) {
+        HashCode key = createKey(resolveContext, repositories, globalRules, consumerSchema);
+        if (key == null) {
+            builder.resolve(resolveContext, visitor);
+            return;
+        }
+        resolve(key, builder, (ConfigurationInternal) resolveContext, visitor);
+    }
+
+    @Nullable
+    private HashCode createKey(ResolveContext resolveContext, List<? extends ResolutionAwareRepository> repositories, GlobalDependencyResolutionRules globalRules, AttributesSchemaInternal consumerSchema) {
+        if (!enabled || !(resolveContext instanceof ConfigurationInternal)) {
+            return null;
+        }
+        DefaultBuildCacheHasher hasher = new DefaultBuildCacheHasher();
+        if (!putResolutionInputs(hasher, (ConfigurationInternal) resolveContext, repositories, globalRules)) {
+            return null;
+        }
+        List<Attribute<?>> attributes = Lists.newArrayList(consumerSchema.getAttributes());
+        Collections.sort(attributes, ATTRIBUTE_ORDER);
+        for (Attribute<?> attribute : attributes) {
+            hasher.putString(attribute.getName());
+            hasher.putString(attribute.getType().getName());
+            if (!putRules(hasher, consumerSchema.compatibilityRules(attribute)) || !putRules(hasher, consumerSchema.disambiguationRules(attribute))) {
+                return null;
+            }
+        }
+        return hasher.hash();
+    }
+
+    private static boolean putRules(DefaultBuildCacheHasher hasher, Object rules) {
+        return rules instanceof HashableRuleChain && ((HashableRuleChain) rules).appendRulesTo(hasher);
+    }
+
+    /**
+     * Adds the declared inputs of the resolution of the given configuration to the given hasher, leaving out the identity of the configuration
+     * and of its module. Returns false when the configuration has inputs that cannot be hashed: dependencies on anything but external modules,
+     * or rules that affect the resolution.
+     */
+    private static boolean putResolutionInputs(DefaultBuildCacheHasher hasher, ConfigurationInternal configuration, List<? extends ResolutionAwareRepository> repositories, GlobalDependencyResolutionRules globalRules) {
+        ResolutionStrategyInternal resolutionStrategy = configuration.getResolutionStrategy();
+        if (resolutionStrategy.getDependencySubstitution().hasRules()
+            || !resolutionStrategy.getComponentSelection().getRules().isEmpty()
+            || globalRules.getDependencySubstitutionRules().hasRules()
+            || globalRules.getComponentMetadataProcessor().hasRules()
+            || globalRules.getModuleMetadataProcessor().getModuleReplacements().hasReplacements()) {
+            return false;
+        }
+
+        AttributeContainerInternal attributes = configuration.getAttributes();
+        List<Attribute<?>> keys = Lists.newArrayList(attributes.keySet());
+        Collections.sort(keys, ATTRIBUTE_ORDER);
+        for (Attribute<?> key : keys) {
+            hasher.putString(key.getName());
+            hasher.putString(String.valueOf(attributes.getAttribute(key)));
+        }
+
+        for (Configuration inherited : configuration.getHierarchy()) {
+            hasher.putString(inherited.getName());
+            hasher.putBoolean(inherited.isTransitive());
+            putExcludeRules(hasher, inherited.getExcludeRules());
+        }
+
+        for (Dependency dependency : configuration.getAllDependencies()) {
+            if (!(dependency instanceof ExternalModuleDependency) || dependency instanceof ClientModule) {
+                return false;
+            }
+            ExternalModuleDependency moduleDependency = (ExternalModuleDependency) dependency;
+            hasher.putString(String.valueOf(moduleDependency.getGroup()));
+            hasher.putString(moduleDependency.getName());
+            hasher.putString(String.valueOf(moduleDependency.getVersion()));
+            hasher.putString(String.valueOf(moduleDependency.getTargetConfiguration()));
+            hasher.putBoolean(moduleDependency.isTransitive());
+            hasher.putBoolean(moduleDependency.isForce());
+            hasher.putBoolean(moduleDependency.isChanging());
+            putExcludeRules(hasher, moduleDependency.getExcludeRules());
+            for (DependencyArtifact artifact : moduleDependency.getArtifacts()) {
+                hasher.putString(artifact.getName());
+                hasher.putString(String.valueOf(artifact.getType()));
+                hasher.putString(String.valueOf(artifact.getExtension()));
+                hasher.putString(String.valueOf(artifact.getClassifier()));
+                hasher.putString(String.valueOf(artifact.getUrl()));
+            }
+        }
+
+        for (ModuleVersionSelector forcedModule : resolutionStrategy.getForcedModules()) {
+            hasher.putString(forcedModule.toString());
+        }
+        hasher.putString(resolutionStrategy.getConflictResolution().name());
+
+        for (ResolutionAwareRepository repository : repositories) {
+            hasher.putString(repository.createResolver().getId());
+        }
+        return true;
+    }
+
+    private static void putExcludeRules(DefaultBuildCacheHasher hasher, Set<ExcludeRule> excludeRules) {
+        hasher.putInt(excludeRules.size());
+        for (ExcludeRule excludeRule : excludeRules) {
+            hasher.putString(String.valueOf(excludeRule.getGroup()));
+            hasher.putString(String.valueOf(excludeRule.getModule()));
+        }
+    }
+
+    void resolve(final HashCode key, final DependencyGraphBuilder builder, final ConfigurationInternal configuration, final DependencyGraphVisitor visitor) {
+        SharedGraph graph = graphs.get(key);
+        if (graph == null) {
+            // Configurations with the same inputs wait for the first of them to traverse the graph, while other graphs are traversed concurrently
+            graph = producing.guardByKey(key, new Factory<SharedGraph>() {
+                @Override
+                public SharedGraph create() {
+                    SharedGraph existing = graphs.get(key);
+                    if (existing != null) {
+                        return existing;
+                    }
+                    GraphRecorder recorder = new GraphRecorder();
+                    builder.resolve(configuration, new CompositeDependencyGraphVisitor(visitor, recorder));
+                    graphs.put(key, recorder.shareable ? new SharedGraph(configuration.getAllDependencies(), recorder) : NOT_SHAREABLE);
+                    return null;
+                }
+            });
+            if (graph == null) {
+                // The graph was traversed for this configuration
+                return;
+            }
+        }
+        if (graph != NOT_SHAREABLE) {
+            ComponentResolveMetadata rootMetadata = configuration.toRootComponentMetaData();
+            if (!graph.modules.contains(rootMetadata.getId().getModule())) {
+                graph.replay(rootMetadata, configuration.getName(), configuration.getAllDependencies(), visitor);
+                return;
+            }
+        }
+        builder.resolve(configuration, visitor);
+    }
+
+    /**
+     * Records the graph visited for one configuration. Stops recording as soon as the graph turns out not to be shareable.
+     */
+    private class GraphRecorder implements DependencyGraphVisitor {
+        private final List<DependencyGraphSelector> selectors = Lists.newArrayList();
+        private final List<DependencyGraphNode> nodes = Lists.newArrayList();
+        private final List<DependencyGraphNode> edgeVisits = Lists.newArrayList();
+        private final Set<ModuleIdentifier> modules = Sets.newHashSet();
+        private DependencyGraphNode root;
+        private boolean shareable = true;
+
+        @Override
+        public void start(DependencyGraphNode root) {
+            this.root = root;
+        }
+
+        @Override
+        public void visitSelector(DependencyGraphSelector selector) {
+            if (!shareable) {
+                return;
+            }
+            selectors.add(selector);
+            ComponentSelector requested = selector.getRequested();
+            if (requested instanceof ModuleComponentSelector) {
+                ModuleComponentSelector moduleSelector = (ModuleComponentSelector) requested;
+                modules.add(moduleIdentifierFactory.module(moduleSelector.getGroup(), moduleSelector.getModule()));
+                if (versionSelectorScheme.parseSelector(moduleSelector.getVersion()).isDynamic()) {
+                    notShareable();
+                }
+            }
+        }
+
+        @Override
+        public void visitNode(DependencyGraphNode node) {
+            if (!shareable) {
+                return;
+            }
+            nodes.add(node);
+            if (node != root) {
+                DependencyGraphComponent component = node.getOwner();
+                modules.add(component.getModuleVersion().getModule());
+                if (component.getMetadata().isChanging()) {
+                    notShareable();
+                }
+            }
+        }
+
+        @Override
+        public void visitEdges(DependencyGraphNode node) {
+            if (!shareable) {
+                return;
+            }
+            edgeVisits.add(node);
+            for (DependencyGraphEdge edge : node.getOutgoingEdges()) {
+                if (edge.getFailure() != null || edge.getSelected() == null || edge.getSelected().equals(root.getOwner().getResultId())) {
+                    notShareable();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void finish(DependencyGraphNode root) {
+        }
+
+        private void notShareable() {
+            shareable = false;
+            selectors.clear();
+            nodes.clear();
+            edgeVisits.clear();
+            modules.clear();
+        }
+    }
+
+    /**
+     * The graph visited for one configuration, which can be visited again for another configuration.
+     */
+    private static class SharedGraph {
+        private final List<Dependency> declaredDependencies;
+        private final DependencyGraphNode root;
+        private final List<DependencyGraphSelector> selectors;
+        private final List<DependencyGraphNode> nodes;
+        private final List<DependencyGraphNode> edgeVisits;
+        private final Set<ModuleIdentifier> modules;
+
+        SharedGraph(Iterable<Dependency> declaredDependencies, GraphRecorder recorder) {
+            this.declaredDependencies = ImmutableList.copyOf(declaredDependencies);
+            this.root = recorder.root;
+            this.selectors = ImmutableList.copyOf(recorder.selectors);
+            this.nodes = ImmutableList.copyOf(recorder.nodes);
+            this.edgeVisits = ImmutableList.copyOf(recorder.edgeVisits);
+            this.modules = ImmutableSet.copyOf(recorder.modules);
+        }
+
+        private SharedGraph() {
+            this.declaredDependencies = ImmutableList.of();
+            this.root = null;
+            this.selectors = ImmutableList.of();
+            this.nodes = ImmutableList.of();
+            this.edgeVisits = ImmutableList.of();
+            this.modules = ImmutableSet.of();
+        }
+
+        void replay(ComponentResolveMetadata rootMetadata, String configurationName, Iterable<Dependency> dependencies, DependencyGraphVisitor visitor) {
+            // The configurations declare equivalent dependencies in the same order
+            Map<Dependency, Dependency> dependencyMapping = new IdentityHashMap<Dependency, Dependency>();
+            int index = 0;
+            for (Dependency dependency : dependencies) {
+                if (index < declaredDependencies.size()) {
+                    dependencyMapping.put(declaredDependencies.get(index++), dependency);
+                }
+            }
+
+            ReplacedRootNode replacedRoot = new ReplacedRootNode(root, rootMetadata, configurationName);
+            Map<DependencyGraphNode, DependencyGraphNode> replacedNodes = Maps.newIdentityHashMap();
+            replacedNodes.put(root, replacedRoot);
+            Map<DependencyGraphEdge, DependencyGraphEdge> replacedEdges = Maps.newIdentityHashMap();
+            for (DependencyGraphEdge edge : root.getOutgoingEdges()) {
+                ModuleDependency moduleDependency = (ModuleDependency) dependencyMapping.get(edge.getModuleDependency());
+                ReplacedRootEdge replacedEdge = new ReplacedRootEdge(edge, replacedRoot, moduleDependency != null ? moduleDependency : edge.getModuleDependency(), replacedNodes);
+                replacedEdges.put(edge, replacedEdge);
+                replacedRoot.outgoingEdges.add(replacedEdge);
+            }
+            for (DependencyGraphEdge edge : root.getOutgoingEdges()) {
+                for (DependencyGraphNode target : edge.getTargets()) {
+                    if (!replacedNodes.containsKey(target)) {
+                        replacedNodes.put(target, new FirstLevelNode(target, replacedEdges));
+                    }
+                }
+            }
+
+            visitor.start(replacedRoot);
+            for (DependencyGraphSelector selector : selectors) {
+                visitor.visitSelector(selector);
+            }
+            for (DependencyGraphNode node : nodes) {
+                visitor.visitNode(replaced(node, replacedNodes));
+            }
+            for (DependencyGraphNode node : edgeVisits) {
+                visitor.visitEdges(replaced(node, replacedNodes));
+            }
+            visitor.finish(replacedRoot);
+        }
+    }
+
+    private static DependencyGraphNode replaced(DependencyGraphNode node, Map<DependencyGraphNode, DependencyGraphNode> replacedNodes) {
+        DependencyGraphNode replacement = replacedNodes.get(node);
+        return replacement != null ? replacement : node;
+    }
+
+    /**
+     * The root of a shared graph, as seen by the configuration that the graph is replayed for.
+     */
+    private static class ReplacedRootNode implements DependencyGraphNode {
+        private final DependencyGraphNode delegate;
+        private final ReplacedRootComponent owner;
+        private final ResolvedConfigurationIdentifier resolvedConfigurationId;
+        private final ConfigurationMetadata metadata;
+        private final List<DependencyGraphEdge> outgoingEdges = Lists.newArrayList();
+
+        ReplacedRootNode(DependencyGraphNode delegate, ComponentResolveMetadata rootMetadata, String configurationName) {
+            this.delegate = delegate;
+            this.owner = new ReplacedRootComponent(delegate.getOwner(), rootMetadata);
+            this.resolvedConfigurationId = new ResolvedConfigurationIdentifier(rootMetadata.getId(), configurationName);
+            this.metadata = rootMetadata.getConfiguration(configurationName);
+        }
+
+        @Override
+        public Long getNodeId() {
+            return delegate.getNodeId();
+        }
+
+        @Override
+        public boolean isRoot() {
+            return true;
+        }
+
+        @Override
+        public ResolvedConfigurationIdentifier getResolvedConfigurationId() {
+            return resolvedConfigurationId;
+        }
+
+        @Override
+        public DependencyGraphComponent getOwner() {
+            return owner;
+        }
+
+        @Override
+        public Set<? extends DependencyGraphEdge> getIncomingEdges() {
+            return delegate.getIncomingEdges();
+        }
+
+        @Override
+        public Collection<? extends DependencyGraphEdge> getOutgoingEdges() {
+            return outgoingEdges;
+        }
+
+        @Override
+        public Set<? extends LocalFileDependencyMetadata> getOutgoingFileEdges() {
+            return delegate.getOutgoingFileEdges();
+        }
+
+        @Override
+        public ConfigurationMetadata getMetadata() {
+            return metadata;
+        }
+    }
+
+    private static class ReplacedRootComponent implements DependencyGraphComponent {
+        private final DependencyGraphComponent delegate;
+        private final ComponentResolveMetadata metadata;
+
+        ReplacedRootComponent(DependencyGraphComponent delegate, ComponentResolveMetadata metadata) {
+            this.delegate = delegate;
+            this.metadata = metadata;
+        }
+
+        @Override
+        public Long getResultId() {
+            return delegate.getResultId();
+        }
+
+        @Override
+        public ModuleVersionIdentifier getModuleVersion() {
+            return metadata.getId();
+        }
+
+        @Override
+        public ComponentSelectionReason getSelectionReason() {
+            return delegate.getSelectionReason();
+        }
+
+        @Override
+        public ComponentIdentifier getComponentId() {
+            return metadata.getComponentId();
+        }
+
+        @Override
+        public ComponentResolveMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public Set<? extends DependencyGraphComponent> getDependents() {
+            return delegate.getDependents();
+        }
+    }
+
+    /**
+     * An edge from the root of a shared graph, which refers to the dependency declared by the configuration that the graph is replayed for.
+     */
+    private static class ReplacedRootEdge implements DependencyGraphEdge {
+        private final DependencyGraphEdge delegate;
+        private final DependencyGraphNode from;
+        private final ModuleDependency moduleDependency;
+        private final Map<DependencyGraphNode, DependencyGraphNode> replacedNodes;
+
+        ReplacedRootEdge(DependencyGraphEdge delegate, DependencyGraphNode from, ModuleDependency moduleDependency, Map<DependencyGraphNode, DependencyGraphNode> replacedNodes) {
+            this.delegate = delegate;
+            this.from = from;
+            this.moduleDependency = moduleDependency;
+            this.replacedNodes = replacedNodes;
+        }
+
+        @Override
+        public DependencyGraphNode getFrom() {
+            return from;
+        }
+
+        @Override
+        public DependencyGraphSelector getSelector() {
+            return delegate.getSelector();
+        }
+
+        @Override
+        public ModuleExclusion getExclusions(ModuleExclusions moduleExclusions) {
+            return delegate.getExclusions(moduleExclusions);
+        }
+
+        @Override
+        public Set<ComponentArtifactMetadata> getArtifacts(ConfigurationMetadata metaData) {
+            return delegate.getArtifacts(metaData);
+        }
+
+        @Nullable
+        @Override
+        public ModuleDependency getModuleDependency() {
+            return moduleDependency;
+        }
+
+        @Override
+        public Iterable<? extends DependencyGraphNode> getTargets() {
+            List<DependencyGraphNode> targets = Lists.newArrayList();
+            for (DependencyGraphNode target : delegate.getTargets()) {
+                targets.add(replaced(target, replacedNodes));
+            }
+            return targets;
+        }
+
+        @Override
+        public ComponentSelector getRequested() {
+            return delegate.getRequested();
+        }
+
+        @Nullable
+        @Override
+        public ModuleVersionResolveException getFailure() {
+            return delegate.getFailure();
+        }
+
+        @Nullable
+        @Override
+        public Long getSelected() {
+            return delegate.getSelected();
+        }
+
+        @Nullable
+        @Override
+        public ComponentSelectionReason getReason() {
+            return delegate.getReason();
+        }
+    }
+
+    /**
+     * A node that the root of a shared graph depends on, whose incoming edges from the root are replaced.
+     */
+    private static class FirstLevelNode implements DependencyGraphNode {
+        private final DependencyGraphNode delegate;
+        private final Map<DependencyGraphEdge, DependencyGraphEdge> replacedEdges;
+
+        FirstLevelNode(DependencyGraphNode delegate, Map<DependencyGraphEdge, DependencyGraphEdge> replacedEdges) {
+            this.delegate = delegate;
+            this.replacedEdges = replacedEdges;
+        }
+
+        @Override
+        public Long getNodeId() {
+            return delegate.getNodeId();
+        }
+
+        @Override
+        public boolean isRoot() {
+            return false;
+        }
+
+        @Override
+        public ResolvedConfigurationIdentifier getResolvedConfigurationId() {
+            return delegate.getResolvedConfigurationId();
+        }
+
+        @Override
+        public DependencyGraphComponent getOwner() {
+            return delegate.getOwner();
+        }
+
+        @Override
+        public Set<? extends DependencyGraphEdge> getIncomingEdges() {
+            Set<DependencyGraphEdge> incomingEdges = Sets.newLinkedHashSet();
+            for (DependencyGraphEdge edge : delegate.getIncomingEdges()) {
+                DependencyGraphEdge replacement = replacedEdges.get(edge);
+                incomingEdges.add(replacement != null ? replacement : edge);
+            }
+            return incomingEdges;
+        }
+
+        @Override
+        public Collection<? extends DependencyGraphEdge> getOutgoingEdges() {
+            return delegate.getOutgoingEdges();
+        }
+
+        @Override
+        public Set<? extends LocalFileDependencyMetadata> getOutgoingFileEdges() {
+            return delegate.getOutgoingFileEdges();
+        }
+
+        @Override
+        public ConfigurationMetadata getMetadata() {
+            return delegate.getMetadata();
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.artifacts.repositories.resolver;
 
+import org.gradle.internal.hash.HashValue;
 import org.gradle.internal.resource.ExternalResourceName;
 import org.gradle.internal.resource.ResourceExceptions;
 import org.gradle.internal.resource.local.FileStore;
@@ -58,9 +59,9 @@ public class DefaultExternalResourceAccessor implements ExternalResourceAccessor
 
         try {
             return resourceAccessor.getResource(resource, null, new CacheAwareExternalResourceAccessor.ResourceFileStore() {
-                public LocallyAvailableResource moveIntoCache(File downloadedResource) {
+                public LocallyAvailableResource moveIntoCache(File downloadedResource, HashValue sha1) {
                     String key = resource.toString();
-                    return fileStore.move(key, downloadedResource);
+                    return fileStore.move(key, downloadedResource, sha1);
                 }
             }, null);
         } catch (Exception e) {
@@ -20,6 +20,7 @@ import org.gradle.internal.component.external.model.ModuleComponentArtifactMetad
 import org.gradle.internal.component.external.model.UrlBackedArtifactMetadata;
 import org.gradle.internal.component.model.ModuleDescriptorArtifactMetadata;
 import org.gradle.internal.component.model.ModuleSource;
+import org.gradle.internal.hash.HashValue;
 import org.gradle.internal.resolve.result.ResourceAwareResolveResult;
 import org.gradle.internal.resource.ExternalResourceName;
 import org.gradle.internal.resource.ExternalResourceRepository;
@@ -111,8 +112,8 @@ class DefaultExternalResourceArtifactResolver implements ExternalResourceArtifac
             LocallyAvailableResourceCandidates localCandidates = locallyAvailableResourceFinder.findCandidates(artifact);
             try {
                 LocallyAvailableExternalResource resource = resourceAccessor.getResource(location, artifact.getId().getFileName(), new CacheAwareExternalResourceAccessor.ResourceFileStore() {
-                    public LocallyAvailableResource moveIntoCache(File downloadedResource) {
-                        return fileStore.move(artifact.getId(), downloadedResource);
+                    public LocallyAvailableResource moveIntoCache(File downloadedResource, HashValue sha1) {
+                        return fileStore.move(artifact.getId(), downloadedResource, sha1);
                     }
                 }, localCandidates);
                 if (resource != null) {
@@ -136,8 +137,8 @@ class DefaultExternalResourceArtifactResolver implements ExternalResourceArtifac
             LocallyAvailableResourceCandidates localCandidates = locallyAvailableResourceFinder.findCandidates(artifact);
             try {
                 LocallyAvailableExternalResource resource = resourceAccessor.getResource(location, null, new CacheAwareExternalResourceAccessor.ResourceFileStore() {
-                    public LocallyAvailableResource moveIntoCache(File downloadedResource) {
-                        return fileStore.move(artifact.getId(), downloadedResource);
+                    public LocallyAvailableResource moveIntoCache(File downloadedResource, HashValue sha1) {
+                        return fileStore.move(artifact.getId(), downloadedResource, sha1);
                     }
                 }, localCandidates);
                 if (resource != null) {
@@ -21,6 +21,7 @@ import org.apache.ivy.util.XMLHelper;
 import org.gradle.api.resources.MissingResourceException;
 import org.gradle.api.resources.ResourceException;
 import org.gradle.internal.ErroringAction;
+import org.gradle.internal.hash.HashValue;
 import org.gradle.internal.resource.ExternalResource;
 import org.gradle.internal.resource.ExternalResourceName;
 import org.gradle.internal.resource.local.FileStore;
@@ -60,9 +61,9 @@ class MavenMetadataLoader {
     private void parseMavenMetadataInfo(final ExternalResourceName metadataLocation, final MavenMetadata metadata) throws IOException {
         ExternalResource resource = cacheAwareExternalResourceAccessor.getResource(metadataLocation, null, new CacheAwareExternalResourceAccessor.ResourceFileStore() {
             @Override
-            public LocallyAvailableResource moveIntoCache(File downloadedResource) {
+            public LocallyAvailableResource moveIntoCache(File downloadedResource, HashValue sha1) {
                 String key = metadataLocation.toString();
-                return resourcesFileStore.move(key, downloadedResource);
+                return resourcesFileStore.move(key, downloadedResource, sha1);
             }
         }, null);
         if (resource == null) {
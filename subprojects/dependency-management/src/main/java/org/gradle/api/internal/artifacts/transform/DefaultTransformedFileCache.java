@@ -42,19 +42,27 @@ import org.gradle.internal.serialize.BaseSerializerFactory;
 import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.ListSerializer;
 import org.gradle.internal.util.BiFunction;
+import org.gradle.util.GFileUtils;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static org.gradle.api.internal.artifacts.ivyservice.CacheLayout.TRANSFORMS_META_DATA;
 import static org.gradle.api.internal.artifacts.ivyservice.CacheLayout.TRANSFORMS_STORE;
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class DefaultTransformedFileCache implements TransformedFileCache, Stoppable, RootBuildLifecycleListener {
+    // Staged outputs older than this that are still marked as in progress were left behind by a process that crashed
+    private static final long MAX_STAGING_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
     private final PersistentCache cache;
     private final PersistentIndexedCache<HashCode, List<File>> indexedCache;
+    private final File filesOutputDirectory;
     private final FileStore<String> fileStore;
     private final ProducerGuard<HashCode> producing = ProducerGuard.adaptive();
     private final Map<HashCode, List<File>> resultHashToResult = new ConcurrentHashMap<HashCode, List<File>>();
@@ -63,7 +71,7 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
     public DefaultTransformedFileCache(ArtifactCacheMetaData artifactCacheMetaData, CacheRepository cacheRepository, InMemoryCacheDecoratorFactory cacheDecoratorFactory, FileSystemSnapshotter fileSystemSnapshotter) {
         this.fileSystemSnapshotter = fileSystemSnapshotter;
         File transformsStoreDirectory = artifactCacheMetaData.getTransformsStoreDirectory();
-        File filesOutputDirectory = new File(transformsStoreDirectory, TRANSFORMS_STORE.getKey());
+        filesOutputDirectory = new File(transformsStoreDirectory, TRANSFORMS_STORE.getKey());
         fileStore = new DefaultPathKeyFileStore(filesOutputDirectory);
         cache = cacheRepository
                 .cache(transformsStoreDirectory)
@@ -101,7 +109,7 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
         inputFileSnapshot.appendToHasher(hasher);
         final HashCode resultHash = hasher.hash();
 
-        // Apply locking so that only this process is writing to the file store and only a single thread is running this particular transform
+        // Apply locking so that only a single thread is running this particular transform
         return producing.guardByKey(resultHash, new Factory<List<File>>() {
             @Override
             public List<File> create() {
@@ -113,34 +121,16 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
                 files = cache.withFileLock(new Factory<List<File>>() {
                     @Override
                     public List<File> create() {
-                        List<File> files = indexedCache.get(resultHash);
-                        if (files != null) {
-                            boolean allExist = true;
-                            for (File file : files) {
-                                if (!file.exists()) {
-                                    allExist = false;
-                                    break;
-                                }
-                            }
-                            if (allExist) {
-                                return files;
-                            }
-                            // Else, recreate outputs
-                        }
-
-                        // File store takes care of cleaning up on failure/crash
-                        String key = inputFile.getName() + "/" + resultHash;
-                        TransformAction action = new TransformAction(transformer, inputFile);
-                        try {
-                            fileStore.add(key, action);
-                        } catch (FileStoreAddActionException e) {
-                            throw UncheckedException.throwAsUncheckedException(e.getCause());
+                        List<File> previousResult = getPreviousResult(resultHash);
+                        if (previousResult != null) {
+                            removeStaleStagingDirs(inputFile, resultHash);
                         }
-
-                        indexedCache.put(resultHash, action.result);
-                        return action.result;
+                        return previousResult;
                     }
                 });
+                if (files == null) {
+                    files = transform(inputFile, resultHash, transformer);
+                }
 
                 resultHashToResult.put(resultHash, files);
                 return files;
@@ -148,6 +138,97 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
         });
     }
 
+    @Nullable
+    private List<File> getPreviousResult(HashCode resultHash) {
+        List<File> files = indexedCache.get(resultHash);
+        if (files == null) {
+            return null;
+        }
+        for (File file : files) {
+            if (!file.exists()) {
+                // Recreate outputs
+                return null;
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Runs the transform without holding the file lock, so that transforms are not serialized with the transforms of other processes.
+     * The outputs are produced in a location owned by this process, and moved into place while holding the file lock, unless another
+     * process has produced them in the meantime. Whenever the outputs are found in place, the locations left behind by processes that staged
+     * the same outputs and crashed are removed.
+     */
+    private List<File> transform(final File inputFile, final HashCode resultHash, BiFunction<List<File>, File, File> transformer) {
+        final String key = inputFile.getName() + "/" + resultHash;
+        String stagingKey = key + "-" + UUID.randomUUID();
+        // File store removes the staged outputs when the transform fails
+        TransformAction action = new TransformAction(transformer, inputFile);
+        final File stagingDir;
+        try {
+            stagingDir = fileStore.add(stagingKey, action).getFile();
+        } catch (FileStoreAddActionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+        final List<File> stagedFiles = action.result;
+
+        return cache.withFileLock(new Factory<List<File>>() {
+            @Override
+            public List<File> create() {
+                List<File> files = getPreviousResult(resultHash);
+                if (files != null) {
+                    GFileUtils.deleteQuietly(stagingDir);
+                } else {
+                    File outputDir = fileStore.move(key, stagingDir).getFile();
+                    files = relocate(stagedFiles, stagingDir, outputDir);
+                    indexedCache.put(resultHash, files);
+                }
+                removeStaleStagingDirs(inputFile, resultHash);
+                return files;
+            }
+        });
+    }
+
+    /**
+     * Removes the outputs staged for the given result by other processes that did not move them into place. Outputs that are no longer marked as
+     * in progress are no longer needed, as the process that staged them will use the result that is in place. Outputs that are still marked as in
+     * progress may belong to a transform that is still running, so they are only removed once they are old enough to have been left behind by a crash.
+     */
+    private void removeStaleStagingDirs(File inputFile, HashCode resultHash) {
+        File[] candidates = new File(filesOutputDirectory, inputFile.getName()).listFiles();
+        if (candidates == null) {
+            return;
+        }
+        String stagingPrefix = resultHash + "-";
+        long staleBefore = System.currentTimeMillis() - MAX_STAGING_AGE_MILLIS;
+        for (File candidate : candidates) {
+            String name = candidate.getName();
+            if (!name.startsWith(stagingPrefix) || name.endsWith(DefaultPathKeyFileStore.IN_PROGRESS_MARKER_FILE_SUFFIX)) {
+                continue;
+            }
+            File markerFile = new File(candidate.getParentFile(), name + DefaultPathKeyFileStore.IN_PROGRESS_MARKER_FILE_SUFFIX);
+            if (!markerFile.exists() || markerFile.lastModified() < staleBefore) {
+                GFileUtils.deleteQuietly(candidate);
+                GFileUtils.deleteQuietly(markerFile);
+            }
+        }
+    }
+
+    private static List<File> relocate(List<File> files, File fromDir, File toDir) {
+        String fromPrefix = fromDir.getPath() + File.separator;
+        ImmutableList.Builder<File> relocated = ImmutableList.builder();
+        for (File file : files) {
+            if (file.equals(fromDir)) {
+                relocated.add(toDir);
+            } else if (file.getPath().startsWith(fromPrefix)) {
+                relocated.add(new File(toDir, file.getPath().substring(fromPrefix.length())));
+            } else {
+                relocated.add(file);
+            }
+        }
+        return relocated.build();
+    }
+
     private static class TransformAction implements Action<File> {
         private final BiFunction<List<File>, File, File> transformer;
         private final File inputFile;
@@ -17,8 +17,10 @@
 package org.gradle.api.internal.attributes;
 
 import org.gradle.api.Action;
+import org.gradle.api.Named;
 import org.gradle.api.attributes.CompatibilityCheckDetails;
 import org.gradle.api.attributes.MultipleCandidatesDetails;
+import org.gradle.caching.internal.BuildCacheHasher;
 
 import java.util.Comparator;
 
@@ -30,4 +32,22 @@ public abstract class AttributeMatchingRules {
     public static <T> Action<? super MultipleCandidatesDetails<T>> orderedDisambiguation(Comparator<? super T> comparator, boolean pickFirst) {
         return new DefaultOrderedDisambiguationRule<T>(comparator, pickFirst);
     }
+
+    /**
+     * Adds a rule that is instantiated from the given type and parameters to the given hasher. Returns false when a parameter has no stable value to hash.
+     */
+    static boolean appendInstantiatingRule(BuildCacheHasher hasher, Class<?> rule, Object[] params) {
+        hasher.putString(rule.getName());
+        hasher.putInt(params.length);
+        for (Object param : params) {
+            if (param instanceof Named) {
+                hasher.putString(((Named) param).getName());
+            } else if (param instanceof String || param instanceof Number || param instanceof Boolean || param instanceof Enum) {
+                hasher.putString(param.toString());
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
 }
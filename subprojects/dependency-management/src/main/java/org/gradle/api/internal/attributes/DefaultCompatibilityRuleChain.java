@@ -22,13 +22,14 @@ import org.gradle.api.attributes.AttributeCompatibilityRule;
 import org.gradle.api.attributes.CompatibilityCheckDetails;
 import org.gradle.api.attributes.CompatibilityRuleChain;
 import org.gradle.api.internal.DefaultActionConfiguration;
+import org.gradle.caching.internal.BuildCacheHasher;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.model.internal.type.ModelType;
 
 import java.util.Comparator;
 import java.util.List;
 
-public class DefaultCompatibilityRuleChain<T> implements CompatibilityRuleChain<T>, CompatibilityRule<T> {
+public class DefaultCompatibilityRuleChain<T> implements CompatibilityRuleChain<T>, CompatibilityRule<T>, HashableRuleChain {
     private static final Object[] NO_PARAMS = new Object[0];
     private final List<Action<? super CompatibilityCheckDetails<T>>> rules = Lists.newArrayList();
     private final Instantiator instantiator;
@@ -71,6 +72,17 @@ public class DefaultCompatibilityRuleChain<T> implements CompatibilityRuleChain<
         }
     }
 
+    @Override
+    public boolean appendRulesTo(BuildCacheHasher hasher) {
+        hasher.putInt(rules.size());
+        for (Object rule : rules) {
+            if (!(rule instanceof InstantiatingAction) || !((InstantiatingAction<?>) rule).appendTo(hasher)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static class InstantiatingAction<T> implements Action<CompatibilityCheckDetails<T>> {
         private final Class<? extends AttributeCompatibilityRule<T>> rule;
         private final Object[] params;
@@ -82,6 +94,10 @@ public class DefaultCompatibilityRuleChain<T> implements CompatibilityRuleChain<
             this.instantiator = instantiator;
         }
 
+        boolean appendTo(BuildCacheHasher hasher) {
+            return AttributeMatchingRules.appendInstantiatingRule(hasher, rule, params);
+        }
+
         @Override
         public void execute(CompatibilityCheckDetails<T> details) {
             try {
@@ -23,13 +23,14 @@ import org.gradle.api.attributes.AttributeDisambiguationRule;
 import org.gradle.api.attributes.DisambiguationRuleChain;
 import org.gradle.api.attributes.MultipleCandidatesDetails;
 import org.gradle.api.internal.DefaultActionConfiguration;
+import org.gradle.caching.internal.BuildCacheHasher;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.model.internal.type.ModelType;
 
 import java.util.Comparator;
 import java.util.List;
 
-public class DefaultDisambiguationRuleChain<T> implements DisambiguationRuleChain<T>, DisambiguationRule<T> {
+public class DefaultDisambiguationRuleChain<T> implements DisambiguationRuleChain<T>, DisambiguationRule<T>, HashableRuleChain {
     private static final Object[] NO_PARAMS = new Object[0];
     private final List<Action<? super MultipleCandidatesDetails<T>>> rules = Lists.newArrayList();
     private final Instantiator instantiator;
@@ -72,6 +73,17 @@ public class DefaultDisambiguationRuleChain<T> implements DisambiguationRuleChai
         }
     }
 
+    @Override
+    public boolean appendRulesTo(BuildCacheHasher hasher) {
+        hasher.putInt(rules.size());
+        for (Object rule : rules) {
+            if (!(rule instanceof InstantiatingAction) || !((InstantiatingAction<?>) rule).appendTo(hasher)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static class InstantiatingAction<T> implements Action<MultipleCandidatesDetails<T>> {
         private final Class<? extends AttributeDisambiguationRule<T>> rule;
         private final Object[] params;
@@ -83,6 +95,10 @@ public class DefaultDisambiguationRuleChain<T> implements DisambiguationRuleChai
             this.instantiator = instantiator;
         }
 
+        boolean appendTo(BuildCacheHasher hasher) {
+            return AttributeMatchingRules.appendInstantiatingRule(hasher, rule, params);
+        }
+
         @Override
         public void execute(MultipleCandidatesDetails<T> details) {
             try {
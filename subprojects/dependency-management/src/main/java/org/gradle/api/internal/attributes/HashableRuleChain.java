@@ -0,0 +1,28 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.attributes;
+
+import org.gradle.caching.internal.BuildCacheHasher;
+
+/**
+ * A chain of attribute matching rules whose behaviour can be hashed, so that schemas which match attributes in the same way can be recognized.
+ */
+public interface HashableRuleChain {
+    /**
+     * Adds the rules of this chain to the given hasher, in order. Returns false when a rule is not identified by its type and parameters alone, such as an ordering rule.
+     */
+    boolean appendRulesTo(BuildCacheHasher hasher);
+}
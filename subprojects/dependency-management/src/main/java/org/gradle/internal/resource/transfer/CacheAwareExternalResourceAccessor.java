@@ -16,6 +16,7 @@
 
 package org.gradle.internal.resource.transfer;
 
+import org.gradle.internal.hash.HashValue;
 import org.gradle.internal.resource.ExternalResourceName;
 import org.gradle.internal.resource.local.LocallyAvailableExternalResource;
 import org.gradle.internal.resource.local.LocallyAvailableResource;
@@ -41,7 +42,9 @@ public interface CacheAwareExternalResourceAccessor {
     interface ResourceFileStore {
         /**
          * Called when a resource is to be cached. Should *move* the given file into the appropriate location and return a handle to the file.
+         *
+         * @param sha1 the SHA-1 hash of the content of the file, calculated while downloading it
          */
-        LocallyAvailableResource moveIntoCache(File downloadedResource);
+        LocallyAvailableResource moveIntoCache(File downloadedResource, HashValue sha1);
     }
 }
@@ -41,6 +41,7 @@ import org.gradle.internal.resource.local.LocallyAvailableResource;
 import org.gradle.internal.resource.local.LocallyAvailableResourceCandidates;
 import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
 import org.gradle.internal.resource.metadata.ExternalResourceMetaDataCompare;
+import org.gradle.internal.resource.transport.http.HttpRequestStatistics;
 import org.gradle.util.BuildCommencedTimeProvider;
 import org.gradle.util.GFileUtils;
 import org.slf4j.Logger;
@@ -51,8 +52,20 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Downloads external resources into a file store, reusing previously downloaded copies and locally available candidates when they are still current.
+ *
+ * <p>A cached copy that has expired is revalidated with a request for the metadata of the resource, followed by a request for its content when it
+ * has changed. When the {@value #CONDITIONAL_REVALIDATION_PROPERTY} system property is set, a cached copy that has no local candidates to compare with
+ * is instead revalidated with a single conditional request, such as an HTTP GET request with {@code If-None-Match} and {@code If-Modified-Since} headers,
+ * which only transfers the content when it has changed.</p>
+ */
 public class DefaultCacheAwareExternalResourceAccessor implements CacheAwareExternalResourceAccessor {
+    public static final String CONDITIONAL_REVALIDATION_PROPERTY = "org.gradle.internal.resource.revalidation.conditional";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultCacheAwareExternalResourceAccessor.class);
 
@@ -64,8 +77,10 @@ public class DefaultCacheAwareExternalResourceAccessor implements CacheAwareExte
     private final ExternalResourceCachePolicy externalResourceCachePolicy;
     private final ProducerGuard<ExternalResourceName> producerGuard;
     private final FileResourceRepository fileResourceRepository;
+    private final HttpRequestStatistics requestStatistics;
+    private final boolean conditionalRevalidation;
 
-    public DefaultCacheAwareExternalResourceAccessor(ExternalResourceRepository delegate, CachedExternalResourceIndex<String> cachedExternalResourceIndex, BuildCommencedTimeProvider timeProvider, TemporaryFileProvider temporaryFileProvider, CacheLockingManager cacheLockingManager, ExternalResourceCachePolicy externalResourceCachePolicy, ProducerGuard<ExternalResourceName> producerGuard, FileResourceRepository fileResourceRepository) {
+    public DefaultCacheAwareExternalResourceAccessor(ExternalResourceRepository delegate, CachedExternalResourceIndex<String> cachedExternalResourceIndex, BuildCommencedTimeProvider timeProvider, TemporaryFileProvider temporaryFileProvider, CacheLockingManager cacheLockingManager, ExternalResourceCachePolicy externalResourceCachePolicy, ProducerGuard<ExternalResourceName> producerGuard, FileResourceRepository fileResourceRepository, HttpRequestStatistics requestStatistics) {
         this.delegate = delegate;
         this.cachedExternalResourceIndex = cachedExternalResourceIndex;
         this.timeProvider = timeProvider;
@@ -74,6 +89,8 @@ public class DefaultCacheAwareExternalResourceAccessor implements CacheAwareExte
         this.externalResourceCachePolicy = externalResourceCachePolicy;
         this.producerGuard = producerGuard;
         this.fileResourceRepository = fileResourceRepository;
+        this.requestStatistics = requestStatistics;
+        this.conditionalRevalidation = Boolean.getBoolean(CONDITIONAL_REVALIDATION_PROPERTY);
     }
 
     @Nullable
@@ -98,6 +115,11 @@ public class DefaultCacheAwareExternalResourceAccessor implements CacheAwareExte
                 // We have a cached version, but it might be out of date, so we tell the upstreams to revalidate too
                 final boolean revalidate = true;
 
+                boolean hasLocalCandidates = additionalCandidates != null && !additionalCandidates.isNone();
+                if (conditionalRevalidation && cached != null && cached.getExternalResourceMetaData() != null && !hasLocalCandidates) {
+                    return revalidateAndCopyToCache(location, fileStore, cached);
+                }
+
                 // Get the metadata first to see if it's there
                 final ExternalResourceMetaData remoteMetaData = delegate.resource(location, revalidate).getMetaData();
                 if (remoteMetaData == null) {
@@ -124,7 +146,6 @@ public class DefaultCacheAwareExternalResourceAccessor implements CacheAwareExte
                 }
 
                 // Either no cached, or it's changed. See if we can find something local with the same checksum
-                boolean hasLocalCandidates = additionalCandidates != null && !additionalCandidates.isNone();
                 if (hasLocalCandidates) {
                     // The “remote” may have already given us the checksum
                     HashValue remoteChecksum = remoteMetaData.getSha1();
@@ -186,7 +207,7 @@ public class DefaultCacheAwareExternalResourceAccessor implements CacheAwareExte
             if (!localChecksum.equals(remoteChecksum)) {
                 return null;
             }
-            return moveIntoCache(source, destination, fileStore, remoteMetaData);
+            return moveIntoCache(source, destination, localChecksum, fileStore, remoteMetaData);
         } finally {
             destination.delete();
         }
@@ -206,16 +227,42 @@ public class DefaultCacheAwareExternalResourceAccessor implements CacheAwareExte
 
         // Move into cache
         try {
-            return moveIntoCache(source, downloadAction.destination, fileStore, downloadAction.metaData);
+            return moveIntoCache(source, downloadAction.destination, downloadAction.sha1, fileStore, downloadAction.metaData);
         } finally {
             downloadAction.destination.delete();
         }
     }
 
-    private LocallyAvailableExternalResource moveIntoCache(final ExternalResourceName source, final File destination, final ResourceFileStore fileStore, final ExternalResourceMetaData metaData) {
+    private LocallyAvailableExternalResource revalidateAndCopyToCache(ExternalResourceName source, ResourceFileStore fileStore, CachedExternalResource cached) {
+        // The content is only downloaded when the cached version is out of date
+        DownloadAction downloadAction = new DownloadAction(source);
+        ExternalResourceReadResult<Object> result;
+        try {
+            result = delegate.withProgressLogging().resourceIfModified(source, cached.getExternalResourceMetaData()).withContentIfPresent(downloadAction);
+        } catch (Exception e) {
+            throw ResourceExceptions.getFailed(source.getUri(), e);
+        }
+        if (result == null) {
+            return null;
+        }
+        if (downloadAction.metaData == null) {
+            LOGGER.info("Cached resource {} is up-to-date (lastModified: {}).", source, cached.getExternalLastModified());
+            // Update the cache entry in the index: this resets the age of the cached entry to zero
+            cachedExternalResourceIndex.store(source.toString(), cached.getCachedFile(), cached.getExternalResourceMetaData());
+            return fileResourceRepository.resource(cached.getCachedFile(), source.getUri(), cached.getExternalResourceMetaData());
+        }
+
+        try {
+            return moveIntoCache(source, downloadAction.destination, downloadAction.sha1, fileStore, downloadAction.metaData);
+        } finally {
+            downloadAction.destination.delete();
+        }
+    }
+
+    private LocallyAvailableExternalResource moveIntoCache(final ExternalResourceName source, final File destination, final HashValue sha1, final ResourceFileStore fileStore, final ExternalResourceMetaData metaData) {
         return cacheLockingManager.useCache(new Factory<LocallyAvailableExternalResource>() {
             public LocallyAvailableExternalResource create() {
-                LocallyAvailableResource cachedResource = fileStore.moveIntoCache(destination);
+                LocallyAvailableResource cachedResource = fileStore.moveIntoCache(destination, sha1);
                 File fileInFileStore = cachedResource.getFile();
                 cachedExternalResourceIndex.store(source.toString(), fileInFileStore, metaData);
                 return fileResourceRepository.resource(fileInFileStore, source.getUri(), metaData);
@@ -227,10 +274,16 @@ public class DefaultCacheAwareExternalResourceAccessor implements CacheAwareExte
         return timeProvider.getCurrentTime() - cached.getCachedAt();
     }
 
+    /**
+     * Copies the content of a resource to a temporary file, calculating the SHA-1 hash of the content as it is copied so that the
+     * file does not need to be read again when it is moved into the file store. The size of the content and the time it took to read
+     * it are added to the statistics of the repository.
+     */
     private class DownloadAction implements ExternalResource.ContentAction<Object> {
         private final ExternalResourceName source;
         File destination;
         ExternalResourceMetaData metaData;
+        HashValue sha1;
 
         DownloadAction(ExternalResourceName source) {
             this.source = source;
@@ -244,12 +297,22 @@ public class DefaultCacheAwareExternalResourceAccessor implements CacheAwareExte
             if (destination.getParentFile() != null) {
                 GFileUtils.mkdirs(destination.getParentFile());
             }
+            MessageDigest digest = HashUtil.createMessageDigest("SHA1");
+            long start = System.nanoTime();
+            long bytes;
             FileOutputStream outputStream = new FileOutputStream(destination);
             try {
-                IOUtils.copyLarge(inputStream, outputStream);
+                bytes = IOUtils.copyLarge(new DigestInputStream(inputStream, digest), outputStream);
             } finally {
                 outputStream.close();
             }
+            long elapsedNanos = System.nanoTime() - start;
+            sha1 = new HashValue(digest.digest());
+            requestStatistics.downloadCompleted(source.getUri(), bytes, elapsedNanos);
+            if (LOGGER.isDebugEnabled()) {
+                long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+                LOGGER.debug("Downloaded {} bytes of {} in {}ms ({} bytes/s)", bytes, source, elapsedMillis, bytes * 1000 / elapsedMillis);
+            }
             return null;
         }
     }
@@ -24,7 +24,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 
-public class ProgressLoggingExternalResourceAccessor extends AbstractProgressLoggingHandler implements ExternalResourceAccessor {
+public class ProgressLoggingExternalResourceAccessor extends AbstractProgressLoggingHandler implements ConditionalExternalResourceAccessor {
     private final ExternalResourceAccessor delegate;
 
     public ProgressLoggingExternalResourceAccessor(ExternalResourceAccessor delegate, ProgressLoggerFactory progressLoggerFactory) {
@@ -41,6 +41,16 @@ public class ProgressLoggingExternalResourceAccessor extends AbstractProgressLog
         }
     }
 
+    @Nullable
+    @Override
+    public ExternalResourceReadResponse openResourceIfModified(URI location, ExternalResourceMetaData cachedMetaData) {
+        ExternalResourceReadResponse resource = ExternalResourceRevalidation.openResourceIfModified(delegate, location, cachedMetaData);
+        if (resource != null && resource != ExternalResourceRevalidation.UNCHANGED) {
+            return new ProgressLoggingExternalResource(location, resource);
+        }
+        return resource;
+    }
+
     @Nullable
     public ExternalResourceMetaData getMetaData(URI location, boolean revalidate) {
         return delegate.getMetaData(location, revalidate);
@@ -22,6 +22,7 @@ import org.gradle.internal.resource.BuildOperationFiringExternalResourceDecorato
 import org.gradle.internal.resource.ExternalResource;
 import org.gradle.internal.resource.ExternalResourceName;
 import org.gradle.internal.resource.ExternalResourceRepository;
+import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
 import org.gradle.internal.resource.transfer.ExternalResourceAccessor;
 import org.gradle.internal.resource.transfer.ExternalResourceLister;
 import org.gradle.internal.resource.transfer.ExternalResourceUploader;
@@ -73,6 +74,11 @@ public class DefaultExternalResourceRepository implements ExternalResourceReposi
         return resource(resource, false);
     }
 
+    @Override
+    public ExternalResource resourceIfModified(ExternalResourceName resource, ExternalResourceMetaData cachedMetaData) {
+        return new BuildOperationFiringExternalResourceDecorator(resource, buildOperationExecutor, new AccessorBackedExternalResource(resource, accessor, uploader, lister, cachedMetaData));
+    }
+
     public String toString() {
         return name;
     }
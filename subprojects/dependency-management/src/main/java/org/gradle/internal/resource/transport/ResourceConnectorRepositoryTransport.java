@@ -31,6 +31,7 @@ import org.gradle.internal.resource.transfer.DefaultCacheAwareExternalResourceAc
 import org.gradle.internal.resource.transfer.ExternalResourceConnector;
 import org.gradle.internal.resource.transfer.ProgressLoggingExternalResourceAccessor;
 import org.gradle.internal.resource.transfer.ProgressLoggingExternalResourceUploader;
+import org.gradle.internal.resource.transport.http.HttpRequestStatistics;
 import org.gradle.util.BuildCommencedTimeProvider;
 
 public class ResourceConnectorRepositoryTransport extends AbstractRepositoryTransport {
@@ -47,12 +48,13 @@ public class ResourceConnectorRepositoryTransport extends AbstractRepositoryTran
                                                 BuildOperationExecutor buildOperationExecutor,
                                                 ExternalResourceCachePolicy cachePolicy,
                                                 ProducerGuard<ExternalResourceName> producerGuard,
-                                                FileResourceRepository fileResourceRepository) {
+                                                FileResourceRepository fileResourceRepository,
+                                                HttpRequestStatistics requestStatistics) {
         super(name);
         ProgressLoggingExternalResourceUploader loggingUploader = new ProgressLoggingExternalResourceUploader(connector, progressLoggerFactory);
         ProgressLoggingExternalResourceAccessor loggingAccessor = new ProgressLoggingExternalResourceAccessor(connector, progressLoggerFactory);
         repository = new DefaultExternalResourceRepository(name, connector, connector, connector, loggingAccessor, loggingUploader, buildOperationExecutor);
-        resourceAccessor = new DefaultCacheAwareExternalResourceAccessor(repository, cachedExternalResourceIndex, timeProvider, temporaryFileProvider, cacheLockingManager, cachePolicy, producerGuard, fileResourceRepository);
+        resourceAccessor = new DefaultCacheAwareExternalResourceAccessor(repository, cachedExternalResourceIndex, timeProvider, temporaryFileProvider, cacheLockingManager, cachePolicy, producerGuard, fileResourceRepository, requestStatistics);
     }
 
     public ExternalResourceRepository getRepository() {
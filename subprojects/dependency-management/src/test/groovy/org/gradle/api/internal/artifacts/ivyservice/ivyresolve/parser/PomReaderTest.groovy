@@ -850,4 +850,46 @@ class PomReaderTest extends AbstractPomReaderTest {
         pomReader.artifactId == pomReader.parentArtifactId
         pomReader.version == pomReader.parentVersion
     }
+
+    def "ignores sections that do not contribute to the module metadata"() {
+        when:
+        pomFile << """
+<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group-one</groupId>
+    <artifactId>artifact-one</artifactId>
+    <version>\${build}</version>
+    <properties>
+        <build>version-one</build>
+    </properties>
+    <build>
+        <plugins>
+            <plugin>
+                <artifactId>plugin-one</artifactId>
+                <dependencies>
+                    <dependency>
+                        <groupId>group-two</groupId>
+                        <artifactId>artifact-two</artifactId>
+                        <version>version-two</version>
+                    </dependency>
+                </dependencies>
+            </plugin>
+        </plugins>
+    </build>
+    <dependencies>
+        <dependency>
+            <groupId>group-three</groupId>
+            <artifactId>artifact-three</artifactId>
+            <version><![CDATA[version-]]>three</version>
+        </dependency>
+    </dependencies>
+</project>
+"""
+        pomReader = new PomReader(locallyAvailableExternalResource, moduleIdentifierFactory)
+
+        then:
+        pomReader.version == 'version-one'
+        pomReader.dependencies.size() == 1
+        assertResolvedPomDependency(new MavenDependencyKey('group-three', 'artifact-three', 'jar', null), 'version-three')
+    }
 }
@@ -20,8 +20,10 @@ import org.gradle.api.artifacts.ModuleVersionIdentifier
 import org.gradle.api.artifacts.component.ModuleComponentIdentifier
 import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory
 import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
 import org.gradle.internal.component.external.model.DefaultMutableMavenModuleResolveMetadata
+import org.gradle.internal.event.DefaultListenerManager
 import org.gradle.internal.resource.local.LocallyAvailableResource
 import org.gradle.internal.resource.local.PathKeyFileStore
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
@@ -39,7 +41,8 @@ class ModuleMetadataStoreTest extends Specification {
     }
     ModuleComponentIdentifier moduleComponentIdentifier = DefaultModuleComponentIdentifier.newId("org.test", "testArtifact", "1.0")
     ModuleMetadataSerializer serializer = Mock()
-    ModuleMetadataStore store = new ModuleMetadataStore(pathKeyFileStore, serializer, moduleIdentifierFactory)
+    CrossBuildModuleMetadataCache decodedMetadataCache = new CrossBuildModuleMetadataCache(new CrossBuildInMemoryCacheFactory(new DefaultListenerManager()))
+    ModuleMetadataStore store = new ModuleMetadataStore(pathKeyFileStore, serializer, moduleIdentifierFactory, decodedMetadataCache)
 
     def "getModuleDescriptorFile returns null for not cached descriptors"() {
         when:
@@ -68,4 +71,30 @@ class ModuleMetadataStoreTest extends Specification {
         };
         1 * serializer.write(_, descriptor)
     }
+
+    def "reuses decoded descriptor until descriptor file changes"() {
+        setup:
+        def key = new ModuleComponentAtRepositoryKey(repository, moduleComponentIdentifier)
+        File descriptorFile = temporaryFolder.createFile("descriptor.bin")
+        descriptorFile.text = "descriptor"
+        fileStoreEntry.file >> descriptorFile
+        pathKeyFileStore.get("org.test/testArtifact/1.0/repositoryId/descriptor.bin") >> fileStoreEntry
+
+        when:
+        def first = store.getModuleDescriptor(key)
+        def second = store.getModuleDescriptor(key)
+
+        then:
+        1 * serializer.read(_, moduleIdentifierFactory) >> new DefaultMutableMavenModuleResolveMetadata(Mock(ModuleVersionIdentifier), moduleComponentIdentifier, [])
+        first.componentId == moduleComponentIdentifier
+        second.componentId == moduleComponentIdentifier
+        !first.is(second)
+
+        when:
+        descriptorFile.text = "changed descriptor"
+        store.getModuleDescriptor(key)
+
+        then:
+        1 * serializer.read(_, moduleIdentifierFactory) >> new DefaultMutableMavenModuleResolveMetadata(Mock(ModuleVersionIdentifier), moduleComponentIdentifier, [])
+    }
 }
@@ -757,6 +757,37 @@ class DefaultModuleExclusionTest extends Specification {
         union(intersection, simpleExclude)
     }
 
+    def "equal unions and intersections are the same instance"() {
+        def rule1 = regexpExcludeRule("org", "module")
+        def rule2 = regexpExcludeRule("org", "module2")
+        def rule3 = excludeRule("org", "module3")
+        def spec1 = excludeAny(rule1)
+        def spec2 = excludeAny(rule2)
+        def spec3 = excludeAny(rule3)
+
+        expect:
+        union(spec1, spec2).is(union(spec1, spec2))
+        union(spec1, spec2).is(union(excludeAny(rule1), excludeAny(rule2)))
+        intersect(union(spec1, spec2), spec3).is(intersect(union(spec1, spec2), spec3))
+        intersect(spec1, spec3).is(intersect(spec3, spec1))
+    }
+
+    def "intersection looks up excluded modules, groups and module names"() {
+        def spec = excludeAny(excludeRule("org", "module"), excludeGroupRule("group"), excludeModuleRule("name"), excludeArtifactRule("a", "jar", "jar"), regexpExcludeRule("regexp-.*", "*"))
+
+        expect:
+        spec.excludeModule(moduleId("org", "module"))
+        spec.excludeModule(moduleId("group", "anything"))
+        spec.excludeModule(moduleId("anything", "name"))
+        spec.excludeModule(moduleId("regexp-1", "anything"))
+        !spec.excludeModule(moduleId("org", "other"))
+        !spec.excludeModule(moduleId("other", "module"))
+        !spec.excludeModule(moduleId("a", "jar"))
+
+        and:
+        excludeAny(excludeRule("*", "*"), excludeRule("org", "module")).excludeModule(moduleId("other", "other"))
+    }
+
     ModuleExclusion union(ModuleExclusion spec, ModuleExclusion otherRule) {
         moduleExclusions.union(spec, otherRule)
     }
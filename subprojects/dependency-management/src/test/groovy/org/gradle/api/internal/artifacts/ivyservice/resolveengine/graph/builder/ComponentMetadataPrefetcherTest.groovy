@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
+
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.model.ComponentResolveMetadata
+import org.gradle.internal.component.model.DependencyMetadata
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.resolve.ModuleVersionResolveException
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult
+import org.gradle.test.fixtures.ConcurrentTestUtil
+import spock.lang.Specification
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+class ComponentMetadataPrefetcherTest extends Specification {
+    def executorFactory = new DefaultExecutorFactory()
+    def versionSelectorScheme = new DefaultVersionSelectorScheme(new DefaultVersionComparator())
+    def graph = [:]
+    def resolved = new CopyOnWriteArrayList<String>()
+    def resolver = Stub(ComponentMetaDataResolver) {
+        resolve(_, _, _) >> { ModuleComponentIdentifier id, overrides, BuildableComponentResolveResult result ->
+            resolved << id.module
+            if (graph.containsKey(id.module)) {
+                result.resolved(graph[id.module])
+            } else {
+                result.failed(new ModuleVersionResolveException(id, "not found"))
+            }
+        }
+    }
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "prefetches the dependencies of each resolved component"() {
+        def prefetcher = new ComponentMetadataPrefetcher(executorFactory, versionSelectorScheme, 4)
+        graph.a = metadata(dependency("b"), dependency("c"))
+        graph.b = metadata(dependency("d"), dependency("c"))
+        graph.c = metadata(dependency("d"))
+        graph.d = metadata()
+
+        when:
+        def session = prefetcher.startSession(resolver)
+        session.prefetch(dependency("a"))
+
+        then:
+        ConcurrentTestUtil.poll {
+            assert resolved.sort(false) == ["a", "b", "c", "d"]
+        }
+    }
+
+    def "does not prefetch dynamic versions or optional dependencies"() {
+        def prefetcher = new ComponentMetadataPrefetcher(executorFactory, versionSelectorScheme, 2)
+        graph.a = metadata(dependency("b", "1.+"), dependency("c", "1.0", true), dependency("d", "[1.0,2.0)"), dependency("missing"), dependency("e"))
+        graph.e = metadata(dependency("f"))
+        graph.f = metadata()
+
+        when:
+        def session = prefetcher.startSession(resolver)
+        session.prefetch(dependency("a"))
+
+        then:
+        ConcurrentTestUtil.poll {
+            assert resolved.sort(false) == ["a", "e", "f", "missing"]
+        }
+    }
+
+    def "does not prefetch when disabled"() {
+        when:
+        def session = ComponentMetadataPrefetcher.DISABLED.startSession(resolver)
+        session.prefetchTargetsOf([])
+
+        then:
+        resolved.empty
+    }
+
+    def "stops prefetching when the session is stopped"() {
+        def prefetcher = new ComponentMetadataPrefetcher(executorFactory, versionSelectorScheme, 1)
+
+        when:
+        def session = prefetcher.startSession(resolver)
+        session.stop()
+        session.prefetch(dependency("a"))
+        prefetcher.stop()
+
+        then:
+        resolved.empty
+    }
+
+    private DependencyMetadata dependency(String module, String version = "1.0", boolean optional = false) {
+        return Stub(DependencyMetadata) {
+            getSelector() >> DefaultModuleComponentSelector.newSelector("org", module, version)
+            getArtifacts() >> ([] as Set)
+            isTransitive() >> true
+            isOptional() >> optional
+        }
+    }
+
+    private ComponentResolveMetadata metadata(DependencyMetadata... dependencies) {
+        return Stub(ComponentResolveMetadata) {
+            getConfiguration(_) >> null
+            getDependencies() >> (dependencies as List)
+        }
+    }
+}
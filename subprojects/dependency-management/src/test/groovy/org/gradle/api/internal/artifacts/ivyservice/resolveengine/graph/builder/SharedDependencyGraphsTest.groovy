@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
+
+import org.gradle.api.artifacts.DependencySet
+import org.gradle.api.artifacts.ModuleDependency
+import org.gradle.api.artifacts.component.ComponentIdentifier
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphEdge
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.model.ComponentResolveMetadata
+import org.gradle.internal.component.model.ConfigurationMetadata
+import org.gradle.internal.hash.HashCode
+import spock.lang.Specification
+
+class SharedDependencyGraphsTest extends Specification {
+    def graphs = new SharedDependencyGraphs(new DefaultVersionSelectorScheme(new DefaultVersionComparator()), new DefaultImmutableModuleIdentifierFactory(), true)
+    def key = HashCode.fromInt(123)
+    def builder = Mock(DependencyGraphBuilder)
+    def visitor = Mock(DependencyGraphVisitor)
+
+    def dependency1 = Stub(ModuleDependency)
+    def dependency2 = Stub(ModuleDependency)
+    def rootId1 = Stub(ComponentIdentifier)
+    def rootId2 = Stub(ComponentIdentifier)
+    def configuration1 = configuration("a", rootId1, dependency1)
+    def configuration2 = configuration("b", rootId2, dependency2)
+
+    def root = Stub(DependencyGraphNode)
+    def selector = Stub(DependencyGraphSelector)
+    def edge = Stub(DependencyGraphEdge)
+    def child = Stub(DependencyGraphNode)
+
+    def "replays the graph of a configuration with the same inputs, replacing the root"() {
+        graph("lib", "1.0")
+
+        when:
+        graphs.resolve(key, builder, configuration1, Stub(DependencyGraphVisitor))
+        graphs.resolve(key, builder, configuration2, visitor)
+
+        then:
+        1 * builder.resolve(configuration1, _) >> { config, DependencyGraphVisitor v -> visitGraph(v) }
+        0 * builder.resolve(configuration2, _)
+
+        and:
+        1 * visitor.start({ it.root && it.owner.componentId == rootId2 && it.owner.resultId == 1L && it.resolvedConfigurationId.id.name == "b" })
+        1 * visitor.visitSelector(selector)
+        1 * visitor.visitNode({ it.root && it.owner.componentId == rootId2 })
+        1 * visitor.visitNode({ it.nodeId == 2L && it.incomingEdges*.from*.owner*.componentId == [rootId2] && it.incomingEdges*.moduleDependency == [dependency2] })
+        1 * visitor.visitEdges({ it.root && it.outgoingEdges*.moduleDependency == [dependency2] })
+        1 * visitor.visitEdges({ it.nodeId == 2L })
+        1 * visitor.finish({ it.root && it.owner.componentId == rootId2 })
+        0 * visitor._
+    }
+
+    def "does not share a graph that contains a dynamic version"() {
+        graph("lib", "1.+")
+
+        when:
+        graphs.resolve(key, builder, configuration1, Stub(DependencyGraphVisitor))
+        graphs.resolve(key, builder, configuration2, visitor)
+
+        then:
+        1 * builder.resolve(configuration1, _) >> { config, DependencyGraphVisitor v -> visitGraph(v) }
+        1 * builder.resolve(configuration2, visitor)
+    }
+
+    def "does not share a graph that contains the module of the configuration"() {
+        graph("b", "1.0")
+
+        when:
+        graphs.resolve(key, builder, configuration1, Stub(DependencyGraphVisitor))
+        graphs.resolve(key, builder, configuration2, visitor)
+
+        then:
+        1 * builder.resolve(configuration1, _) >> { config, DependencyGraphVisitor v -> visitGraph(v) }
+        1 * builder.resolve(configuration2, visitor)
+    }
+
+    def "traverses the graph again when the traversal for the first configuration fails"() {
+        graph("lib", "1.0")
+        def failure = new RuntimeException()
+
+        when:
+        graphs.resolve(key, builder, configuration1, Stub(DependencyGraphVisitor))
+
+        then:
+        1 * builder.resolve(configuration1, _) >> { throw failure }
+        def e = thrown(RuntimeException)
+        e == failure
+
+        when:
+        graphs.resolve(key, builder, configuration2, visitor)
+
+        then:
+        1 * builder.resolve(configuration2, _)
+    }
+
+    def "does not share graphs when disabled"() {
+        def graphs = new SharedDependencyGraphs(new DefaultVersionSelectorScheme(new DefaultVersionComparator()), new DefaultImmutableModuleIdentifierFactory(), false)
+
+        when:
+        graphs.resolve(builder, configuration1, [], null, null, visitor)
+        graphs.resolve(builder, configuration2, [], null, null, visitor)
+
+        then:
+        1 * builder.resolve(configuration1, visitor)
+        1 * builder.resolve(configuration2, visitor)
+    }
+
+    private void graph(String module, String version) {
+        def rootComponent = Stub(DependencyGraphComponent) {
+            getResultId() >> 1L
+            getComponentId() >> rootId1
+        }
+        def childComponent = Stub(DependencyGraphComponent) {
+            getResultId() >> 2L
+            getModuleVersion() >> DefaultModuleVersionIdentifier.newId("org", module, version)
+            getMetadata() >> Stub(ComponentResolveMetadata)
+        }
+        root.nodeId >> 1L
+        root.root >> true
+        root.owner >> rootComponent
+        root.outgoingEdges >> [edge]
+        child.nodeId >> 2L
+        child.owner >> childComponent
+        child.incomingEdges >> ([edge] as Set)
+        child.outgoingEdges >> []
+        edge.from >> root
+        edge.targets >> [child]
+        edge.selected >> 2L
+        edge.failure >> null
+        edge.moduleDependency >> dependency1
+        selector.requested >> DefaultModuleComponentSelector.newSelector("org", module, version)
+    }
+
+    private void visitGraph(DependencyGraphVisitor visitor) {
+        visitor.start(root)
+        visitor.visitSelector(selector)
+        visitor.visitNode(root)
+        visitor.visitNode(child)
+        visitor.visitEdges(root)
+        visitor.visitEdges(child)
+        visitor.finish(root)
+    }
+
+    private ConfigurationInternal configuration(String module, ComponentIdentifier rootId, ModuleDependency dependency) {
+        def dependencies = Stub(DependencySet) {
+            iterator() >> { [dependency].iterator() }
+        }
+        def rootMetadata = Stub(ComponentResolveMetadata) {
+            getId() >> DefaultModuleVersionIdentifier.newId("org", module, "1.0")
+            getComponentId() >> rootId
+            getConfiguration("compile") >> Stub(ConfigurationMetadata)
+        }
+        return Stub(ConfigurationInternal) {
+            getName() >> "compile"
+            getAllDependencies() >> dependencies
+            toRootComponentMetaData() >> rootMetadata
+        }
+    }
+}
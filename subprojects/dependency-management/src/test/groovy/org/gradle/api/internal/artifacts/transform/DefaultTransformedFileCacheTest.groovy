@@ -24,13 +24,17 @@ import org.gradle.cache.internal.CacheScopeMapping
 import org.gradle.cache.internal.DefaultCacheRepository
 import org.gradle.caching.internal.BuildCacheHasher
 import org.gradle.internal.hash.HashCode
+import org.gradle.internal.resource.local.DefaultPathKeyFileStore
 import org.gradle.internal.util.BiFunction
 import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.testfixtures.internal.InMemoryCacheFactory
 import org.gradle.util.UsesNativeServices
 import org.junit.Rule
 
+import java.util.concurrent.TimeUnit
+
 @UsesNativeServices
 class DefaultTransformedFileCacheTest extends ConcurrentSpec {
     @Rule
@@ -304,6 +308,71 @@ class DefaultTransformedFileCacheTest extends ConcurrentSpec {
         0 * transform._
     }
 
+    def "reuses result produced by another process while transform was running"() {
+        def transform = Mock(BiFunction)
+        def otherTransform = Mock(BiFunction)
+        def inputFile = tmpDir.file("a")
+        def otherCache = new DefaultTransformedFileCache(artifactCacheMetaData, cacheRepo, decorator, snapshotter)
+        def otherResult
+
+        when:
+        def result = cache.getResult(inputFile, HashCode.fromInt(123), transform)
+
+        then:
+        result == otherResult
+        result*.text == ["other"]
+
+        and:
+        2 * snapshotter.snapshotAll(inputFile) >> snapshot(HashCode.fromInt(234))
+        1 * transform.apply(inputFile, _) >> { File file, File dir ->
+            otherResult = otherCache.getResult(inputFile, HashCode.fromInt(123), otherTransform)
+            def r = new File(dir, "a.1")
+            r.text = "result"
+            [r]
+        }
+        1 * otherTransform.apply(inputFile, _) >> { File file, File dir -> def r = new File(dir, "a.1"); r.text = "other"; [r] }
+        0 * transform._
+        0 * otherTransform._
+    }
+
+    def "removes outputs staged by processes that did not move them into place"() {
+        def transform = Mock(BiFunction)
+        def inputFile = tmpDir.file("a")
+
+        given:
+        1 * snapshotter.snapshotAll(inputFile) >> snapshot(HashCode.fromInt(234))
+        1 * transform.apply(inputFile, _) >>  { File file, File dir -> def r = new File(dir, "a.1"); r.text = "result"; [r] }
+
+        def result = cache.getResult(inputFile, HashCode.fromInt(123), transform)
+        def outputDir = result.first().parentFile
+        def parentDir = new TestFile(outputDir.parentFile)
+        def completed = parentDir.createDir(outputDir.name + "-completed")
+        def crashed = parentDir.createDir(outputDir.name + "-crashed")
+        def crashedMarker = parentDir.file(outputDir.name + "-crashed" + DefaultPathKeyFileStore.IN_PROGRESS_MARKER_FILE_SUFFIX).touch()
+        crashedMarker.lastModified = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)
+        def running = parentDir.createDir(outputDir.name + "-running")
+        def runningMarker = parentDir.file(outputDir.name + "-running" + DefaultPathKeyFileStore.IN_PROGRESS_MARKER_FILE_SUFFIX).touch()
+        def unrelated = parentDir.createDir("other-completed")
+
+        when:
+        def cache = new DefaultTransformedFileCache(artifactCacheMetaData, cacheRepo, decorator, snapshotter)
+        def result2 = cache.getResult(inputFile, HashCode.fromInt(123), transform)
+
+        then:
+        result2 == result
+        outputDir.directory
+        !completed.exists()
+        !crashed.exists()
+        !crashedMarker.exists()
+        running.exists()
+        runningMarker.exists()
+        unrelated.exists()
+
+        and:
+        1 * snapshotter.snapshotAll(inputFile) >> snapshot(HashCode.fromInt(234))
+        0 * transform._
+    }
+
     def snapshot(HashCode hashCode) {
         FileCollectionSnapshot snapshot = Stub(FileCollectionSnapshot)
         snapshot.appendToHasher(_) >> { BuildCacheHasher hasher -> hasher.putHash(hashCode) }
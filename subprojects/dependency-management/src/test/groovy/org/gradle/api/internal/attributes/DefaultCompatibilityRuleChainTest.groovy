@@ -19,6 +19,7 @@ package org.gradle.api.internal.attributes
 import org.gradle.api.attributes.AttributeCompatibilityRule
 import org.gradle.api.attributes.CompatibilityCheckDetails
 import org.gradle.api.reflect.ObjectInstantiationException
+import org.gradle.caching.internal.DefaultBuildCacheHasher
 import org.gradle.util.TestUtil
 import spock.lang.Specification
 
@@ -138,4 +139,36 @@ class DefaultCompatibilityRuleChainTest extends Specification {
         e.cause instanceof ObjectInstantiationException
         e.cause.cause == CannotCreateRule.failure
     }
+
+    def "hashes rules by type and parameters"() {
+        given:
+        def other = new DefaultCompatibilityRuleChain(TestUtil.instantiatorFactory().inject())
+        ruleChain.add(CompatibilityRule)
+        ruleChain.add(CompatibilityRuleWithParams) { it.params("p1") }
+        other.add(CompatibilityRule)
+        other.add(CompatibilityRuleWithParams) { it.params(param) }
+
+        expect:
+        (hash(ruleChain) == hash(other)) == sameHash
+
+        where:
+        param | sameHash
+        "p1"  | true
+        "p2"  | false
+    }
+
+    def "cannot hash rules that are not identified by type and parameters"() {
+        given:
+        ruleChain.add(CompatibilityRule)
+        ruleChain.ordered({ a, b -> a <=> b } as Comparator)
+
+        expect:
+        !ruleChain.appendRulesTo(new DefaultBuildCacheHasher())
+    }
+
+    private static hash(HashableRuleChain chain) {
+        def hasher = new DefaultBuildCacheHasher()
+        assert chain.appendRulesTo(hasher)
+        return hasher.hash()
+    }
 }
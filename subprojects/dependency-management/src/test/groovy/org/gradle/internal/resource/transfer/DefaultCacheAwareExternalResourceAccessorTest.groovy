@@ -34,6 +34,7 @@ import org.gradle.internal.resource.local.LocallyAvailableExternalResource
 import org.gradle.internal.resource.local.LocallyAvailableResource
 import org.gradle.internal.resource.local.LocallyAvailableResourceCandidates
 import org.gradle.internal.resource.metadata.ExternalResourceMetaData
+import org.gradle.internal.resource.transport.http.HttpRequestStatistics
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.util.BuildCommencedTimeProvider
 import org.junit.Rule
@@ -53,13 +54,14 @@ class DefaultCacheAwareExternalResourceAccessorTest extends Specification {
     final cacheLockingManager = Mock(CacheLockingManager)
     final fileRepository = Mock(FileResourceRepository)
     final cachePolicy = new DefaultExternalResourceCachePolicy()
+    final requestStatistics = new HttpRequestStatistics()
     final ProducerGuard<URI> producerGuard = Stub() {
         guardByKey(_, _) >> { args ->
             def (key, factory) = args
             factory.create()
         }
     }
-    final cache = new DefaultCacheAwareExternalResourceAccessor(repository, index, timeProvider, temporaryFileProvider, cacheLockingManager, cachePolicy, producerGuard, fileRepository)
+    final cache = new DefaultCacheAwareExternalResourceAccessor(repository, index, timeProvider, temporaryFileProvider, cacheLockingManager, cachePolicy, producerGuard, fileRepository, requestStatistics)
 
     def "returns null when the request resource is not cached and does not exist in the remote repository"() {
         def location = new ExternalResourceName("thing")
@@ -124,14 +126,14 @@ class DefaultCacheAwareExternalResourceAccessorTest extends Specification {
         1 * progressLoggingRepo.resource(location) >> remoteResource
         _ * remoteResource.name >> "remoteResource"
         1 * remoteResource.withContentIfPresent(_) >> { ExternalResource.ContentAction a ->
-            a.execute(new ByteArrayInputStream(), metaData)
+            a.execute(new ByteArrayInputStream("content".bytes), metaData)
         }
 
         and:
         1 * cacheLockingManager.useCache(_) >> { org.gradle.internal.Factory factory ->
             return factory.create()
         }
-        1 * fileStore.moveIntoCache(tempFile) >> localResource
+        1 * fileStore.moveIntoCache(tempFile, HashUtil.sha1("content".bytes)) >> localResource
         1 * index.store("thing", cachedFile, metaData)
         1 * fileRepository.resource(cachedFile, location.uri, metaData) >> cachedResource
         0 * _._
@@ -204,7 +206,7 @@ class DefaultCacheAwareExternalResourceAccessorTest extends Specification {
         1 * cacheLockingManager.useCache(_) >> { org.gradle.internal.Factory factory ->
             return factory.create()
         }
-        1 * fileStore.moveIntoCache(tempFile) >> localResource
+        1 * fileStore.moveIntoCache(tempFile, _) >> localResource
         1 * index.store("thing", cachedFile, remoteMetaData)
         1 * fileRepository.resource(cachedFile, location.uri, remoteMetaData) >> resultResource
         0 * _._
@@ -253,7 +255,7 @@ class DefaultCacheAwareExternalResourceAccessorTest extends Specification {
         1 * cacheLockingManager.useCache(_) >> { org.gradle.internal.Factory factory ->
             return factory.create()
         }
-        1 * fileStore.moveIntoCache(tempFile) >> localResource
+        1 * fileStore.moveIntoCache(tempFile, _) >> localResource
         1 * index.store("thing", cachedFile, remoteMetaData)
         1 * fileRepository.resource(cachedFile, location.uri, remoteMetaData) >> resultResource
         0 * _._
@@ -300,7 +302,7 @@ class DefaultCacheAwareExternalResourceAccessorTest extends Specification {
         1 * cacheLockingManager.useCache(_) >> { org.gradle.internal.Factory factory ->
             return factory.create()
         }
-        1 * fileStore.moveIntoCache(tempFile) >> localResource
+        1 * fileStore.moveIntoCache(tempFile, _) >> localResource
         1 * index.store("thing", cachedFile, remoteMetaData)
         1 * fileRepository.resource(cachedFile, location.uri, remoteMetaData) >> resultResource
         0 * _._
@@ -355,9 +357,86 @@ class DefaultCacheAwareExternalResourceAccessorTest extends Specification {
         1 * cacheLockingManager.useCache(_) >> { org.gradle.internal.Factory factory ->
             return factory.create()
         }
-        1 * fileStore.moveIntoCache(tempFile) >> localResource
+        1 * fileStore.moveIntoCache(tempFile, _) >> localResource
         1 * index.store("thing", cachedFile, remoteMetaData)
         1 * fileRepository.resource(cachedFile, location.uri, remoteMetaData) >> resultResource
         0 * _._
     }
+
+    def "revalidates expired cached resource with a conditional request and keeps it when unchanged"() {
+        given:
+        System.setProperty(DefaultCacheAwareExternalResourceAccessor.CONDITIONAL_REVALIDATION_PROPERTY, "true")
+        def cache = new DefaultCacheAwareExternalResourceAccessor(repository, index, timeProvider, temporaryFileProvider, cacheLockingManager, cachePolicy, producerGuard, fileRepository, requestStatistics)
+        def location = new ExternalResourceName("thing")
+        def fileStore = Mock(CacheAwareExternalResourceAccessor.ResourceFileStore)
+        def cached = Mock(CachedExternalResource)
+        def cachedMetaData = Mock(ExternalResourceMetaData)
+        def remoteResource = Mock(ExternalResource)
+        def resultResource = Stub(LocallyAvailableExternalResource)
+
+        when:
+        def result = cache.getResource(location, null, fileStore, null)
+
+        then:
+        result == resultResource
+
+        and:
+        1 * index.lookup("thing") >> cached
+        timeProvider.currentTime >> 24000L
+        cached.cachedAt >> 23999L
+        cached.externalResourceMetaData >> cachedMetaData
+        cached.cachedFile >> cachedFile
+        cached.externalLastModified >> null
+        1 * repository.withProgressLogging() >> progressLoggingRepo
+        1 * progressLoggingRepo.resourceIfModified(location, cachedMetaData) >> remoteResource
+        1 * remoteResource.withContentIfPresent(_) >> ExternalResourceReadResult.of(0, null)
+        1 * index.store("thing", cachedFile, cachedMetaData)
+        1 * fileRepository.resource(cachedFile, location.uri, cachedMetaData) >> resultResource
+        0 * _._
+
+        cleanup:
+        System.clearProperty(DefaultCacheAwareExternalResourceAccessor.CONDITIONAL_REVALIDATION_PROPERTY)
+    }
+
+    def "revalidates expired cached resource with a conditional request and downloads it when changed"() {
+        given:
+        System.setProperty(DefaultCacheAwareExternalResourceAccessor.CONDITIONAL_REVALIDATION_PROPERTY, "true")
+        def cache = new DefaultCacheAwareExternalResourceAccessor(repository, index, timeProvider, temporaryFileProvider, cacheLockingManager, cachePolicy, producerGuard, fileRepository, requestStatistics)
+        def location = new ExternalResourceName("thing")
+        def fileStore = Mock(CacheAwareExternalResourceAccessor.ResourceFileStore)
+        def cached = Mock(CachedExternalResource)
+        def cachedMetaData = Mock(ExternalResourceMetaData)
+        def remoteMetaData = Mock(ExternalResourceMetaData)
+        def remoteResource = Mock(ExternalResource)
+        def localResource = new DefaultLocallyAvailableResource(cachedFile)
+        def resultResource = Stub(LocallyAvailableExternalResource)
+
+        when:
+        def result = cache.getResource(location, null, fileStore, null)
+
+        then:
+        result == resultResource
+
+        and:
+        1 * index.lookup("thing") >> cached
+        timeProvider.currentTime >> 24000L
+        cached.cachedAt >> 23999L
+        cached.externalResourceMetaData >> cachedMetaData
+        1 * repository.withProgressLogging() >> progressLoggingRepo
+        1 * progressLoggingRepo.resourceIfModified(location, cachedMetaData) >> remoteResource
+        1 * remoteResource.withContentIfPresent(_) >> { ExternalResource.ContentAction a ->
+            a.execute(new ByteArrayInputStream(), remoteMetaData)
+            ExternalResourceReadResult.of(0, null)
+        }
+        1 * cacheLockingManager.useCache(_) >> { org.gradle.internal.Factory factory ->
+            return factory.create()
+        }
+        1 * fileStore.moveIntoCache(tempFile, _) >> localResource
+        1 * index.store("thing", cachedFile, remoteMetaData)
+        1 * fileRepository.resource(cachedFile, location.uri, remoteMetaData) >> resultResource
+        0 * _._
+
+        cleanup:
+        System.clearProperty(DefaultCacheAwareExternalResourceAccessor.CONDITIONAL_REVALIDATION_PROPERTY)
+    }
 }
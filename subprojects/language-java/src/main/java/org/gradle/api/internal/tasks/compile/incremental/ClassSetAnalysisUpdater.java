@@ -21,6 +21,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import org.gradle.api.internal.file.FileOperations;
 import org.gradle.api.internal.tasks.compile.JavaCompileSpec;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassAnalysisExecutor;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassFilesAnalyzer;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
@@ -48,12 +49,14 @@ public class ClassSetAnalysisUpdater {
     private final FileOperations fileOperations;
     private ClassDependenciesAnalyzer analyzer;
     private final FileHasher fileHasher;
+    private final ClassAnalysisExecutor executor;
 
-    public ClassSetAnalysisUpdater(Stash<ClassSetAnalysisData> stash, FileOperations fileOperations, ClassDependenciesAnalyzer analyzer, FileHasher fileHasher) {
+    public ClassSetAnalysisUpdater(Stash<ClassSetAnalysisData> stash, FileOperations fileOperations, ClassDependenciesAnalyzer analyzer, FileHasher fileHasher, ClassAnalysisExecutor executor) {
         this.stash = stash;
         this.fileOperations = fileOperations;
         this.analyzer = analyzer;
         this.fileHasher = fileHasher;
+        this.executor = executor;
     }
 
     public void updateAnalysis(JavaCompileSpec spec) {
@@ -61,7 +64,7 @@ public class ClassSetAnalysisUpdater {
         Set<File> baseDirs = Sets.newLinkedHashSet();
         baseDirs.add(spec.getDestinationDir());
         Iterables.addAll(baseDirs, Iterables.filter(spec.getCompileClasspath(), IS_CLASS_DIRECTORY));
-        ClassFilesAnalyzer analyzer = new ClassFilesAnalyzer(this.analyzer, fileHasher);
+        ClassFilesAnalyzer analyzer = new ClassFilesAnalyzer(this.analyzer, fileHasher, executor, executor.getParallelism());
         for (File baseDir : baseDirs) {
             fileOperations.fileTree(baseDir).visit(analyzer);
         }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile.incremental.analyzer;
+
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.ParallelismConfigurationManager;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.util.concurrent.Executor;
+
+/**
+ * The threads that analyze class files for incremental Java compilation, shared by all compile tasks of a build.
+ * At most one thread per worker is used.
+ */
+public class ClassAnalysisExecutor implements Executor, Stoppable {
+    private final ExecutorFactory executorFactory;
+    private final ParallelismConfigurationManager parallelismConfigurationManager;
+    private ManagedExecutor executor;
+
+    public ClassAnalysisExecutor(ExecutorFactory executorFactory, ParallelismConfigurationManager parallelismConfigurationManager) {
+        this.executorFactory = executorFactory;
+        this.parallelismConfigurationManager = parallelismConfigurationManager;
+    }
+
+    /**
+     * Returns the number of class files that should be analyzed at the same time.
+     */
+    public int getParallelism() {
+        return parallelismConfigurationManager.getParallelismConfiguration().getMaxWorkerCount();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        getExecutor().execute(command);
+    }
+
+    private synchronized ManagedExecutor getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("Class analysis", getParallelism());
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.stop();
+            executor = null;
+        }
+    }
+}
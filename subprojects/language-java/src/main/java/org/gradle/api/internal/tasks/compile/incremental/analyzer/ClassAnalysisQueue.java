@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile.incremental.analyzer;
+
+import org.gradle.api.Action;
+import org.gradle.internal.UncheckedException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs the analysis of class files on an executor while the class files are being visited, and passes the results to a consumer in the order
+ * in which the class files were submitted. The consumer is only called by the thread that submits the work, so it needs no synchronization,
+ * and the combined result is the same as when the class files are analyzed one after the other.
+ *
+ * <p>The number of class files being analyzed at any time is bounded, so that the content of a large jar is not held in memory all at once.</p>
+ */
+public class ClassAnalysisQueue<T> {
+    private static final Executor IMMEDIATE = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final Executor executor;
+    private final int maxPending;
+    private final Action<? super T> consumer;
+    private final Deque<Future<T>> pending = new ArrayDeque<Future<T>>();
+
+    public ClassAnalysisQueue(Executor executor, int parallelism, Action<? super T> consumer) {
+        this.executor = executor;
+        this.maxPending = parallelism * 4;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Creates a queue that analyzes each class file as soon as it is submitted.
+     */
+    public static <T> ClassAnalysisQueue<T> serial(Action<? super T> consumer) {
+        return new ClassAnalysisQueue<T>(IMMEDIATE, 0, consumer);
+    }
+
+    public void submit(Callable<T> analysis) {
+        FutureTask<T> task = new FutureTask<T>(analysis);
+        pending.add(task);
+        executor.execute(task);
+        while (pending.size() > maxPending) {
+            consumeNext();
+        }
+    }
+
+    /**
+     * Waits for all submitted class files to be analyzed.
+     */
+    public void finish() {
+        while (!pending.isEmpty()) {
+            consumeNext();
+        }
+    }
+
+    private void consumeNext() {
+        Future<T> next = pending.removeFirst();
+        T result;
+        try {
+            result = next.get();
+        } catch (InterruptedException e) {
+            cancelPending();
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            cancelPending();
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+        consumer.execute(result);
+    }
+
+    private void cancelPending() {
+        for (Future<T> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+    }
+}
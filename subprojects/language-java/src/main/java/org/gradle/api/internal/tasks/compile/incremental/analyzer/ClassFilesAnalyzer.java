@@ -16,45 +16,76 @@
 
 package org.gradle.api.internal.tasks.compile.incremental.analyzer;
 
+import org.gradle.api.Action;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
+import org.gradle.internal.Pair;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * Analyzes the class files that are visited. The class files are analyzed in parallel when an executor is given,
+ * and the results are added to the accumulator in the order in which the class files were visited.
+ */
 public class ClassFilesAnalyzer implements FileVisitor {
     private final ClassDependenciesAnalyzer analyzer;
     private final ClassDependentsAccumulator accumulator;
     private final FileHasher hasher;
+    private final ClassAnalysisQueue<Pair<File, ClassAnalysis>> queue;
 
     public ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, FileHasher fileHasher) {
         this(analyzer, fileHasher, new ClassDependentsAccumulator());
     }
 
+    public ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, FileHasher fileHasher, Executor executor, int parallelism) {
+        this.analyzer = analyzer;
+        this.hasher = fileHasher;
+        this.accumulator = new ClassDependentsAccumulator();
+        this.queue = new ClassAnalysisQueue<Pair<File, ClassAnalysis>>(executor, parallelism, new AccumulatingConsumer());
+    }
+
    ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, FileHasher fileHasher, ClassDependentsAccumulator accumulator) {
        this.analyzer = analyzer;
        this.hasher = fileHasher;
        this.accumulator = accumulator;
+       this.queue = ClassAnalysisQueue.serial(new AccumulatingConsumer());
    }
 
     @Override
     public void visitDir(FileVisitDetails dirDetails) {}
 
     @Override
-    public void visitFile(FileVisitDetails fileDetails) {
+    public void visitFile(final FileVisitDetails fileDetails) {
         if (!fileDetails.getName().endsWith(".class")) {
             return;
         }
 
-        HashCode hash = hasher.hash(fileDetails);
-        ClassAnalysis analysis = analyzer.getClassAnalysis(hash, fileDetails);
-
-        accumulator.addClass(fileDetails.getFile(), analysis);
+        queue.submit(new Callable<Pair<File, ClassAnalysis>>() {
+            @Override
+            public Pair<File, ClassAnalysis> call() {
+                HashCode hash = hasher.hash(fileDetails);
+                ClassAnalysis analysis = analyzer.getClassAnalysis(hash, fileDetails);
+                return Pair.of(fileDetails.getFile(), analysis);
+            }
+        });
     }
 
     public ClassSetAnalysisData getAnalysis() {
+        queue.finish();
         return accumulator.getAnalysis();
     }
+
+    private class AccumulatingConsumer implements Action<Pair<File, ClassAnalysis>> {
+        @Override
+        public void execute(Pair<File, ClassAnalysis> analyzedClass) {
+            accumulator.addClass(analyzedClass.left, analyzedClass.right);
+        }
+    }
 }
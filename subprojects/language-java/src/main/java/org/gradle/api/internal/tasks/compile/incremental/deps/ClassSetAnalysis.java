@@ -18,6 +18,7 @@ package org.gradle.api.internal.tasks.compile.incremental.deps;
 
 import com.google.common.collect.Sets;
 
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -49,41 +50,40 @@ public class ClassSetAnalysis {
     }
 
     public DependentsSet getRelevantDependents(String className, Set<Integer> constants) {
-        DependentsSet deps = data.getDependents(className);
-        if (deps != null && deps.isDependencyToAll()) {
-            return deps;
-        }
-        if (deps == null && constants.isEmpty()) {
-            return DefaultDependentsSet.EMPTY;
+        if (data.isDependencyToAll(className)) {
+            return data.getDependents(className);
         }
         if (!constants.isEmpty()) {
             return DependencyToAll.INSTANCE;
         }
-        Set<String> result = new HashSet<String>();
-        if (deps != null && !deps.isDependencyToAll()) {
-            recurseDependents(new HashSet<String>(), result, deps.getDependentClasses());
+        int id = data.getClassId(className);
+        int[] dependentIds = id < 0 ? null : data.getDependentIds(id);
+        if (dependentIds == null) {
+            return DefaultDependentsSet.EMPTY;
         }
+        Set<String> result = new HashSet<String>();
+        recurseDependents(new BitSet(), result, dependentIds);
         result.remove(className);
         return new DefaultDependentsSet(result);
-
     }
 
     public boolean isDependencyToAll(String className) {
-        DependentsSet deps = data.getDependents(className);
-        return deps != null && deps.isDependencyToAll();
+        return data.isDependencyToAll(className);
     }
 
-    private void recurseDependents(Set<String> visited, Set<String> result, Set<String> dependentClasses) {
-        for (String d : dependentClasses) {
-            if (!visited.add(d)) {
+    private void recurseDependents(BitSet visited, Set<String> result, int[] dependentIds) {
+        for (int d : dependentIds) {
+            if (visited.get(d)) {
                 continue;
             }
-            if (!d.contains("$")) { //filter out the inner classes
-                result.add(d);
+            visited.set(d);
+            String dependentClass = data.getClassName(d);
+            if (!dependentClass.contains("$")) { //filter out the inner classes
+                result.add(dependentClass);
             }
-            DependentsSet currentDependents = data.getDependents(d);
-            if (currentDependents != null && !currentDependents.isDependencyToAll()) {
-                recurseDependents(visited, result, currentDependents.getDependentClasses());
+            int[] currentDependents = data.getDependentIds(d);
+            if (currentDependents != null) {
+                recurseDependents(visited, result, currentDependents);
             }
         }
     }
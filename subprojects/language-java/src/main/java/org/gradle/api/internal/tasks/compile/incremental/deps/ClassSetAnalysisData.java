@@ -24,17 +24,28 @@ import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.SetSerializer;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 import static org.gradle.internal.serialize.BaseSerializerFactory.INTEGER_SERIALIZER;
 
+/**
+ * The analysis of a set of classes.
+ *
+ * <p>The names of the classes are interned in a sorted dictionary, and the dependents of a class are kept as the sorted ids of the dependent classes,
+ * so that the dependents graph is compact in memory and on disk and can be traversed without looking up class names.</p>
+ */
 public class ClassSetAnalysisData {
     final Map<String, String> filePathToClassName;
-    final Map<String, DependentsSet> dependents;
+    final String[] classNames;
+    // Indexed by class id, null for classes that have no dependents information or are a dependency to all
+    final int[][] dependents;
+    final Map<String, DependentsSet> dependenciesToAll;
     final Map<String, Set<Integer>> classesToConstants;
     final Map<Integer, Set<String>> literalsToClasses;
     final Map<String, Set<String>> classesToChildren;
@@ -45,7 +56,35 @@ public class ClassSetAnalysisData {
 
     public ClassSetAnalysisData(Map<String, String> filePathToClassName, Map<String, DependentsSet> dependents, Map<String, Set<Integer>> classesToConstants, Map<Integer, Set<String>> literalsToClasses, Map<String, Set<String>> classesToChildren) {
         this.filePathToClassName = filePathToClassName;
+        this.classesToConstants = classesToConstants;
+        this.literalsToClasses = literalsToClasses;
+        this.classesToChildren = classesToChildren;
+        this.classNames = collectClassNames(filePathToClassName, dependents, classesToConstants, literalsToClasses, classesToChildren);
+        this.dependents = new int[classNames.length][];
+        ImmutableMap.Builder<String, DependentsSet> dependenciesToAllBuilder = ImmutableMap.builder();
+        for (Map.Entry<String, DependentsSet> entry : dependents.entrySet()) {
+            DependentsSet dependentsSet = entry.getValue();
+            if (dependentsSet.isDependencyToAll()) {
+                dependenciesToAllBuilder.put(entry.getKey(), dependentsSet);
+                continue;
+            }
+            Set<String> dependentClasses = dependentsSet.getDependentClasses();
+            int[] ids = new int[dependentClasses.size()];
+            int i = 0;
+            for (String dependentClass : dependentClasses) {
+                ids[i++] = getClassId(dependentClass);
+            }
+            Arrays.sort(ids);
+            this.dependents[getClassId(entry.getKey())] = ids;
+        }
+        this.dependenciesToAll = dependenciesToAllBuilder.build();
+    }
+
+    private ClassSetAnalysisData(Map<String, String> filePathToClassName, String[] classNames, int[][] dependents, Map<String, DependentsSet> dependenciesToAll, Map<String, Set<Integer>> classesToConstants, Map<Integer, Set<String>> literalsToClasses, Map<String, Set<String>> classesToChildren) {
+        this.filePathToClassName = filePathToClassName;
+        this.classNames = classNames;
         this.dependents = dependents;
+        this.dependenciesToAll = dependenciesToAll;
         this.classesToConstants = classesToConstants;
         this.literalsToClasses = literalsToClasses;
         this.classesToChildren = classesToChildren;
@@ -59,12 +98,70 @@ public class ClassSetAnalysisData {
         return builder.build();
     }
 
+    private static String[] collectClassNames(Map<String, String> filePathToClassName, Map<String, DependentsSet> dependents, Map<String, Set<Integer>> classesToConstants, Map<Integer, Set<String>> literalsToClasses, Map<String, Set<String>> classesToChildren) {
+        Set<String> classNames = new HashSet<String>(filePathToClassName.values());
+        for (Map.Entry<String, DependentsSet> entry : dependents.entrySet()) {
+            classNames.add(entry.getKey());
+            if (!entry.getValue().isDependencyToAll()) {
+                classNames.addAll(entry.getValue().getDependentClasses());
+            }
+        }
+        classNames.addAll(classesToConstants.keySet());
+        for (Set<String> classes : literalsToClasses.values()) {
+            classNames.addAll(classes);
+        }
+        for (Map.Entry<String, Set<String>> entry : classesToChildren.entrySet()) {
+            classNames.add(entry.getKey());
+            classNames.addAll(entry.getValue());
+        }
+        String[] sorted = classNames.toArray(new String[0]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
     public String getClassNameForFile(String filePath) {
         return filePathToClassName.get(filePath);
     }
 
+    @Nullable
     public DependentsSet getDependents(String className) {
-        return dependents.get(className);
+        DependentsSet dependencyToAll = dependenciesToAll.get(className);
+        if (dependencyToAll != null) {
+            return dependencyToAll;
+        }
+        int id = getClassId(className);
+        if (id < 0 || dependents[id] == null) {
+            return null;
+        }
+        int[] ids = dependents[id];
+        ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+        for (int dependentId : ids) {
+            builder.add(classNames[dependentId]);
+        }
+        return new DefaultDependentsSet(builder.build());
+    }
+
+    public boolean isDependencyToAll(String className) {
+        return dependenciesToAll.containsKey(className);
+    }
+
+    /**
+     * Returns the id of the given class, or a negative value when the class is not part of this analysis.
+     */
+    int getClassId(String className) {
+        return Arrays.binarySearch(classNames, className);
+    }
+
+    String getClassName(int id) {
+        return classNames[id];
+    }
+
+    /**
+     * Returns the sorted ids of the classes that depend on the given class, or null when the class has no dependents information or is a dependency to all.
+     */
+    @Nullable
+    int[] getDependentIds(int id) {
+        return dependents[id];
     }
 
     public Set<Integer> getConstants(String className) {
@@ -85,29 +182,39 @@ public class ClassSetAnalysisData {
 
         @Override
         public ClassSetAnalysisData read(Decoder decoder) throws Exception {
-            // Class names are de-duplicated when encoded
-            Map<Integer, String> classNameMap = new HashMap<Integer, String>();
-
+            // Class names are encoded once, and referenced by their id everywhere else
             int count = decoder.readSmallInt();
+            String[] classNames = new String[count];
+            for (int i = 0; i < count; i++) {
+                classNames[i] = decoder.readString();
+            }
+
+            count = decoder.readSmallInt();
             ImmutableMap.Builder<String, String> filePathToClassNameBuilder = ImmutableMap.builder();
             for (int i = 0; i < count; i++) {
                 String filePath = decoder.readString();
-                String className = readClassName(decoder, classNameMap);
+                String className = classNames[decoder.readSmallInt()];
                 filePathToClassNameBuilder.put(filePath, className);
             }
 
+            int[][] dependents = new int[classNames.length][];
+            count = decoder.readSmallInt();
+            for (int i = 0; i < count; i++) {
+                int id = decoder.readSmallInt();
+                dependents[id] = readIds(decoder);
+            }
+
             count = decoder.readSmallInt();
-            ImmutableMap.Builder<String, DependentsSet> dependentsBuilder = ImmutableMap.builder();
+            ImmutableMap.Builder<String, DependentsSet> dependenciesToAllBuilder = ImmutableMap.builder();
             for (int i = 0; i < count; i++) {
-                String className = readClassName(decoder, classNameMap);
-                DependentsSet dependents = readDependentsSet(decoder, classNameMap);
-                dependentsBuilder.put(className, dependents);
+                String className = classNames[decoder.readSmallInt()];
+                dependenciesToAllBuilder.put(className, new DependencyToAll(decoder.readNullableString()));
             }
 
             count = decoder.readSmallInt();
             ImmutableMap.Builder<String, Set<Integer>> classesToConstantsBuilder = ImmutableMap.builder();
             for (int i = 0; i < count; i++) {
-                String className = readClassName(decoder, classNameMap);
+                String className = classNames[decoder.readSmallInt()];
                 Set<Integer> constants = INTEGER_SET_SERIALIZER.read(decoder);
                 classesToConstantsBuilder.put(className, constants);
             }
@@ -116,119 +223,104 @@ public class ClassSetAnalysisData {
             ImmutableMap.Builder<Integer, Set<String>> literalsToClassesBuilder = ImmutableMap.builder();
             for (int i = 0; i < count; i++) {
                 int literal = decoder.readInt();
-                int nameCount = decoder.readSmallInt();
-                ImmutableSet.Builder<String> namesBuilder = ImmutableSet.builder();
-                for (int j = 0; j < nameCount; j++) {
-                    namesBuilder.add(readClassName(decoder, classNameMap));
-                }
-                literalsToClassesBuilder.put(literal, namesBuilder.build());
+                literalsToClassesBuilder.put(literal, readClassNames(decoder, classNames));
             }
 
             count = decoder.readSmallInt();
             ImmutableMap.Builder<String, Set<String>> classNameToChildren = ImmutableMap.builder();
             for (int i = 0; i < count; i++) {
-                String parent = readClassName(decoder, classNameMap);
-                int nameCount = decoder.readSmallInt();
-                ImmutableSet.Builder<String> namesBuilder = ImmutableSet.builder();
-                for (int j = 0; j < nameCount; j++) {
-                    namesBuilder.add(readClassName(decoder, classNameMap));
-                }
-                classNameToChildren.put(parent, namesBuilder.build());
+                String parent = classNames[decoder.readSmallInt()];
+                classNameToChildren.put(parent, readClassNames(decoder, classNames));
             }
 
-            return new ClassSetAnalysisData(filePathToClassNameBuilder.build(), dependentsBuilder.build(), classesToConstantsBuilder.build(), literalsToClassesBuilder.build(), classNameToChildren.build());
+            return new ClassSetAnalysisData(filePathToClassNameBuilder.build(), classNames, dependents, dependenciesToAllBuilder.build(), classesToConstantsBuilder.build(), literalsToClassesBuilder.build(), classNameToChildren.build());
         }
 
         @Override
         public void write(Encoder encoder, ClassSetAnalysisData value) throws Exception {
-            // Deduplicate class names when encoding.
-            // This would be more efficient with a better data structure in ClassSetAnalysisData
-            Map<String, Integer> classNameMap = new HashMap<String, Integer>();
+            encoder.writeSmallInt(value.classNames.length);
+            for (String className : value.classNames) {
+                encoder.writeString(className);
+            }
 
             encoder.writeSmallInt(value.filePathToClassName.size());
             for (Map.Entry<String, String> entry : value.filePathToClassName.entrySet()) {
                 encoder.writeString(entry.getKey());
-                writeClassName(entry.getValue(), classNameMap, encoder);
+                encoder.writeSmallInt(value.getClassId(entry.getValue()));
             }
 
-            encoder.writeSmallInt(value.dependents.size());
-            for (Map.Entry<String, DependentsSet> entry : value.dependents.entrySet()) {
-                writeClassName(entry.getKey(), classNameMap, encoder);
-                writeDependentSet(entry.getValue(), classNameMap, encoder);
+            int count = 0;
+            for (int[] ids : value.dependents) {
+                if (ids != null) {
+                    count++;
+                }
+            }
+            encoder.writeSmallInt(count);
+            for (int id = 0; id < value.dependents.length; id++) {
+                if (value.dependents[id] != null) {
+                    encoder.writeSmallInt(id);
+                    writeIds(encoder, value.dependents[id]);
+                }
+            }
+
+            encoder.writeSmallInt(value.dependenciesToAll.size());
+            for (Map.Entry<String, DependentsSet> entry : value.dependenciesToAll.entrySet()) {
+                encoder.writeSmallInt(value.getClassId(entry.getKey()));
+                encoder.writeNullableString(entry.getValue().getDescription());
             }
 
             encoder.writeSmallInt(value.classesToConstants.size());
             for (Map.Entry<String, Set<Integer>> entry : value.classesToConstants.entrySet()) {
-                writeClassName(entry.getKey(), classNameMap, encoder);
+                encoder.writeSmallInt(value.getClassId(entry.getKey()));
                 INTEGER_SET_SERIALIZER.write(encoder, entry.getValue());
             }
 
             encoder.writeSmallInt(value.literalsToClasses.size());
             for (Map.Entry<Integer, Set<String>> entry : value.literalsToClasses.entrySet()) {
                 encoder.writeInt(entry.getKey());
-                encoder.writeSmallInt(entry.getValue().size());
-                for (String className : entry.getValue()) {
-                    writeClassName(className, classNameMap, encoder);
-                }
+                writeClassNames(encoder, entry.getValue(), value);
             }
 
             encoder.writeSmallInt(value.classesToChildren.size());
             for (Map.Entry<String, Set<String>> entry : value.classesToChildren.entrySet()) {
-                writeClassName(entry.getKey(), classNameMap, encoder);
-                encoder.writeSmallInt(entry.getValue().size());
-                for (String className : entry.getValue()) {
-                    writeClassName(className, classNameMap, encoder);
-                }
+                encoder.writeSmallInt(value.getClassId(entry.getKey()));
+                writeClassNames(encoder, entry.getValue(), value);
             }
         }
 
-        private DependentsSet readDependentsSet(Decoder decoder, Map<Integer, String> classNameMap) throws IOException {
-            byte b = decoder.readByte();
-            if (b == 1) {
-                return new DependencyToAll(decoder.readNullableString());
-            }
-            int count = decoder.readSmallInt();
-            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
-            for (int i = 0; i < count; i++) {
-                builder.add(readClassName(decoder, classNameMap));
+        private static int[] readIds(Decoder decoder) throws IOException {
+            int[] ids = new int[decoder.readSmallInt()];
+            int previous = 0;
+            for (int i = 0; i < ids.length; i++) {
+                previous += decoder.readSmallInt();
+                ids[i] = previous;
             }
-            return new DefaultDependentsSet(builder.build());
+            return ids;
         }
 
-        private void writeDependentSet(DependentsSet dependentsSet, Map<String, Integer> classNameMap, Encoder encoder) throws IOException {
-            if (dependentsSet.isDependencyToAll()) {
-                encoder.writeByte((byte) 1);
-                encoder.writeNullableString(dependentsSet.getDescription());
-            } else {
-                encoder.writeByte((byte) 2);
-                encoder.writeSmallInt(dependentsSet.getDependentClasses().size());
-                for (String className : dependentsSet.getDependentClasses()) {
-                    writeClassName(className, classNameMap, encoder);
-                }
+        private static void writeIds(Encoder encoder, int[] ids) throws IOException {
+            // The ids are sorted, so the differences between them are small
+            encoder.writeSmallInt(ids.length);
+            int previous = 0;
+            for (int id : ids) {
+                encoder.writeSmallInt(id - previous);
+                previous = id;
             }
         }
 
-        private String readClassName(Decoder decoder, Map<Integer, String> classNameMap) throws IOException {
-            int id = decoder.readSmallInt();
-            if (id == 0) {
-                id = decoder.readSmallInt();
-                String className = decoder.readString();
-                classNameMap.put(id, className);
-                return className;
+        private static Set<String> readClassNames(Decoder decoder, String[] classNames) throws IOException {
+            int count = decoder.readSmallInt();
+            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+            for (int i = 0; i < count; i++) {
+                builder.add(classNames[decoder.readSmallInt()]);
             }
-            return classNameMap.get(id);
+            return builder.build();
         }
 
-        private void writeClassName(String className, Map<String, Integer> classIdMap, Encoder encoder) throws IOException {
-            Integer id = classIdMap.get(className);
-            if (id == null) {
-                id = classIdMap.size() + 1;
-                classIdMap.put(className, id);
-                encoder.writeSmallInt(0);
-                encoder.writeSmallInt(id);
-                encoder.writeString(className);
-            } else {
-                encoder.writeSmallInt(id);
+        private static void writeClassNames(Encoder encoder, Set<String> classNames, ClassSetAnalysisData value) throws IOException {
+            encoder.writeSmallInt(classNames.size());
+            for (String className : classNames) {
+                encoder.writeSmallInt(value.getClassId(className));
             }
         }
     }
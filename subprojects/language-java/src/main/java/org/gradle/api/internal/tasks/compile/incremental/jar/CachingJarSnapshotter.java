@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.tasks.compile.incremental.jar;
 
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassAnalysisExecutor;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
 import org.gradle.internal.Factory;
 import org.gradle.internal.hash.FileHasher;
@@ -28,8 +29,8 @@ public class CachingJarSnapshotter implements JarSnapshotter {
     private final FileHasher fileHasher;
     private final JarSnapshotCache cache;
 
-    public CachingJarSnapshotter(StreamHasher streamHasher, FileHasher fileHasher, ClassDependenciesAnalyzer analyzer, JarSnapshotCache cache) {
-        this.snapshotter = new DefaultJarSnapshotter(streamHasher, analyzer);
+    public CachingJarSnapshotter(StreamHasher streamHasher, FileHasher fileHasher, ClassDependenciesAnalyzer analyzer, JarSnapshotCache cache, ClassAnalysisExecutor executor) {
+        this.snapshotter = new DefaultJarSnapshotter(streamHasher, analyzer, executor, executor.getParallelism());
         this.fileHasher = fileHasher;
         this.cache = cache;
     }
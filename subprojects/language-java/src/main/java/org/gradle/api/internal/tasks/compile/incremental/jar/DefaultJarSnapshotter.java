@@ -16,31 +16,66 @@
 package org.gradle.api.internal.tasks.compile.incremental.jar;
 
 import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.gradle.api.Action;
 import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassAnalysisQueue;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator;
+import org.gradle.internal.Pair;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.StreamHasher;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
+/**
+ * Creates the snapshot of a jar. The content of each class file is read while visiting the jar, and the class files are hashed and analyzed
+ * in parallel when an executor is given.
+ */
 class DefaultJarSnapshotter {
     private final StreamHasher hasher;
     private final ClassDependenciesAnalyzer analyzer;
+    private final Executor executor;
+    private final int parallelism;
 
     public DefaultJarSnapshotter(StreamHasher hasher, ClassDependenciesAnalyzer analyzer) {
+        this(hasher, analyzer, null, 0);
+    }
+
+    public DefaultJarSnapshotter(StreamHasher hasher, ClassDependenciesAnalyzer analyzer, Executor executor, int parallelism) {
         this.hasher = hasher;
         this.analyzer = analyzer;
+        this.executor = executor;
+        this.parallelism = parallelism;
     }
 
     public JarSnapshot createSnapshot(HashCode hash, JarArchive jarArchive) {
         final Map<String, HashCode> hashes = Maps.newHashMap();
         final ClassDependentsAccumulator accumulator = new ClassDependentsAccumulator();
+        Action<Pair<HashCode, ClassAnalysis>> consumer = new Action<Pair<HashCode, ClassAnalysis>>() {
+            @Override
+            public void execute(Pair<HashCode, ClassAnalysis> analyzedClass) {
+                ClassAnalysis analysis = analyzedClass.right;
+                accumulator.addClass(analysis);
+                hashes.put(analysis.getClassName(), analyzedClass.left);
+            }
+        };
+        final ClassAnalysisQueue<Pair<HashCode, ClassAnalysis>> queue = executor == null
+            ? ClassAnalysisQueue.serial(consumer)
+            : new ClassAnalysisQueue<Pair<HashCode, ClassAnalysis>>(executor, parallelism, consumer);
 
         jarArchive.contents.visit(new FileVisitor() {
             public void visitDir(FileVisitDetails dirDetails) {
@@ -51,25 +86,116 @@ class DefaultJarSnapshotter {
                     return;
                 }
 
-                HashCode classFileHash;
-                InputStream inputStream = fileDetails.open();
-                try {
-                    classFileHash = hasher.hash(inputStream);
-                } finally {
-                    try {
-                        inputStream.close();
-                    } catch (IOException e) {
-                        throw new UncheckedIOException(e);
+                // The entries of a jar can only be read while the jar is being visited
+                final ClassFileContent classFile = new ClassFileContent(fileDetails, readContent(fileDetails));
+                queue.submit(new Callable<Pair<HashCode, ClassAnalysis>>() {
+                    @Override
+                    public Pair<HashCode, ClassAnalysis> call() {
+                        HashCode classFileHash = hasher.hash(classFile.open());
+                        return Pair.of(classFileHash, analyzer.getClassAnalysis(classFileHash, classFile));
                     }
-                }
-
-                ClassAnalysis analysis = analyzer.getClassAnalysis(classFileHash, fileDetails);
-                accumulator.addClass(analysis);
-
-                hashes.put(analysis.getClassName(), classFileHash);
+                });
             }
         });
+        queue.finish();
 
         return new JarSnapshot(new JarSnapshotData(hash, hashes, accumulator.getAnalysis()));
     }
+
+    private static byte[] readContent(FileVisitDetails fileDetails) {
+        InputStream inputStream = fileDetails.open();
+        try {
+            return ByteStreams.toByteArray(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * A class file of a jar, whose content has been read into memory.
+     */
+    private static class ClassFileContent implements FileTreeElement {
+        private final FileTreeElement entry;
+        private final byte[] content;
+
+        ClassFileContent(FileTreeElement entry, byte[] content) {
+            this.entry = entry;
+            this.content = content;
+        }
+
+        @Override
+        public File getFile() {
+            return entry.getFile();
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return false;
+        }
+
+        @Override
+        public long getLastModified() {
+            return entry.getLastModified();
+        }
+
+        @Override
+        public long getSize() {
+            return content.length;
+        }
+
+        @Override
+        public InputStream open() {
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public void copyTo(OutputStream output) {
+            try {
+                output.write(content);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean copyTo(File target) {
+            try {
+                Files.write(content, target);
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return entry.getName();
+        }
+
+        @Override
+        public String getPath() {
+            return entry.getPath();
+        }
+
+        @Override
+        public RelativePath getRelativePath() {
+            return entry.getRelativePath();
+        }
+
+        @Override
+        public int getMode() {
+            return entry.getMode();
+        }
+
+        @Override
+        public String toString() {
+            return entry.toString();
+        }
+    }
 }
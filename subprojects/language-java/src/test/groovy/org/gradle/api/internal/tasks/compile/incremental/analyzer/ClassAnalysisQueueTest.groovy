@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile.incremental.analyzer
+
+import org.gradle.api.Action
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+class ClassAnalysisQueueTest extends Specification {
+    def executor = Executors.newFixedThreadPool(4)
+    def results = []
+    def consumer = { results << it } as Action
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "serial queue consumes each result when it is submitted"() {
+        def queue = ClassAnalysisQueue.serial(consumer)
+
+        when:
+        queue.submit({ "a" } as Callable)
+
+        then:
+        results == ["a"]
+
+        when:
+        queue.submit({ "b" } as Callable)
+        queue.finish()
+
+        then:
+        results == ["a", "b"]
+    }
+
+    def "consumes results in submission order on the submitting thread"() {
+        def executor = new ReversingExecutor(5)
+        def analyzed = []
+        def queue = new ClassAnalysisQueue(executor, 2, { results << [it, Thread.currentThread()] } as Action)
+
+        when:
+        12.times { i ->
+            queue.submit({
+                analyzed << i
+                i
+            } as Callable)
+        }
+        executor.runPending()
+        queue.finish()
+
+        then:
+        analyzed == [4, 3, 2, 1, 0, 9, 8, 7, 6, 5, 11, 10]
+        results*.get(0) == (0..<12).toList()
+        results*.get(1).every { it == Thread.currentThread() }
+    }
+
+    def "rethrows failure of analysis"() {
+        def queue = new ClassAnalysisQueue(executor, 2, consumer)
+        def failure = new RuntimeException("broken")
+
+        when:
+        queue.submit({ "a" } as Callable)
+        queue.submit({ throw failure } as Callable)
+        queue.submit({ "c" } as Callable)
+        queue.finish()
+
+        then:
+        def e = thrown(RuntimeException)
+        e.is(failure)
+        results == ["a"]
+    }
+
+    /**
+     * Runs the submitted tasks on another thread in batches of a fixed size, the last submitted first, so that they complete out of order.
+     */
+    private static class ReversingExecutor implements Executor {
+        private final int batchSize
+        private final List<Runnable> pending = []
+
+        ReversingExecutor(int batchSize) {
+            this.batchSize = batchSize
+        }
+
+        @Override
+        void execute(Runnable command) {
+            pending << command
+            if (pending.size() == batchSize) {
+                runPending()
+            }
+        }
+
+        void runPending() {
+            def batch = pending.reverse()
+            pending.clear()
+            def thread = new Thread({ batch*.run() } as Runnable)
+            thread.start()
+            thread.join()
+        }
+    }
+}
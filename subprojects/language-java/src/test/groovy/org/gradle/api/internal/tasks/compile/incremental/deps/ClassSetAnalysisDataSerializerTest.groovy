@@ -43,14 +43,15 @@ class ClassSetAnalysisDataSerializerTest extends Specification {
         ClassSetAnalysisData read = serializer.read(new InputStreamBackedDecoder(new ByteArrayInputStream(os.toByteArray())))
 
         then:
-        read.dependents.keySet() == data.dependents.keySet()
+        read.classNames == ["A", "B", "C", "D", "SA", "SB1", "SB2"] as String[]
 
         ["A", "B", "C"].each {
-            assert read.dependents[it].dependentClasses == data.dependents[it].dependentClasses
-            assert read.dependents[it].dependencyToAll == data.dependents[it].dependencyToAll
+            assert read.getDependents(it).dependentClasses == data.getDependents(it).dependentClasses
+            assert !read.getDependents(it).dependencyToAll
         }
 
-        read.dependents["D"] instanceof DependencyToAll
+        read.getDependents("D") instanceof DependencyToAll
+        read.getDependents("SA") == null
         read.filePathToClassName == ["A.class": "A", "B.class": "B"]
         read.classesToConstants == [C: [1,2] as Set, D: [] as Set]
         read.literalsToClasses == [3: ['A', 'B'] as Set, 4: ['D'] as Set]
@@ -19,6 +19,7 @@
 package org.gradle.api.internal.tasks.compile.incremental.jar
 
 import org.gradle.api.file.FileTree
+import org.gradle.api.file.FileTreeElement
 import org.gradle.api.file.FileVisitor
 import org.gradle.api.internal.file.DefaultFileVisitDetails
 import org.gradle.api.internal.file.collections.DefaultDirectoryFileTreeFactory
@@ -33,6 +34,8 @@ import org.junit.Rule
 import spock.lang.Specification
 import spock.lang.Subject
 
+import java.util.concurrent.Executors
+
 @UsesNativeServices
 class DefaultJarSnapshotterTest extends Specification {
 
@@ -71,11 +74,11 @@ class DefaultJarSnapshotterTest extends Specification {
             visitor.visitFile(new DefaultFileVisitDetails(f3, null, null))
         }
         1 * hasher.hash(_) >> f1Hash
-        1 * classDependenciesAnalyzer.getClassAnalysis(f1Hash, f1Details) >> Stub(ClassAnalysis) {
+        1 * classDependenciesAnalyzer.getClassAnalysis(f1Hash, { it.path == f1Details.path }) >> Stub(ClassAnalysis) {
             getClassName() >> "Foo"
         }
         1 * hasher.hash(_) >> f2Hash
-        1 * classDependenciesAnalyzer.getClassAnalysis(f2Hash, f2Details) >> Stub(ClassAnalysis) {
+        1 * classDependenciesAnalyzer.getClassAnalysis(f2Hash, { it.path == f2Details.path }) >> Stub(ClassAnalysis) {
             getClassName() >> "com.Foo2"
         }
         0 * _._
@@ -84,4 +87,35 @@ class DefaultJarSnapshotterTest extends Specification {
         snapshot.hashes == ["Foo": f1Hash, "com.Foo2": f2Hash]
         snapshot.analysis
     }
+
+    def "analyzes classes of a jar in parallel"() {
+        def executor = Executors.newFixedThreadPool(4)
+        def snapshotter = new DefaultJarSnapshotter(hasher, classDependenciesAnalyzer, executor, 4)
+        def classFiles = (0..<50).collect {
+            def classFile = temp.createFile("foo/Foo${it}.class")
+            classFile.text = "Foo$it"
+            classFile
+        }
+        def jarFileTree = Mock(FileTree)
+
+        when:
+        def snapshot = snapshotter.createSnapshot(HashCode.fromInt(123), new JarArchive(temp.file("foo"), jarFileTree))
+
+        then:
+        1 * jarFileTree.visit(_) >> { FileVisitor visitor ->
+            classFiles.each { visitor.visitFile(new DefaultFileVisitDetails(it, null, null)) }
+        }
+        50 * hasher.hash(_) >> { InputStream input -> HashCode.fromInt(input.text.substring(3) as int) }
+        50 * classDependenciesAnalyzer.getClassAnalysis(_, _) >> { HashCode hash, FileTreeElement classFile ->
+            def className = classFile.name - ".class"
+            assert classFile.open().text == className
+            new ClassAnalysis(className, [] as Set, false, [] as Set, [] as Set, [] as Set)
+        }
+
+        and:
+        snapshot.hashes == (0..<50).collectEntries { ["Foo$it".toString(), HashCode.fromInt(it)] }
+
+        cleanup:
+        executor.shutdownNow()
+    }
 }
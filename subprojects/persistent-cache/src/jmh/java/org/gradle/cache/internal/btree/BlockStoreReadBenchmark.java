@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares random block reads from the {@link FileBackedBlockStore}, which has to be accessed by one thread at a time,
+ * with reads from the {@link MemoryMappedBlockStore}, which can be accessed concurrently.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class BlockStoreReadBenchmark {
+    private static final int BLOCK_COUNT = 50000;
+    private static final int BLOCK_SIZE = 200;
+
+    @Param({"file", "mmap"})
+    String storeType;
+
+    private File cacheFile;
+    private BlockStore store;
+    private BlockPointer[] pointers;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        cacheFile = File.createTempFile("blocks", ".bin");
+        cacheFile.deleteOnExit();
+        BlockStore.Factory factory = new BlockStore.Factory() {
+            @Override
+            public Object create(Class<? extends BlockPayload> type) {
+                return new BenchmarkPayload();
+            }
+        };
+        Random random = new Random(1L);
+        pointers = new BlockPointer[BLOCK_COUNT];
+        FileBackedBlockStore writer = new FileBackedBlockStore(cacheFile);
+        writer.open(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, factory);
+        for (int i = 0; i < BLOCK_COUNT; i++) {
+            BenchmarkPayload payload = new BenchmarkPayload();
+            random.nextBytes(payload.value);
+            writer.attach(payload);
+            writer.write(payload);
+            pointers[i] = payload.getPos();
+        }
+        writer.close();
+
+        store = storeType.equals("mmap") ? new MemoryMappedBlockStore(cacheFile) : new FileBackedBlockStore(cacheFile);
+        store.open(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, factory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        store.close();
+        cacheFile.delete();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Random random = new Random();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void read_1_thread(ThreadState state, Blackhole blackhole) {
+        read(state, blackhole);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void read_8_threads(ThreadState state, Blackhole blackhole) {
+        read(state, blackhole);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void read_32_threads(ThreadState state, Blackhole blackhole) {
+        read(state, blackhole);
+    }
+
+    private void read(ThreadState state, Blackhole blackhole) {
+        BlockPointer pos = pointers[state.random.nextInt(BLOCK_COUNT)];
+        if (store instanceof MemoryMappedBlockStore) {
+            blackhole.consume(store.read(pos, BenchmarkPayload.class));
+        } else {
+            // The file backed store, like the caches built on it, relies on its caller for thread safety
+            synchronized (store) {
+                blackhole.consume(store.read(pos, BenchmarkPayload.class));
+            }
+        }
+    }
+
+    public static class BenchmarkPayload extends BlockPayload {
+        private final byte[] value = new byte[BLOCK_SIZE];
+
+        @Override
+        protected int getSize() {
+            return BLOCK_SIZE;
+        }
+
+        @Override
+        protected byte getType() {
+            return 0x55;
+        }
+
+        @Override
+        protected void read(DataInputStream inputStream) throws Exception {
+            inputStream.readFully(value);
+        }
+
+        @Override
+        protected void write(DataOutputStream outputStream) throws Exception {
+            outputStream.write(value);
+        }
+    }
+}
@@ -20,17 +20,23 @@ import org.gradle.api.Transformer;
 import org.gradle.cache.AsyncCacheAccess;
 import org.gradle.cache.FileLock;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
+import org.gradle.internal.Cast;
 import org.gradle.internal.Factory;
 
 import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsyncPersistentIndexedCache<K, V> {
     private final AsyncCacheAccess asyncCacheAccess;
     private final MultiProcessSafePersistentIndexedCache<K, V> persistentCache;
+    private final OptimisticallyReadableCache<K, V> optimisticallyReadableCache;
+    // The number of updates that have been queued but not yet applied
+    private final AtomicInteger pendingUpdates = new AtomicInteger();
 
     public AsyncCacheAccessDecoratedCache(AsyncCacheAccess asyncCacheAccess, MultiProcessSafePersistentIndexedCache<K, V> persistentCache) {
         this.asyncCacheAccess = asyncCacheAccess;
         this.persistentCache = persistentCache;
+        this.optimisticallyReadableCache = persistentCache instanceof OptimisticallyReadableCache ? Cast.<OptimisticallyReadableCache<K, V>>uncheckedCast(persistentCache) : null;
     }
 
     @Override
@@ -41,6 +47,13 @@ public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsy
     @Nullable
     @Override
     public V get(final K key) {
+        // Can only bypass the queue when there are no queued updates that the read should see
+        if (optimisticallyReadableCache != null && pendingUpdates.get() == 0) {
+            OptimisticallyReadableCache.OptimisticRead<V> optimisticRead = optimisticallyReadableCache.getOptimistically(key);
+            if (optimisticRead.isSuccessful()) {
+                return optimisticRead.getValue();
+            }
+        }
         return asyncCacheAccess.read(new Factory<V>() {
             @Override
             public V create() {
@@ -56,12 +69,14 @@ public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsy
 
     @Override
     public void putLater(final K key, final V value, final Runnable completion) {
+        pendingUpdates.incrementAndGet();
         asyncCacheAccess.enqueue(new Runnable() {
             @Override
             public void run() {
                 try {
                     persistentCache.put(key, value);
                 } finally {
+                    pendingUpdates.decrementAndGet();
                     completion.run();
                 }
             }
@@ -70,12 +85,14 @@ public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsy
 
     @Override
     public void removeLater(final K key, final Runnable completion) {
+        pendingUpdates.incrementAndGet();
         asyncCacheAccess.enqueue(new Runnable() {
             @Override
             public void run() {
                 try {
                     persistentCache.remove(key);
                 } finally {
+                    pendingUpdates.decrementAndGet();
                     completion.run();
                 }
             }
@@ -29,6 +29,9 @@ import org.gradle.cache.LockTimeoutException;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.btree.BlockStore;
+import org.gradle.cache.internal.btree.FileBackedBlockStore;
+import org.gradle.cache.internal.btree.MemoryMappedBlockStore;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factories;
@@ -53,10 +56,19 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static org.gradle.cache.FileLockManager.LockMode.Exclusive;
+import static org.gradle.cache.FileLockManager.LockMode.None;
 
 @ThreadSafe
 public class DefaultCacheAccess implements CacheCoordinator {
     private final static Logger LOG = LoggerFactory.getLogger(DefaultCacheAccess.class);
+    /**
+     * When set to true, indexed caches read their blocks from memory mapped regions of the cache files.
+     */
+    public static final String MEMORY_MAPPED_INDEXED_CACHES_PROPERTY = "org.gradle.internal.cache.mmap";
+    /**
+     * When set to true, indexed caches first attempt to read entries without locking. This requires, and so implies, memory mapped indexed caches.
+     */
+    public static final String OPTIMISTIC_READS_PROPERTY = "org.gradle.internal.cache.optimistic-reads";
     private final static Runnable NO_OP = new Runnable() {
         @Override
         public void run() {
@@ -67,7 +79,9 @@ public class DefaultCacheAccess implements CacheCoordinator {
     private final String cacheDisplayName;
     private final File baseDir;
     private final CacheCleanupAction cleanupAction;
+    private final boolean lockOnDemand;
     private final ExecutorFactory executorFactory;
+    private final IndexedCacheReadStatistics readStatistics;
     private final FileAccess fileAccess = new UnitOfWorkFileAccess();
     private final Map<String, IndexedCacheEntry<?, ?>> caches = new HashMap<String, IndexedCacheEntry<?, ?>>();
     private final AbstractCrossProcessCacheAccess crossProcessCacheAccess;
@@ -86,10 +100,16 @@ public class DefaultCacheAccess implements CacheCoordinator {
     private int cacheClosedCount;
 
     public DefaultCacheAccess(String cacheDisplayName, File lockTarget, LockOptions lockOptions, File baseDir, FileLockManager lockManager, CacheInitializationAction initializationAction, CacheCleanupAction cleanupAction, ExecutorFactory executorFactory) {
+        this(cacheDisplayName, lockTarget, lockOptions, baseDir, lockManager, initializationAction, cleanupAction, executorFactory, new IndexedCacheReadStatistics());
+    }
+
+    public DefaultCacheAccess(String cacheDisplayName, File lockTarget, LockOptions lockOptions, File baseDir, FileLockManager lockManager, CacheInitializationAction initializationAction, CacheCleanupAction cleanupAction, ExecutorFactory executorFactory, IndexedCacheReadStatistics readStatistics) {
         this.cacheDisplayName = cacheDisplayName;
         this.baseDir = baseDir;
         this.cleanupAction = cleanupAction;
+        this.lockOnDemand = lockOptions.getMode() == None;
         this.executorFactory = executorFactory;
+        this.readStatistics = readStatistics;
         this.operations = new CacheAccessOperationsStack();
 
         Action<FileLock> onFileLockAcquireAction = new Action<FileLock>() {
@@ -166,12 +186,10 @@ public class DefaultCacheAccess implements CacheCoordinator {
             // Take ownership
             takeOwnershipNow();
             if (cleanupAction != null) {
-                try {
-                    if (cleanupAction.requiresCleanup()) {
-                        cleanupAction.cleanup();
-                    }
-                } catch (Exception e) {
-                    LOG.debug("Cache {} could not run cleanup action {}", cacheDisplayName, cleanupAction);
+                if (lockOnDemand) {
+                    cleanupWithoutFileLock();
+                } else {
+                    cleanup();
                 }
             }
             if (fileLockHeldByOwner != null) {
@@ -188,6 +206,36 @@ public class DefaultCacheAccess implements CacheCoordinator {
         }
     }
 
+    private void cleanup() {
+        try {
+            if (cleanupAction.requiresCleanup()) {
+                cleanupAction.cleanup();
+            }
+        } catch (Exception e) {
+            LOG.debug("Cache {} could not run cleanup action {}", cacheDisplayName, cleanupAction);
+        }
+    }
+
+    /**
+     * Runs the cleanup of a cache that is locked on demand without holding the file lock, so that other processes can use the cache while it is cleaned up.
+     * The cleanup action acquires the file lock for the parts that need it. This thread keeps the ownership of the cache.
+     * Must be called while holding the state lock.
+     */
+    private void cleanupWithoutFileLock() {
+        if (fileLockHeldByOwner != null) {
+            fileLockHeldByOwner.run();
+            fileLockHeldByOwner = null;
+        }
+        crossProcessCacheAccess.close();
+        // Let the file lock be released when contended while cleaning up
+        stateLock.unlock();
+        try {
+            cleanup();
+        } finally {
+            stateLock.lock();
+        }
+    }
+
     @Override
     public <T> T withFileLock(Factory<? extends T> action) {
         return crossProcessCacheAccess.withFileLock(action);
@@ -290,7 +338,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
                     }
                 };
 
-                MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
+                MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess, isOptimisticReadsEnabled(), readStatistics);
                 CacheDecorator decorator = parameters.getCacheDecorator();
                 if (decorator != null) {
                     indexedCache = decorator.decorate(cacheFile.getAbsolutePath(), parameters.getCacheName(), indexedCache, crossProcessCacheAccess, getCacheAccessWorker());
@@ -312,8 +360,13 @@ public class DefaultCacheAccess implements CacheCoordinator {
         }
     }
 
+    public static boolean isOptimisticReadsEnabled() {
+        return Boolean.getBoolean(OPTIMISTIC_READS_PROPERTY);
+    }
+
     <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
-        return new BTreePersistentIndexedCache<K, V>(cacheFile, keySerializer, valueSerializer);
+        BlockStore fileStore = Boolean.getBoolean(MEMORY_MAPPED_INDEXED_CACHES_PROPERTY) || isOptimisticReadsEnabled() ? new MemoryMappedBlockStore(cacheFile) : new FileBackedBlockStore(cacheFile);
+        return new BTreePersistentIndexedCache<K, V>(cacheFile, fileStore, keySerializer, valueSerializer);
     }
 
     /**
@@ -44,11 +44,17 @@ public class DefaultCacheFactory implements CacheFactory, Closeable {
     private final Map<File, DirCacheReference> dirCaches = new HashMap<File, DirCacheReference>();
     private final FileLockManager lockManager;
     private final ExecutorFactory executorFactory;
+    private final IndexedCacheReadStatistics readStatistics;
     private final Lock lock = new ReentrantLock();
 
     public DefaultCacheFactory(FileLockManager fileLockManager, ExecutorFactory executorFactory) {
+        this(fileLockManager, executorFactory, new IndexedCacheReadStatistics());
+    }
+
+    public DefaultCacheFactory(FileLockManager fileLockManager, ExecutorFactory executorFactory, IndexedCacheReadStatistics readStatistics) {
         this.lockManager = fileLockManager;
         this.executorFactory = executorFactory;
+        this.readStatistics = readStatistics;
     }
 
     void onOpen(Object cache) {
@@ -83,9 +89,9 @@ public class DefaultCacheFactory implements CacheFactory, Closeable {
         if (dirCacheReference == null) {
             ReferencablePersistentCache cache;
             if (!properties.isEmpty() || validator != null || initializer != null || cleanup != null) {
-                cache = new DefaultPersistentDirectoryCache(canonicalDir, displayName, validator, properties, lockTarget, lockOptions, initializer, cleanup, lockManager, executorFactory);
+                cache = new DefaultPersistentDirectoryCache(canonicalDir, displayName, validator, properties, lockTarget, lockOptions, initializer, cleanup, lockManager, executorFactory, readStatistics);
             } else {
-                cache = new DefaultPersistentDirectoryStore(canonicalDir, displayName, lockTarget, lockOptions, lockManager, executorFactory);
+                cache = new DefaultPersistentDirectoryStore(canonicalDir, displayName, lockTarget, lockOptions, lockManager, executorFactory, readStatistics);
             }
             cache.open();
             dirCacheReference = new DirCacheReference(cache, properties, lockTarget, lockOptions);
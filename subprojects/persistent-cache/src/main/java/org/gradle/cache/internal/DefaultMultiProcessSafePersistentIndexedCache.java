@@ -23,14 +23,30 @@ import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.internal.Factory;
 
-public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements MultiProcessSafePersistentIndexedCache<K, V> {
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An indexed cache that is backed by a {@link BTreePersistentIndexedCache} and that uses the given {@link FileAccess} to lock the cache file.
+ *
+ * <p>When optimistic reads are enabled, entries are first read without locking, which allows any number of threads to read from the cache at the same time.
+ * Such a read is only attempted while this process holds the lock on the cache file, and it is validated using a sequence number that is incremented before and after
+ * each change to the cache, in the manner of a seqlock. When the cache was changed while the entry was being read, the read is repeated with the cache locked.</p>
+ */
+public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements MultiProcessSafePersistentIndexedCache<K, V>, OptimisticallyReadableCache<K, V> {
     private final FileAccess fileAccess;
     private final Factory<BTreePersistentIndexedCache<K, V>> factory;
-    private BTreePersistentIndexedCache<K, V> cache;
+    private final boolean optimisticReads;
+    private final IndexedCacheReadStatistics statistics;
+    // Odd while the cache is being changed
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile BTreePersistentIndexedCache<K, V> cache;
+    private volatile boolean lockHeld;
 
-    public DefaultMultiProcessSafePersistentIndexedCache(Factory<BTreePersistentIndexedCache<K, V>> factory, FileAccess fileAccess) {
+    public DefaultMultiProcessSafePersistentIndexedCache(Factory<BTreePersistentIndexedCache<K, V>> factory, FileAccess fileAccess, boolean optimisticReads, IndexedCacheReadStatistics statistics) {
         this.factory = factory;
         this.fileAccess = fileAccess;
+        this.optimisticReads = optimisticReads;
+        this.statistics = statistics;
     }
 
     @Override
@@ -40,11 +56,29 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
 
     @Override
     public V get(final K key) {
+        OptimisticRead<V> optimisticRead = getOptimistically(key);
+        if (optimisticRead.isSuccessful()) {
+            return optimisticRead.getValue();
+        }
         final BTreePersistentIndexedCache<K, V> cache = getCache();
+        statistics.lockedRead();
         try {
             return fileAccess.readFile(new Factory<V>() {
                 public V create() {
-                    return cache.get(key);
+                    if (!optimisticReads) {
+                        return cache.get(key);
+                    }
+                    V value = cache.getUnlessCorrupt(key);
+                    if (cache.isCorrupt()) {
+                        // Discarding the content changes the cache
+                        beginChange();
+                        try {
+                            cache.discardCorruptContent();
+                        } finally {
+                            endChange();
+                        }
+                    }
+                    return value;
                 }
             });
         } catch (FileIntegrityViolationException e) {
@@ -52,6 +86,31 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
         }
     }
 
+    @Override
+    public OptimisticRead<V> getOptimistically(K key) {
+        if (!optimisticReads) {
+            return OptimisticRead.failed();
+        }
+        long before = sequence.get();
+        BTreePersistentIndexedCache<K, V> cache = this.cache;
+        if (!lockHeld || cache == null || !cache.isConcurrentReadSupported()) {
+            return OptimisticRead.failed();
+        }
+        if ((before & 1) == 0) {
+            try {
+                V value = cache.getConcurrently(key);
+                if (sequence.get() == before) {
+                    statistics.optimisticRead();
+                    return OptimisticRead.of(value);
+                }
+            } catch (Exception e) {
+                // Most likely the cache was changed while the entry was being read. Otherwise, the locked read will report the problem
+            }
+        }
+        statistics.conflict();
+        return OptimisticRead.failed();
+    }
+
     @Override
     public V get(K key, Transformer<? extends V, ? super K> producer) {
         V value = get(key);
@@ -69,7 +128,12 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
         // corruption, so we don't care at this level if it's corrupt
         fileAccess.writeFile(new Runnable() {
             public void run() {
-                cache.put(key, value);
+                beginChange();
+                try {
+                    cache.put(key, value);
+                } finally {
+                    endChange();
+                }
             }
         });
     }
@@ -81,18 +145,25 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
         // corruption, so we don't care at this level if it's corrupt
         fileAccess.writeFile(new Runnable() {
             public void run() {
-                cache.remove(key);
+                beginChange();
+                try {
+                    cache.remove(key);
+                } finally {
+                    endChange();
+                }
             }
         });
     }
 
     @Override
     public void afterLockAcquire(FileLock.State currentCacheState) {
+        lockHeld = true;
     }
 
     @Override
     public void finishWork() {
         if (cache != null) {
+            beginChange();
             try {
                 fileAccess.writeFile(new Runnable() {
                     public void run() {
@@ -101,12 +172,16 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
                 });
             } finally {
                 cache = null;
+                endChange();
             }
         }
     }
 
     @Override
     public void beforeLockRelease(FileLock.State currentCacheState) {
+        beginChange();
+        lockHeld = false;
+        endChange();
     }
 
     private BTreePersistentIndexedCache<K, V> getCache() {
@@ -115,10 +190,23 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
             // corruption, so we don't care at this level if it's corrupt
             fileAccess.writeFile(new Runnable() {
                 public void run() {
-                    cache = factory.create();
+                    beginChange();
+                    try {
+                        cache = factory.create();
+                    } finally {
+                        endChange();
+                    }
                 }
             });
         }
         return cache;
     }
+
+    private void beginChange() {
+        sequence.incrementAndGet();
+    }
+
+    private void endChange() {
+        sequence.incrementAndGet();
+    }
 }
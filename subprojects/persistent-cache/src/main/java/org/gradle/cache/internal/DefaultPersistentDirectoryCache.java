@@ -46,7 +46,11 @@ public class DefaultPersistentDirectoryCache extends DefaultPersistentDirectoryS
     private boolean didRebuild;
 
     public DefaultPersistentDirectoryCache(File dir, String displayName, CacheValidator validator, Map<String, ?> properties, CacheBuilder.LockTarget lockTarget, LockOptions lockOptions, Action<? super PersistentCache> initAction, Action<? super PersistentCache> cleanupAction, FileLockManager lockManager, ExecutorFactory executorFactory) {
-        super(dir, displayName, lockTarget, lockOptions, lockManager, executorFactory);
+        this(dir, displayName, validator, properties, lockTarget, lockOptions, initAction, cleanupAction, lockManager, executorFactory, new IndexedCacheReadStatistics());
+    }
+
+    public DefaultPersistentDirectoryCache(File dir, String displayName, CacheValidator validator, Map<String, ?> properties, CacheBuilder.LockTarget lockTarget, LockOptions lockOptions, Action<? super PersistentCache> initAction, Action<? super PersistentCache> cleanupAction, FileLockManager lockManager, ExecutorFactory executorFactory, IndexedCacheReadStatistics readStatistics) {
+        super(dir, displayName, lockTarget, lockOptions, lockManager, executorFactory, readStatistics);
         this.validator = validator;
         this.initAction = initAction;
         this.cleanupAction = cleanupAction;
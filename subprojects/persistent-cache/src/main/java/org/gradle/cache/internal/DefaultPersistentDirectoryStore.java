@@ -35,17 +35,23 @@ public class DefaultPersistentDirectoryStore implements ReferencablePersistentCa
     private final LockOptions lockOptions;
     private final FileLockManager lockManager;
     private final ExecutorFactory executorFactory;
+    private final IndexedCacheReadStatistics readStatistics;
     private final String displayName;
     protected final File propertiesFile;
     protected final File gcFile;
     private CacheCoordinator cacheAccess;
 
     public DefaultPersistentDirectoryStore(File dir, String displayName, CacheBuilder.LockTarget lockTarget, LockOptions lockOptions, FileLockManager fileLockManager, ExecutorFactory executorFactory) {
+        this(dir, displayName, lockTarget, lockOptions, fileLockManager, executorFactory, new IndexedCacheReadStatistics());
+    }
+
+    public DefaultPersistentDirectoryStore(File dir, String displayName, CacheBuilder.LockTarget lockTarget, LockOptions lockOptions, FileLockManager fileLockManager, ExecutorFactory executorFactory, IndexedCacheReadStatistics readStatistics) {
         this.dir = dir;
         this.lockTarget = lockTarget;
         this.lockOptions = lockOptions;
         this.lockManager = fileLockManager;
         this.executorFactory = executorFactory;
+        this.readStatistics = readStatistics;
         this.propertiesFile = new File(dir, "cache.properties");
         this.gcFile = new File(dir, "gc.properties");
         this.displayName = displayName != null ? (displayName + " (" + dir + ")") : ("cache directory " + dir.getName() + " (" + dir + ")");
@@ -65,7 +71,7 @@ public class DefaultPersistentDirectoryStore implements ReferencablePersistentCa
     }
 
     private CacheCoordinator createCacheAccess() {
-        return new DefaultCacheAccess(displayName, getLockTarget(), lockOptions, dir, lockManager, getInitAction(), getCleanupAction(), executorFactory);
+        return new DefaultCacheAccess(displayName, getLockTarget(), lockOptions, dir, lockManager, getInitAction(), getCleanupAction(), executorFactory, readStatistics);
     }
 
     private File getLockTarget() {
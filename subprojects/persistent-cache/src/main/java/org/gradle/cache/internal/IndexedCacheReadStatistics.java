@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how reads from the persistent indexed caches were performed, across all caches.
+ */
+@ThreadSafe
+public class IndexedCacheReadStatistics {
+    private final AtomicLong optimisticReads = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong lockedReads = new AtomicLong();
+
+    public void optimisticRead() {
+        optimisticReads.incrementAndGet();
+    }
+
+    public void conflict() {
+        conflicts.incrementAndGet();
+    }
+
+    public void lockedRead() {
+        lockedReads.incrementAndGet();
+    }
+
+    /**
+     * Returns the values counted since the previous call to this method, and starts counting from zero again.
+     */
+    public IndexedCacheReadStatisticsBuildOperationType.Result getAndReset() {
+        return new Result(optimisticReads.getAndSet(0), conflicts.getAndSet(0), lockedReads.getAndSet(0));
+    }
+
+    private static class Result implements IndexedCacheReadStatisticsBuildOperationType.Result {
+        private final long optimisticReads;
+        private final long conflicts;
+        private final long lockedReads;
+
+        Result(long optimisticReads, long conflicts, long lockedReads) {
+            this.optimisticReads = optimisticReads;
+            this.conflicts = conflicts;
+            this.lockedReads = lockedReads;
+        }
+
+        @Override
+        public long getOptimisticReads() {
+            return optimisticReads;
+        }
+
+        @Override
+        public long getConflicts() {
+            return conflicts;
+        }
+
+        @Override
+        public long getLockedReads() {
+            return lockedReads;
+        }
+
+        @Override
+        public String toString() {
+            return "{optimisticReads=" + optimisticReads + ", conflicts=" + conflicts + ", lockedReads=" + lockedReads + '}';
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Reports how reads from the persistent indexed caches were performed during a root build.
+ *
+ * This operation is executed at the end of each root build.
+ *
+ * @since 4.5
+ */
+public final class IndexedCacheReadStatisticsBuildOperationType implements BuildOperationType<IndexedCacheReadStatisticsBuildOperationType.Details, IndexedCacheReadStatisticsBuildOperationType.Result> {
+
+    public interface Details {
+
+        /**
+         * Whether the indexed caches attempt to read entries without locking the cache.
+         */
+        boolean isOptimisticReadsEnabled();
+
+    }
+
+    public interface Result {
+
+        /**
+         * The number of reads that completed without locking the cache.
+         */
+        long getOptimisticReads();
+
+        /**
+         * The number of reads without locking that had to be discarded because the cache was modified at the same time.
+         * These reads were then performed with the cache locked.
+         */
+        long getConflicts();
+
+        /**
+         * The number of reads that were performed with the cache locked, including those that followed a conflict.
+         */
+        long getLockedReads();
+
+    }
+
+    private IndexedCacheReadStatisticsBuildOperationType() {
+    }
+
+}
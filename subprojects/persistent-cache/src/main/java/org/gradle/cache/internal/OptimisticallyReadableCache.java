@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.gradle.internal.Cast;
+
+import javax.annotation.Nullable;
+
+/**
+ * An indexed cache whose entries can be read by any thread, without waiting to be given exclusive access to the cache.
+ */
+public interface OptimisticallyReadableCache<K, V> {
+    /**
+     * Attempts to read the entry for the given key without locking the cache.
+     *
+     * @return the result of the read. It is not successful when the entry could not be read without locking, for example because the cache was modified
+     * at the same time, in which case the caller should read the entry with the cache locked.
+     */
+    OptimisticRead<V> getOptimistically(K key);
+
+    /**
+     * The result of an attempt to read an entry without locking the cache.
+     */
+    final class OptimisticRead<V> {
+        private static final OptimisticRead<Object> FAILED = new OptimisticRead<Object>(false, null);
+        private static final OptimisticRead<Object> ABSENT = new OptimisticRead<Object>(true, null);
+
+        private final boolean successful;
+        private final V value;
+
+        private OptimisticRead(boolean successful, @Nullable V value) {
+            this.successful = successful;
+            this.value = value;
+        }
+
+        public static <V> OptimisticRead<V> failed() {
+            return Cast.uncheckedCast(FAILED);
+        }
+
+        public static <V> OptimisticRead<V> of(@Nullable V value) {
+            if (value == null) {
+                return Cast.uncheckedCast(ABSENT);
+            }
+            return new OptimisticRead<V>(true, value);
+        }
+
+        public boolean isSuccessful() {
+            return successful;
+        }
+
+        /**
+         * Returns the entry that was read, or null when there is no entry for the key. Can only be called when the read was successful.
+         */
+        @Nullable
+        public V getValue() {
+            if (!successful) {
+                throw new IllegalStateException("The entry could not be read without locking the cache.");
+            }
+            return value;
+        }
+    }
+}
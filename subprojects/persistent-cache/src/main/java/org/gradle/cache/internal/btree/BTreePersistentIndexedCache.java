@@ -48,13 +48,18 @@ import java.util.List;
 @SuppressWarnings("unchecked")
 public class BTreePersistentIndexedCache<K, V> {
     private static final Logger LOGGER = LoggerFactory.getLogger(BTreePersistentIndexedCache.class);
+    private static final int MAX_CONCURRENT_READ_DEPTH = 64;
     private final File cacheFile;
     private final KeyHasher<K> keyHasher;
     private final Serializer<V> serializer;
     private final short maxChildIndexEntries;
     private final int minIndexChildNodes;
     private final StateCheckBlockStore store;
+    // The underlying store, when it can be read concurrently
+    private final BlockStore concurrentReadStore;
+    private final ThreadLocal<KeyHasher<K>> concurrentKeyHashers;
     private HeaderBlock header;
+    private boolean corrupt;
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
         this(cacheFile, keySerializer, valueSerializer, (short) 512, 512);
@@ -62,13 +67,32 @@ public class BTreePersistentIndexedCache<K, V> {
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer,
                                        short maxChildIndexEntries, int maxFreeListEntries) {
+        this(cacheFile, new FileBackedBlockStore(cacheFile), keySerializer, valueSerializer, maxChildIndexEntries, maxFreeListEntries);
+    }
+
+    public BTreePersistentIndexedCache(File cacheFile, BlockStore fileStore, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(cacheFile, fileStore, keySerializer, valueSerializer, (short) 512, 512);
+    }
+
+    /**
+     * Creates a cache that stores its blocks in the given store, which must use the given file.
+     */
+    public BTreePersistentIndexedCache(File cacheFile, BlockStore fileStore, final Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                       short maxChildIndexEntries, int maxFreeListEntries) {
         this.cacheFile = cacheFile;
         this.keyHasher = new KeyHasher<K>(keySerializer);
         this.serializer = valueSerializer;
         this.maxChildIndexEntries = maxChildIndexEntries;
         this.minIndexChildNodes = maxChildIndexEntries / 2;
-        BlockStore cachingStore = new CachingBlockStore(new FileBackedBlockStore(cacheFile), ImmutableSet.of(IndexBlock.class, FreeListBlockStore.FreeListBlock.class));
+        BlockStore cachingStore = new CachingBlockStore(fileStore, ImmutableSet.of(IndexBlock.class, FreeListBlockStore.FreeListBlock.class));
         this.store = new StateCheckBlockStore(new FreeListBlockStore(cachingStore, maxFreeListEntries));
+        this.concurrentReadStore = fileStore instanceof MemoryMappedBlockStore ? fileStore : null;
+        this.concurrentKeyHashers = new ThreadLocal<KeyHasher<K>>() {
+            @Override
+            protected KeyHasher<K> initialValue() {
+                return new KeyHasher<K>(keySerializer);
+            }
+        };
         try {
             open();
         } catch (Exception e) {
@@ -119,22 +143,78 @@ public class BTreePersistentIndexedCache<K, V> {
     }
 
     public V get(K key) {
+        V value = getUnlessCorrupt(key);
+        if (corrupt) {
+            discardCorruptContent();
+        }
+        return value;
+    }
+
+    /**
+     * Reads an entry like {@link #get(Object)}, but does not discard the content of this cache when it is found to be corrupt. Instead, null is returned
+     * and {@link #isCorrupt()} returns true until {@link #discardCorruptContent()} is called.
+     */
+    public V getUnlessCorrupt(K key) {
         try {
-            try {
-                DataBlock block = header.getRoot().get(key);
-                if (block != null) {
-                    return block.getValue();
-                }
-                return null;
-            } catch (CorruptedCacheException e) {
-                rebuild();
-                return null;
+            DataBlock block = header.getRoot().get(key);
+            if (block != null) {
+                return block.getValue();
             }
+            return null;
+        } catch (CorruptedCacheException e) {
+            corrupt = true;
+            return null;
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
         }
     }
 
+    public boolean isCorrupt() {
+        return corrupt;
+    }
+
+    public void discardCorruptContent() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not discard the content of %s.", this), e);
+        }
+    }
+
+    /**
+     * Returns true when {@link #getConcurrently(Object)} can be used to read entries from this cache.
+     */
+    public boolean isConcurrentReadSupported() {
+        return concurrentReadStore != null;
+    }
+
+    /**
+     * Reads an entry directly from the underlying block store, without using or updating any other state of this cache, so that this method can be called
+     * by multiple threads at the same time. It can also be called while the cache is being modified, opened or closed, in which case the result may
+     * be inconsistent or an exception may be thrown. The caller is responsible for detecting such concurrent changes and for discarding the result.
+     */
+    public V getConcurrently(K key) throws Exception {
+        assert concurrentReadStore != null;
+        long hashCode = concurrentKeyHashers.get().getHashCode(key);
+        HeaderBlock header = concurrentReadStore.read(this.header.getPos(), HeaderBlock.class);
+        BlockPointer pos = header.index.rootPos;
+        // Give up on cycles that can be seen while the tree is being changed
+        for (int depth = 0; depth < MAX_CONCURRENT_READ_DEPTH; depth++) {
+            IndexBlock block = concurrentReadStore.read(pos, IndexBlock.class);
+            int index = Collections.binarySearch(block.entries, new IndexEntry(hashCode));
+            if (index >= 0) {
+                DataBlock dataBlock = concurrentReadStore.read(block.entries.get(index).dataBlock, DataBlock.class);
+                return dataBlock.getValue();
+            }
+            index = -index - 1;
+            pos = index == block.entries.size() ? block.tailPos : block.entries.get(index).childIndexBlock;
+            if (pos.isNull()) {
+                return null;
+            }
+        }
+        throw new CorruptedCacheException(String.format("Too many index levels found in %s.", this));
+    }
+
     public void put(K key, V value) {
         try {
             long hashCode = keyHasher.getHashCode(key);
@@ -210,6 +290,7 @@ public class BTreePersistentIndexedCache<K, V> {
         store.clear();
         close();
         doOpen();
+        corrupt = false;
     }
 
     public void verify() {
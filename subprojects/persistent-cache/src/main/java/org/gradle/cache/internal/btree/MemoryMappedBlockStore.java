@@ -0,0 +1,488 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.api.UncheckedIOException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link BlockStore} that uses the same file format as {@link FileBackedBlockStore}, but reads blocks from memory mapped regions of the file rather than seeking and reading through a {@link RandomAccessFile}.
+ *
+ * <p>Reads are safe to perform concurrently with each other and with writes. Each region of the file is guarded by one of a fixed number of read-write locks, so readers only block on writers of the same region.
+ * Writes are performed using positional writes to the file channel and become visible through the mapped regions, which are remapped as the file grows.</p>
+ *
+ * <p>The mapped regions are unmapped eagerly when the store is cleared or closed, while holding all of the region locks, so that the file can be truncated on platforms that do not allow truncating a mapped file.</p>
+ */
+public class MemoryMappedBlockStore implements BlockStore {
+    static final int DEFAULT_REGION_SIZE = 4 * 1024 * 1024;
+    static final int DEFAULT_LOCK_STRIPES = 64;
+
+    private final File cacheFile;
+    private final int regionSize;
+    private final ReadWriteLock[] stripes;
+    private final Object mappingLock = new Object();
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private Factory factory;
+    private volatile MappedByteBuffer[] regions;
+    private volatile long currentFileSize;
+    private long nextBlock;
+
+    public MemoryMappedBlockStore(File cacheFile) {
+        this(cacheFile, DEFAULT_REGION_SIZE, DEFAULT_LOCK_STRIPES);
+    }
+
+    MemoryMappedBlockStore(File cacheFile, int regionSize, int lockStripes) {
+        this.cacheFile = cacheFile;
+        this.regionSize = regionSize;
+        this.stripes = new ReadWriteLock[lockStripes];
+        for (int i = 0; i < lockStripes; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cache '" + cacheFile + "'";
+    }
+
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            file = new RandomAccessFile(cacheFile, "rw");
+            channel = file.getChannel();
+            regions = new MappedByteBuffer[0];
+            currentFileSize = file.length();
+            nextBlock = currentFileSize;
+            if (currentFileSize == 0) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void close() {
+        Lock[] locks = lockAll();
+        try {
+            synchronized (mappingLock) {
+                unmap(regions);
+                regions = null;
+            }
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    public void clear() {
+        Lock[] locks = lockAll();
+        try {
+            synchronized (mappingLock) {
+                unmap(regions);
+                regions = new MappedByteBuffer[0];
+                file.setLength(0);
+                currentFileSize = 0;
+            }
+            synchronized (this) {
+                nextBlock = 0;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    public void flush() {
+    }
+
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(BlockPointer.pos(0), payloadType);
+    }
+
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized long alloc(long length) {
+        long pos = nextBlock;
+        nextBlock += length;
+        return pos;
+    }
+
+    /**
+     * Locks the stripes for the regions that overlap the given range. Stripes are always locked in the same order, so that lockers of overlapping ranges cannot deadlock.
+     */
+    private Lock[] lock(long start, long length, boolean exclusive) {
+        long firstRegion = start / regionSize;
+        long lastRegion = (start + Math.max(length, 1) - 1) / regionSize;
+        BitSet selected = new BitSet(stripes.length);
+        for (long region = firstRegion; region <= lastRegion && selected.cardinality() < stripes.length; region++) {
+            selected.set((int) (region % stripes.length));
+        }
+        Lock[] locks = new Lock[selected.cardinality()];
+        int index = 0;
+        for (int stripe = selected.nextSetBit(0); stripe >= 0; stripe = selected.nextSetBit(stripe + 1)) {
+            Lock lock = exclusive ? stripes[stripe].writeLock() : stripes[stripe].readLock();
+            lock.lock();
+            locks[index++] = lock;
+        }
+        return locks;
+    }
+
+    /**
+     * Locks all stripes, so that no reader or writer is using any of the mapped regions.
+     */
+    private Lock[] lockAll() {
+        Lock[] locks = new Lock[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            locks[i] = stripes[i].writeLock();
+            locks[i].lock();
+        }
+        return locks;
+    }
+
+    private static void unlock(Lock[] locks) {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    /**
+     * Returns the mapped region with the given index, remapping it if it does not yet cover the given file offset.
+     */
+    private ByteBuffer region(int index, long requiredEnd) throws IOException {
+        MappedByteBuffer[] current = regions;
+        long regionStart = (long) index * regionSize;
+        if (index < current.length && current[index] != null && regionStart + current[index].limit() >= requiredEnd) {
+            return current[index];
+        }
+        synchronized (mappingLock) {
+            current = regions;
+            if (index < current.length && current[index] != null && regionStart + current[index].limit() >= requiredEnd) {
+                return current[index];
+            }
+            long size = Math.min(regionSize, currentFileSize - regionStart);
+            if (size <= 0 || regionStart + size < requiredEnd) {
+                throw new EOFException();
+            }
+            MappedByteBuffer[] updated = current;
+            if (index >= current.length) {
+                updated = new MappedByteBuffer[index + 1];
+                System.arraycopy(current, 0, updated, 0, current.length);
+            } else {
+                updated = current.clone();
+            }
+            updated[index] = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, size);
+            regions = updated;
+            return updated[index];
+        }
+    }
+
+    /**
+     * Releases the given mapped regions without waiting for them to be garbage collected. The regions must not be used afterwards.
+     * When the JVM does not allow this, the regions are left to be released by the garbage collector.
+     */
+    private static void unmap(MappedByteBuffer[] regions) {
+        if (regions == null) {
+            return;
+        }
+        for (MappedByteBuffer region : regions) {
+            if (region != null) {
+                unmap(region);
+            }
+        }
+    }
+
+    private static void unmap(MappedByteBuffer region) {
+        try {
+            // Java 9 and later
+            Class<?> unsafeType = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeType.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeType.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), region);
+            return;
+        } catch (Exception e) {
+            // Fall through
+        }
+        try {
+            // Java 8 and earlier
+            Method cleanerMethod = region.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(region);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // Leave it to the garbage collector
+        }
+    }
+
+    /**
+     * Reads the bytes of a range of the file from the mapped regions.
+     */
+    private class RegionInputStream extends InputStream {
+        private final long end;
+        private long pos;
+        private long bytesRead;
+
+        RegionInputStream(long start, long end) {
+            this.pos = start;
+            this.end = end;
+        }
+
+        long getBytesRead() {
+            return bytesRead;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos >= end) {
+                return -1;
+            }
+            ByteBuffer region = region((int) (pos / regionSize), pos + 1);
+            int value = region.get((int) (pos % regionSize)) & 0xff;
+            pos++;
+            bytesRead++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (pos >= end) {
+                return -1;
+            }
+            int offsetInRegion = (int) (pos % regionSize);
+            int count = (int) Math.min(Math.min(length, end - pos), regionSize - offsetInRegion);
+            ByteBuffer region = region((int) (pos / regionSize), pos + count).duplicate();
+            region.position(offsetInRegion);
+            region.get(buffer, offset, count);
+            pos += count;
+            bytesRead += count;
+            return count;
+        }
+    }
+
+    private final class BlockImpl extends Block {
+        private static final int HEADER_SIZE = 1 + INT_SIZE; // type, payload size
+        private static final int TAIL_SIZE = INT_SIZE;
+
+        private BlockPointer pos;
+        private int payloadSize;
+
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload);
+            pos = null;
+            payloadSize = -1;
+        }
+
+        @Override
+        public boolean hasPos() {
+            return pos != null;
+        }
+
+        @Override
+        public BlockPointer getPos() {
+            if (pos == null) {
+                pos = BlockPointer.pos(alloc(getSize()));
+            }
+            return pos;
+        }
+
+        @Override
+        public void setPos(BlockPointer pos) {
+            assert this.pos == null && !pos.isNull();
+            this.pos = pos;
+        }
+
+        public int getSize() {
+            if (payloadSize < 0) {
+                payloadSize = getPayload().getSize();
+            }
+            return payloadSize + HEADER_SIZE + TAIL_SIZE;
+        }
+
+        @Override
+        public void setSize(int size) {
+            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+            assert newPayloadSize >= payloadSize;
+            payloadSize = newPayloadSize;
+        }
+
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+            BlockPayload payload = getPayload();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + TAIL_SIZE + Math.max(payloadSize, 0));
+            DataOutputStream outputStream = new DataOutputStream(bytes);
+
+            // Write header
+            outputStream.writeByte(payload.getType());
+            outputStream.writeInt(payloadSize);
+            long finalSize = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
+
+            // Write body
+            payload.write(outputStream);
+
+            // Write count
+            long bytesWritten = outputStream.size();
+            if (bytesWritten > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Block payload exceeds maximum size");
+            }
+            outputStream.writeInt((int) bytesWritten);
+            outputStream.flush();
+
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            Lock[] locks = lock(pos, Math.max(finalSize - pos, buffer.remaining()), true);
+            try {
+                long offset = pos;
+                while (buffer.hasRemaining()) {
+                    offset += channel.write(buffer, offset);
+                }
+
+                // Pad
+                synchronized (mappingLock) {
+                    if (currentFileSize < finalSize) {
+                        file.setLength(finalSize);
+                        currentFileSize = finalSize;
+                    } else if (currentFileSize < offset) {
+                        currentFileSize = offset;
+                    }
+                }
+            } finally {
+                unlock(locks);
+            }
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            long fileSize = currentFileSize;
+            if (pos + HEADER_SIZE >= fileSize) {
+                throw blockCorruptedException();
+            }
+
+            BlockPayload payload = getPayload();
+
+            // Read header
+            Lock[] locks = lock(pos, HEADER_SIZE, false);
+            byte type;
+            int payloadSize;
+            try {
+                DataInputStream inputStream = new DataInputStream(new RegionInputStream(pos, pos + HEADER_SIZE));
+                type = inputStream.readByte();
+                payloadSize = inputStream.readInt();
+            } finally {
+                unlock(locks);
+            }
+            if (type != payload.getType()) {
+                throw blockCorruptedException();
+            }
+            if (payloadSize < 0 || pos + HEADER_SIZE + TAIL_SIZE + payloadSize > fileSize) {
+                throw blockCorruptedException();
+            }
+            this.payloadSize = payloadSize;
+
+            // Read body
+            long end = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
+            locks = lock(pos, end - pos, false);
+            try {
+                RegionInputStream regionInputStream = new RegionInputStream(pos + HEADER_SIZE, end);
+                DataInputStream inputStream = new DataInputStream(regionInputStream);
+                payload.read(inputStream);
+
+                // Read and verify count
+                long actualCount = HEADER_SIZE + regionInputStream.getBytesRead();
+                long count = inputStream.readInt();
+                if (actualCount != count) {
+                    throw blockCorruptedException();
+                }
+            } catch (EOFException e) {
+                throw blockCorruptedException();
+            } finally {
+                unlock(locks);
+            }
+        }
+
+        public RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
+                    MemoryMappedBlockStore.this));
+        }
+    }
+}
@@ -116,6 +116,25 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         accessType << [Exclusive, Shared, None]
     }
 
+    def "releases file lock before cleaning up when lock mode is none"() {
+        def access = newAccess(None)
+
+        given:
+        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "", _ as Runnable) >> lock
+        access.open()
+        access.withFileLock({} as Runnable)
+
+        when:
+        access.close()
+
+        then:
+        1 * cleanupAction.requiresCleanup() >> true
+        1 * lock.close()
+
+        then:
+        1 * cleanupAction.cleanup()
+    }
+
     def "initializes cache on open when lock mode is shared by upgrading lock"() {
         def exclusiveLock = Mock(FileLock)
         def sharedLock = Mock(FileLock)
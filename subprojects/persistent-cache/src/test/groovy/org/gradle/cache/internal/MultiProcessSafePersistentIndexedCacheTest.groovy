@@ -16,6 +16,7 @@
 package org.gradle.cache.internal
 
 import org.gradle.cache.FileAccess
+import org.gradle.cache.FileLock
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache
 import org.gradle.internal.Factory
 import spock.lang.Specification
@@ -23,7 +24,8 @@ import spock.lang.Specification
 class MultiProcessSafePersistentIndexedCacheTest extends Specification {
     final FileAccess fileAccess = Mock()
     final Factory<BTreePersistentIndexedCache<String, String>> factory = Mock()
-    final cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess)
+    final statistics = new IndexedCacheReadStatistics()
+    final cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess, false, statistics)
     final BTreePersistentIndexedCache<String, String> backingCache = Mock()
 
     def "opens cache on first access"() {
@@ -129,7 +131,153 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         0 * _._
     }
 
-    def cacheOpened() {
+    def "reads entry without locking when optimistic reads are enabled and the file lock is held"() {
+        def cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess, true, statistics)
+
+        given:
+        cacheOpened(cache)
+        cache.afterLockAcquire(Stub(FileLock.State))
+
+        when:
+        def result = cache.get("value")
+
+        then:
+        result == "result"
+
+        and:
+        1 * backingCache.isConcurrentReadSupported() >> true
+        1 * backingCache.getConcurrently("value") >> "result"
+        0 * _._
+
+        and:
+        statistics.getAndReset().optimisticReads == 1
+    }
+
+    def "reads entry with the cache locked when optimistic read fails"() {
+        def cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess, true, statistics)
+
+        given:
+        cacheOpened(cache)
+        cache.afterLockAcquire(Stub(FileLock.State))
+
+        when:
+        def result = cache.get("value")
+
+        then:
+        result == "result"
+
+        and:
+        1 * backingCache.isConcurrentReadSupported() >> true
+        1 * backingCache.getConcurrently("value") >> { throw new RuntimeException("concurrent change") }
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        1 * backingCache.getUnlessCorrupt("value") >> "result"
+        1 * backingCache.isCorrupt() >> false
+        0 * _._
+
+        and:
+        def counts = statistics.getAndReset()
+        counts.conflicts == 1
+        counts.lockedReads == 1
+    }
+
+    def "discards optimistic read when the cache is changed while reading"() {
+        def cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess, true, statistics)
+
+        given:
+        cacheOpened(cache)
+        cache.afterLockAcquire(Stub(FileLock.State))
+
+        when:
+        def result = cache.getOptimistically("value")
+
+        then:
+        !result.successful
+
+        and:
+        1 * backingCache.isConcurrentReadSupported() >> true
+        1 * backingCache.getConcurrently("value") >> {
+            cache.put("value", "new")
+            return "old"
+        }
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * backingCache.put("value", "new")
+        0 * _._
+
+        and:
+        statistics.getAndReset().conflicts == 1
+    }
+
+    def "does not read entry without locking when the file lock is not held"() {
+        def cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess, true, statistics)
+
+        given:
+        cacheOpened(cache)
+        cache.afterLockAcquire(Stub(FileLock.State))
+        cache.beforeLockRelease(Stub(FileLock.State))
+
+        when:
+        def result = cache.getOptimistically("value")
+
+        then:
+        !result.successful
+        0 * _._
+    }
+
+    def "keeps optimistic read when the cache is read with the cache locked while reading"() {
+        def cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess, true, statistics)
+
+        given:
+        cacheOpened(cache)
+        cache.afterLockAcquire(Stub(FileLock.State))
+
+        when:
+        def result = cache.getOptimistically("value")
+
+        then:
+        result.successful
+        result.value == "result"
+
+        and:
+        2 * backingCache.isConcurrentReadSupported() >> true
+        1 * backingCache.getConcurrently("value") >> {
+            assert cache.get("other") == "other"
+            return "result"
+        }
+        1 * backingCache.getConcurrently("other") >> { throw new RuntimeException("concurrent change") }
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        1 * backingCache.getUnlessCorrupt("other") >> "other"
+        1 * backingCache.isCorrupt() >> false
+        0 * _._
+    }
+
+    def "discards optimistic read when a read with the cache locked discards corrupt content"() {
+        def cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess, true, statistics)
+
+        given:
+        cacheOpened(cache)
+        cache.afterLockAcquire(Stub(FileLock.State))
+
+        when:
+        def result = cache.getOptimistically("value")
+
+        then:
+        !result.successful
+
+        and:
+        2 * backingCache.isConcurrentReadSupported() >> true
+        1 * backingCache.getConcurrently("value") >> {
+            assert cache.get("other") == null
+            return "old"
+        }
+        1 * backingCache.getConcurrently("other") >> { throw new RuntimeException("concurrent change") }
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        1 * backingCache.getUnlessCorrupt("other") >> null
+        1 * backingCache.isCorrupt() >> true
+        1 * backingCache.discardCorruptContent()
+        0 * _._
+    }
+
+    def cacheOpened(DefaultMultiProcessSafePersistentIndexedCache<String, String> cache = this.cache) {
         1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
         1 * factory.create() >> backingCache
 
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.internal.serialize.DefaultSerializer
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+
+class MemoryMappedBlockStoreTest extends ConcurrentSpec {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def factory = new BlockStore.Factory() {
+        @Override
+        Object create(Class<? extends BlockPayload> type) {
+            return new TestPayload()
+        }
+    }
+
+    def "can read blocks that span multiple regions"() {
+        def store = new MemoryMappedBlockStore(tmpDir.file("test.bin"), 16, 4)
+        def first = new TestPayload(value: "a value that is longer than a single region")
+        def second = new TestPayload(value: "another value")
+
+        when:
+        store.open({} as Runnable, factory)
+        store.attach(first)
+        store.write(first)
+        store.attach(second)
+        store.write(second)
+
+        then:
+        store.read(first.pos, TestPayload).value == first.value
+        store.read(second.pos, TestPayload).value == second.value
+
+        cleanup:
+        store.close()
+    }
+
+    def "sees blocks updated after they have been mapped"() {
+        def store = new MemoryMappedBlockStore(tmpDir.file("test.bin"), 1024, 4)
+        def block = new TestPayload(value: "original")
+
+        when:
+        store.open({} as Runnable, factory)
+        store.attach(block)
+        store.write(block)
+        store.read(block.pos, TestPayload)
+        block.value = "updated"
+        store.attach(block)
+        store.write(block)
+
+        then:
+        store.read(block.pos, TestPayload).value == "updated"
+
+        cleanup:
+        store.close()
+    }
+
+    def "uses the same file format as the file backed store"() {
+        def file = tmpDir.file("test.bin")
+        def mappedStore = new MemoryMappedBlockStore(file, 16, 4)
+        def block = new TestPayload(value: "value")
+
+        when:
+        mappedStore.open({} as Runnable, factory)
+        mappedStore.attach(block)
+        mappedStore.write(block)
+        mappedStore.close()
+
+        def fileStore = new FileBackedBlockStore(file)
+        fileStore.open({} as Runnable, factory)
+
+        then:
+        fileStore.readFirst(TestPayload).value == "value"
+
+        cleanup:
+        fileStore.close()
+    }
+
+    def "detects corrupted blocks"() {
+        def file = tmpDir.file("test.bin")
+        def store = new MemoryMappedBlockStore(file, 16, 4)
+        def block = new TestPayload(value: "value")
+
+        given:
+        store.open({} as Runnable, factory)
+        store.attach(block)
+        store.write(block)
+        store.close()
+        def raf = new RandomAccessFile(file, "rw")
+        raf.seek(0)
+        raf.writeByte(0x7f)
+        raf.close()
+
+        when:
+        store.open({} as Runnable, factory)
+        store.readFirst(TestPayload)
+
+        then:
+        thrown(CorruptedCacheException)
+
+        cleanup:
+        store.close()
+    }
+
+    def "truncates the file when cleared after regions have been mapped"() {
+        def file = tmpDir.file("test.bin")
+        def store = new MemoryMappedBlockStore(file, 16, 4)
+        def block = new TestPayload(value: "a value that is longer than a single region")
+        def replacement = new TestPayload(value: "replacement")
+
+        given:
+        store.open({} as Runnable, factory)
+        store.attach(block)
+        store.write(block)
+        store.read(block.pos, TestPayload)
+
+        when:
+        store.clear()
+
+        then:
+        file.length() == 0
+
+        when:
+        store.attach(replacement)
+        store.write(replacement)
+
+        then:
+        replacement.pos.pos == 0
+        store.readFirst(TestPayload).value == "replacement"
+
+        cleanup:
+        store.close()
+    }
+
+    def "can read blocks concurrently"() {
+        def store = new MemoryMappedBlockStore(tmpDir.file("test.bin"), 64, 4)
+        def blocks = (0..<100).collect { new TestPayload(value: "value " + it) }
+
+        given:
+        store.open({} as Runnable, factory)
+        blocks.each {
+            store.attach(it)
+            store.write(it)
+        }
+
+        when:
+        async {
+            8.times {
+                start {
+                    blocks.each { block ->
+                        assert store.read(block.pos, TestPayload).value == block.value
+                    }
+                }
+            }
+        }
+
+        then:
+        noExceptionThrown()
+
+        cleanup:
+        store.close()
+    }
+
+    def "can be used as the store for an indexed cache"() {
+        def file = tmpDir.file("cache.bin")
+        def serializer = new DefaultSerializer<String>()
+
+        when:
+        def cache = new BTreePersistentIndexedCache<String, String>(file, new MemoryMappedBlockStore(file, 256, 4), serializer, serializer, (short) 4, 100)
+        100.times { cache.put("key" + it, "value" + it) }
+        cache.verify()
+        cache.close()
+        cache = new BTreePersistentIndexedCache<String, String>(file, serializer, serializer, (short) 4, 100)
+
+        then:
+        100.times { assert cache.get("key" + it) == "value" + it }
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "can read entries of an indexed cache concurrently"() {
+        def file = tmpDir.file("cache.bin")
+        def serializer = new DefaultSerializer<String>()
+        def cache = new BTreePersistentIndexedCache<String, String>(file, new MemoryMappedBlockStore(file, 256, 4), serializer, serializer, (short) 4, 100)
+
+        given:
+        100.times { cache.put("key" + it, "value" + it) }
+
+        when:
+        async {
+            8.times {
+                start {
+                    100.times { assert cache.getConcurrently("key" + it) == "value" + it }
+                    assert cache.getConcurrently("unknown") == null
+                }
+            }
+        }
+
+        then:
+        cache.concurrentReadSupported
+        noExceptionThrown()
+
+        cleanup:
+        cache.close()
+    }
+
+    def "cannot read entries of an indexed cache concurrently when using the file backed store"() {
+        def file = tmpDir.file("cache.bin")
+        def serializer = new DefaultSerializer<String>()
+
+        when:
+        def cache = new BTreePersistentIndexedCache<String, String>(file, serializer, serializer)
+
+        then:
+        !cache.concurrentReadSupported
+
+        cleanup:
+        cache?.close()
+    }
+
+    static class TestPayload extends BlockPayload {
+        String value = ""
+
+        @Override
+        protected int getSize() {
+            return Block.INT_SIZE + value.length() * 3
+        }
+
+        @Override
+        protected byte getType() {
+            return 0x33
+        }
+
+        @Override
+        protected void read(DataInputStream inputStream) throws Exception {
+            value = inputStream.readUTF()
+        }
+
+        @Override
+        protected void write(DataOutputStream outputStream) throws Exception {
+            outputStream.writeUTF(value)
+        }
+    }
+}
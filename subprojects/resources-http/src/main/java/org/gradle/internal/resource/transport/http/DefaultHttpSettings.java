@@ -44,7 +44,7 @@ public class DefaultHttpSettings implements HttpSettings {
     }
 
     public DefaultHttpSettings(Collection<Authentication> authenticationSettings, SslContextFactory sslContextFactory) {
-        this(authenticationSettings, sslContextFactory, new DefaultHostnameVerifier(null));
+        this(authenticationSettings, sslContextFactory, DEFAULT_HOSTNAME_VERIFIER);
     }
 
     private DefaultHttpSettings(Collection<Authentication> authenticationSettings, SslContextFactory sslContextFactory, HostnameVerifier hostnameVerifier) {
@@ -96,6 +96,9 @@ public class DefaultHttpSettings implements HttpSettings {
         return hostnameVerifier;
     }
 
+    // Shared, so that settings using the default verifier can share pooled connections
+    private static final HostnameVerifier DEFAULT_HOSTNAME_VERIFIER = new DefaultHostnameVerifier(null);
+
     private static final HostnameVerifier ALL_TRUSTING_HOSTNAME_VERIFIER = new HostnameVerifier() {
         @Override
         public boolean verify(String hostname, SSLSession session) {
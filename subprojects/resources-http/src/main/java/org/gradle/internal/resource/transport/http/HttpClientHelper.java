@@ -27,7 +27,9 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.http.client.utils.HttpClientUtils;
+import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.entity.BufferedHttpEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
@@ -36,8 +38,10 @@ import org.apache.http.protocol.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Date;
 import java.util.Locale;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -49,6 +53,8 @@ public class HttpClientHelper implements Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientHelper.class);
     private CloseableHttpClient client;
     private final HttpSettings settings;
+    private final HttpConnectionPool connectionPool;
+    private final HttpRequestStatistics statistics;
 
     /**
      * Maintains a queue of contexts which are shared between threads when authentication
@@ -60,7 +66,13 @@ public class HttpClientHelper implements Closeable {
     private final ConcurrentLinkedQueue<HttpContext> sharedContext;
 
     public HttpClientHelper(HttpSettings settings) {
+        this(settings, new HttpConnectionPool(false), new HttpRequestStatistics());
+    }
+
+    public HttpClientHelper(HttpSettings settings, HttpConnectionPool connectionPool, HttpRequestStatistics statistics) {
         this.settings = settings;
+        this.connectionPool = connectionPool;
+        this.statistics = statistics;
         if (!settings.getAuthenticationSettings().isEmpty()) {
             sharedContext = new ConcurrentLinkedQueue<HttpContext>();
         } else {
@@ -84,6 +96,21 @@ public class HttpClientHelper implements Closeable {
         return processResponse(source, "GET", performRawGet(source, revalidate));
     }
 
+    /**
+     * Performs a GET request that only returns the content of the resource when it does not match the given validators.
+     * Returns {@code null} if the resource is missing. Use {@link #wasNotModified(CloseableHttpResponse)} to check whether the resource is unchanged.
+     */
+    public CloseableHttpResponse performConditionalGet(String source, @Nullable String etag, @Nullable Date lastModified) {
+        HttpGet request = new HttpGet(source);
+        if (etag != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, DateUtils.formatDate(lastModified));
+        }
+        return processResponse(source, "GET", performRequest(request, true));
+    }
+
     public CloseableHttpResponse performRequest(HttpRequestBase request, boolean revalidate) {
         String method = request.getMethod();
         if (revalidate) {
@@ -115,6 +142,11 @@ public class HttpClientHelper implements Closeable {
         return statusCode == 404;
     }
 
+    public boolean wasNotModified(CloseableHttpResponse response) {
+        int statusCode = response.getStatusLine().getStatusCode();
+        return statusCode == 304;
+    }
+
     public boolean wasSuccessful(CloseableHttpResponse response) {
         int statusCode = response.getStatusLine().getStatusCode();
         return statusCode >= 200 && statusCode < 400;
@@ -145,7 +177,21 @@ public class HttpClientHelper implements Closeable {
         // Without this, HTTP Client prohibits multiple redirects to the same location within the same context
         httpContext.removeAttribute(HttpClientContext.REDIRECT_LOCATIONS);
         LOGGER.debug("Performing HTTP {}: {}", request.getMethod(), request.getURI());
-        return getClient().execute(request, httpContext);
+        statistics.requestStarted(request.getURI());
+        long start = System.nanoTime();
+        CloseableHttpResponse response;
+        try {
+            response = getClient().execute(request, httpContext);
+        } catch (IOException e) {
+            statistics.requestCompleted(request.getURI(), System.nanoTime() - start, -1, false);
+            throw e;
+        } catch (RuntimeException e) {
+            statistics.requestCompleted(request.getURI(), System.nanoTime() - start, -1, false);
+            throw e;
+        }
+        HttpEntity entity = response.getEntity();
+        statistics.requestCompleted(request.getURI(), System.nanoTime() - start, entity != null ? entity.getContentLength() : -1, wasSuccessful(response) || wasMissing(response));
+        return response;
     }
 
     private CloseableHttpResponse processResponse(String source, String method, CloseableHttpResponse response) {
@@ -166,6 +212,11 @@ public class HttpClientHelper implements Closeable {
             HttpClientBuilder builder = HttpClientBuilder.create();
             builder.setRedirectStrategy(new AlwaysRedirectRedirectStrategy());
             new HttpClientConfigurer(settings).configure(builder);
+            HttpClientConnectionManager connectionManager = connectionPool.getConnectionManager(settings);
+            if (connectionManager != null) {
+                builder.setConnectionManager(connectionManager);
+                builder.setConnectionManagerShared(true);
+            }
             this.client = builder.build();
         }
         return client;
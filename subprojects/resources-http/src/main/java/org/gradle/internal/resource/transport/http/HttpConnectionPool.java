@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.annotation.Nullable;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps pooled HTTP connections open across builds, so that a long lived process does not open new connections to the same
+ * repositories for every build.
+ *
+ * <p>Every {@link HttpClientHelper} normally owns its connections, which are discarded along with the helper at the end of the build.
+ * When the {@value #SHARED_POOL_SYSTEM_PROPERTY} system property is set, the helpers share a connection manager instead, one for
+ * each combination of SSL context, hostname verifier and socket timeout. Connections that have been idle for longer than
+ * {@value #IDLE_TIMEOUT_SECONDS} seconds are closed the next time a connection manager is requested, and connections that have
+ * been idle for a short while are validated before they are reused.</p>
+ */
+public class HttpConnectionPool implements Stoppable {
+    public static final String SHARED_POOL_SYSTEM_PROPERTY = "org.gradle.internal.http.connectionPool.shared";
+    public static final String MAX_CONNECTIONS_SYSTEM_PROPERTY = "org.gradle.internal.http.connectionPool.maxConnections";
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+    static final int IDLE_TIMEOUT_SECONDS = 60;
+    private static final int VALIDATE_AFTER_INACTIVITY_MS = 2000;
+
+    private final boolean shared;
+    private final Map<PoolKey, PoolingHttpClientConnectionManager> connectionManagers = new HashMap<PoolKey, PoolingHttpClientConnectionManager>();
+
+    public HttpConnectionPool() {
+        this(Boolean.getBoolean(SHARED_POOL_SYSTEM_PROPERTY));
+    }
+
+    HttpConnectionPool(boolean shared) {
+        this.shared = shared;
+    }
+
+    public static int getMaxConnections() {
+        return Integer.getInteger(MAX_CONNECTIONS_SYSTEM_PROPERTY, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Returns the shared connection manager to use for the given settings, or {@code null} when connections are not shared.
+     */
+    @Nullable
+    public synchronized HttpClientConnectionManager getConnectionManager(HttpSettings settings) {
+        if (!shared) {
+            return null;
+        }
+        for (PoolingHttpClientConnectionManager connectionManager : connectionManagers.values()) {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        SSLContext sslContext = settings.getSslContextFactory().createSslContext();
+        int socketTimeoutMs = settings.getTimeoutSettings().getSocketTimeoutMs();
+        PoolKey key = new PoolKey(sslContext, settings.getHostnameVerifier(), socketTimeoutMs);
+        PoolingHttpClientConnectionManager connectionManager = connectionManagers.get(key);
+        if (connectionManager == null) {
+            connectionManager = createConnectionManager(sslContext, settings.getHostnameVerifier(), socketTimeoutMs);
+            connectionManagers.put(key, connectionManager);
+        }
+        return connectionManager;
+    }
+
+    private static PoolingHttpClientConnectionManager createConnectionManager(SSLContext sslContext, HostnameVerifier hostnameVerifier, int socketTimeoutMs) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory>create()
+            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+            .register("https", new SSLConnectionSocketFactory(sslContext, hostnameVerifier))
+            .build());
+        int maxConnections = getMaxConnections();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(socketTimeoutMs).build());
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MS);
+        return connectionManager;
+    }
+
+    @Override
+    public synchronized void stop() {
+        for (PoolingHttpClientConnectionManager connectionManager : connectionManagers.values()) {
+            connectionManager.shutdown();
+        }
+        connectionManagers.clear();
+    }
+
+    private static class PoolKey {
+        private final SSLContext sslContext;
+        private final HostnameVerifier hostnameVerifier;
+        private final int socketTimeoutMs;
+
+        PoolKey(SSLContext sslContext, HostnameVerifier hostnameVerifier, int socketTimeoutMs) {
+            this.sslContext = sslContext;
+            this.hostnameVerifier = hostnameVerifier;
+            this.socketTimeoutMs = socketTimeoutMs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            PoolKey that = (PoolKey) o;
+            return sslContext == that.sslContext && hostnameVerifier == that.hostnameVerifier && socketTimeoutMs == that.socketTimeoutMs;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(sslContext);
+            result = 31 * result + System.identityHashCode(hostnameVerifier);
+            result = 31 * result + socketTimeoutMs;
+            return result;
+        }
+    }
+}
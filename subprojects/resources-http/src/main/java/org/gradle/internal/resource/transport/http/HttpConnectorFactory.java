@@ -37,9 +37,13 @@ public class HttpConnectorFactory implements ResourceConnectorFactory {
     );
 
     private SslContextFactory sslContextFactory;
+    private final HttpConnectionPool connectionPool;
+    private final HttpRequestStatistics statistics;
 
-    public HttpConnectorFactory(SslContextFactory sslContextFactory) {
+    public HttpConnectorFactory(SslContextFactory sslContextFactory, HttpConnectionPool connectionPool, HttpRequestStatistics statistics) {
         this.sslContextFactory = sslContextFactory;
+        this.connectionPool = connectionPool;
+        this.statistics = statistics;
     }
 
     @Override
@@ -54,7 +58,7 @@ public class HttpConnectorFactory implements ResourceConnectorFactory {
 
     @Override
     public ExternalResourceConnector createResourceConnector(ResourceConnectorSpecification connectionDetails) {
-        HttpClientHelper http = new HttpClientHelper(new DefaultHttpSettings(connectionDetails.getAuthentications(), sslContextFactory));
+        HttpClientHelper http = new HttpClientHelper(new DefaultHttpSettings(connectionDetails.getAuthentications(), sslContextFactory), connectionPool, statistics);
         HttpResourceAccessor accessor = new HttpResourceAccessor(http);
         HttpResourceLister lister = new HttpResourceLister(accessor);
         HttpResourceUploader uploader = new HttpResourceUploader(http);
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the number of HTTP requests made to each remote repository, how long it took for the responses to arrive, how much content they announced,
+ * how many requests were waiting for a response at the same time and how fast the content was downloaded. A summary is logged at info level at the end
+ * of each build.
+ */
+public class HttpRequestStatistics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpRequestStatistics.class);
+
+    private final ConcurrentMap<String, RepositoryStatistics> repositories = new ConcurrentHashMap<String, RepositoryStatistics>();
+
+    /**
+     * Records that a request to the given location is about to be sent. Each call must be followed by a call to {@link #requestCompleted}.
+     */
+    public void requestStarted(URI location) {
+        getStatistics(location).started();
+    }
+
+    /**
+     * Records a request to the given location.
+     *
+     * @param latencyNanos the time between sending the request and receiving the response headers.
+     * @param contentLength the length of the response content, or a negative value if not known.
+     */
+    public void requestCompleted(URI location, long latencyNanos, long contentLength, boolean successful) {
+        getStatistics(location).record(latencyNanos, contentLength, successful);
+    }
+
+    /**
+     * Records that the content of a resource at the given location has been read to the end.
+     *
+     * @param bytes the number of bytes read.
+     * @param elapsedNanos the time between the start of the response content and reading its last byte.
+     */
+    public void downloadCompleted(URI location, long bytes, long elapsedNanos) {
+        // Only HTTP repositories are reported, other transports have no request statistics to show the download rate with
+        if (!"http".equals(location.getScheme()) && !"https".equals(location.getScheme())) {
+            return;
+        }
+        getStatistics(location).downloaded(bytes, elapsedNanos);
+    }
+
+    private RepositoryStatistics getStatistics(URI location) {
+        String repository = location.getScheme() + "://" + location.getAuthority();
+        RepositoryStatistics statistics = repositories.get(repository);
+        if (statistics == null) {
+            RepositoryStatistics newStatistics = new RepositoryStatistics();
+            statistics = repositories.putIfAbsent(repository, newStatistics);
+            if (statistics == null) {
+                statistics = newStatistics;
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns a snapshot of the statistics collected since the last reset, keyed by repository.
+     */
+    public Map<String, RepositoryStatistics> getRepositories() {
+        return new TreeMap<String, RepositoryStatistics>(repositories);
+    }
+
+    /**
+     * Logs the statistics collected since the last reset and starts over.
+     */
+    public void logAndReset() {
+        if (LOGGER.isInfoEnabled()) {
+            for (Map.Entry<String, RepositoryStatistics> entry : getRepositories().entrySet()) {
+                LOGGER.info("HTTP requests to {}: {}", entry.getKey(), entry.getValue());
+            }
+        }
+        repositories.clear();
+    }
+
+    public static class RepositoryStatistics {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong totalLatencyNanos = new AtomicLong();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong pending = new AtomicLong();
+        private final AtomicLong maxPending = new AtomicLong();
+        private final AtomicLong downloadedBytes = new AtomicLong();
+        private final AtomicLong downloadNanos = new AtomicLong();
+
+        void started() {
+            updateMax(maxPending, pending.incrementAndGet());
+        }
+
+        void record(long latencyNanos, long contentLength, boolean successful) {
+            // May have been started before the last reset
+            long current = pending.get();
+            while (current > 0 && !pending.compareAndSet(current, current - 1)) {
+                current = pending.get();
+            }
+            requests.incrementAndGet();
+            if (!successful) {
+                failures.incrementAndGet();
+            }
+            totalLatencyNanos.addAndGet(latencyNanos);
+            updateMax(maxLatencyNanos, latencyNanos);
+            if (contentLength > 0) {
+                bytes.addAndGet(contentLength);
+            }
+        }
+
+        void downloaded(long bytes, long elapsedNanos) {
+            downloadedBytes.addAndGet(bytes);
+            downloadNanos.addAndGet(elapsedNanos);
+        }
+
+        private static void updateMax(AtomicLong max, long value) {
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public long getFailures() {
+            return failures.get();
+        }
+
+        public long getAverageLatencyMillis() {
+            long count = requests.get();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / count);
+        }
+
+        public long getMaxLatencyMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+        }
+
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        /**
+         * Returns the largest number of requests that were waiting for a response at the same time, including those waiting for a connection.
+         */
+        public long getMaxPendingRequests() {
+            return maxPending.get();
+        }
+
+        /**
+         * Returns the number of bytes of content read per second, over the time spent reading the content of each download.
+         */
+        public long getBytesPerSecond() {
+            long nanos = downloadNanos.get();
+            return nanos == 0 ? 0 : (long) (downloadedBytes.get() * (double) TimeUnit.SECONDS.toNanos(1) / nanos);
+        }
+
+        @Override
+        public String toString() {
+            return getRequests() + " requests (" + getFailures() + " failed), average latency " + getAverageLatencyMillis() + "ms, max latency "
+                + getMaxLatencyMillis() + "ms, " + getBytes() + " bytes received, at most " + getMaxPendingRequests() + " requests pending, "
+                + getBytesPerSecond() + " bytes/s downloaded";
+        }
+    }
+}
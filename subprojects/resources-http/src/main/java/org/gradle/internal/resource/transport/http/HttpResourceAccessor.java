@@ -19,14 +19,16 @@ package org.gradle.internal.resource.transport.http;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.gradle.internal.IoActions;
 import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
-import org.gradle.internal.resource.transfer.ExternalResourceAccessor;
+import org.gradle.internal.resource.transfer.ConditionalExternalResourceAccessor;
+import org.gradle.internal.resource.transfer.ExternalResourceReadResponse;
+import org.gradle.internal.resource.transfer.ExternalResourceRevalidation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.net.URI;
 
-public class HttpResourceAccessor implements ExternalResourceAccessor {
+public class HttpResourceAccessor implements ConditionalExternalResourceAccessor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpResourceAccessor.class);
     private final HttpClientHelper http;
@@ -59,6 +61,25 @@ public class HttpResourceAccessor implements ExternalResourceAccessor {
         return wrapResponse(uri, response);
     }
 
+    /**
+     * Uses a conditional GET request, so that an unchanged resource is revalidated without transferring its content.
+     */
+    @Nullable
+    @Override
+    public ExternalResourceReadResponse openResourceIfModified(URI uri, ExternalResourceMetaData cachedMetaData) {
+        String location = uri.toString();
+        LOGGER.debug("Revalidating external resource: {}", location);
+        CloseableHttpResponse response = http.performConditionalGet(location, cachedMetaData.getEtag(), cachedMetaData.getLastModified());
+        if (response == null) {
+            return null;
+        }
+        if (http.wasNotModified(response)) {
+            IoActions.closeQuietly(response);
+            return ExternalResourceRevalidation.UNCHANGED;
+        }
+        return wrapResponse(uri, response);
+    }
+
     public ExternalResourceMetaData getMetaData(URI uri, boolean revalidate) {
         String location = uri.toString();
         LOGGER.debug("Constructing external resource metadata: {}", location);
@@ -21,6 +21,7 @@ import org.gradle.authentication.http.DigestAuthentication;
 import org.gradle.internal.authentication.AuthenticationSchemeRegistry;
 import org.gradle.internal.authentication.DefaultBasicAuthentication;
 import org.gradle.internal.authentication.DefaultDigestAuthentication;
+import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.resource.connector.ResourceConnectorFactory;
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.service.scopes.AbstractPluginServiceRegistry;
@@ -32,6 +33,7 @@ public class HttpResourcesPluginServiceRegistry extends AbstractPluginServiceReg
 
     public void registerBuildServices(ServiceRegistration registration) {
         registration.addProvider(new AuthenticationSchemeAction());
+        registration.addProvider(new BuildScopeServices());
     }
 
     private static class GlobalScopeServices {
@@ -39,8 +41,36 @@ public class HttpResourcesPluginServiceRegistry extends AbstractPluginServiceReg
             return new DefaultSslContextFactory();
         }
 
-        ResourceConnectorFactory createHttpConnectorFactory(SslContextFactory sslContextFactory) {
-            return new HttpConnectorFactory(sslContextFactory);
+        HttpConnectionPool createHttpConnectionPool() {
+            return new HttpConnectionPool();
+        }
+
+        HttpRequestStatistics createHttpRequestStatistics() {
+            return new HttpRequestStatistics();
+        }
+
+        ResourceConnectorFactory createHttpConnectorFactory(SslContextFactory sslContextFactory, HttpConnectionPool connectionPool, HttpRequestStatistics statistics) {
+            return new HttpConnectorFactory(sslContextFactory, connectionPool, statistics);
+        }
+    }
+
+    private static class BuildScopeServices {
+        public void configure(ServiceRegistration registration, HttpRequestStatistics statistics) {
+            // Reports the requests made during the build when the build scope services are stopped
+            registration.add(HttpRequestStatisticsReporter.class, new HttpRequestStatisticsReporter(statistics));
+        }
+    }
+
+    private static class HttpRequestStatisticsReporter implements Stoppable {
+        private final HttpRequestStatistics statistics;
+
+        HttpRequestStatisticsReporter(HttpRequestStatistics statistics) {
+            this.statistics = statistics;
+        }
+
+        @Override
+        public void stop() {
+            statistics.logAndReset();
         }
     }
 
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http
+
+import org.apache.http.ssl.SSLContexts
+import spock.lang.Specification
+
+import javax.net.ssl.HostnameVerifier
+
+class HttpConnectionPoolTest extends Specification {
+    def sslContext = SSLContexts.createDefault()
+    def hostnameVerifier = Stub(HostnameVerifier)
+
+    def "does not provide a connection manager when connections are not shared"() {
+        def pool = new HttpConnectionPool(false)
+
+        expect:
+        pool.getConnectionManager(settings(30000)) == null
+    }
+
+    def "reuses connection manager for equivalent settings"() {
+        def pool = new HttpConnectionPool(true)
+
+        when:
+        def first = pool.getConnectionManager(settings(30000))
+        def second = pool.getConnectionManager(settings(30000))
+        def third = pool.getConnectionManager(settings(10000))
+
+        then:
+        first != null
+        second.is(first)
+        !third.is(first)
+
+        cleanup:
+        pool.stop()
+    }
+
+    def "creates new connection managers after stop"() {
+        def pool = new HttpConnectionPool(true)
+        def first = pool.getConnectionManager(settings(30000))
+
+        when:
+        pool.stop()
+        def second = pool.getConnectionManager(settings(30000))
+
+        then:
+        !second.is(first)
+
+        cleanup:
+        pool.stop()
+    }
+
+    private HttpSettings settings(int socketTimeout) {
+        return Stub(HttpSettings) {
+            getSslContextFactory() >> Stub(SslContextFactory) {
+                createSslContext() >> sslContext
+            }
+            getHostnameVerifier() >> hostnameVerifier
+            getTimeoutSettings() >> Stub(HttpTimeoutSettings) {
+                getSocketTimeoutMs() >> socketTimeout
+            }
+        }
+    }
+}
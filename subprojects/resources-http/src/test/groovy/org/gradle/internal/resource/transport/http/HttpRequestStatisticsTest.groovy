@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http
+
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class HttpRequestStatisticsTest extends Specification {
+    def statistics = new HttpRequestStatistics()
+
+    def "collects statistics per repository"() {
+        when:
+        statistics.requestCompleted(new URI("https://repo.example.com/a/b.pom"), millis(10), 100, true)
+        statistics.requestCompleted(new URI("https://repo.example.com/a/b.jar"), millis(30), -1, true)
+        statistics.requestCompleted(new URI("https://repo.example.com/a/c.pom"), millis(50), 20, false)
+        statistics.requestCompleted(new URI("http://other.example.com:8080/a/b.pom"), millis(5), 200, true)
+
+        then:
+        def repositories = statistics.repositories
+        repositories.keySet() as List == ["http://other.example.com:8080", "https://repo.example.com"]
+
+        def repo = repositories["https://repo.example.com"]
+        repo.requests == 3
+        repo.failures == 1
+        repo.averageLatencyMillis == 30
+        repo.maxLatencyMillis == 50
+        repo.bytes == 120
+
+        def other = repositories["http://other.example.com:8080"]
+        other.requests == 1
+        other.failures == 0
+        other.bytes == 200
+    }
+
+    def "tracks the largest number of pending requests per repository"() {
+        def a = new URI("https://repo.example.com/a/b.pom")
+        def b = new URI("https://repo.example.com/a/b.jar")
+        def other = new URI("https://other.example.com/a/b.pom")
+
+        when:
+        statistics.requestStarted(a)
+        statistics.requestStarted(b)
+        statistics.requestStarted(other)
+        statistics.requestCompleted(a, millis(10), 100, true)
+        statistics.requestCompleted(b, millis(10), 100, true)
+        statistics.requestStarted(a)
+        statistics.requestCompleted(a, millis(10), 100, true)
+        statistics.requestCompleted(other, millis(10), 100, true)
+
+        then:
+        statistics.repositories["https://repo.example.com"].maxPendingRequests == 2
+        statistics.repositories["https://other.example.com"].maxPendingRequests == 1
+    }
+
+    def "does not count requests started before the last reset as pending"() {
+        def a = new URI("https://repo.example.com/a/b.pom")
+
+        given:
+        statistics.requestStarted(a)
+        statistics.logAndReset()
+
+        when:
+        statistics.requestCompleted(a, millis(10), 100, true)
+        statistics.requestStarted(a)
+
+        then:
+        statistics.repositories["https://repo.example.com"].maxPendingRequests == 1
+    }
+
+    def "calculates download rate per repository from the time spent reading content"() {
+        when:
+        statistics.downloadCompleted(new URI("https://repo.example.com/a/b.jar"), 3000, millis(1000))
+        statistics.downloadCompleted(new URI("https://repo.example.com/a/c.jar"), 1000, millis(1000))
+        statistics.downloadCompleted(new URI("https://other.example.com/a/b.jar"), 500, millis(250))
+        statistics.downloadCompleted(new URI("file:/repo/a/b.jar"), 500, millis(250))
+
+        then:
+        def repositories = statistics.repositories
+        repositories.keySet() as List == ["https://other.example.com", "https://repo.example.com"]
+        repositories["https://repo.example.com"].bytesPerSecond == 2000
+        repositories["https://other.example.com"].bytesPerSecond == 2000
+    }
+
+    def "starts over after logging"() {
+        given:
+        statistics.requestCompleted(new URI("https://repo.example.com/a/b.pom"), millis(10), 100, true)
+
+        when:
+        statistics.logAndReset()
+
+        then:
+        statistics.repositories.isEmpty()
+    }
+
+    private static long millis(long value) {
+        return TimeUnit.MILLISECONDS.toNanos(value)
+    }
+}
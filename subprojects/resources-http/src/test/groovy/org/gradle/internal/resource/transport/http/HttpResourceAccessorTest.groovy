@@ -17,6 +17,8 @@
 package org.gradle.internal.resource.transport.http
 
 import org.apache.http.client.methods.CloseableHttpResponse
+import org.gradle.internal.resource.metadata.ExternalResourceMetaData
+import org.gradle.internal.resource.transfer.ExternalResourceRevalidation
 import spock.lang.Specification
 
 class HttpResourceAccessorTest  extends Specification {
@@ -34,4 +36,35 @@ class HttpResourceAccessorTest  extends Specification {
         then:
         1 * response.close()
     }
+
+    def "revalidates resource using a conditional request"() {
+        def response = Mock(CloseableHttpResponse)
+        def lastModified = new Date()
+        def cachedMetaData = Stub(ExternalResourceMetaData) {
+            getEtag() >> "abc"
+            getLastModified() >> lastModified
+        }
+        def http = Mock(HttpClientHelper)
+
+        when:
+        def result = new HttpResourceAccessor(http).openResourceIfModified(uri, cachedMetaData)
+
+        then:
+        1 * http.performConditionalGet(uri.toString(), "abc", lastModified) >> response
+        1 * http.wasNotModified(response) >> notModified
+        (notModified ? 1 : 0) * response.close()
+        notModified ? result.is(ExternalResourceRevalidation.UNCHANGED) : result instanceof HttpResponseResource
+
+        where:
+        notModified << [true, false]
+    }
+
+    def "returns null when revalidated resource is missing"() {
+        def http = Mock(HttpClientHelper) {
+            performConditionalGet(uri.toString(), _, _) >> null
+        }
+
+        expect:
+        new HttpResourceAccessor(http).openResourceIfModified(uri, Stub(ExternalResourceMetaData)) == null
+    }
 }
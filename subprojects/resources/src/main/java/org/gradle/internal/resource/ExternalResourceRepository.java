@@ -16,6 +16,8 @@
 
 package org.gradle.internal.resource;
 
+import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
+
 /**
  * Provides access to {@link ExternalResource} implementations, given a URI or resource name.
  */
@@ -39,4 +41,14 @@ public interface ExternalResourceRepository {
      * @param resource The location of the resource
      */
     ExternalResource resource(ExternalResourceName resource);
+
+    /**
+     * Returns the resource with the given name, whose content is read only when it has changed since the given metadata was obtained. Note that this method does not access the resource in any way.
+     *
+     * <p>When the resource is unchanged, the read methods of the returned resource return a result without reading any content. When the resource does not exist, they behave as for {@link #resource(ExternalResourceName, boolean)}.</p>
+     *
+     * @param resource The location of the resource
+     * @param cachedMetaData The metadata of the copy of the resource that the caller has
+     */
+    ExternalResource resourceIfModified(ExternalResourceName resource, ExternalResourceMetaData cachedMetaData);
 }
@@ -46,13 +46,24 @@ public class AccessorBackedExternalResource extends AbstractExternalResource {
     private final ExternalResourceLister lister;
     // Should really be a parameter to the 'withContent' methods or baked into the accessor
     private final boolean revalidate;
+    // When not null, the content is only read when it has changed since this metadata was obtained
+    private final ExternalResourceMetaData cachedMetaData;
 
     public AccessorBackedExternalResource(ExternalResourceName name, ExternalResourceAccessor accessor, ExternalResourceUploader uploader, ExternalResourceLister lister, boolean revalidate) {
+        this(name, accessor, uploader, lister, revalidate, null);
+    }
+
+    public AccessorBackedExternalResource(ExternalResourceName name, ExternalResourceAccessor accessor, ExternalResourceUploader uploader, ExternalResourceLister lister, ExternalResourceMetaData cachedMetaData) {
+        this(name, accessor, uploader, lister, true, cachedMetaData);
+    }
+
+    private AccessorBackedExternalResource(ExternalResourceName name, ExternalResourceAccessor accessor, ExternalResourceUploader uploader, ExternalResourceLister lister, boolean revalidate, @Nullable ExternalResourceMetaData cachedMetaData) {
         this.name = name;
         this.accessor = accessor;
         this.uploader = uploader;
         this.lister = lister;
         this.revalidate = revalidate;
+        this.cachedMetaData = cachedMetaData;
     }
 
     @Override
@@ -69,10 +80,13 @@ public class AccessorBackedExternalResource extends AbstractExternalResource {
     @Override
     public ExternalResourceReadResult<Void> writeToIfPresent(File destination) throws ResourceException {
         try {
-            ExternalResourceReadResponse response = accessor.openResource(name.getUri(), revalidate);
+            ExternalResourceReadResponse response = openResource();
             if (response == null) {
                 return null;
             }
+            if (response == ExternalResourceRevalidation.UNCHANGED) {
+                return ExternalResourceReadResult.of(0);
+            }
             try {
                 CountingInputStream input = new CountingInputStream(response.openStream());
                 try {
@@ -103,10 +117,13 @@ public class AccessorBackedExternalResource extends AbstractExternalResource {
     @Override
     public <T> ExternalResourceReadResult<T> withContentIfPresent(Transformer<? extends T, ? super InputStream> transformer) throws ResourceException {
         try {
-            ExternalResourceReadResponse response = accessor.openResource(name.getUri(), revalidate);
+            ExternalResourceReadResponse response = openResource();
             if (response == null) {
                 return null;
             }
+            if (response == ExternalResourceRevalidation.UNCHANGED) {
+                return ExternalResourceReadResult.of(0, null);
+            }
             try {
                 CountingInputStream input = new CountingInputStream(new BufferedInputStream(response.openStream()));
                 try {
@@ -127,10 +144,13 @@ public class AccessorBackedExternalResource extends AbstractExternalResource {
     @Override
     public <T> ExternalResourceReadResult<T> withContentIfPresent(ContentAction<? extends T> readAction) throws ResourceException {
         try {
-            ExternalResourceReadResponse response = accessor.openResource(name.getUri(), revalidate);
+            ExternalResourceReadResponse response = openResource();
             if (response == null) {
                 return null;
             }
+            if (response == ExternalResourceRevalidation.UNCHANGED) {
+                return ExternalResourceReadResult.of(0, null);
+            }
             try {
                 CountingInputStream stream = new CountingInputStream(new BufferedInputStream(response.openStream()));
                 try {
@@ -150,10 +170,13 @@ public class AccessorBackedExternalResource extends AbstractExternalResource {
     @Override
     public ExternalResourceReadResult<Void> withContent(Action<? super InputStream> readAction) throws ResourceException {
         try {
-            ExternalResourceReadResponse response = accessor.openResource(name.getUri(), revalidate);
+            ExternalResourceReadResponse response = openResource();
             if (response == null) {
                 throw ResourceExceptions.getMissing(getURI());
             }
+            if (response == ExternalResourceRevalidation.UNCHANGED) {
+                return ExternalResourceReadResult.of(0);
+            }
             try {
                 CountingInputStream inputStream = new CountingInputStream(response.openStream());
                 readAction.execute(inputStream);
@@ -175,6 +198,14 @@ public class AccessorBackedExternalResource extends AbstractExternalResource {
         return result;
     }
 
+    @Nullable
+    private ExternalResourceReadResponse openResource() {
+        if (cachedMetaData != null) {
+            return ExternalResourceRevalidation.openResourceIfModified(accessor, name.getUri(), cachedMetaData);
+        }
+        return accessor.openResource(name.getUri(), revalidate);
+    }
+
     @Override
     public ExternalResourceWriteResult put(final ReadableContent source) throws ResourceException {
         try {
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transfer;
+
+import org.gradle.api.resources.ResourceException;
+import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+
+/**
+ * An {@link ExternalResourceAccessor} that can revalidate a previously read copy of a resource and read the resource in a single request,
+ * for example using a conditional HTTP GET request.
+ *
+ * @see ExternalResourceRevalidation
+ */
+public interface ConditionalExternalResourceAccessor extends ExternalResourceAccessor {
+    /**
+     * Reads the resource at the given location, unless it is unchanged since the given metadata was obtained. The resource is always revalidated.
+     *
+     * @param location The address of the resource to obtain
+     * @param cachedMetaData The metadata of the copy of the resource that the caller has
+     * @return {@link ExternalResourceRevalidation#UNCHANGED} if the resource is unchanged, the resource if it has changed, or null if it does not exist.
+     * Caller is responsible for closing the result.
+     * @throws ResourceException If the resource may exist, but not could be obtained for some reason.
+     */
+    @Nullable
+    ExternalResourceReadResponse openResourceIfModified(URI location, ExternalResourceMetaData cachedMetaData) throws ResourceException;
+}
@@ -30,7 +30,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
-public class DefaultExternalResourceConnector implements ExternalResourceConnector {
+public class DefaultExternalResourceConnector implements ExternalResourceConnector, ConditionalExternalResourceAccessor {
     private static final String SYSPROP_KEY = "gradle.externalresources.recordstats";
     private final static ExternalResourceAccessStats.Mode STATS_MODE = ExternalResourceAccessStats.Mode.valueOf(System.getProperty(SYSPROP_KEY, "none"));
     private final static ExternalResourceAccessStats STATS = STATS_MODE.create();
@@ -56,6 +56,13 @@ public class DefaultExternalResourceConnector implements ExternalResourceConnect
         return accessor.openResource(location, revalidate);
     }
 
+    @Nullable
+    @Override
+    public ExternalResourceReadResponse openResourceIfModified(URI location, ExternalResourceMetaData cachedMetaData) {
+        STATS.resource(location);
+        return ExternalResourceRevalidation.openResourceIfModified(accessor, location, cachedMetaData);
+    }
+
     @Nullable
     @Override
     public ExternalResourceMetaData getMetaData(URI location, boolean revalidate) {
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transfer;
+
+import org.gradle.internal.Factory;
+import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
+import org.gradle.internal.resource.metadata.ExternalResourceMetaDataCompare;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+public abstract class ExternalResourceRevalidation {
+    /**
+     * Returned by {@link ConditionalExternalResourceAccessor#openResourceIfModified(URI, ExternalResourceMetaData)} when the resource is unchanged.
+     */
+    public static final ExternalResourceReadResponse UNCHANGED = new ExternalResourceReadResponse() {
+        @Override
+        public InputStream openStream() throws IOException {
+            throw new UnsupportedOperationException("The resource is unchanged.");
+        }
+
+        @Override
+        public ExternalResourceMetaData getMetaData() {
+            throw new UnsupportedOperationException("The resource is unchanged.");
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return "unchanged resource";
+        }
+    };
+
+    private ExternalResourceRevalidation() {
+    }
+
+    /**
+     * Reads the resource at the given location unless it is unchanged, using a conditional request when the given accessor supports them, or
+     * by comparing the metadata of the resource otherwise.
+     *
+     * @see ConditionalExternalResourceAccessor#openResourceIfModified(URI, ExternalResourceMetaData)
+     */
+    @Nullable
+    public static ExternalResourceReadResponse openResourceIfModified(ExternalResourceAccessor accessor, URI location, ExternalResourceMetaData cachedMetaData) {
+        if (accessor instanceof ConditionalExternalResourceAccessor) {
+            return ((ConditionalExternalResourceAccessor) accessor).openResourceIfModified(location, cachedMetaData);
+        }
+        final ExternalResourceMetaData remoteMetaData = accessor.getMetaData(location, true);
+        if (remoteMetaData == null) {
+            return null;
+        }
+        boolean unchanged = ExternalResourceMetaDataCompare.isDefinitelyUnchanged(cachedMetaData, new Factory<ExternalResourceMetaData>() {
+            @Override
+            public ExternalResourceMetaData create() {
+                return remoteMetaData;
+            }
+        });
+        if (unchanged) {
+            return UNCHANGED;
+        }
+        return accessor.openResource(location, true);
+    }
+}
@@ -17,14 +17,27 @@
 package org.gradle.api.internal.tasks.testing;
 
 import org.gradle.api.internal.tasks.testing.operations.TestExecutionBuildOperationBuildSessionScopeServices;
+import org.gradle.api.internal.tasks.testing.worker.WarmTestWorkerPool;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.service.scopes.AbstractPluginServiceRegistry;
+import org.gradle.process.internal.health.memory.MemoryManager;
 
 public class TestingBasePluginServiceRegistry extends AbstractPluginServiceRegistry {
 
+    @Override
+    public void registerGradleUserHomeServices(ServiceRegistration registration) {
+        registration.addProvider(new GradleUserHomeServices());
+    }
+
     @Override
     public void registerBuildSessionServices(ServiceRegistration registration) {
         registration.addProvider(new TestExecutionBuildOperationBuildSessionScopeServices());
     }
 
+    private static class GradleUserHomeServices {
+        WarmTestWorkerPool createWarmTestWorkerPool(MemoryManager memoryManager, ExecutorFactory executorFactory) {
+            return new WarmTestWorkerPool(memoryManager, executorFactory);
+        }
+    }
 }
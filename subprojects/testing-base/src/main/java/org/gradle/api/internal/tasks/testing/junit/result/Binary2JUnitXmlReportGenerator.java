@@ -31,11 +31,18 @@ import org.gradle.internal.time.Time;
 import org.gradle.internal.time.Timer;
 import org.gradle.util.GFileUtils;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
+import java.util.concurrent.Semaphore;
 
+/**
+ * Writes the JUnit XML report file of each test class while visiting the results. When the number of report files waiting for a worker reaches a limit,
+ * the report file is written in the visiting thread instead, so that the results held in memory remain bounded.
+ */
 public class Binary2JUnitXmlReportGenerator {
+    private static final int MAX_PENDING_REPORT_FILES = 100;
 
     private final File testResultsDir;
     private final TestResultsProvider testResultsProvider;
@@ -77,10 +84,15 @@ public class Binary2JUnitXmlReportGenerator {
         buildOperationExecutor.runAll(new Action<BuildOperationQueue<JUnitXmlReportFileGenerator>>() {
             @Override
             public void execute(final BuildOperationQueue<JUnitXmlReportFileGenerator> queue) {
+                final Semaphore pendingReportFiles = new Semaphore(MAX_PENDING_REPORT_FILES);
                 testResultsProvider.visitClasses(new Action<TestClassResult>() {
                     public void execute(final TestClassResult result) {
                         final File reportFile = new File(testResultsDir, getReportFileName(result));
-                        queue.add(new JUnitXmlReportFileGenerator(result, reportFile, xmlWriter));
+                        if (pendingReportFiles.tryAcquire()) {
+                            queue.add(new JUnitXmlReportFileGenerator(result, reportFile, xmlWriter, pendingReportFiles));
+                        } else {
+                            buildOperationExecutor.run(new JUnitXmlReportFileGenerator(result, reportFile, xmlWriter, null));
+                        }
                     }
                 });
             }
@@ -97,11 +109,13 @@ public class Binary2JUnitXmlReportGenerator {
         private final TestClassResult result;
         private final File reportFile;
         private final JUnitXmlResultWriter xmlWriter;
+        private final Semaphore pendingReportFiles;
 
-        public JUnitXmlReportFileGenerator(TestClassResult result, File reportFile, JUnitXmlResultWriter xmlWriter) {
+        public JUnitXmlReportFileGenerator(TestClassResult result, File reportFile, JUnitXmlResultWriter xmlWriter, @Nullable Semaphore pendingReportFiles) {
             this.result = result;
             this.reportFile = reportFile;
             this.xmlWriter = xmlWriter;
+            this.pendingReportFiles = pendingReportFiles;
         }
 
         @Override
@@ -120,6 +134,9 @@ public class Binary2JUnitXmlReportGenerator {
                 throw new GradleException(String.format("Could not write XML test results for %s to file %s.", result.getClassName(), reportFile), e);
             } finally {
                 IOUtils.closeQuietly(output);
+                if (pendingReportFiles != null) {
+                    pendingReportFiles.release();
+                }
             }
         }
     }
@@ -27,7 +27,11 @@ import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
 import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -69,8 +73,15 @@ public class TestOutputStore {
         Region stdErrRegion = new Region();
     }
 
+    /**
+     * Spools the output of tests to the outputs file. Each message is encoded straight into a buffer that is reused for all messages.
+     */
     public class Writer implements Closeable {
         private final KryoBackedEncoder output;
+        private final CharsetEncoder messageEncoder = messageStorageCharset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private ByteBuffer messageBuffer = ByteBuffer.allocate(1024);
 
         private final Map<Long, Map<Long, TestCaseRegion>> index = new LinkedHashMap<Long, Map<Long, TestCaseRegion>>();
 
@@ -100,28 +111,34 @@ public class TestOutputStore {
             output.writeSmallLong(classId);
             output.writeSmallLong(testId);
 
-            byte[] bytes;
-            try {
-                bytes = outputEvent.getMessage().getBytes(messageStorageCharset.name());
-            } catch (UnsupportedEncodingException e) {
-                throw UncheckedException.throwAsUncheckedException(e);
-            }
-            output.writeSmallInt(bytes.length);
-            output.writeBytes(bytes, 0, bytes.length);
+            encodeMessage(outputEvent.getMessage());
+            output.writeSmallInt(messageBuffer.position());
+            output.writeBytes(messageBuffer.array(), 0, messageBuffer.position());
         }
 
-        private void mark(long classId, long testId, boolean isStdout) {
-            if (!index.containsKey(classId)) {
-                index.put(classId, new LinkedHashMap<Long, TestCaseRegion>());
+        private void encodeMessage(String message) {
+            int maxLength = (int) Math.ceil(message.length() * (double) messageEncoder.maxBytesPerChar());
+            if (messageBuffer.capacity() < maxLength) {
+                messageBuffer = ByteBuffer.allocate(Math.max(maxLength, messageBuffer.capacity() * 2));
             }
+            messageBuffer.clear();
+            messageEncoder.reset();
+            messageEncoder.encode(CharBuffer.wrap(message), messageBuffer, true);
+            messageEncoder.flush(messageBuffer);
+        }
 
+        private void mark(long classId, long testId, boolean isStdout) {
             Map<Long, TestCaseRegion> testCaseRegions = index.get(classId);
-            if (!testCaseRegions.containsKey(testId)) {
-                TestCaseRegion region = new TestCaseRegion();
-                testCaseRegions.put(testId, region);
+            if (testCaseRegions == null) {
+                testCaseRegions = new LinkedHashMap<Long, TestCaseRegion>();
+                index.put(classId, testCaseRegions);
             }
 
             TestCaseRegion region = testCaseRegions.get(testId);
+            if (region == null) {
+                region = new TestCaseRegion();
+                testCaseRegions.put(testId, region);
+            }
 
             Region streamRegion = isStdout ? region.stdOutRegion : region.stdErrRegion;
 
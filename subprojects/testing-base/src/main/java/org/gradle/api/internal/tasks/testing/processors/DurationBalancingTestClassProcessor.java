@@ -0,0 +1,349 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.internal.tasks.testing.worker.TestWorkerExitListener;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.actor.Actor;
+import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.dispatch.DispatchException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Manages a set of parallel TestClassProcessors, balancing the test classes between processors using the durations recorded for the test classes
+ * by earlier executions.
+ *
+ * <p>Each processor is given one test class at a time. Test classes waiting to be processed are handed out longest first as processors become idle,
+ * with the test classes that have not been executed before being handed out first. The end of a test class is detected from the test class events
+ * reported by the processor, so this requires a test framework that runs each test class as soon as it receives it, and reports events for each
+ * test class. A test class may run for as long as it needs without being reported. When the worker process of a processor exits unexpectedly,
+ * the processor is given no further test classes and a new processor is started in its place.</p>
+ *
+ * <p>The predicted and actual balance of the work between processors is logged at the end, and the measured durations are recorded for the next
+ * execution.</p>
+ */
+public class DurationBalancingTestClassProcessor implements TestClassProcessor {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.testing.balanceForks";
+    private static final Logger LOGGER = Logging.getLogger(DurationBalancingTestClassProcessor.class);
+
+    private final int maxProcessors;
+    private final Factory<TestClassProcessor> factory;
+    private final ActorFactory actorFactory;
+    private final TestClassDurationStore durationStore;
+    private final Lock lock = new ReentrantLock();
+    private final Condition progress = lock.newCondition();
+    private final PriorityQueue<PendingTestClass> pending = new PriorityQueue<PendingTestClass>(11, new LongestFirst());
+    private final List<Fork> forks = new ArrayList<Fork>();
+    private final Map<String, Long> measuredDurations = new HashMap<String, Long>();
+    private Map<String, Long> previousDurations;
+    private long defaultDuration;
+    private long sequence;
+    private TestResultProcessor resultProcessor;
+    private Actor resultProcessorActor;
+
+    public DurationBalancingTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory, TestClassDurationStore durationStore) {
+        this.maxProcessors = maxProcessors;
+        this.factory = factory;
+        this.actorFactory = actorFactory;
+        this.durationStore = durationStore;
+    }
+
+    @Override
+    public void startProcessing(TestResultProcessor resultProcessor) {
+        // Create a processor that processes events in its own thread
+        resultProcessorActor = actorFactory.createActor(resultProcessor);
+        this.resultProcessor = resultProcessorActor.getProxy(TestResultProcessor.class);
+        previousDurations = durationStore.read();
+        if (!previousDurations.isEmpty()) {
+            long total = 0;
+            for (Long duration : previousDurations.values()) {
+                total += duration;
+            }
+            defaultDuration = total / previousDurations.size();
+        }
+    }
+
+    @Override
+    public void processTestClass(TestClassRunInfo testClass) {
+        lock.lock();
+        try {
+            Long duration = previousDurations.get(testClass.getTestClassName());
+            pending.add(new PendingTestClass(testClass, duration, sequence++));
+            if (findIdleFork() == null && liveForks() < maxProcessors) {
+                startFork();
+            }
+            dispatchToIdleForks();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Fork findIdleFork() {
+        for (Fork fork : forks) {
+            if (!fork.exited && fork.outstanding.isEmpty()) {
+                return fork;
+            }
+        }
+        return null;
+    }
+
+    private int liveForks() {
+        int count = 0;
+        for (Fork fork : forks) {
+            if (!fork.exited) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void startFork() {
+        TestClassProcessor processor = factory.create();
+        Actor actor = actorFactory.createActor(processor);
+        Fork fork = new Fork(actor.getProxy(TestClassProcessor.class), actor);
+        forks.add(fork);
+        fork.processor.startProcessing(new ForkResultProcessor(fork));
+    }
+
+    private void dispatchToIdleForks() {
+        for (Fork fork : forks) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            if (!fork.exited && fork.outstanding.isEmpty()) {
+                fork.dispatch(pending.poll());
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        lock.lock();
+        try {
+            while (!pending.isEmpty() && liveForks() > 0) {
+                progress.await();
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            List<Object> stoppables = new ArrayList<Object>();
+            for (Fork fork : forks) {
+                stoppables.add(fork.processor);
+            }
+            for (Fork fork : forks) {
+                stoppables.add(fork.actor);
+            }
+            CompositeStoppable.stoppable(stoppables).add(resultProcessorActor).stop();
+        } catch (DispatchException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        } finally {
+            lock.lock();
+            try {
+                reportBalance();
+                durationStore.write(measuredDurations);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void reportBalance() {
+        if (forks.size() < 2 || !LOGGER.isInfoEnabled()) {
+            return;
+        }
+        long predictedMax = 0;
+        long predictedTotal = 0;
+        long actualMax = 0;
+        long actualTotal = 0;
+        for (Fork fork : forks) {
+            predictedMax = Math.max(predictedMax, fork.predictedLoad);
+            predictedTotal += fork.predictedLoad;
+            actualMax = Math.max(actualMax, fork.actualLoad);
+            actualTotal += fork.actualLoad;
+        }
+        LOGGER.info("Test classes distributed across {} forks: predicted busiest fork {}ms (mean {}ms), actual busiest fork {}ms (mean {}ms).",
+            forks.size(), predictedMax, predictedTotal / forks.size(), actualMax, actualTotal / forks.size());
+    }
+
+    private void testClassStarted(Fork fork, TestDescriptorInternal test, TestStartEvent event) {
+        if (!test.isComposite() || test.getClassName() == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            PendingTestClass current = fork.outstanding.peek();
+            if (current != null && fork.currentId == null && current.testClass.getTestClassName().equals(test.getClassName())) {
+                fork.currentId = test.getId();
+                fork.currentStartTime = event.getStartTime();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void testCompleted(Fork fork, Object testId, TestCompleteEvent event) {
+        lock.lock();
+        try {
+            if (fork.currentId == null || !fork.currentId.equals(testId)) {
+                return;
+            }
+            PendingTestClass completed = fork.outstanding.remove();
+            long duration = Math.max(0, event.getEndTime() - fork.currentStartTime);
+            measuredDurations.put(completed.testClass.getTestClassName(), duration);
+            fork.actualLoad += duration;
+            fork.currentId = null;
+            if (fork.outstanding.isEmpty() && !pending.isEmpty()) {
+                fork.dispatch(pending.poll());
+            }
+            progress.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void workerExited(Fork fork) {
+        lock.lock();
+        try {
+            if (fork.exited) {
+                return;
+            }
+            fork.exited = true;
+            LOGGER.info("Test worker exited unexpectedly while running {} test classes, {} test classes remain to be run.", fork.outstanding.size(), pending.size());
+            fork.outstanding.clear();
+            fork.currentId = null;
+            if (!pending.isEmpty() && findIdleFork() == null && liveForks() < maxProcessors) {
+                startFork();
+            }
+            dispatchToIdleForks();
+            progress.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private class Fork {
+        final TestClassProcessor processor;
+        final Actor actor;
+        final LinkedList<PendingTestClass> outstanding = new LinkedList<PendingTestClass>();
+        Object currentId;
+        long currentStartTime;
+        long predictedLoad;
+        long actualLoad;
+        boolean exited;
+
+        Fork(TestClassProcessor processor, Actor actor) {
+            this.processor = processor;
+            this.actor = actor;
+        }
+
+        void dispatch(PendingTestClass testClass) {
+            outstanding.add(testClass);
+            predictedLoad += testClass.duration != null ? testClass.duration : defaultDuration;
+            processor.processTestClass(testClass.testClass);
+        }
+    }
+
+    /**
+     * Forwards the events of a single fork, keeping track of the test classes that the fork has completed and whether its worker is still alive.
+     */
+    private class ForkResultProcessor implements TestResultProcessor, TestWorkerExitListener {
+        private final Fork fork;
+
+        ForkResultProcessor(Fork fork) {
+            this.fork = fork;
+        }
+
+        @Override
+        public void started(TestDescriptorInternal test, TestStartEvent event) {
+            resultProcessor.started(test, event);
+            testClassStarted(fork, test, event);
+        }
+
+        @Override
+        public void completed(Object testId, TestCompleteEvent event) {
+            resultProcessor.completed(testId, event);
+            testCompleted(fork, testId, event);
+        }
+
+        @Override
+        public void output(Object testId, TestOutputEvent event) {
+            resultProcessor.output(testId, event);
+        }
+
+        @Override
+        public void failure(Object testId, Throwable result) {
+            resultProcessor.failure(testId, result);
+        }
+
+        @Override
+        public void workerExited() {
+            DurationBalancingTestClassProcessor.this.workerExited(fork);
+        }
+    }
+
+    private static class PendingTestClass {
+        final TestClassRunInfo testClass;
+        final Long duration;
+        final long sequence;
+
+        PendingTestClass(TestClassRunInfo testClass, Long duration, long sequence) {
+            this.testClass = testClass;
+            this.duration = duration;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Orders test classes that have not been executed before first, then by descending duration, then in the order they were found.
+     */
+    private static class LongestFirst implements Comparator<PendingTestClass> {
+        @Override
+        public int compare(PendingTestClass o1, PendingTestClass o2) {
+            long duration1 = o1.duration != null ? o1.duration : Long.MAX_VALUE;
+            long duration2 = o2.duration != null ? o2.duration : Long.MAX_VALUE;
+            if (duration1 != duration2) {
+                return duration1 > duration2 ? -1 : 1;
+            }
+            return o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.FlushableEncoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the duration of each test class, as measured by the most recent execution of the class, in a file that survives between builds.
+ */
+public class TestClassDurationStore {
+    private static final Logger LOGGER = Logging.getLogger(TestClassDurationStore.class);
+    private static final int VERSION = 1;
+
+    private final File durationsFile;
+
+    public TestClassDurationStore(File durationsFile) {
+        this.durationsFile = durationsFile;
+    }
+
+    /**
+     * Returns the recorded durations in milliseconds, keyed by test class name. Returns an empty map when nothing has been recorded or the file cannot be read.
+     */
+    public Map<String, Long> read() {
+        Map<String, Long> durations = new HashMap<String, Long>();
+        if (!durationsFile.isFile()) {
+            return durations;
+        }
+        try {
+            InputStream inputStream = new FileInputStream(durationsFile);
+            try {
+                Decoder decoder = new KryoBackedDecoder(inputStream);
+                if (decoder.readSmallInt() != VERSION) {
+                    return durations;
+                }
+                int count = decoder.readSmallInt();
+                for (int i = 0; i < count; i++) {
+                    String className = decoder.readString();
+                    durations.put(className, decoder.readSmallLong());
+                }
+            } finally {
+                inputStream.close();
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Could not read test class durations from {}.", durationsFile, e);
+            durations.clear();
+        }
+        return durations;
+    }
+
+    /**
+     * Records the given durations, keeping the previously recorded durations of the test classes that are not included.
+     */
+    public void write(Map<String, Long> durations) {
+        if (durations.isEmpty()) {
+            return;
+        }
+        Map<String, Long> merged = read();
+        merged.putAll(durations);
+        try {
+            durationsFile.getParentFile().mkdirs();
+            OutputStream outputStream = new FileOutputStream(durationsFile);
+            try {
+                FlushableEncoder encoder = new KryoBackedEncoder(outputStream);
+                encoder.writeSmallInt(VERSION);
+                encoder.writeSmallInt(merged.size());
+                for (Map.Entry<String, Long> entry : merged.entrySet()) {
+                    encoder.writeString(entry.getKey());
+                    encoder.writeSmallLong(entry.getValue());
+                }
+                encoder.flush();
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.report;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestFailure;
+import org.gradle.api.internal.tasks.testing.junit.result.TestMethodResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultsProvider;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.FlushableEncoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.util.GradleVersion;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps a fingerprint of the results rendered into each class page of a test report, in a file in the temporary directory of the task that generates
+ * the report. A class page whose results have the same fingerprint as when the page was rendered does not need to be rendered again.
+ */
+class ClassPageFingerprints {
+    private static final Logger LOGGER = Logging.getLogger(ClassPageFingerprints.class);
+    private static final int VERSION = 2;
+
+    private final File fingerprintsFile;
+    private final String reportDirPath;
+
+    ClassPageFingerprints(File temporaryDir, File reportDir) {
+        this.fingerprintsFile = new File(temporaryDir, "class-page-fingerprints.bin");
+        this.reportDirPath = reportDir.getAbsolutePath();
+    }
+
+    /**
+     * Returns the fingerprint of the results rendered into the page of the given test class.
+     */
+    static HashCode fingerprint(TestClassResult classResult, TestResultsProvider resultsProvider) {
+        Hasher hasher = Hashing.md5().newHasher();
+        hasher.putString(classResult.getClassName(), Charsets.UTF_8);
+        hasher.putInt(classResult.getResults().size());
+        for (TestMethodResult methodResult : classResult.getResults()) {
+            hasher.putString(methodResult.getName(), Charsets.UTF_8);
+            hasher.putInt(methodResult.getResultType().ordinal());
+            hasher.putLong(methodResult.getDuration());
+            hasher.putInt(methodResult.getFailures().size());
+            for (TestFailure failure : methodResult.getFailures()) {
+                putNullableString(hasher, failure.getMessage());
+                putNullableString(hasher, failure.getStackTrace());
+            }
+        }
+        for (TestOutputEvent.Destination destination : TestOutputEvent.Destination.values()) {
+            boolean hasOutput = resultsProvider.hasOutput(classResult.getId(), destination);
+            hasher.putBoolean(hasOutput);
+            if (hasOutput) {
+                resultsProvider.writeAllOutput(classResult.getId(), destination, new HashingWriter(hasher));
+            }
+        }
+        return hasher.hash();
+    }
+
+    private static void putNullableString(Hasher hasher, String value) {
+        hasher.putBoolean(value != null);
+        if (value != null) {
+            hasher.putString(value, Charsets.UTF_8);
+        }
+    }
+
+    /**
+     * Returns the recorded fingerprints, keyed by page URL, and discards them, so that pages rendered from now on are not mistaken for pages matching
+     * the recorded fingerprints. Returns an empty map when nothing has been recorded, the file cannot be read, or the file was written by a different
+     * Gradle version or for a different report directory.
+     */
+    Map<String, HashCode> take() {
+        Map<String, HashCode> fingerprints = new HashMap<String, HashCode>();
+        if (!fingerprintsFile.isFile()) {
+            return fingerprints;
+        }
+        try {
+            InputStream inputStream = new FileInputStream(fingerprintsFile);
+            try {
+                Decoder decoder = new KryoBackedDecoder(inputStream);
+                if (decoder.readSmallInt() == VERSION && decoder.readString().equals(GradleVersion.current().getVersion()) && decoder.readString().equals(reportDirPath)) {
+                    int count = decoder.readSmallInt();
+                    for (int i = 0; i < count; i++) {
+                        String pageUrl = decoder.readString();
+                        fingerprints.put(pageUrl, HashCode.fromBytes(decoder.readBinary()));
+                    }
+                }
+            } finally {
+                inputStream.close();
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Could not read test report fingerprints from {}.", fingerprintsFile, e);
+            fingerprints.clear();
+        }
+        if (!fingerprintsFile.delete()) {
+            LOGGER.debug("Could not delete test report fingerprints file {}.", fingerprintsFile);
+            fingerprints.clear();
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Records the fingerprints of the class pages of the report, keyed by page URL.
+     */
+    void write(Map<String, HashCode> fingerprints) {
+        try {
+            fingerprintsFile.getParentFile().mkdirs();
+            OutputStream outputStream = new FileOutputStream(fingerprintsFile);
+            try {
+                FlushableEncoder encoder = new KryoBackedEncoder(outputStream);
+                encoder.writeSmallInt(VERSION);
+                encoder.writeString(GradleVersion.current().getVersion());
+                encoder.writeString(reportDirPath);
+                encoder.writeSmallInt(fingerprints.size());
+                for (Map.Entry<String, HashCode> entry : fingerprints.entrySet()) {
+                    encoder.writeString(entry.getKey());
+                    encoder.writeBinary(entry.getValue().asBytes());
+                }
+                encoder.flush();
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class HashingWriter extends Writer {
+        private final Hasher hasher;
+
+        HashingWriter(Hasher hasher) {
+            this.hasher = hasher;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            hasher.putUnencodedChars(CharBuffer.wrap(cbuf, off, len));
+        }
+
+        @Override
+        public void write(String str) {
+            hasher.putUnencodedChars(str);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
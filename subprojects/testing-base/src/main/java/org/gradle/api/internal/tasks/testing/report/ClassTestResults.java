@@ -79,4 +79,13 @@ public class ClassTestResults extends CompositeTestResults {
         results.add(test);
         return addTest(test);
     }
+
+    /**
+     * Discards the failure details of the tests of this class, once the page of this class has been rendered.
+     */
+    void discardFailureDetails() {
+        for (TestResult result : results) {
+            result.discardFailureDetails();
+        }
+    }
 }
@@ -15,6 +15,7 @@
  */
 package org.gradle.api.internal.tasks.testing.report;
 
+import com.google.common.hash.HashCode;
 import org.gradle.api.Action;
 import org.gradle.api.GradleException;
 import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
@@ -35,18 +36,33 @@ import org.gradle.reporting.HtmlReportRenderer;
 import org.gradle.reporting.ReportRenderer;
 import org.gradle.util.GFileUtils;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 
 import static org.gradle.api.tasks.testing.TestResult.ResultType.SKIPPED;
 
+/**
+ * Generates the HTML test report, visiting the results of each test class once.
+ *
+ * <p>The page of each class is rendered while the results are visited, and the failure details of the class are discarded once its page has been
+ * rendered. When the number of class pages waiting for a worker reaches a limit, the page is rendered in the visiting thread instead, so that the
+ * results held in memory remain bounded. The page of a class is not rendered again when its results and output are the same as when the existing
+ * page was rendered. This is checked by the operation that renders the page, as it reads the output of the class.</p>
+ */
 public class DefaultTestReport implements TestReporter {
+    private static final int MAX_PENDING_CLASS_PAGES = 100;
     private final BuildOperationExecutor buildOperationExecutor;
+    private final File temporaryDir;
     private final static Logger LOG = Logging.getLogger(DefaultTestReport.class);
 
-    public DefaultTestReport(BuildOperationExecutor buildOperationExecutor) {
+    public DefaultTestReport(BuildOperationExecutor buildOperationExecutor, File temporaryDir) {
         this.buildOperationExecutor = buildOperationExecutor;
+        this.temporaryDir = temporaryDir;
     }
 
     @Override
@@ -54,42 +70,38 @@ public class DefaultTestReport implements TestReporter {
         LOG.info("Generating HTML test report...");
 
         Timer clock = Time.startTimer();
-        AllTestResults model = loadModelFromProvider(resultsProvider);
-        generateFiles(model, resultsProvider, reportDir);
+        generateFiles(resultsProvider, reportDir);
         LOG.info("Finished generating test html results ({}) into: {}", clock.getElapsed(), reportDir);
     }
 
-    private AllTestResults loadModelFromProvider(TestResultsProvider resultsProvider) {
-        final AllTestResults model = new AllTestResults();
-        resultsProvider.visitClasses(new Action<TestClassResult>() {
-            public void execute(TestClassResult classResult) {
-                model.addTestClass(classResult.getId(), classResult.getClassName());
-                List<TestMethodResult> collectedResults = classResult.getResults();
-                for (TestMethodResult collectedResult : collectedResults) {
-                    final TestResult testResult = model.addTest(classResult.getId(), classResult.getClassName(), collectedResult.getName(), collectedResult.getDuration());
-                    if (collectedResult.getResultType() == SKIPPED) {
-                        testResult.setIgnored();
-                    } else {
-                        List<TestFailure> failures = collectedResult.getFailures();
-                        for (TestFailure failure : failures) {
-                            testResult.addFailure(failure);
-                        }
-                    }
+    private static ClassTestResults addToModel(AllTestResults model, TestClassResult classResult) {
+        ClassTestResults classResults = model.addTestClass(classResult.getId(), classResult.getClassName());
+        List<TestMethodResult> collectedResults = classResult.getResults();
+        for (TestMethodResult collectedResult : collectedResults) {
+            final TestResult testResult = model.addTest(classResult.getId(), classResult.getClassName(), collectedResult.getName(), collectedResult.getDuration());
+            if (collectedResult.getResultType() == SKIPPED) {
+                testResult.setIgnored();
+            } else {
+                List<TestFailure> failures = collectedResult.getFailures();
+                for (TestFailure failure : failures) {
+                    testResult.addFailure(failure);
                 }
             }
-        });
-        return model;
+        }
+        return classResults;
     }
 
-    private void generateFiles(AllTestResults model, final TestResultsProvider resultsProvider, final File reportDir) {
+    private void generateFiles(final TestResultsProvider resultsProvider, final File reportDir) {
         try {
+            final ClassPageFingerprints pageFingerprints = new ClassPageFingerprints(temporaryDir, reportDir);
+            final Map<String, HashCode> previousFingerprints = pageFingerprints.take();
+            final Map<String, HashCode> fingerprints = new ConcurrentHashMap<String, HashCode>();
             HtmlReportRenderer htmlRenderer = new HtmlReportRenderer();
             buildOperationExecutor.run(new RunnableBuildOperation() {
                 @Override
                 public void run(BuildOperationContext context) {
-                    // Clean-up old HTML report directories
+                    // Clean-up old HTML report directories, keeping the class pages that may be reused
                     GFileUtils.deleteQuietly(new File(reportDir, "packages"));
-                    GFileUtils.deleteQuietly(new File(reportDir, "classes"));
                 }
 
                 @Override
@@ -98,35 +110,60 @@ public class DefaultTestReport implements TestReporter {
                 }
             });
 
-            htmlRenderer.render(model, new ReportRenderer<AllTestResults, HtmlReportBuilder>() {
+            htmlRenderer.render(new AllTestResults(), new ReportRenderer<AllTestResults, HtmlReportBuilder>() {
                 @Override
                 public void render(final AllTestResults model, final HtmlReportBuilder output) throws IOException {
                     buildOperationExecutor.runAll(new Action<BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>>>() {
                         @Override
-                        public void execute(BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>> queue) {
+                        public void execute(final BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>> queue) {
+                            final Semaphore pendingClassPages = new Semaphore(MAX_PENDING_CLASS_PAGES);
+                            resultsProvider.visitClasses(new Action<TestClassResult>() {
+                                @Override
+                                public void execute(TestClassResult classResult) {
+                                    ClassTestResults classResults = addToModel(model, classResult);
+                                    ClassPageFingerprint fingerprint = new ClassPageFingerprint(classResult, resultsProvider, previousFingerprints, fingerprints, reportDir);
+                                    if (pendingClassPages.tryAcquire()) {
+                                        queue.add(new ClassPageFileGenerator(classResults, new ClassPageRenderer(resultsProvider), output, fingerprint, pendingClassPages));
+                                    } else {
+                                        buildOperationExecutor.run(new ClassPageFileGenerator(classResults, new ClassPageRenderer(resultsProvider), output, fingerprint, null));
+                                    }
+                                }
+                            });
                             queue.add(generator("index.html", model, new OverviewPageRenderer(), output));
                             for (PackageTestResults packageResults : model.getPackages()) {
                                 queue.add(generator(packageResults.getBaseUrl(), packageResults, new PackagePageRenderer(), output));
-                                for (ClassTestResults classResults : packageResults.getClasses()) {
-                                    queue.add(generator(classResults.getBaseUrl(), classResults, new ClassPageRenderer(resultsProvider), output));
-                                }
                             }
                         }
                     });
                 }
             }, reportDir);
+
+            deleteStaleClassPages(reportDir, fingerprints);
+            pageFingerprints.write(fingerprints);
         } catch (Exception e) {
             throw new GradleException(String.format("Could not generate test report to '%s'.", reportDir), e);
         }
     }
 
+    private static void deleteStaleClassPages(File reportDir, Map<String, HashCode> fingerprints) {
+        File[] classPages = new File(reportDir, "classes").listFiles();
+        if (classPages == null) {
+            return;
+        }
+        for (File classPage : classPages) {
+            if (!fingerprints.containsKey("classes/" + classPage.getName())) {
+                GFileUtils.deleteQuietly(classPage);
+            }
+        }
+    }
+
     public static <T extends CompositeTestResults> HtmlReportFileGenerator<T> generator(String fileUrl, T results, PageRenderer<T> renderer, HtmlReportBuilder output) {
         return new HtmlReportFileGenerator<T>(fileUrl, results, renderer, output);
     }
 
     private static class HtmlReportFileGenerator<T extends CompositeTestResults> implements RunnableBuildOperation {
         private final String fileUrl;
-        private final T results;
+        protected final T results;
         private final PageRenderer<T> renderer;
         private final HtmlReportBuilder output;
 
@@ -147,4 +184,58 @@ public class DefaultTestReport implements TestReporter {
             output.renderHtmlPage(fileUrl, results, renderer);
         }
     }
+
+    /**
+     * Renders the page of a test class unless the existing page is up-to-date, then discards the failure details of the class and frees its place
+     * among the pending class pages.
+     */
+    private static class ClassPageFileGenerator extends HtmlReportFileGenerator<ClassTestResults> {
+        private final ClassPageFingerprint fingerprint;
+        private final Semaphore pendingClassPages;
+
+        ClassPageFileGenerator(ClassTestResults results, ClassPageRenderer renderer, HtmlReportBuilder output, ClassPageFingerprint fingerprint, @Nullable Semaphore pendingClassPages) {
+            super(results.getBaseUrl(), results, renderer, output);
+            this.fingerprint = fingerprint;
+            this.pendingClassPages = pendingClassPages;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            try {
+                if (!fingerprint.isPageUpToDate(results.getBaseUrl())) {
+                    super.run(context);
+                }
+            } finally {
+                results.discardFailureDetails();
+                if (pendingClassPages != null) {
+                    pendingClassPages.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Fingerprints the results of a test class and records the fingerprint for the next report.
+     */
+    private static class ClassPageFingerprint {
+        private final TestClassResult classResult;
+        private final TestResultsProvider resultsProvider;
+        private final Map<String, HashCode> previousFingerprints;
+        private final Map<String, HashCode> fingerprints;
+        private final File reportDir;
+
+        ClassPageFingerprint(TestClassResult classResult, TestResultsProvider resultsProvider, Map<String, HashCode> previousFingerprints, Map<String, HashCode> fingerprints, File reportDir) {
+            this.classResult = classResult;
+            this.resultsProvider = resultsProvider;
+            this.previousFingerprints = previousFingerprints;
+            this.fingerprints = fingerprints;
+            this.reportDir = reportDir;
+        }
+
+        boolean isPageUpToDate(String pageUrl) {
+            HashCode fingerprint = ClassPageFingerprints.fingerprint(classResult, resultsProvider);
+            fingerprints.put(pageUrl, fingerprint);
+            return fingerprint.equals(previousFingerprints.get(pageUrl)) && new File(reportDir, pageUrl).isFile();
+        }
+    }
 }
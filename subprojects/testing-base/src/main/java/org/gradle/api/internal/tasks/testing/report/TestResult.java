@@ -28,6 +28,7 @@ public class TestResult extends TestResultModel implements Comparable<TestResult
     final List<TestFailure> failures = new ArrayList<TestFailure>();
     final String name;
     boolean ignored;
+    boolean failed;
 
     public TestResult(String name, long duration, ClassTestResults classResults) {
         this.name = name;
@@ -53,7 +54,7 @@ public class TestResult extends TestResultModel implements Comparable<TestResult
         if (ignored) {
             return ResultType.SKIPPED;
         }
-        return failures.isEmpty() ? ResultType.SUCCESS : ResultType.FAILURE;
+        return failed ? ResultType.FAILURE : ResultType.SUCCESS;
     }
 
     @Override
@@ -81,6 +82,14 @@ public class TestResult extends TestResultModel implements Comparable<TestResult
     public void addFailure(TestFailure failure) {
         classResults.failed(this);
         failures.add(failure);
+        failed = true;
+    }
+
+    /**
+     * Discards the details of the failures, which are only required to render the page of the test class. The test remains failed.
+     */
+    void discardFailureDetails() {
+        failures.clear();
     }
 
     public void setIgnored() {
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor;
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor;
+import org.gradle.api.internal.tasks.testing.DefaultTestMethodDescriptor;
+import org.gradle.api.internal.tasks.testing.DefaultTestSuiteDescriptor;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedScheduledExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.id.CompositeIdGenerator;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TestResultProcessor} which sends the events of a test worker in batches, instead of sending each event as a separate message.
+ *
+ * <p>Events are encoded into the current batch as they arrive. The batch is sent when it reaches {@link #MAX_BATCH_BYTES}, when a test class or
+ * suite completes, so that the build process learns promptly that the worker is ready for more work, and otherwise at least every
+ * {@link #MAX_BATCH_DELAY_MILLIS}. Class, method and suite names are sent once, the first time they are used, and are referred to by number
+ * afterwards. Events for descriptors or ids of types that cannot be encoded are sent as separate messages, after sending the current batch.</p>
+ */
+public class BatchingTestResultProcessor implements TestResultProcessor, Stoppable {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.testing.batchEvents";
+    static final int MAX_BATCH_BYTES = 32 * 1024;
+    static final long MAX_BATCH_DELAY_MILLIS = 100;
+
+    private final RemoteTestResultProcessor target;
+    private final ManagedScheduledExecutor flushExecutor;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(MAX_BATCH_BYTES);
+    private final KryoBackedEncoder encoder = new KryoBackedEncoder(buffer);
+    private final Map<String, Integer> names = new HashMap<String, Integer>();
+    private final Set<Object> compositeIds = new HashSet<Object>();
+    private int batchStart;
+    private int eventCount;
+
+    public BatchingTestResultProcessor(RemoteTestResultProcessor target, ExecutorFactory executorFactory) {
+        this.target = target;
+        this.flushExecutor = executorFactory.createScheduled("Test event batching", 1);
+        flushExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, MAX_BATCH_DELAY_MILLIS, MAX_BATCH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void started(TestDescriptorInternal test, TestStartEvent event) {
+        byte descriptorType = descriptorType(test);
+        if (descriptorType < 0 || !isEncodable(test.getId()) || (event.getParentId() != null && !isEncodable(event.getParentId()))) {
+            flush();
+            target.started(test, event);
+            return;
+        }
+        if (test.isComposite()) {
+            compositeIds.add(test.getId());
+        }
+        encoder.writeByte(TestEventBatch.STARTED);
+        encoder.writeByte(descriptorType);
+        writeId(test.getId());
+        if (descriptorType == TestEventBatch.TEST || descriptorType == TestEventBatch.METHOD) {
+            writeName(test.getClassName());
+        }
+        writeName(test.getName());
+        encoder.writeSmallLong(event.getStartTime());
+        encoder.writeBoolean(event.getParentId() != null);
+        if (event.getParentId() != null) {
+            writeId(event.getParentId());
+        }
+        eventEncoded();
+    }
+
+    @Override
+    public synchronized void completed(Object testId, TestCompleteEvent event) {
+        if (!isEncodable(testId)) {
+            flush();
+            target.completed(testId, event);
+            return;
+        }
+        encoder.writeByte(TestEventBatch.COMPLETED);
+        writeId(testId);
+        encoder.writeSmallLong(event.getEndTime());
+        encoder.writeSmallInt(event.getResultType() == null ? 0 : event.getResultType().ordinal() + 1);
+        eventEncoded();
+        if (compositeIds.remove(testId)) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized void output(Object testId, TestOutputEvent event) {
+        if (!isEncodable(testId)) {
+            flush();
+            target.output(testId, event);
+            return;
+        }
+        encoder.writeByte(TestEventBatch.OUTPUT);
+        writeId(testId);
+        encoder.writeBoolean(event.getDestination() == TestOutputEvent.Destination.StdOut);
+        encoder.writeString(event.getMessage());
+        eventEncoded();
+    }
+
+    @Override
+    public synchronized void failure(Object testId, Throwable result) {
+        if (!isEncodable(testId)) {
+            flush();
+            target.failure(testId, result);
+            return;
+        }
+        encoder.writeByte(TestEventBatch.FAILURE);
+        writeId(testId);
+        try {
+            BaseSerializerFactory.THROWABLE_SERIALIZER.write(encoder, result);
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        eventEncoded();
+    }
+
+    /**
+     * Sends the current batch, if it contains any events.
+     */
+    public synchronized void flush() {
+        if (eventCount == 0) {
+            return;
+        }
+        encoder.flush();
+        TestEventBatch batch = new TestEventBatch(buffer.toByteArray(), eventCount);
+        buffer.reset();
+        batchStart = encoder.getWritePosition();
+        eventCount = 0;
+        target.events(batch);
+    }
+
+    /**
+     * Sends the current batch and stops sending batches periodically.
+     */
+    @Override
+    public void stop() {
+        try {
+            flush();
+        } finally {
+            flushExecutor.stop();
+        }
+    }
+
+    private void eventEncoded() {
+        eventCount++;
+        if (encoder.getWritePosition() - batchStart >= MAX_BATCH_BYTES) {
+            flush();
+        }
+    }
+
+    private void writeId(Object id) {
+        CompositeIdGenerator.CompositeId compositeId = (CompositeIdGenerator.CompositeId) id;
+        encoder.writeSmallLong((Long) compositeId.getScope());
+        encoder.writeSmallLong((Long) compositeId.getId());
+    }
+
+    private void writeName(String name) {
+        Integer index = names.get(name);
+        if (index != null) {
+            encoder.writeSmallInt(index);
+            return;
+        }
+        names.put(name, names.size() + 1);
+        encoder.writeSmallInt(0);
+        encoder.writeString(name);
+    }
+
+    private static boolean isEncodable(Object id) {
+        if (!(id instanceof CompositeIdGenerator.CompositeId)) {
+            return false;
+        }
+        CompositeIdGenerator.CompositeId compositeId = (CompositeIdGenerator.CompositeId) id;
+        return compositeId.getScope() instanceof Long && compositeId.getId() instanceof Long;
+    }
+
+    private static byte descriptorType(TestDescriptorInternal test) {
+        Class<?> type = test.getClass();
+        if (type == DefaultTestSuiteDescriptor.class) {
+            return TestEventBatch.SUITE;
+        } else if (type == WorkerTestClassProcessor.WorkerTestSuiteDescriptor.class) {
+            return TestEventBatch.WORKER_SUITE;
+        } else if (type == DefaultTestClassDescriptor.class) {
+            return TestEventBatch.CLASS;
+        } else if (type == DefaultTestDescriptor.class) {
+            return TestEventBatch.TEST;
+        } else if (type == DefaultTestMethodDescriptor.class) {
+            return TestEventBatch.METHOD;
+        }
+        return -1;
+    }
+}
@@ -24,12 +24,16 @@ import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.internal.remote.ObjectConnection;
 import org.gradle.internal.work.WorkerLeaseRegistry;
+import org.gradle.process.ExecResult;
 import org.gradle.process.JavaForkOptions;
+import org.gradle.process.internal.ExecHandle;
+import org.gradle.process.internal.ExecHandleListener;
 import org.gradle.process.internal.worker.WorkerProcess;
 import org.gradle.process.internal.worker.WorkerProcessBuilder;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
 import org.gradle.util.CollectionUtils;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.net.URL;
 import java.util.List;
@@ -42,12 +46,16 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     private final Iterable<File> classPath;
     private final Action<WorkerProcessBuilder> buildConfigAction;
     private final ModuleRegistry moduleRegistry;
+    private final WarmTestWorkerPool warmWorkerPool;
+    private final boolean batchEvents;
     private RemoteTestClassProcessor remoteProcessor;
     private WorkerProcess workerProcess;
+    private WarmTestWorkerClient warmWorker;
     private TestResultProcessor resultProcessor;
     private WorkerLeaseRegistry.WorkerLeaseCompletion completion;
+    private volatile boolean stopping;
 
-    public ForkingTestClassProcessor(WorkerLeaseRegistry.WorkerLease parentWorkerLease, WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry) {
+    public ForkingTestClassProcessor(WorkerLeaseRegistry.WorkerLease parentWorkerLease, WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry, @Nullable WarmTestWorkerPool warmWorkerPool, boolean batchEvents) {
         this.currentWorkerLease = parentWorkerLease;
         this.workerFactory = workerFactory;
         this.processorFactory = processorFactory;
@@ -55,6 +63,8 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
         this.classPath = classPath;
         this.buildConfigAction = buildConfigAction;
         this.moduleRegistry = moduleRegistry;
+        this.warmWorkerPool = warmWorkerPool;
+        this.batchEvents = batchEvents;
     }
 
     @Override
@@ -73,26 +83,52 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     }
 
     RemoteTestClassProcessor forkProcess() {
-        WorkerProcessBuilder builder = workerFactory.create(new TestWorker(processorFactory));
-        builder.setBaseName("Gradle Test Executor");
-        builder.setImplementationClasspath(getTestWorkerImplementationClasspath());
-        builder.applicationClasspath(classPath);
-        options.copyTo(builder.getJavaCommand());
-        builder.getJavaCommand().jvmArgs("-Dorg.gradle.native=false");
-        buildConfigAction.execute(builder);
+        if (warmWorkerPool != null && !options.getDebug()) {
+            return startWarmWorkerSession();
+        }
+
+        WorkerProcessBuilder builder = workerFactory.create(new TestWorker(processorFactory, batchEvents));
+        configureWorker(builder);
+        if (resultProcessor instanceof TestWorkerExitListener) {
+            builder.getJavaCommand().listener(new WorkerExitNotifier((TestWorkerExitListener) resultProcessor));
+        }
 
         workerProcess = builder.build();
         workerProcess.start();
 
         ObjectConnection connection = workerProcess.getConnection();
         connection.useParameterSerializers(TestEventSerializer.create());
-        connection.addIncoming(TestResultProcessor.class, resultProcessor);
+        if (batchEvents) {
+            connection.addIncoming(RemoteTestResultProcessor.class, new TestEventBatchDecoder(resultProcessor));
+        } else {
+            connection.addIncoming(TestResultProcessor.class, resultProcessor);
+        }
         RemoteTestClassProcessor remoteProcessor = connection.addOutgoing(RemoteTestClassProcessor.class);
         connection.connect();
         remoteProcessor.startProcessing();
         return remoteProcessor;
     }
 
+    private RemoteTestClassProcessor startWarmWorkerSession() {
+        WorkerProcessBuilder builder = workerFactory.create(new WarmTestWorker());
+        configureWorker(builder);
+        builder.enableJvmMemoryInfoPublishing(true);
+
+        warmWorker = warmWorkerPool.acquire(builder);
+        RemoteTestClassProcessor remoteProcessor = warmWorker.startSession(processorFactory, builder.getApplicationClasspath(), builder.getSharedPackages(), batchEvents, resultProcessor);
+        remoteProcessor.startProcessing();
+        return remoteProcessor;
+    }
+
+    private void configureWorker(WorkerProcessBuilder builder) {
+        builder.setBaseName("Gradle Test Executor");
+        builder.setImplementationClasspath(getTestWorkerImplementationClasspath());
+        builder.applicationClasspath(classPath);
+        options.copyTo(builder.getJavaCommand());
+        builder.getJavaCommand().jvmArgs("-Dorg.gradle.native=false");
+        buildConfigAction.execute(builder);
+    }
+
     List<URL> getTestWorkerImplementationClasspath() {
         return CollectionUtils.flattenCollections(URL.class,
             moduleRegistry.getModule("gradle-core-api").getImplementationClasspath().getAsURLs(),
@@ -117,12 +153,36 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     @Override
     public void stop() {
         if (remoteProcessor != null) {
+            stopping = true;
             try {
                 remoteProcessor.stop();
-                workerProcess.waitForStop();
+                if (warmWorker != null) {
+                    warmWorkerPool.release(warmWorker);
+                } else {
+                    workerProcess.waitForStop();
+                }
             } finally {
                 completion.leaseFinish();
             }
         }
     }
+
+    private class WorkerExitNotifier implements ExecHandleListener {
+        private final TestWorkerExitListener listener;
+
+        WorkerExitNotifier(TestWorkerExitListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void executionStarted(ExecHandle execHandle) {
+        }
+
+        @Override
+        public void executionFinished(ExecHandle execHandle, ExecResult execResult) {
+            if (!stopping) {
+                listener.workerExited();
+            }
+        }
+    }
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * A test worker that stays alive between test executions. Each execution is a session, which starts with {@link #startSession} and
+ * ends with {@link #stop()}.
+ *
+ * @see WarmTestWorker
+ */
+public interface RemoteWarmTestWorker extends RemoteTestClassProcessor {
+    /**
+     * Prepares the worker for a new session, loading the application classes from the given classpath in a new ClassLoader. Does not block.
+     *
+     * @param batchEvents whether the results of the session are sent in batches, using {@link WarmTestWorkerResultProcessor#events}.
+     */
+    void startSession(WorkerTestClassProcessorFactory processorFactory, List<File> applicationClasspath, List<String> sharedPackages, boolean batchEvents);
+
+    /**
+     * Stops the worker process. Does not block.
+     */
+    void shutdown();
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+/**
+ * A batch of test events encoded by {@link BatchingTestResultProcessor}.
+ */
+public class TestEventBatch {
+    static final byte STARTED = 0;
+    static final byte COMPLETED = 1;
+    static final byte OUTPUT = 2;
+    static final byte FAILURE = 3;
+
+    static final byte SUITE = 0;
+    static final byte WORKER_SUITE = 1;
+    static final byte CLASS = 2;
+    static final byte TEST = 3;
+    static final byte METHOD = 4;
+
+    private final byte[] events;
+    private final int eventCount;
+
+    public TestEventBatch(byte[] events, int eventCount) {
+        this.events = events;
+        this.eventCount = eventCount;
+    }
+
+    public byte[] getEvents() {
+        return events;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor;
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor;
+import org.gradle.api.internal.tasks.testing.DefaultTestMethodDescriptor;
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
+import org.gradle.api.internal.tasks.testing.DefaultTestSuiteDescriptor;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.api.tasks.testing.TestResult;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.id.CompositeIdGenerator;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives the events of a test worker, passing each event to the given processor, decoding the batches sent by a
+ * {@link BatchingTestResultProcessor}. The names sent in earlier batches are kept, so an instance must receive all batches of a worker, in order.
+ */
+class TestEventBatchDecoder implements RemoteTestResultProcessor {
+    private static final TestResult.ResultType[] RESULT_TYPES = TestResult.ResultType.values();
+
+    private final TestResultProcessor processor;
+    private final List<String> names = new ArrayList<String>();
+
+    TestEventBatchDecoder(TestResultProcessor processor) {
+        this.processor = processor;
+    }
+
+    @Override
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        processor.started(test, event);
+    }
+
+    @Override
+    public void completed(Object testId, TestCompleteEvent event) {
+        processor.completed(testId, event);
+    }
+
+    @Override
+    public void output(Object testId, TestOutputEvent event) {
+        processor.output(testId, event);
+    }
+
+    @Override
+    public void failure(Object testId, Throwable result) {
+        processor.failure(testId, result);
+    }
+
+    @Override
+    public void events(TestEventBatch batch) {
+        Decoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(batch.getEvents()));
+        try {
+            for (int i = 0; i < batch.getEventCount(); i++) {
+                byte eventType = decoder.readByte();
+                switch (eventType) {
+                    case TestEventBatch.STARTED:
+                        TestDescriptorInternal test = readDescriptor(decoder);
+                        long startTime = decoder.readSmallLong();
+                        Object parentId = decoder.readBoolean() ? readId(decoder) : null;
+                        processor.started(test, new TestStartEvent(startTime, parentId));
+                        break;
+                    case TestEventBatch.COMPLETED:
+                        Object completedId = readId(decoder);
+                        long endTime = decoder.readSmallLong();
+                        int resultType = decoder.readSmallInt();
+                        processor.completed(completedId, new TestCompleteEvent(endTime, resultType == 0 ? null : RESULT_TYPES[resultType - 1]));
+                        break;
+                    case TestEventBatch.OUTPUT:
+                        Object outputId = readId(decoder);
+                        TestOutputEvent.Destination destination = decoder.readBoolean() ? TestOutputEvent.Destination.StdOut : TestOutputEvent.Destination.StdErr;
+                        processor.output(outputId, new DefaultTestOutputEvent(destination, decoder.readString()));
+                        break;
+                    case TestEventBatch.FAILURE:
+                        Object failedId = readId(decoder);
+                        processor.failure(failedId, BaseSerializerFactory.THROWABLE_SERIALIZER.read(decoder));
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format("Unexpected test event type %s.", eventType));
+                }
+            }
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private TestDescriptorInternal readDescriptor(Decoder decoder) throws IOException {
+        byte descriptorType = decoder.readByte();
+        Object id = readId(decoder);
+        switch (descriptorType) {
+            case TestEventBatch.SUITE:
+                return new DefaultTestSuiteDescriptor(id, readName(decoder));
+            case TestEventBatch.WORKER_SUITE:
+                return new WorkerTestClassProcessor.WorkerTestSuiteDescriptor(id, readName(decoder));
+            case TestEventBatch.CLASS:
+                return new DefaultTestClassDescriptor(id, readName(decoder));
+            case TestEventBatch.TEST:
+                String className = readName(decoder);
+                return new DefaultTestDescriptor(id, className, readName(decoder));
+            case TestEventBatch.METHOD:
+                String methodClassName = readName(decoder);
+                return new DefaultTestMethodDescriptor(id, methodClassName, readName(decoder));
+            default:
+                throw new IllegalArgumentException(String.format("Unexpected test descriptor type %s.", descriptorType));
+        }
+    }
+
+    private static Object readId(Decoder decoder) throws IOException {
+        return new CompositeIdGenerator.CompositeId(decoder.readSmallLong(), decoder.readSmallLong());
+    }
+
+    private String readName(Decoder decoder) throws IOException {
+        int index = decoder.readSmallInt();
+        if (index == 0) {
+            String name = decoder.readString();
+            names.add(name);
+            return name;
+        }
+        return names.get(index - 1);
+    }
+}
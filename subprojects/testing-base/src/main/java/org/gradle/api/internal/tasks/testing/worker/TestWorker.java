@@ -45,12 +45,22 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
     private static final Logger LOGGER = LoggerFactory.getLogger(TestWorker.class);
     public static final String WORKER_ID_SYS_PROPERTY = "org.gradle.test.worker";
     private final WorkerTestClassProcessorFactory factory;
+    private final boolean batchEvents;
     private CountDownLatch completed;
     private TestClassProcessor processor;
     private TestResultProcessor resultProcessor;
+    private BatchingTestResultProcessor batchingResultProcessor;
 
     public TestWorker(WorkerTestClassProcessorFactory factory) {
+        this(factory, false);
+    }
+
+    /**
+     * @param batchEvents whether the results are sent in batches, using {@link RemoteTestResultProcessor#events}.
+     */
+    public TestWorker(WorkerTestClassProcessorFactory factory, boolean batchEvents) {
         this.factory = factory;
+        this.batchEvents = batchEvents;
     }
 
     @Override
@@ -90,7 +100,12 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
 
         ObjectConnection serverConnection = workerProcessContext.getServerConnection();
         serverConnection.useParameterSerializers(TestEventSerializer.create());
-        this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
+        if (batchEvents) {
+            batchingResultProcessor = new BatchingTestResultProcessor(serverConnection.addOutgoing(RemoteTestResultProcessor.class), testServices.get(ExecutorFactory.class));
+            this.resultProcessor = batchingResultProcessor;
+        } else {
+            this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
+        }
         serverConnection.addIncoming(RemoteTestClassProcessor.class, this);
         serverConnection.connect();
     }
@@ -116,13 +131,19 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
     public void stop() {
         Thread.currentThread().setName("Test worker");
         try {
-            processor.stop();
+            try {
+                processor.stop();
+            } finally {
+                if (batchingResultProcessor != null) {
+                    batchingResultProcessor.stop();
+                }
+            }
         } finally {
             completed.countDown();
         }
     }
 
-    private static class TestFrameworkServiceRegistry extends DefaultServiceRegistry {
+    static class TestFrameworkServiceRegistry extends DefaultServiceRegistry {
         private final WorkerProcessContext workerProcessContext;
 
         public TestFrameworkServiceRegistry(WorkerProcessContext workerProcessContext) {
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+/**
+ * Implemented by a {@link org.gradle.api.internal.tasks.testing.TestResultProcessor} given to a {@link ForkingTestClassProcessor} that wants to know
+ * when the test worker process exits before it has been asked to stop, for example because it crashed.
+ */
+public interface TestWorkerExitListener {
+    /**
+     * Called from an arbitrary thread when the worker process has exited unexpectedly.
+     */
+    void workerExited();
+}
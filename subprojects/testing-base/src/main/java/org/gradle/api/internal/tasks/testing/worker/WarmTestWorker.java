@@ -0,0 +1,188 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.classloader.ClassLoaderUtils;
+import org.gradle.internal.classloader.FilteringClassLoader;
+import org.gradle.internal.classloader.VisitableURLClassLoader;
+import org.gradle.internal.classpath.DefaultClassPath;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.dispatch.ContextClassLoaderProxy;
+import org.gradle.internal.id.IdGenerator;
+import org.gradle.internal.remote.ObjectConnection;
+import org.gradle.internal.service.DefaultServiceRegistry;
+import org.gradle.internal.time.Clock;
+import org.gradle.process.internal.worker.WorkerProcessContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A test worker that runs the tests of several test executions, one session at a time, for {@link WarmTestWorkerPool}.
+ *
+ * <p>The application classpath of the worker process is fixed when the process starts, so the classes of the shared packages of the test
+ * framework are loaded once. The other application classes are loaded in a new ClassLoader for each session, so that each session sees
+ * the current version of the classes and starts with fresh static state. The system properties and security manager are restored at the
+ * end of each session.</p>
+ */
+public class WarmTestWorker implements Action<WorkerProcessContext>, RemoteWarmTestWorker, Serializable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmTestWorker.class);
+    private transient CountDownLatch shutdown;
+    private transient WorkerProcessContext workerProcessContext;
+    private transient DefaultServiceRegistry testServices;
+    private transient WarmTestWorkerResultProcessor resultProcessor;
+    private transient Properties systemProperties;
+    private transient VisitableURLClassLoader applicationClassLoader;
+    private transient TestClassProcessor processor;
+    private transient boolean batchEvents;
+    private transient BatchingTestResultProcessor batchingResultProcessor;
+
+    @Override
+    public void execute(WorkerProcessContext workerProcessContext) {
+        LOGGER.info("{} started.", workerProcessContext.getDisplayName());
+
+        this.workerProcessContext = workerProcessContext;
+        shutdown = new CountDownLatch(1);
+
+        System.setProperty(TestWorker.WORKER_ID_SYS_PROPERTY, workerProcessContext.getWorkerId().toString());
+        systemProperties = copyOf(System.getProperties());
+
+        testServices = new TestWorker.TestFrameworkServiceRegistry(workerProcessContext);
+        ObjectConnection serverConnection = workerProcessContext.getServerConnection();
+        serverConnection.useParameterSerializers(TestEventSerializer.create());
+        resultProcessor = serverConnection.addOutgoing(WarmTestWorkerResultProcessor.class);
+        serverConnection.addIncoming(RemoteWarmTestWorker.class, this);
+        serverConnection.connect();
+
+        try {
+            try {
+                shutdown.await();
+            } catch (InterruptedException e) {
+                throw new UncheckedException(e);
+            }
+        } finally {
+            LOGGER.info("{} stopped.", workerProcessContext.getDisplayName());
+            testServices.close();
+        }
+    }
+
+    @Override
+    public void startSession(WorkerTestClassProcessorFactory processorFactory, List<File> applicationClasspath, List<String> sharedPackages, boolean batchEvents) {
+        Thread.currentThread().setName("Test worker");
+        this.batchEvents = batchEvents;
+        FilteringClassLoader.Spec spec = new FilteringClassLoader.Spec();
+        for (String sharedPackage : sharedPackages) {
+            spec.allowPackage(sharedPackage);
+        }
+        applicationClassLoader = new VisitableURLClassLoader(new FilteringClassLoader(ClassLoader.getSystemClassLoader(), spec), DefaultClassPath.of(applicationClasspath));
+
+        TestClassProcessor targetProcessor = processorFactory.create(testServices);
+        IdGenerator<Object> idGenerator = testServices.get(IdGenerator.class);
+        targetProcessor = new WorkerTestClassProcessor(targetProcessor, idGenerator.generateId(),
+                workerProcessContext.getDisplayName(), testServices.get(Clock.class));
+        processor = new ContextClassLoaderProxy<TestClassProcessor>(TestClassProcessor.class, targetProcessor, applicationClassLoader).getSource();
+    }
+
+    @Override
+    public void startProcessing() {
+        Thread.currentThread().setName("Test worker");
+        if (batchEvents) {
+            batchingResultProcessor = new BatchingTestResultProcessor(resultProcessor, testServices.get(ExecutorFactory.class));
+            processor.startProcessing(batchingResultProcessor);
+        } else {
+            processor.startProcessing(resultProcessor);
+        }
+    }
+
+    @Override
+    public void processTestClass(TestClassRunInfo testClass) {
+        Thread.currentThread().setName("Test worker");
+        try {
+            processor.processTestClass(testClass);
+        } finally {
+            // Clean the interrupted status
+            Thread.interrupted();
+        }
+    }
+
+    @Override
+    public void stop() {
+        Thread.currentThread().setName("Test worker");
+        boolean reusable = false;
+        try {
+            try {
+                processor.stop();
+            } finally {
+                // Send the remaining results before reporting the end of the session
+                if (batchingResultProcessor != null) {
+                    batchingResultProcessor.stop();
+                    batchingResultProcessor = null;
+                }
+            }
+            reusable = true;
+        } finally {
+            // Clean out any security manager and system properties the tests might have installed
+            System.setSecurityManager(null);
+            System.setProperties(copyOf(systemProperties));
+            ClassLoaderUtils.tryClose(applicationClassLoader);
+            applicationClassLoader = null;
+            processor = null;
+            resultProcessor.sessionStopped(reusable, getHeapUsedAfterLastCollection(), Runtime.getRuntime().maxMemory());
+        }
+    }
+
+    /**
+     * Returns the heap that survived the most recent garbage collection of each heap memory pool, which tells more about what the tests
+     * left behind than the current or committed heap, without forcing a collection.
+     */
+    private static long getHeapUsedAfterLastCollection() {
+        long used = 0;
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                MemoryUsage collectionUsage = memoryPool.getCollectionUsage();
+                if (collectionUsage != null) {
+                    used += collectionUsage.getUsed();
+                }
+            }
+        }
+        return used;
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown.countDown();
+    }
+
+    private static Properties copyOf(Properties properties) {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        return copy;
+    }
+}
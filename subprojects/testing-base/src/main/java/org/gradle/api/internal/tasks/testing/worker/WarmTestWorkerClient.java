@@ -0,0 +1,232 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.remote.ObjectConnection;
+import org.gradle.process.internal.health.memory.JvmMemoryStatus;
+import org.gradle.process.internal.worker.WorkerProcess;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The build side of a {@link WarmTestWorker} process.
+ */
+class WarmTestWorkerClient implements Stoppable {
+    private static final double MAX_HEAP_USAGE = 0.9;
+
+    private final Object key;
+    private final WorkerProcess workerProcess;
+    private final String maxHeapSize;
+    private final Lock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+    private RemoteWarmTestWorker remoteWorker;
+    private volatile RemoteTestResultProcessor resultProcessor;
+    private TestWorkerExitListener exitListener;
+    private boolean sessionRunning;
+    private boolean running = true;
+    private boolean reusable = true;
+    private Throwable processFailure;
+    private int uses;
+    private long usedHeap;
+    private long maxHeap = Long.MAX_VALUE;
+
+    WarmTestWorkerClient(Object key, WorkerProcess workerProcess, String maxHeapSize) {
+        this.key = key;
+        this.workerProcess = workerProcess;
+        this.maxHeapSize = maxHeapSize;
+    }
+
+    void connect() {
+        ObjectConnection connection = workerProcess.getConnection();
+        connection.useParameterSerializers(TestEventSerializer.create());
+        connection.addIncoming(WarmTestWorkerResultProcessor.class, new SessionResultProcessor());
+        remoteWorker = connection.addOutgoing(RemoteWarmTestWorker.class);
+        connection.connect();
+    }
+
+    /**
+     * Waits for the worker process to exit. Called from a dedicated thread for the lifetime of the worker, so that sessions and the pool
+     * notice when the process fails.
+     */
+    void waitForExit() {
+        Throwable failure = null;
+        try {
+            workerProcess.waitForStop();
+        } catch (Throwable t) {
+            failure = t;
+        }
+        TestWorkerExitListener listener;
+        lock.lock();
+        try {
+            running = false;
+            processFailure = failure;
+            listener = sessionRunning ? exitListener : null;
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (listener != null) {
+            listener.workerExited();
+        }
+    }
+
+    Object getKey() {
+        return key;
+    }
+
+    int getUses() {
+        return uses;
+    }
+
+    String getMaxHeapSize() {
+        return maxHeapSize;
+    }
+
+    JvmMemoryStatus getJvmMemoryStatus() {
+        return workerProcess.getJvmMemoryStatus();
+    }
+
+    /**
+     * Starts a new session with the given processor, returning the processor that receives the test classes of the session.
+     */
+    RemoteTestClassProcessor startSession(WorkerTestClassProcessorFactory processorFactory, Collection<File> applicationClasspath, Collection<String> sharedPackages, boolean batchEvents, TestResultProcessor resultProcessor) {
+        lock.lock();
+        try {
+            uses++;
+            sessionRunning = true;
+            this.resultProcessor = new TestEventBatchDecoder(resultProcessor);
+            this.exitListener = resultProcessor instanceof TestWorkerExitListener ? (TestWorkerExitListener) resultProcessor : null;
+        } finally {
+            lock.unlock();
+        }
+        remoteWorker.startSession(processorFactory, new ArrayList<File>(applicationClasspath), new ArrayList<String>(sharedPackages), batchEvents);
+        return remoteWorker;
+    }
+
+    /**
+     * Waits until the worker has reported all results of the current session, failing when the worker process exits before that.
+     */
+    void awaitSessionStopped() {
+        lock.lock();
+        try {
+            while (sessionRunning && running) {
+                stateChanged.await();
+            }
+            if (sessionRunning) {
+                sessionRunning = false;
+                if (processFailure != null) {
+                    throw UncheckedException.throwAsUncheckedException(processFailure);
+                }
+                throw new IllegalStateException("Test worker process exited before completing the test execution.");
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            resultProcessor = null;
+            exitListener = null;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns true when the worker process is alive, has completed its previous sessions normally and still had most of its heap free
+     * at the end of its last session.
+     */
+    boolean isReusable() {
+        lock.lock();
+        try {
+            return running && reusable && usedHeap < maxHeap * MAX_HEAP_USAGE;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void stop() {
+        lock.lock();
+        try {
+            if (running) {
+                remoteWorker.shutdown();
+            }
+            while (running) {
+                stateChanged.await();
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return workerProcess.toString();
+    }
+
+    private class SessionResultProcessor implements WarmTestWorkerResultProcessor {
+        @Override
+        public void started(TestDescriptorInternal test, TestStartEvent event) {
+            resultProcessor.started(test, event);
+        }
+
+        @Override
+        public void completed(Object testId, TestCompleteEvent event) {
+            resultProcessor.completed(testId, event);
+        }
+
+        @Override
+        public void output(Object testId, TestOutputEvent event) {
+            resultProcessor.output(testId, event);
+        }
+
+        @Override
+        public void failure(Object testId, Throwable result) {
+            resultProcessor.failure(testId, result);
+        }
+
+        @Override
+        public void events(TestEventBatch batch) {
+            resultProcessor.events(batch);
+        }
+
+        @Override
+        public void sessionStopped(boolean reusable, long usedHeap, long maxHeap) {
+            lock.lock();
+            try {
+                sessionRunning = false;
+                WarmTestWorkerClient.this.reusable &= reusable;
+                WarmTestWorkerClient.this.usedHeap = usedHeap;
+                WarmTestWorkerClient.this.maxHeap = maxHeap;
+                stateChanged.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.worker;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Ints;
+import org.gradle.api.logging.LogLevel;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.process.internal.JavaExecHandleBuilder;
+import org.gradle.process.internal.health.memory.MaximumHeapHelper;
+import org.gradle.process.internal.health.memory.MemoryAmount;
+import org.gradle.process.internal.health.memory.MemoryHolder;
+import org.gradle.process.internal.health.memory.MemoryManager;
+import org.gradle.process.internal.health.memory.TotalPhysicalMemoryProvider;
+import org.gradle.process.internal.worker.WorkerProcess;
+import org.gradle.process.internal.worker.WorkerProcessBuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps test worker processes alive between test executions, so that a later execution with the same worker configuration can reuse a
+ * worker instead of starting a new JVM. Lives as long as the Gradle daemon.
+ *
+ * <p>A worker is only reused for an execution with the same java executable, JVM arguments, environment, working directory, application
+ * classpath, shared packages and log level. A worker is discarded when its process exits, when a session does not stop normally, or when
+ * its used heap approaches its maximum heap. Idle workers are also discarded when the system runs low on memory, and when more than
+ * a fixed number of workers are idle, least recently used first.</p>
+ */
+public class WarmTestWorkerPool implements MemoryHolder, Stoppable {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.testing.warmWorkers";
+    private static final Logger LOGGER = Logging.getLogger(WarmTestWorkerPool.class);
+    private static final int MAX_IDLE_WORKERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final Object lock = new Object();
+    private final List<WarmTestWorkerClient> allWorkers = new ArrayList<WarmTestWorkerClient>();
+    // Most recently used first
+    private final LinkedList<WarmTestWorkerClient> idleWorkers = new LinkedList<WarmTestWorkerClient>();
+    private final MemoryManager memoryManager;
+    private final ManagedExecutor processWatchers;
+    private final long osTotalMemory;
+
+    public WarmTestWorkerPool(MemoryManager memoryManager, ExecutorFactory executorFactory) {
+        this.memoryManager = memoryManager;
+        this.processWatchers = executorFactory.create("Warm test worker process watcher");
+        this.osTotalMemory = getTotalPhysicalMemory();
+        memoryManager.addMemoryHolder(this);
+    }
+
+    /**
+     * Returns an idle worker compatible with the given worker configuration, or starts a new one.
+     */
+    WarmTestWorkerClient acquire(WorkerProcessBuilder builder) {
+        WorkerKey key = new WorkerKey(builder);
+        List<WarmTestWorkerClient> unhealthyWorkers = new ArrayList<WarmTestWorkerClient>();
+        WarmTestWorkerClient worker = null;
+        synchronized (lock) {
+            Iterator<WarmTestWorkerClient> iterator = idleWorkers.iterator();
+            while (iterator.hasNext()) {
+                WarmTestWorkerClient candidate = iterator.next();
+                if (candidate.getKey().equals(key)) {
+                    iterator.remove();
+                    if (candidate.isReusable()) {
+                        worker = candidate;
+                        break;
+                    }
+                    unhealthyWorkers.add(candidate);
+                }
+            }
+        }
+        stopWorkers(unhealthyWorkers);
+        if (worker != null) {
+            LOGGER.debug("Reusing warm test worker {}.", worker);
+            return worker;
+        }
+
+        WorkerProcess workerProcess = builder.build();
+        workerProcess.start();
+        final WarmTestWorkerClient newWorker = new WarmTestWorkerClient(key, workerProcess, builder.getJavaCommand().getMaxHeapSize());
+        newWorker.connect();
+        processWatchers.execute(new Runnable() {
+            @Override
+            public void run() {
+                newWorker.waitForExit();
+            }
+        });
+        synchronized (lock) {
+            allWorkers.add(newWorker);
+        }
+        LOGGER.debug("Started warm test worker {}.", newWorker);
+        return newWorker;
+    }
+
+    /**
+     * Waits for the current session of the given worker to stop, then makes the worker available for reuse if it is still healthy.
+     */
+    void release(WarmTestWorkerClient worker) {
+        try {
+            worker.awaitSessionStopped();
+        } catch (RuntimeException e) {
+            stopWorkers(Collections.singletonList(worker));
+            throw e;
+        }
+
+        List<WarmTestWorkerClient> workersToStop = new ArrayList<WarmTestWorkerClient>();
+        synchronized (lock) {
+            if (worker.isReusable()) {
+                idleWorkers.addFirst(worker);
+                while (idleWorkers.size() > MAX_IDLE_WORKERS) {
+                    workersToStop.add(idleWorkers.removeLast());
+                }
+            } else {
+                LOGGER.info("Test worker {} is not healthy, it will not be reused.", worker);
+                workersToStop.add(worker);
+            }
+        }
+        stopWorkers(workersToStop);
+    }
+
+    @Override
+    public long attemptToRelease(long memoryAmountBytes) throws IllegalArgumentException {
+        if (memoryAmountBytes < 0) {
+            throw new IllegalArgumentException("Negative memory amount");
+        }
+        List<WarmTestWorkerClient> workersToStop = new ArrayList<WarmTestWorkerClient>();
+        long releasedBytes = 0;
+        synchronized (lock) {
+            List<WarmTestWorkerClient> candidates = new ArrayList<WarmTestWorkerClient>(idleWorkers);
+            Collections.sort(candidates, new Comparator<WarmTestWorkerClient>() {
+                @Override
+                public int compare(WarmTestWorkerClient o1, WarmTestWorkerClient o2) {
+                    return Ints.compare(o1.getUses(), o2.getUses());
+                }
+            });
+            for (WarmTestWorkerClient candidate : candidates) {
+                if (releasedBytes >= memoryAmountBytes) {
+                    break;
+                }
+                workersToStop.add(candidate);
+                releasedBytes += getMemoryUsage(candidate);
+            }
+            idleWorkers.removeAll(workersToStop);
+        }
+        if (!workersToStop.isEmpty()) {
+            LOGGER.debug("Warm test worker(s) expired to free some system memory {}", workersToStop.size());
+        }
+        stopWorkers(workersToStop);
+        return releasedBytes;
+    }
+
+    private long getMemoryUsage(WarmTestWorkerClient worker) {
+        // prefer to use the actual memory usage reported by the worker
+        try {
+            return worker.getJvmMemoryStatus().getCommittedMemory();
+        } catch (UnsupportedOperationException e) {
+            // This means the worker does not support reporting jvm memory info
+        } catch (IllegalStateException e) {
+            // This means the worker has not reported memory usage yet
+        }
+        long maxHeapSize = MemoryAmount.parseNotation(worker.getMaxHeapSize());
+        if (maxHeapSize != -1) {
+            return maxHeapSize;
+        }
+        if (osTotalMemory != -1) {
+            return new MaximumHeapHelper().getDefaultMaximumHeapSize(osTotalMemory);
+        }
+        return 0;
+    }
+
+    private void stopWorkers(List<WarmTestWorkerClient> workersToStop) {
+        if (workersToStop.isEmpty()) {
+            return;
+        }
+        try {
+            CompositeStoppable.stoppable(workersToStop).stop();
+        } finally {
+            synchronized (lock) {
+                idleWorkers.removeAll(workersToStop);
+                allWorkers.removeAll(workersToStop);
+            }
+        }
+        LOGGER.debug("Stopped {} warm test worker(s).", workersToStop.size());
+    }
+
+    @Override
+    public void stop() {
+        memoryManager.removeMemoryHolder(this);
+        List<WarmTestWorkerClient> workersToStop;
+        synchronized (lock) {
+            workersToStop = new ArrayList<WarmTestWorkerClient>(allWorkers);
+        }
+        try {
+            stopWorkers(workersToStop);
+        } finally {
+            processWatchers.stop();
+        }
+    }
+
+    private static long getTotalPhysicalMemory() {
+        try {
+            return TotalPhysicalMemoryProvider.getTotalPhysicalMemory();
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The configuration that a worker must have been started with to be reused.
+     */
+    private static class WorkerKey {
+        private final String executable;
+        private final File workingDir;
+        private final List<String> jvmArgs;
+        private final Map<String, String> environment;
+        private final List<File> applicationClasspath;
+        private final ImmutableSet<String> sharedPackages;
+        private final LogLevel logLevel;
+        private final int hashCode;
+
+        WorkerKey(WorkerProcessBuilder builder) {
+            JavaExecHandleBuilder javaCommand = builder.getJavaCommand();
+            executable = javaCommand.getExecutable();
+            workingDir = javaCommand.getWorkingDir();
+            jvmArgs = ImmutableList.copyOf(javaCommand.getAllJvmArgs());
+            ImmutableMap.Builder<String, String> environment = ImmutableMap.builder();
+            for (Map.Entry<String, Object> entry : javaCommand.getEnvironment().entrySet()) {
+                environment.put(entry.getKey(), String.valueOf(entry.getValue()));
+            }
+            this.environment = environment.build();
+            applicationClasspath = ImmutableList.copyOf(builder.getApplicationClasspath());
+            sharedPackages = ImmutableSet.copyOf(builder.getSharedPackages());
+            logLevel = builder.getLogLevel();
+            hashCode = Objects.hashCode(executable, workingDir, jvmArgs, this.environment, applicationClasspath, sharedPackages, logLevel);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            WorkerKey other = (WorkerKey) obj;
+            return hashCode == other.hashCode
+                && Objects.equal(executable, other.executable)
+                && Objects.equal(workingDir, other.workingDir)
+                && jvmArgs.equals(other.jvmArgs)
+                && environment.equals(other.environment)
+                && applicationClasspath.equals(other.applicationClasspath)
+                && sharedPackages.equals(other.sharedPackages)
+                && logLevel == other.logLevel;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
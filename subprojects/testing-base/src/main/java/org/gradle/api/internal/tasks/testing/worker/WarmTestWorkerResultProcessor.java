@@ -0,0 +1,30 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.worker;
+
+/**
+ * Receives the results of a {@link RemoteWarmTestWorker}.
+ */
+public interface WarmTestWorkerResultProcessor extends RemoteTestResultProcessor {
+    /**
+     * Called when the current session has stopped, after the results of the session.
+     *
+     * @param reusable whether the worker can run another session.
+     * @param usedHeap the heap used by the worker after the most recent garbage collection of each heap memory pool.
+     * @param maxHeap the maximum heap of the worker.
+     */
+    void sessionStopped(boolean reusable, long usedHeap, long maxHeap);
+}
@@ -470,7 +470,7 @@ public abstract class AbstractTestTask extends ConventionTask implements Verific
 
         try {
             if (testReporter == null) {
-                testReporter = new DefaultTestReport(getBuildOperationExecutor());
+                testReporter = new DefaultTestReport(getBuildOperationExecutor(), getTemporaryDir());
             }
 
             JUnitXmlReport junitXml = reports.getJunitXml();
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.internal.tasks.testing.worker.TestWorkerExitListener
+import org.gradle.internal.Factory
+import org.gradle.internal.actor.Actor
+import org.gradle.internal.actor.ActorFactory
+import org.gradle.internal.dispatch.MethodInvocation
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class DurationBalancingTestClassProcessorTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    final TestResultProcessor resultProcessor = Mock()
+    final List<RecordingProcessor> forks = []
+    final Factory<TestClassProcessor> factory = new Factory<TestClassProcessor>() {
+        TestClassProcessor create() {
+            def fork = new RecordingProcessor()
+            forks << fork
+            return fork
+        }
+    }
+    final ActorFactory actorFactory = Stub() {
+        createActor(_) >> { Object target -> new DirectActor(target) }
+    }
+    TestClassDurationStore store
+
+    def setup() {
+        store = new TestClassDurationStore(tmpDir.file("durations.bin"))
+    }
+
+    def "hands out longest test classes first as forks become idle"() {
+        store.write(A: 100L, B: 300L, C: 200L, D: 50L)
+        def processor = new DurationBalancingTestClassProcessor(2, factory, actorFactory, store)
+        processor.startProcessing(resultProcessor)
+
+        when:
+        ["A", "B", "C", "D", "E"].each { processor.processTestClass(new DefaultTestClassRunInfo(it)) }
+
+        then:
+        forks.size() == 2
+        forks[0].classes == ["A"]
+        forks[1].classes == ["B"]
+
+        when:
+        forks[0].runCurrent(0, 100)
+
+        then:
+        forks[0].classes == ["A", "E"]
+
+        when:
+        forks[1].runCurrent(0, 300)
+        forks[0].runCurrent(100, 150)
+
+        then:
+        forks[1].classes == ["B", "C"]
+        forks[0].classes == ["A", "E", "D"]
+
+        when:
+        forks[1].runCurrent(300, 500)
+        forks[0].runCurrent(150, 200)
+        processor.stop()
+
+        then:
+        forks.every { it.stopped }
+    }
+
+    def "forwards events of all forks to result processor"() {
+        def processor = new DurationBalancingTestClassProcessor(2, factory, actorFactory, store)
+        processor.startProcessing(resultProcessor)
+
+        when:
+        processor.processTestClass(new DefaultTestClassRunInfo("A"))
+        forks[0].runCurrent(0, 100)
+        processor.stop()
+
+        then:
+        1 * resultProcessor.started({ it.className == "A" }, _)
+        1 * resultProcessor.completed(_, { it.endTime == 100 })
+    }
+
+    def "records measured durations for the next execution"() {
+        store.write(A: 100L, Z: 70L)
+        def processor = new DurationBalancingTestClassProcessor(2, factory, actorFactory, store)
+        processor.startProcessing(resultProcessor)
+
+        when:
+        processor.processTestClass(new DefaultTestClassRunInfo("A"))
+        processor.processTestClass(new DefaultTestClassRunInfo("B"))
+        forks[0].runCurrent(1000, 1120)
+        forks[1].runCurrent(1000, 1040)
+        processor.stop()
+
+        then:
+        store.read() == [A: 120L, B: 40L, Z: 70L]
+    }
+
+    def "keeps handing out test classes one at a time while a test class runs without reporting events"() {
+        store.write(A: 100L, B: 300L, C: 200L, D: 50L)
+        def processor = new DurationBalancingTestClassProcessor(2, factory, actorFactory, store)
+        processor.startProcessing(resultProcessor)
+
+        when:
+        ["A", "B", "C", "D"].each { processor.processTestClass(new DefaultTestClassRunInfo(it)) }
+        forks[1].runCurrent(0, 300)
+        forks[1].runCurrent(300, 500)
+
+        then:
+        forks[0].classes == ["A"]
+        forks[1].classes == ["B", "C", "D"]
+
+        when:
+        forks[1].runCurrent(500, 550)
+        forks[0].runCurrent(0, 1000)
+        processor.stop()
+
+        then:
+        forks.every { it.stopped }
+    }
+
+    def "starts a new fork for the remaining test classes when a worker exits"() {
+        store.write(A: 100L, B: 300L, C: 200L, D: 50L)
+        def processor = new DurationBalancingTestClassProcessor(2, factory, actorFactory, store)
+        processor.startProcessing(resultProcessor)
+
+        when:
+        ["A", "B", "C", "D"].each { processor.processTestClass(new DefaultTestClassRunInfo(it)) }
+        forks[0].exit()
+
+        then:
+        forks.size() == 3
+        forks[0].classes == ["A"]
+        forks[1].classes == ["B"]
+        forks[2].classes == ["C"]
+
+        when:
+        forks[1].runCurrent(0, 300)
+        forks[2].runCurrent(0, 200)
+        forks[1].runCurrent(300, 350)
+        processor.stop()
+
+        then:
+        forks[0].classes == ["A"]
+        forks[1].classes == ["B", "D"]
+        forks[2].classes == ["C"]
+        forks.every { it.stopped }
+        store.read() == [A: 100L, B: 300L, C: 200L, D: 50L]
+    }
+
+    def "does nothing when no tests processed"() {
+        def processor = new DurationBalancingTestClassProcessor(2, factory, actorFactory, store)
+        processor.startProcessing(resultProcessor)
+
+        when:
+        processor.stop()
+
+        then:
+        forks.empty
+        store.read().isEmpty()
+    }
+
+    private static class RecordingProcessor implements TestClassProcessor {
+        final List<String> classes = []
+        TestResultProcessor resultProcessor
+        int completed
+        boolean stopped
+
+        @Override
+        void startProcessing(TestResultProcessor resultProcessor) {
+            this.resultProcessor = resultProcessor
+        }
+
+        @Override
+        void processTestClass(TestClassRunInfo testClass) {
+            classes << testClass.testClassName
+        }
+
+        void runCurrent(long startTime, long endTime) {
+            def id = "${hashCode()}-${completed}"
+            resultProcessor.started(new DefaultTestClassDescriptor(id, classes[completed++]), new TestStartEvent(startTime))
+            resultProcessor.completed(id, new TestCompleteEvent(endTime))
+        }
+
+        void exit() {
+            ((TestWorkerExitListener) resultProcessor).workerExited()
+        }
+
+        @Override
+        void stop() {
+            stopped = true
+        }
+    }
+
+    private static class DirectActor implements Actor {
+        final Object target
+
+        DirectActor(Object target) {
+            this.target = target
+        }
+
+        @Override
+        def <T> T getProxy(Class<T> type) {
+            return type.cast(target)
+        }
+
+        @Override
+        void dispatch(MethodInvocation message) {
+            throw new UnsupportedOperationException()
+        }
+
+        @Override
+        void stop() {
+        }
+    }
+}
@@ -45,6 +45,7 @@ class DefaultTestReportTest extends Specification {
     DefaultTestReport report
     final TestFile reportDir = tmpDir.file('report')
     final TestFile indexFile = reportDir.file('index.html')
+    final TestFile temporaryDir = tmpDir.file('tmp')
     final TestResultsProvider testResultProvider = Mock()
     final WorkerLeaseService workerLeaseService = new TestWorkerLeaseService()
 
@@ -53,7 +54,7 @@ class DefaultTestReportTest extends Specification {
         buildOperationExecutor = new DefaultBuildOperationExecutor(
             Mock(BuildOperationListener), Mock(Clock), new NoOpProgressLoggerFactory(),
             new DefaultBuildOperationQueueFactory(workerLeaseService), new DefaultExecutorFactory(), Mock(ResourceLockCoordinationService), parallelExecutionManager, new DefaultBuildOperationIdFactory())
-        return new DefaultTestReport(buildOperationExecutor)
+        return new DefaultTestReport(buildOperationExecutor, temporaryDir)
     }
 
     def generatesReportWhenThereAreNoTestResults() {
@@ -467,6 +468,50 @@ class DefaultTestReportTest extends Specification {
         numThreads << [ 1, 4 ]
     }
 
+    def "reuses pages of classes whose results have not changed and removes pages of classes without results"() {
+        given:
+        report = reportWithMaxThreads(4)
+        report.generateReport(aggregatedBuildResultsRun1(), reportDir)
+        def fooPage = reportDir.file('classes/org.gradle.aggregation.FooTest.html')
+        def barPage = reportDir.file('classes/org.gradle.aggregation.BarTest.html')
+        fooPage.lastModified = 0
+        barPage.lastModified = 0
+
+        when:
+        report.generateReport(aggregatedBuildResultsRun2(), reportDir)
+
+        then:
+        fooPage.lastModified() == 0
+        barPage.lastModified() != 0
+        results(barPage).assertHasFailure('second', 'something failed\n\nthis is the failure\nat someClass\n')
+        results(indexFile).assertHasFailures(1)
+        !reportDir.file('class-page-fingerprints.bin').exists()
+        temporaryDir.file('class-page-fingerprints.bin').assertIsFile()
+
+        when:
+        report.generateReport(passingBuildResults(), reportDir)
+
+        then:
+        !fooPage.exists()
+        !barPage.exists()
+        reportDir.file('classes/org.gradle.passing.Passed.html').assertIsFile()
+    }
+
+    def "does not reuse pages using the fingerprints of a report generated into a different directory"() {
+        def otherReportDir = tmpDir.file('other-report')
+
+        given:
+        report = reportWithMaxThreads(4)
+        report.generateReport(aggregatedBuildResultsRun1(), reportDir)
+        report.generateReport(aggregatedBuildResultsRun2(), otherReportDir)
+
+        when:
+        report.generateReport(aggregatedBuildResultsRun2(), reportDir)
+
+        then:
+        results(reportDir.file('classes/org.gradle.aggregation.BarTest.html')).assertHasFailure('second', 'something failed\n\nthis is the failure\nat someClass\n')
+    }
+
     def reportsOnClassesInDefaultPackage() {
         given:
         report = reportWithMaxThreads(1)
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestMethodDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.tasks.testing.TestOutputEvent
+import org.gradle.api.tasks.testing.TestResult
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ManagedScheduledExecutor
+import org.gradle.internal.id.CompositeIdGenerator
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class BatchingTestResultProcessorTest extends Specification {
+    Runnable scheduledFlush
+    long scheduledDelayMillis
+    final ManagedScheduledExecutor flushExecutor = Mock() {
+        scheduleWithFixedDelay(_, _, _, _) >> { Runnable action, long initialDelay, long delay, TimeUnit unit ->
+            scheduledFlush = action
+            scheduledDelayMillis = unit.toMillis(delay)
+            return null
+        }
+    }
+    final ExecutorFactory executorFactory = Stub() {
+        createScheduled(_, _) >> flushExecutor
+    }
+    final TestResultProcessor resultProcessor = Mock()
+    final List<TestEventBatch> batches = []
+    final TestEventBatchDecoder decoder = new TestEventBatchDecoder(resultProcessor)
+    final RemoteTestResultProcessor target = Mock() {
+        events(_) >> { TestEventBatch batch ->
+            batches << batch
+            decoder.events(batch)
+        }
+    }
+    final BatchingTestResultProcessor processor = new BatchingTestResultProcessor(target, executorFactory)
+    final classId = id(1)
+    final methodId = id(2)
+
+    def cleanup() {
+        processor.stop()
+    }
+
+    def "sends events of a test class in one batch when the class completes"() {
+        when:
+        processor.started(new DefaultTestClassDescriptor(classId, "org.gradle.SomeTest"), new TestStartEvent(100))
+        processor.started(new DefaultTestMethodDescriptor(methodId, "org.gradle.SomeTest", "someTest"), new TestStartEvent(101, classId))
+        processor.output(methodId, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdErr, "some output"))
+        processor.failure(methodId, new IllegalStateException("broken"))
+        processor.completed(methodId, new TestCompleteEvent(102, TestResult.ResultType.FAILURE))
+
+        then:
+        batches.empty
+
+        when:
+        processor.completed(classId, new TestCompleteEvent(103))
+
+        then:
+        batches.size() == 1
+        batches[0].eventCount == 6
+
+        then:
+        1 * resultProcessor.started({ it instanceof DefaultTestClassDescriptor && it.id == classId && it.className == "org.gradle.SomeTest" }, { it.startTime == 100 && it.parentId == null })
+
+        then:
+        1 * resultProcessor.started({ it instanceof DefaultTestMethodDescriptor && it.id == methodId && it.className == "org.gradle.SomeTest" && it.name == "someTest" }, { it.startTime == 101 && it.parentId == classId })
+
+        then:
+        1 * resultProcessor.output(methodId, { it.destination == TestOutputEvent.Destination.StdErr && it.message == "some output" })
+
+        then:
+        1 * resultProcessor.failure(methodId, { it instanceof IllegalStateException && it.message == "broken" })
+
+        then:
+        1 * resultProcessor.completed(methodId, { it.endTime == 102 && it.resultType == TestResult.ResultType.FAILURE })
+
+        then:
+        1 * resultProcessor.completed(classId, { it.endTime == 103 && it.resultType == null })
+        0 * resultProcessor._
+    }
+
+    def "sends class and method names once"() {
+        when:
+        processor.started(new DefaultTestMethodDescriptor(id(3), "org.gradle.SomeTest", "someTest"), new TestStartEvent(100))
+        processor.flush()
+        processor.started(new DefaultTestMethodDescriptor(id(4), "org.gradle.SomeTest", "someTest"), new TestStartEvent(100))
+        processor.flush()
+
+        then:
+        batches.size() == 2
+        batches[1].events.length < batches[0].events.length - "org.gradle.SomeTest".length()
+        2 * resultProcessor.started({ it.className == "org.gradle.SomeTest" && it.name == "someTest" }, _)
+    }
+
+    def "sends pending events at the latest after the batch delay"() {
+        when:
+        processor.output(methodId, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "some output"))
+
+        then:
+        batches.empty
+        scheduledDelayMillis == BatchingTestResultProcessor.MAX_BATCH_DELAY_MILLIS
+
+        when:
+        scheduledFlush.run()
+
+        then:
+        batches.size() == 1
+        batches[0].eventCount == 1
+
+        when:
+        scheduledFlush.run()
+
+        then:
+        batches.size() == 1
+    }
+
+    def "sends pending events and stops sending batches periodically when stopped"() {
+        when:
+        processor.output(methodId, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "some output"))
+        processor.stop()
+
+        then:
+        batches.size() == 1
+
+        then:
+        1 * flushExecutor.stop()
+    }
+
+    def "sends a batch when it reaches the maximum size"() {
+        def output = "x" * BatchingTestResultProcessor.MAX_BATCH_BYTES.intdiv(4)
+
+        when:
+        4.times {
+            processor.output(methodId, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, output))
+        }
+
+        then:
+        batches.size() == 1
+        batches[0].eventCount == 4
+    }
+
+    def "sends events that cannot be encoded separately after the pending events"() {
+        def test = new DefaultTestDescriptor("some-id", "org.gradle.SomeTest", "someTest")
+        def event = new TestStartEvent(100)
+
+        when:
+        processor.started(new DefaultTestClassDescriptor(classId, "org.gradle.SomeTest"), new TestStartEvent(100))
+        processor.started(test, event)
+
+        then:
+        1 * resultProcessor.started({ it.id == classId }, _)
+
+        then:
+        1 * target.started(test, event)
+    }
+
+    private static id(long id) {
+        return new CompositeIdGenerator.CompositeId(1L, id)
+    }
+}
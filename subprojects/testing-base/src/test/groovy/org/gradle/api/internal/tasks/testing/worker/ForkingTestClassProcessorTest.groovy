@@ -20,11 +20,15 @@ import org.gradle.api.Action
 import org.gradle.api.internal.classpath.Module
 import org.gradle.api.internal.classpath.ModuleRegistry
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory
 import org.gradle.internal.classpath.ClassPath
 import org.gradle.internal.remote.ObjectConnection
 import org.gradle.internal.work.WorkerLeaseRegistry
+import org.gradle.process.ExecResult
 import org.gradle.process.JavaForkOptions
+import org.gradle.process.internal.ExecHandle
+import org.gradle.process.internal.ExecHandleListener
 import org.gradle.process.internal.JavaExecHandleBuilder
 import org.gradle.process.internal.worker.WorkerProcess
 import org.gradle.process.internal.worker.WorkerProcessBuilder
@@ -40,7 +44,7 @@ class ForkingTestClassProcessorTest extends Specification {
     ModuleRegistry moduleRegistry = Mock(ModuleRegistry)
 
     @Subject
-        processor = Spy(ForkingTestClassProcessor, constructorArgs: [workerLease, workerProcessFactory, Mock(WorkerTestClassProcessorFactory), Mock(JavaForkOptions), [new File("classpath.jar")], Mock(Action), moduleRegistry])
+        processor = Spy(ForkingTestClassProcessor, constructorArgs: [workerLease, workerProcessFactory, Mock(WorkerTestClassProcessorFactory), Mock(JavaForkOptions), [new File("classpath.jar")], Mock(Action), moduleRegistry, null, false])
 
     def "acquires worker lease and starts worker process on first test"() {
         def test1 = Mock(TestClassRunInfo)
@@ -76,6 +80,67 @@ class ForkingTestClassProcessorTest extends Specification {
         1 * workerProcessBuilder.setImplementationClasspath(_) >> { assert it[0].size() == 16 }
     }
 
+    def "runs tests in a session of a warm worker when a pool is provided"() {
+        def pool = Mock(WarmTestWorkerPool)
+        def warmWorker = Mock(WarmTestWorkerClient)
+        def remoteProcessor = Mock(RemoteTestClassProcessor)
+        def test = Mock(TestClassRunInfo)
+        def warmProcessor = new ForkingTestClassProcessor(workerLease, workerProcessFactory, Mock(WorkerTestClassProcessorFactory), Stub(JavaForkOptions), [new File("classpath.jar")], Mock(Action), moduleRegistry, pool, false)
+        _ * moduleRegistry.getModule(_) >> { module(it[0]) }
+        _ * moduleRegistry.getExternalModule(_) >> { module(it[0]) }
+        _ * workerProcessBuilder.getJavaCommand() >> Stub(JavaExecHandleBuilder)
+
+        when:
+        warmProcessor.processTestClass(test)
+
+        then:
+        1 * workerLease.startChild() >> Mock(WorkerLeaseRegistry.WorkerLeaseCompletion)
+        1 * workerProcessFactory.create({ it instanceof WarmTestWorker }) >> workerProcessBuilder
+        1 * pool.acquire(workerProcessBuilder) >> warmWorker
+        1 * warmWorker.startSession(_, _, _, false, _) >> remoteProcessor
+        1 * remoteProcessor.startProcessing()
+        1 * remoteProcessor.processTestClass(test)
+        0 * workerProcessBuilder.build()
+
+        when:
+        warmProcessor.stop()
+
+        then:
+        1 * remoteProcessor.stop()
+        1 * pool.release(warmWorker)
+    }
+
+    def "notifies the result processor when the worker process exits before it is stopped"() {
+        def javaCommand = Mock(JavaExecHandleBuilder)
+        def resultProcessor = Mock(ExitAwareResultProcessor)
+        ExecHandleListener listener = null
+        _ * workerLease.startChild() >> Mock(WorkerLeaseRegistry.WorkerLeaseCompletion)
+        _ * moduleRegistry.getModule(_) >> { module(it[0]) }
+        _ * moduleRegistry.getExternalModule(_) >> { module(it[0]) }
+        _ * workerProcessFactory.create(_) >> workerProcessBuilder
+        _ * workerProcessBuilder.build() >> workerProcess
+        _ * workerProcessBuilder.getJavaCommand() >> javaCommand
+        _ * workerProcess.getConnection() >> Stub(ObjectConnection) { addOutgoing(_) >> Stub(RemoteTestClassProcessor) }
+        1 * javaCommand.listener(_) >> { listener = it[0]; javaCommand }
+
+        given:
+        processor.startProcessing(resultProcessor)
+        processor.processTestClass(Mock(TestClassRunInfo))
+
+        when:
+        listener.executionFinished(Stub(ExecHandle), Stub(ExecResult))
+
+        then:
+        1 * resultProcessor.workerExited()
+
+        when:
+        processor.stop()
+        listener.executionFinished(Stub(ExecHandle), Stub(ExecResult))
+
+        then:
+        0 * resultProcessor.workerExited()
+    }
+
     def module(String module) {
         return Stub(Module) {
             _ * getImplementationClasspath() >> {
@@ -86,3 +151,6 @@ class ForkingTestClassProcessorTest extends Specification {
         }
     }
 }
+
+interface ExitAwareResultProcessor extends TestResultProcessor, TestWorkerExitListener {
+}
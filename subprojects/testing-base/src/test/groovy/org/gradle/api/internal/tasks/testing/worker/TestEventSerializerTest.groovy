@@ -162,6 +162,18 @@ class TestEventSerializerTest extends SerializerSpec {
         result.message == "hi"
     }
 
+    def "serializes TestEventBatch"() {
+        def batch = new TestEventBatch([1, 2, 3] as byte[], 2)
+
+        when:
+        def result = serialize(batch)
+
+        then:
+        result instanceof TestEventBatch
+        result.events == [1, 2, 3] as byte[]
+        result.eventCount == 2
+    }
+
     def "serializes Throwable"() {
         def failure = new GradleException("broken", new RuntimeException("cause"))
 
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory
+import org.gradle.api.logging.LogLevel
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.remote.ObjectConnection
+import org.gradle.process.ExecResult
+import org.gradle.process.internal.JavaExecHandleBuilder
+import org.gradle.process.internal.health.memory.JvmMemoryStatus
+import org.gradle.process.internal.health.memory.MemoryManager
+import org.gradle.process.internal.worker.WorkerProcess
+import org.gradle.process.internal.worker.WorkerProcessBuilder
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+
+class WarmTestWorkerPoolTest extends Specification {
+    final MemoryManager memoryManager = Mock()
+    final DefaultExecutorFactory executorFactory = new DefaultExecutorFactory()
+    final WorkerTestClassProcessorFactory processorFactory = Mock()
+    final TestResultProcessor resultProcessor = Mock()
+    final List<FakeWorkerProcess> processes = []
+    WarmTestWorkerPool pool
+
+    def setup() {
+        pool = new WarmTestWorkerPool(memoryManager, executorFactory)
+        3.times {
+            def process = new FakeWorkerProcess()
+            process.connection = Stub(ObjectConnection) {
+                addIncoming(WarmTestWorkerResultProcessor, _) >> { Class type, Object handler -> process.resultProcessor = handler }
+                addOutgoing(RemoteWarmTestWorker) >> process
+            }
+            processes << process
+        }
+    }
+
+    def cleanup() {
+        pool.stop()
+        executorFactory.stop()
+    }
+
+    def "reuses idle worker with the same configuration"() {
+        when:
+        def worker1 = runSession(builder())
+        def worker2 = runSession(builder())
+
+        then:
+        worker1.is(worker2)
+        processes[0].sessions == 2
+        processes[0].running
+        processes[1].sessions == 0
+    }
+
+    def "starts new worker for a different configuration"() {
+        when:
+        def worker1 = runSession(builder(["-Xmx64m"]))
+        def worker2 = runSession(builder(["-Xmx128m"]))
+        def worker3 = runSession(builder(["-Xmx64m"]))
+
+        then:
+        !worker1.is(worker2)
+        worker1.is(worker3)
+        processes[0].sessions == 2
+        processes[1].sessions == 1
+    }
+
+    def "forwards results of the current session"() {
+        def test = new DefaultTestClassDescriptor(1, "SomeTest")
+        def event = new TestStartEvent(0)
+        def worker = pool.acquire(builder())
+
+        when:
+        worker.startSession(processorFactory, [], [], false, resultProcessor)
+        processes[0].resultProcessor.started(test, event)
+
+        then:
+        1 * resultProcessor.started(test, event)
+    }
+
+    def "stops worker whose session did not stop normally"() {
+        processes[0].reusable = false
+
+        when:
+        def worker1 = runSession(builder())
+        def worker2 = runSession(builder())
+
+        then:
+        !worker1.is(worker2)
+        !processes[0].running
+        processes[1].running
+    }
+
+    def "stops worker that has used most of its heap"() {
+        processes[0].usedHeap = 95
+
+        when:
+        runSession(builder())
+        runSession(builder())
+
+        then:
+        !processes[0].running
+        processes[1].sessions == 1
+    }
+
+    def "reuses worker whose heap is fully committed but mostly free"() {
+        processes[0].memoryStatus = memoryStatus(100, 100)
+        processes[0].usedHeap = 40
+
+        when:
+        def worker1 = runSession(builder())
+        def worker2 = runSession(builder())
+
+        then:
+        worker1.is(worker2)
+        processes[0].sessions == 2
+        processes[0].running
+    }
+
+    def "fails session when worker process exits before completing it"() {
+        def worker = pool.acquire(builder())
+        def remoteProcessor = worker.startSession(processorFactory, [], [], false, resultProcessor)
+        processes[0].crashOnStop = true
+
+        when:
+        remoteProcessor.stop()
+        pool.release(worker)
+
+        then:
+        thrown(IllegalStateException)
+        !processes[0].running
+
+        when:
+        runSession(builder())
+
+        then:
+        processes[1].sessions == 1
+    }
+
+    def "stops idle workers least used first to release memory"() {
+        processes[0].memoryStatus = memoryStatus(100, 1000)
+        processes[1].memoryStatus = memoryStatus(100, 1000)
+        runSession(builder(["-Xmx64m"]))
+        runSession(builder(["-Xmx64m"]))
+        runSession(builder(["-Xmx128m"]))
+
+        when:
+        def released = pool.attemptToRelease(50)
+
+        then:
+        released == 100
+        processes[0].running
+        !processes[1].running
+
+        when:
+        released = pool.attemptToRelease(500)
+
+        then:
+        released == 100
+        !processes[0].running
+    }
+
+    def "stops workers and stops holding memory when stopped"() {
+        runSession(builder())
+
+        when:
+        pool.stop()
+
+        then:
+        1 * memoryManager.removeMemoryHolder(pool)
+        !processes[0].running
+    }
+
+    private WarmTestWorkerClient runSession(WorkerProcessBuilder builder) {
+        def worker = pool.acquire(builder)
+        def remoteProcessor = worker.startSession(processorFactory, builder.applicationClasspath, builder.sharedPackages, false, resultProcessor)
+        remoteProcessor.startProcessing()
+        remoteProcessor.stop()
+        pool.release(worker)
+        return worker
+    }
+
+    private WorkerProcessBuilder builder(List<String> jvmArgs = ["-Xmx64m"]) {
+        def javaCommand = Stub(JavaExecHandleBuilder) {
+            getExecutable() >> "java"
+            getWorkingDir() >> new File("work")
+            getAllJvmArgs() >> jvmArgs
+            getEnvironment() >> [HOME: "home"]
+            getMaxHeapSize() >> "64m"
+        }
+        return Stub(WorkerProcessBuilder) {
+            getJavaCommand() >> javaCommand
+            getApplicationClasspath() >> ([new File("classpath.jar")] as Set)
+            getSharedPackages() >> (["org.junit"] as Set)
+            getLogLevel() >> LogLevel.LIFECYCLE
+            build() >> { processes.find { !it.started }.start() }
+        }
+    }
+
+    private JvmMemoryStatus memoryStatus(long committed, long max) {
+        return Stub(JvmMemoryStatus) {
+            getCommittedMemory() >> committed
+            getMaxMemory() >> max
+        }
+    }
+
+    private static class FakeWorkerProcess implements WorkerProcess, RemoteWarmTestWorker {
+        final CountDownLatch exited = new CountDownLatch(1)
+        ObjectConnection connection
+        WarmTestWorkerResultProcessor resultProcessor
+        JvmMemoryStatus memoryStatus
+        boolean started
+        boolean reusable = true
+        boolean crashOnStop
+        int sessions
+        long usedHeap = 10
+        long maxHeap = 100
+
+        @Override
+        WorkerProcess start() {
+            started = true
+            return this
+        }
+
+        @Override
+        ObjectConnection getConnection() {
+            return connection
+        }
+
+        @Override
+        ExecResult waitForStop() {
+            exited.await()
+            return null
+        }
+
+        @Override
+        JvmMemoryStatus getJvmMemoryStatus() {
+            if (memoryStatus == null) {
+                throw new IllegalStateException()
+            }
+            return memoryStatus
+        }
+
+        boolean isRunning() {
+            return started && exited.count > 0
+        }
+
+        @Override
+        void startSession(WorkerTestClassProcessorFactory processorFactory, List<File> applicationClasspath, List<String> sharedPackages, boolean batchEvents) {
+            sessions++
+        }
+
+        @Override
+        void startProcessing() {
+        }
+
+        @Override
+        void processTestClass(TestClassRunInfo testClass) {
+        }
+
+        @Override
+        void stop() {
+            if (crashOnStop) {
+                exited.countDown()
+            } else {
+                resultProcessor.sessionStopped(reusable, usedHeap, maxHeap)
+            }
+        }
+
+        @Override
+        void shutdown() {
+            exited.countDown()
+        }
+    }
+}
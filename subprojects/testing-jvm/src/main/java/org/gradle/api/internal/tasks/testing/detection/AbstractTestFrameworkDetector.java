@@ -19,34 +19,50 @@ package org.gradle.api.internal.tasks.testing.detection;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.gradle.api.GradleException;
+import org.gradle.api.Transformer;
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.detection.LibraryClassIndex.LibraryClass;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.gradle.internal.FileUtils.hasExtension;
 
+/**
+ * Detects test classes by scanning class files with a {@link TestClassVisitor}. When a class is not a test itself, its super classes are scanned, first
+ * in the test class directories and then in the library jars of the test classpath. Each super class is only scanned once, and test class files can be
+ * processed concurrently once detection has started.
+ */
 public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor> implements TestFrameworkDetector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractTestFrameworkDetector.class);
     protected static final String TEST_CASE = "junit/framework/TestCase";
     protected static final String GROOVY_TEST_CASE = "groovy/util/GroovyTestCase";
     protected static final String JAVA_LANG_OBJECT = "java/lang/Object";
 
     private List<File> testClassDirectories;
     private final ClassFileExtractionManager classFileExtractionManager;
-    private final Map<File, Boolean> superClasses;
+    private final ConcurrentMap<String, Boolean> superClasses;
     private TestClassProcessor testClassProcessor;
     private final List<String> knownTestCaseClassNames;
+    private final Transformer<LibraryClass, byte[]> libraryClassScanner = new Transformer<LibraryClass, byte[]>() {
+        @Override
+        public LibraryClass transform(byte[] classFile) {
+            TestClassVisitor classVisitor = classVisitor(classFile);
+            return new LibraryClass(classVisitor.getSuperClassName(), classVisitor.isTest());
+        }
+    };
 
     private Set<File> testClassesDirectories;
     private Set<File> testClasspath;
@@ -54,39 +70,52 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     protected AbstractTestFrameworkDetector(ClassFileExtractionManager classFileExtractionManager) {
         assert classFileExtractionManager != null;
         this.classFileExtractionManager = classFileExtractionManager;
-        this.superClasses = new HashMap<File, Boolean>();
+        this.superClasses = new ConcurrentHashMap<String, Boolean>();
         this.knownTestCaseClassNames = new ArrayList<String>();
         addKnownTestCaseClassNames(TEST_CASE, GROOVY_TEST_CASE);
     }
 
     protected abstract T createClassVisitor();
 
-    protected File getSuperTestClassFile(String superClassName) {
-        prepareClasspath();
-        if (StringUtils.isEmpty(superClassName)) {
-            throw new IllegalArgumentException("superClassName is empty!");
+    /**
+     * Determines whether a class is a test class, given whether the class itself is a test according to its {@link TestClassVisitor}, and the
+     * name of its super class.
+     */
+    protected abstract boolean isTest(boolean isTestClass, String superClassName);
+
+    /**
+     * Determines whether the given super class is a test class, scanning it and its own super classes when this has not been done before.
+     */
+    protected boolean isSuperClassTest(String superClassName) {
+        if (StringUtils.isEmpty(superClassName) || JAVA_LANG_OBJECT.equals(superClassName)) {
+            // java.lang.Object found, which is not a test class
+            return false;
         }
 
-        final Iterator<File> testClassDirectoriesIt = testClassDirectories.iterator();
+        Boolean isSuperTest = superClasses.get(superClassName);
+        if (isSuperTest == null) {
+            isSuperTest = scanSuperClass(superClassName);
+            superClasses.put(superClassName, isSuperTest);
+        }
+        return isSuperTest;
+    }
 
-        File superTestClassFile = null;
-        while (superTestClassFile == null && testClassDirectoriesIt.hasNext()) {
-            final File testClassDirectory = testClassDirectoriesIt.next();
-            final File superTestClassFileCandidate = new File(testClassDirectory, superClassName + ".class");
-            if (superTestClassFileCandidate.exists()) {
-                superTestClassFile = superTestClassFileCandidate;
+    private boolean scanSuperClass(String superClassName) {
+        for (File testClassDirectory : testClassDirectories) {
+            final File superTestClassFile = new File(testClassDirectory, superClassName + ".class");
+            if (superTestClassFile.exists()) {
+                TestClassVisitor classVisitor = classVisitor(superTestClassFile);
+                return isTest(classVisitor.isTest(), classVisitor.getSuperClassName());
             }
         }
 
-        if (superTestClassFile != null) {
-            return superTestClassFile;
-        } else if (JAVA_LANG_OBJECT.equals(superClassName)) {
-            // java.lang.Object found, which is not a test class
-            return null;
-        } else {
-            // super test class file not in test class directories
-            return classFileExtractionManager.getLibraryClassFile(superClassName);
+        // super test class file not in test class directories
+        LibraryClass libraryClass = classFileExtractionManager.getLibraryClass(superClassName, libraryClassScanner);
+        if (libraryClass == null) {
+            LOGGER.debug("test-class-scan : failed to scan parent class {}, could not find the class file", superClassName);
+            return false;
         }
+        return isTest(libraryClass.isTest(), libraryClass.getSuperClassName());
     }
 
     private void prepareClasspath() {
@@ -121,59 +150,51 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     }
 
     protected TestClassVisitor classVisitor(final File testClassFile) {
-        final TestClassVisitor classVisitor = createClassVisitor();
-
         InputStream classStream = null;
         try {
             classStream = new BufferedInputStream(new FileInputStream(testClassFile));
-            final ClassReader classReader = new ClassReader(IOUtils.toByteArray(classStream));
-            classReader.accept(classVisitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+            return classVisitor(IOUtils.toByteArray(classStream));
         } catch (Throwable e) {
             throw new GradleException("failed to read class file " + testClassFile.getAbsolutePath(), e);
         } finally {
             IOUtils.closeQuietly(classStream);
         }
+    }
 
+    private TestClassVisitor classVisitor(byte[] classFile) {
+        final TestClassVisitor classVisitor = createClassVisitor();
+        final ClassReader classReader = new ClassReader(classFile);
+        classReader.accept(classVisitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
         return classVisitor;
     }
 
+    /**
+     * Scans the given test class file and publishes the class when it is a test and it is not abstract. Can be called concurrently.
+     */
     @Override
     public boolean processTestClass(File testClassFile) {
-        return processTestClass(testClassFile, false);
-    }
-
-    protected abstract boolean processTestClass(File testClassFile, boolean superClass);
-
-    protected boolean processSuperClass(File testClassFile) {
-        boolean isTest = false;
+        final TestClassVisitor classVisitor = classVisitor(testClassFile);
 
-        Boolean isSuperTest = superClasses.get(testClassFile);
-
-        if (isSuperTest == null) {
-            isTest = processTestClass(testClassFile, true);
-
-            superClasses.put(testClassFile, isTest);
-        } else {
-            isTest = isSuperTest;
-        }
-
-        return isTest;
-    }
+        boolean isTest = isTest(classVisitor.isTest(), classVisitor.getSuperClassName());
 
-    /**
-     * In none super class mode a test class is published when the class is a test and it is not abstract. In super class mode it must not publish the class otherwise it will get published multiple
-     * times (for each extending class).
-     */
-    protected void publishTestClass(boolean isTest, TestClassVisitor classVisitor, boolean superClass) {
-        if (isTest && !classVisitor.isAbstract() && !superClass) {
+        if (isTest && !classVisitor.isAbstract()) {
             String className = Type.getObjectType(classVisitor.getClassName()).getClassName();
             testClassProcessor.processTestClass(new DefaultTestClassRunInfo(className));
         }
+
+        return isTest;
     }
 
     @Override
     public void startDetection(TestClassProcessor testClassProcessor) {
         this.testClassProcessor = testClassProcessor;
+        classFileExtractionManager.loadIndex(getClass().getSimpleName());
+        prepareClasspath();
+    }
+
+    @Override
+    public void stopDetection() {
+        classFileExtractionManager.close();
     }
 
     public void addKnownTestCaseClassNames(String... knownTestCaseClassNames) {
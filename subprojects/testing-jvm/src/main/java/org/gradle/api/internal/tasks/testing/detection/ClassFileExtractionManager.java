@@ -15,113 +15,176 @@
  */
 package org.gradle.api.internal.tasks.testing.detection;
 
-import org.apache.commons.lang.text.StrBuilder;
+import org.apache.commons.io.IOUtils;
 import org.gradle.api.GradleException;
-import org.gradle.api.internal.file.DefaultTemporaryFileProvider;
-import org.gradle.api.internal.file.TemporaryFileProvider;
+import org.gradle.api.Transformer;
+import org.gradle.api.internal.tasks.testing.detection.LibraryClassIndex.JarIndex;
+import org.gradle.api.internal.tasks.testing.detection.LibraryClassIndex.LibraryClass;
 import org.gradle.internal.Factory;
-import org.gradle.util.JarUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
- * This class manages class file extraction from library jar files.
+ * This class manages the lookup of class files in library jar files. <p/> Class files are read directly from the jars, and the outcome of scanning
+ * a library class is kept in a {@link LibraryClassIndex}, so that each library class is only scanned once, also across builds. Library classes
+ * can be looked up concurrently, once all library jars have been added.
  */
 public class ClassFileExtractionManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(ClassFileExtractionManager.class);
     private final Map<String, Set<File>> packageJarFilesMappings;
-    private final Map<String, File> extractedJarClasses;
     private final Set<String> unextractableClasses;
-    private final TemporaryFileProvider tempDirProvider;
+    private final Map<File, ZipFile> openJarFiles;
+    private final Factory<File> tempDirFactory;
+    private LibraryClassIndex index;
 
     public ClassFileExtractionManager(final Factory<File> tempDirFactory) {
         assert tempDirFactory != null;
-        tempDirProvider = new DefaultTemporaryFileProvider(tempDirFactory);
+        this.tempDirFactory = tempDirFactory;
         packageJarFilesMappings = new HashMap<String, Set<File>>();
-        extractedJarClasses = new HashMap<String, File>();
-        unextractableClasses = new TreeSet<String>();
+        unextractableClasses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        openJarFiles = new HashMap<File, ZipFile>();
     }
 
     /**
-     * Add all packages found in the jar file to the package <> jar(s) index.
+     * Reads the index of library classes recorded by earlier builds for the given detector.
+     *
+     * @param detectorName Name of the detector, which determines what is recorded for a library class.
+     */
+    public void loadIndex(String detectorName) {
+        index = LibraryClassIndex.read(new File(tempDirFactory.create(), "test-class-index-" + detectorName + ".bin"));
+    }
+
+    /**
+     * Add all packages found in the jar file to the package <> jar(s) index. The packages are only listed when the jar has changed since they were
+     * recorded in the index.
      *
      * @param libraryJar Jar file to add to the index.
      */
     public void addLibraryJar(final File libraryJar) {
-        new JarFilePackageLister().listJarPackages(libraryJar, new JarFilePackageListener() {
-            public void receivePackage(String packageName) {
-                Set<File> jarFiles = packageJarFilesMappings.get(packageName);
-                if (jarFiles == null) {
-                    jarFiles = new TreeSet<File>();
+        JarIndex jarIndex = getIndex().getJar(libraryJar);
+        List<String> packages = jarIndex.getPackages();
+        if (packages == null) {
+            final List<String> listedPackages = new ArrayList<String>();
+            new JarFilePackageLister().listJarPackages(libraryJar, new JarFilePackageListener() {
+                public void receivePackage(String packageName) {
+                    listedPackages.add(packageName);
                 }
-                jarFiles.add(libraryJar);
-
-                packageJarFilesMappings.put(packageName, jarFiles);
+            });
+            jarIndex.setPackages(listedPackages);
+            packages = listedPackages;
+        }
+        for (String packageName : packages) {
+            Set<File> jarFiles = packageJarFilesMappings.get(packageName);
+            if (jarFiles == null) {
+                jarFiles = new TreeSet<File>();
             }
-        });
+            jarFiles.add(libraryJar);
+
+            packageJarFilesMappings.put(packageName, jarFiles);
+        }
     }
 
     /**
-     * Retrieve the file that contains the extracted class file. <p/> This method will extract the class file if it is
-     * not extracted yet. Extracted class files are deleted on exit of the Gradle process. The same class is only
-     * extracted once.
+     * Retrieve the library class with the given name. <p/> The class file is read from the first library jar that contains it and scanned using the
+     * given scanner, unless the class has already been scanned by this or an earlier build.
      *
-     * @param className Name of the class to extract.
-     * @return File that contains the extracted class file.
+     * @param className Name of the class to retrieve.
+     * @param scanner Scans the content of the class file.
+     * @return The scanned class, or null when no library jar contains the class.
      */
-    public File getLibraryClassFile(final String className) {
+    LibraryClass getLibraryClass(final String className, Transformer<LibraryClass, byte[]> scanner) {
         if (unextractableClasses.contains(className)) {
             return null;
-        } else {
-            if (!extractedJarClasses.containsKey(className)) {
-                if (!extractClassFile(className)) {
-                    unextractableClasses.add(className);
+        }
+
+        final Set<File> packageJarFiles = packageJarFilesMappings.get(classNamePackage(className));
+        if (packageJarFiles != null) {
+            for (File jarFile : packageJarFiles) {
+                LibraryClass libraryClass = getIndex().getJar(jarFile).getLibraryClass(className);
+                if (libraryClass != null) {
+                    return libraryClass;
                 }
             }
 
-            return extractedJarClasses.get(className);
-        }
-    }
-
-    private boolean extractClassFile(final String className) {
-        boolean classFileExtracted = false;
+            final String classFileName = className + ".class";
+            for (File jarFile : packageJarFiles) {
+                byte[] classFile = readClassFile(jarFile, classFileName);
+                if (classFile != null) {
+                    LOGGER.debug("scanned class {} from {}", className, jarFile.getName());
 
-        final File extractedClassFile = tempFile();
-        final String classFileName = new StrBuilder().append(className).append(".class").toString();
-        final String classNamePackage = classNamePackage(className);
-        final Set<File> packageJarFiles = packageJarFilesMappings.get(classNamePackage);
+                    LibraryClass libraryClass = scanner.transform(classFile);
+                    getIndex().getJar(jarFile).addLibraryClass(className, libraryClass);
+                    getIndex().changed();
+                    return libraryClass;
+                }
+            }
+        } // super class not on the classpath - unable to scan parent class
 
-        File classFileSourceJar = null;
+        unextractableClasses.add(className);
+        return null;
+    }
 
-        if (packageJarFiles != null && !packageJarFiles.isEmpty()) {
-            final Iterator<File> packageJarFilesIt = packageJarFiles.iterator();
+    private byte[] readClassFile(File jarFile, String classFileName) {
+        try {
+            ZipFile zipFile = openJarFile(jarFile);
+            ZipEntry zipEntry = zipFile.getEntry(classFileName);
+            if (zipEntry == null) {
+                return null;
+            }
+            InputStream inputStream = zipFile.getInputStream(zipEntry);
+            try {
+                return IOUtils.toByteArray(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw new GradleException("failed to extract class file from jar (" + jarFile + ")", e);
+        }
+    }
 
-            while (!classFileExtracted && packageJarFilesIt.hasNext()) {
-                final File jarFile = packageJarFilesIt.next();
+    private ZipFile openJarFile(File jarFile) throws IOException {
+        synchronized (openJarFiles) {
+            ZipFile zipFile = openJarFiles.get(jarFile);
+            if (zipFile == null) {
+                zipFile = new ZipFile(jarFile);
+                openJarFiles.put(jarFile, zipFile);
+            }
+            return zipFile;
+        }
+    }
 
+    /**
+     * Closes the library jars that were read, and records the scanned library classes for the next build.
+     */
+    public void close() {
+        synchronized (openJarFiles) {
+            for (ZipFile zipFile : openJarFiles.values()) {
                 try {
-                    classFileExtracted = JarUtil.extractZipEntry(jarFile, classFileName, extractedClassFile);
-
-                    if (classFileExtracted) {
-                        classFileSourceJar = jarFile;
-                    }
+                    zipFile.close();
                 } catch (IOException e) {
-                    throw new GradleException("failed to extract class file from jar (" + jarFile + ")", e);
+                    LOGGER.debug("failed to close jar {}", zipFile.getName(), e);
                 }
             }
+            openJarFiles.clear();
+        }
+        if (index != null) {
+            index.write();
+        }
+    }
 
-            if (classFileExtracted) {
-                LOGGER.debug("extracted class {} from {}", className, classFileSourceJar.getName());
-
-                extractedJarClasses.put(className, extractedClassFile);
-            }
-        } // super class not on the classpath - unable to scan parent class
-
-        return classFileExtracted;
+    private LibraryClassIndex getIndex() {
+        if (index == null) {
+            throw new IllegalStateException("The library class index has not been loaded.");
+        }
+        return index;
     }
 
     private String classNamePackage(final String className) {
@@ -133,8 +196,4 @@ public class ClassFileExtractionManager {
             return className.substring(0, lastSlashIndex + 1);
         }
     }
-
-    private File tempFile() {
-        return tempDirProvider.createTemporaryFile("jar_extract_", "_tmp"); // Could throw UncheckedIOException
-    }
 }
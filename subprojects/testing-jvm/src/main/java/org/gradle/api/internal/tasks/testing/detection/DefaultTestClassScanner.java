@@ -22,23 +22,39 @@ import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 
+import javax.annotation.Nullable;
 import java.io.File;
 
 /**
  * The default test class scanner. Depending on the availability of a test framework detector,
  * a detection or filename scan is performed to find test classes.
+ *
+ * <p>When an executor factory is given, the detection scan processes the class files concurrently. Test classes are passed to
+ * the test class processor one at a time, as soon as they are detected.</p>
  */
 public class DefaultTestClassScanner implements Runnable {
+    public static final String PARALLEL_SCAN_PROPERTY = "org.gradle.internal.testing.parallelScan";
+
     private final FileTree candidateClassFiles;
     private final TestFrameworkDetector testFrameworkDetector;
     private final TestClassProcessor testClassProcessor;
+    private final ExecutorFactory executorFactory;
 
     public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
                                    TestClassProcessor testClassProcessor) {
+        this(candidateClassFiles, testFrameworkDetector, testClassProcessor, null);
+    }
+
+    public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
+                                   TestClassProcessor testClassProcessor, @Nullable ExecutorFactory executorFactory) {
         this.candidateClassFiles = candidateClassFiles;
         this.testFrameworkDetector = testFrameworkDetector;
         this.testClassProcessor = testClassProcessor;
+        this.executorFactory = executorFactory;
     }
 
     @Override
@@ -51,12 +67,44 @@ public class DefaultTestClassScanner implements Runnable {
     }
 
     private void detectionScan() {
-        testFrameworkDetector.startDetection(testClassProcessor);
-        candidateClassFiles.visit(new ClassFileVisitor() {
-            public void visitClassFile(FileVisitDetails fileDetails) {
-                testFrameworkDetector.processTestClass(fileDetails.getFile());
+        if (executorFactory == null) {
+            testFrameworkDetector.startDetection(testClassProcessor);
+        } else {
+            testFrameworkDetector.startDetection(new SynchronizedTestClassProcessor(testClassProcessor));
+        }
+        try {
+            if (executorFactory == null) {
+                candidateClassFiles.visit(new ClassFileVisitor() {
+                    public void visitClassFile(FileVisitDetails fileDetails) {
+                        testFrameworkDetector.processTestClass(fileDetails.getFile());
+                    }
+                });
+            } else {
+                parallelDetectionScan();
             }
-        });
+        } finally {
+            testFrameworkDetector.stopDetection();
+        }
+    }
+
+    private void parallelDetectionScan() {
+        final ManagedExecutor executor = executorFactory.create("Test class scanner", Runtime.getRuntime().availableProcessors());
+        try {
+            candidateClassFiles.visit(new ClassFileVisitor() {
+                public void visitClassFile(FileVisitDetails fileDetails) {
+                    final File file = fileDetails.getFile();
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            testFrameworkDetector.processTestClass(file);
+                        }
+                    });
+                }
+            });
+        } finally {
+            // Waits for the scheduled class files and rethrows the first failure
+            executor.stop();
+        }
     }
 
     private void filenameScan() {
@@ -81,4 +129,30 @@ public class DefaultTestClassScanner implements Runnable {
 
         public abstract void visitClassFile(FileVisitDetails fileDetails);
     }
+
+    /**
+     * Passes the test classes detected by concurrent scans to the test class processor one at a time.
+     */
+    private static class SynchronizedTestClassProcessor implements TestClassProcessor {
+        private final TestClassProcessor delegate;
+
+        SynchronizedTestClassProcessor(TestClassProcessor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void startProcessing(TestResultProcessor resultProcessor) {
+            delegate.startProcessing(resultProcessor);
+        }
+
+        @Override
+        public synchronized void processTestClass(TestClassRunInfo testClass) {
+            delegate.processTestClass(testClass);
+        }
+
+        @Override
+        public synchronized void stop() {
+            delegate.stop();
+        }
+    }
 }
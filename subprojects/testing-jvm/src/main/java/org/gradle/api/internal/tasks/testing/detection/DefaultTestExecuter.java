@@ -25,14 +25,20 @@ import org.gradle.api.internal.tasks.testing.TestExecuter;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.api.internal.tasks.testing.junit.JUnitTestFramework;
+import org.gradle.api.internal.tasks.testing.processors.DurationBalancingTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.MaxNParallelTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.RestartEveryNTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.processors.TestClassDurationStore;
 import org.gradle.api.internal.tasks.testing.processors.TestMainAction;
+import org.gradle.api.internal.tasks.testing.worker.BatchingTestResultProcessor;
 import org.gradle.api.internal.tasks.testing.worker.ForkingTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.worker.WarmTestWorkerPool;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.internal.Factory;
 import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.time.Clock;
 import org.gradle.internal.work.WorkerLeaseRegistry;
@@ -55,10 +61,13 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
     private final BuildOperationExecutor buildOperationExecutor;
     private final int maxWorkerCount;
     private final Clock clock;
+    private final File testClassDurationsFile;
+    private final WarmTestWorkerPool warmTestWorkerPool;
+    private final ExecutorFactory executorFactory;
 
     public DefaultTestExecuter(WorkerProcessFactory workerFactory, ActorFactory actorFactory, ModuleRegistry moduleRegistry,
                                WorkerLeaseRegistry workerLeaseRegistry, BuildOperationExecutor buildOperationExecutor, int maxWorkerCount,
-                               Clock clock) {
+                               Clock clock, File testClassDurationsFile, WarmTestWorkerPool warmTestWorkerPool, ExecutorFactory executorFactory) {
         this.workerFactory = workerFactory;
         this.actorFactory = actorFactory;
         this.moduleRegistry = moduleRegistry;
@@ -66,6 +75,9 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
         this.buildOperationExecutor = buildOperationExecutor;
         this.maxWorkerCount = maxWorkerCount;
         this.clock = clock;
+        this.testClassDurationsFile = testClassDurationsFile;
+        this.warmTestWorkerPool = warmTestWorkerPool;
+        this.executorFactory = executorFactory;
     }
 
     @Override
@@ -74,10 +86,12 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
         final WorkerTestClassProcessorFactory testInstanceFactory = testFramework.getProcessorFactory();
         final WorkerLeaseRegistry.WorkerLease currentWorkerLease = workerLeaseRegistry.getCurrentWorkerLease();
         final Set<File> classpath = ImmutableSet.copyOf(testExecutionSpec.getClasspath());
+        final WarmTestWorkerPool warmWorkerPool = Boolean.getBoolean(WarmTestWorkerPool.ENABLED_PROPERTY) ? warmTestWorkerPool : null;
+        final boolean batchEvents = Boolean.getBoolean(BatchingTestResultProcessor.ENABLED_PROPERTY);
         final Factory<TestClassProcessor> forkingProcessorFactory = new Factory<TestClassProcessor>() {
             public TestClassProcessor create() {
                 return new ForkingTestClassProcessor(currentWorkerLease, workerFactory, testInstanceFactory, testExecutionSpec.getJavaForkOptions(),
-                    classpath, testFramework.getWorkerConfigurationAction(), moduleRegistry);
+                    classpath, testFramework.getWorkerConfigurationAction(), moduleRegistry, warmWorkerPool, batchEvents);
             }
         };
         final Factory<TestClassProcessor> reforkingProcessorFactory = new Factory<TestClassProcessor>() {
@@ -85,7 +99,13 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
                 return new RestartEveryNTestClassProcessor(forkingProcessorFactory, testExecutionSpec.getForkEvery());
             }
         };
-        TestClassProcessor processor = new MaxNParallelTestClassProcessor(getMaxParallelForks(testExecutionSpec), reforkingProcessorFactory, actorFactory);
+        TestClassProcessor processor;
+        if (Boolean.getBoolean(DurationBalancingTestClassProcessor.ENABLED_PROPERTY) && testFramework instanceof JUnitTestFramework) {
+            // Only JUnit runs each test class as soon as the worker receives it
+            processor = new DurationBalancingTestClassProcessor(getMaxParallelForks(testExecutionSpec), reforkingProcessorFactory, actorFactory, new TestClassDurationStore(testClassDurationsFile));
+        } else {
+            processor = new MaxNParallelTestClassProcessor(getMaxParallelForks(testExecutionSpec), reforkingProcessorFactory, actorFactory);
+        }
 
         final FileTree testClassFiles = testExecutionSpec.getCandidateClassFiles();
 
@@ -94,7 +114,8 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
             TestFrameworkDetector testFrameworkDetector = testFramework.getDetector();
             testFrameworkDetector.setTestClasses(testExecutionSpec.getTestClassesDirs().getFiles());
             testFrameworkDetector.setTestClasspath(classpath);
-            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor);
+            ExecutorFactory scanExecutorFactory = Boolean.getBoolean(DefaultTestClassScanner.PARALLEL_SCAN_PROPERTY) ? executorFactory : null;
+            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor, scanExecutorFactory);
         } else {
             detector = new DefaultTestClassScanner(testClassFiles, null, processor);
         }
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.detection;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.FlushableEncoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the packages of library jars and the library classes scanned as super classes of test classes, in a file that survives between builds.
+ * The entries of a jar are discarded when the length or last modified time of the jar changes.
+ */
+class LibraryClassIndex {
+    private static final Logger LOGGER = Logging.getLogger(LibraryClassIndex.class);
+    private static final int VERSION = 1;
+
+    private final File indexFile;
+    private final Map<String, JarIndex> previousJars;
+    private final ConcurrentMap<File, JarIndex> jars = new ConcurrentHashMap<File, JarIndex>();
+    private volatile boolean changed;
+
+    private LibraryClassIndex(File indexFile, Map<String, JarIndex> previousJars) {
+        this.indexFile = indexFile;
+        this.previousJars = previousJars;
+    }
+
+    /**
+     * Reads the index from the given file. Returns an empty index when nothing has been recorded or the file cannot be read.
+     */
+    static LibraryClassIndex read(File indexFile) {
+        Map<String, JarIndex> jars = new HashMap<String, JarIndex>();
+        if (indexFile.isFile()) {
+            try {
+                InputStream inputStream = new FileInputStream(indexFile);
+                try {
+                    readJars(new KryoBackedDecoder(inputStream), jars);
+                } finally {
+                    inputStream.close();
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Could not read library class index from {}.", indexFile, e);
+                jars.clear();
+            }
+        }
+        return new LibraryClassIndex(indexFile, jars);
+    }
+
+    private static void readJars(Decoder decoder, Map<String, JarIndex> jars) throws IOException {
+        if (decoder.readSmallInt() != VERSION) {
+            return;
+        }
+        int jarCount = decoder.readSmallInt();
+        for (int i = 0; i < jarCount; i++) {
+            String path = decoder.readString();
+            JarIndex jar = new JarIndex(decoder.readLong(), decoder.readLong());
+            int packageCount = decoder.readSmallInt();
+            jar.packages = new ArrayList<String>(packageCount);
+            for (int j = 0; j < packageCount; j++) {
+                jar.packages.add(decoder.readString());
+            }
+            int classCount = decoder.readSmallInt();
+            for (int j = 0; j < classCount; j++) {
+                String className = decoder.readString();
+                jar.classes.put(className, new LibraryClass(decoder.readNullableString(), decoder.readBoolean()));
+            }
+            jars.put(path, jar);
+        }
+    }
+
+    /**
+     * Returns the entries of the given jar, which are empty when the jar has not been indexed before or has changed since.
+     */
+    JarIndex getJar(File jarFile) {
+        JarIndex jar = jars.get(jarFile);
+        if (jar != null) {
+            return jar;
+        }
+        jar = previousJars.get(jarFile.getAbsolutePath());
+        if (jar == null || jar.length != jarFile.length() || jar.lastModified != jarFile.lastModified()) {
+            jar = new JarIndex(jarFile.length(), jarFile.lastModified());
+            changed = true;
+        }
+        JarIndex existing = jars.putIfAbsent(jarFile, jar);
+        return existing != null ? existing : jar;
+    }
+
+    void changed() {
+        changed = true;
+    }
+
+    /**
+     * Writes the entries of the jars used since the index was read, when these differ from the entries that were read.
+     */
+    void write() {
+        if (!changed && jars.size() == previousJars.size()) {
+            return;
+        }
+        try {
+            indexFile.getParentFile().mkdirs();
+            OutputStream outputStream = new FileOutputStream(indexFile);
+            try {
+                FlushableEncoder encoder = new KryoBackedEncoder(outputStream);
+                encoder.writeSmallInt(VERSION);
+                encoder.writeSmallInt(jars.size());
+                for (Map.Entry<File, JarIndex> entry : jars.entrySet()) {
+                    JarIndex jar = entry.getValue();
+                    encoder.writeString(entry.getKey().getAbsolutePath());
+                    encoder.writeLong(jar.length);
+                    encoder.writeLong(jar.lastModified);
+                    List<String> packages = jar.packages != null ? jar.packages : new ArrayList<String>();
+                    encoder.writeSmallInt(packages.size());
+                    for (String packageName : packages) {
+                        encoder.writeString(packageName);
+                    }
+                    Map<String, LibraryClass> classes = new HashMap<String, LibraryClass>(jar.classes);
+                    encoder.writeSmallInt(classes.size());
+                    for (Map.Entry<String, LibraryClass> classEntry : classes.entrySet()) {
+                        encoder.writeString(classEntry.getKey());
+                        encoder.writeNullableString(classEntry.getValue().getSuperClassName());
+                        encoder.writeBoolean(classEntry.getValue().isTest());
+                    }
+                }
+                encoder.flush();
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static class JarIndex {
+        private final long length;
+        private final long lastModified;
+        private final ConcurrentMap<String, LibraryClass> classes = new ConcurrentHashMap<String, LibraryClass>();
+        private List<String> packages;
+
+        JarIndex(long length, long lastModified) {
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Returns the packages of the jar, or null when these have not been listed yet.
+         */
+        @Nullable
+        List<String> getPackages() {
+            return packages;
+        }
+
+        void setPackages(List<String> packages) {
+            this.packages = packages;
+        }
+
+        @Nullable
+        LibraryClass getLibraryClass(String className) {
+            return classes.get(className);
+        }
+
+        void addLibraryClass(String className, LibraryClass libraryClass) {
+            classes.put(className, libraryClass);
+        }
+    }
+
+    /**
+     * What a test framework detector needs to know about a library class: whether the class itself is a test and the name of its super class.
+     */
+    static class LibraryClass {
+        private final String superClassName;
+        private final boolean test;
+
+        LibraryClass(@Nullable String superClassName, boolean test) {
+            this.superClassName = superClassName;
+            this.test = test;
+        }
+
+        @Nullable
+        String getSuperClassName() {
+            return superClassName;
+        }
+
+        boolean isTest() {
+            return test;
+        }
+    }
+}
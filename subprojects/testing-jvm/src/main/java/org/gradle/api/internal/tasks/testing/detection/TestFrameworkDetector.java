@@ -25,6 +25,8 @@ public interface TestFrameworkDetector {
 
     boolean processTestClass(File testClassFile);
 
+    void stopDetection();
+
     void setTestClasses(Set<File> testClasses);
 
     void setTestClasspath(Set<File> classpath);
@@ -133,7 +133,7 @@ public class TestReport extends DefaultTask {
         TestResultsProvider resultsProvider = createAggregateProvider();
         try {
             if (resultsProvider.isHasResults()) {
-                DefaultTestReport testReport = new DefaultTestReport(getBuildOperationExecutor());
+                DefaultTestReport testReport = new DefaultTestReport(getBuildOperationExecutor(), getTemporaryDir());
                 testReport.generateReport(resultsProvider, getDestinationDir());
             } else {
                 getLogger().info("{} - no binary test results found in dirs: {}.", getPath(), getTestResultDirs().getFiles());
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.detection
+
+import org.gradle.api.Transformer
+import org.gradle.api.internal.tasks.testing.detection.LibraryClassIndex.LibraryClass
+import org.gradle.internal.Factory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class ClassFileExtractionManagerTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def tempDir = tmpDir.file("tmp")
+    def tempDirFactory = new Factory<File>() {
+        File create() {
+            return tempDir
+        }
+    }
+    def scanned = []
+    def scanner = new Transformer<LibraryClass, byte[]>() {
+        LibraryClass transform(byte[] classFile) {
+            def superClassName = new String(classFile, "utf-8")
+            scanned << superClassName
+            return new LibraryClass(superClassName, false)
+        }
+    }
+
+    def "reads library classes from the jars that contain their package"() {
+        def lib1 = jar("lib1.jar", "org/a/Base.class": "org/Object")
+        def lib2 = jar("lib2.jar", "org/a/Other.class": "org/a/Base", "org/b/Thing.class": "org/a/Other")
+        def manager = createManager()
+
+        when:
+        manager.addLibraryJar(lib1)
+        manager.addLibraryJar(lib2)
+
+        then:
+        manager.getLibraryClass("org/a/Base", scanner).getSuperClassName() == "org/Object"
+        manager.getLibraryClass("org/a/Other", scanner).getSuperClassName() == "org/a/Base"
+        manager.getLibraryClass("org/b/Thing", scanner).getSuperClassName() == "org/a/Other"
+        manager.getLibraryClass("org/a/Missing", scanner) == null
+        manager.getLibraryClass("org/c/Missing", scanner) == null
+
+        cleanup:
+        manager?.close()
+    }
+
+    def "scans each library class once"() {
+        def manager = createManager()
+        manager.addLibraryJar(jar("lib.jar", "org/a/Base.class": "org/Object"))
+
+        when:
+        manager.getLibraryClass("org/a/Base", scanner)
+        manager.getLibraryClass("org/a/Base", scanner)
+
+        then:
+        scanned == ["org/Object"]
+
+        cleanup:
+        manager?.close()
+    }
+
+    def "reuses the library classes scanned by an earlier build"() {
+        def lib = jar("lib.jar", "org/a/Base.class": "org/Object")
+        def manager = createManager()
+        manager.addLibraryJar(lib)
+        manager.getLibraryClass("org/a/Base", scanner)
+        manager.close()
+        scanned.clear()
+
+        when:
+        manager = createManager()
+        manager.addLibraryJar(lib)
+        def libraryClass = manager.getLibraryClass("org/a/Base", scanner)
+
+        then:
+        libraryClass.getSuperClassName() == "org/Object"
+        scanned.empty
+
+        cleanup:
+        manager?.close()
+    }
+
+    def "scans library classes again when their jar has changed"() {
+        def lib = jar("lib.jar", "org/a/Base.class": "org/Object")
+        def manager = createManager()
+        manager.addLibraryJar(lib)
+        manager.getLibraryClass("org/a/Base", scanner)
+        manager.close()
+        scanned.clear()
+
+        when:
+        jar("lib.jar", "org/a/Base.class": "org/a/NewBase", "org/b/Thing.class": "org/a/Base")
+        lib.lastModified = lib.lastModified() + 2000
+        manager = createManager()
+        manager.addLibraryJar(lib)
+
+        then:
+        manager.getLibraryClass("org/a/Base", scanner).getSuperClassName() == "org/a/NewBase"
+        manager.getLibraryClass("org/b/Thing", scanner).getSuperClassName() == "org/a/Base"
+        scanned == ["org/a/NewBase", "org/a/Base"]
+
+        cleanup:
+        manager?.close()
+    }
+
+    def "scans library classes again when the recorded index is corrupt"() {
+        def lib = jar("lib.jar", "org/a/Base.class": "org/Object")
+        def manager = createManager()
+        manager.addLibraryJar(lib)
+        manager.getLibraryClass("org/a/Base", scanner)
+        manager.close()
+        scanned.clear()
+        tempDir.listFiles().each { it.text = "corrupt" }
+
+        when:
+        manager = createManager()
+        manager.addLibraryJar(lib)
+
+        then:
+        manager.getLibraryClass("org/a/Base", scanner).getSuperClassName() == "org/Object"
+        scanned == ["org/Object"]
+
+        cleanup:
+        manager?.close()
+    }
+
+    private ClassFileExtractionManager createManager() {
+        def manager = new ClassFileExtractionManager(tempDirFactory)
+        manager.loadIndex("test")
+        return manager
+    }
+
+    private TestFile jar(Map<String, String> classes, String name) {
+        def jarFile = tmpDir.file(name)
+        jarFile.withOutputStream { outputStream ->
+            def zip = new ZipOutputStream(outputStream)
+            classes.keySet().collect { it.substring(0, it.lastIndexOf('/') + 1) }.unique().each {
+                zip.putNextEntry(new ZipEntry(it))
+                zip.closeEntry()
+            }
+            classes.each { path, superClassName ->
+                zip.putNextEntry(new ZipEntry(path))
+                zip.write(superClassName.getBytes("utf-8"))
+                zip.closeEntry()
+            }
+            zip.finish()
+        }
+        return jarFile
+    }
+}
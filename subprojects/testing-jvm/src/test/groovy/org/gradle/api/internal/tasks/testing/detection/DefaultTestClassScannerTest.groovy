@@ -20,7 +20,10 @@ package org.gradle.api.internal.tasks.testing.detection
 import org.gradle.api.file.FileTree
 import org.gradle.api.file.FileVisitDetails
 import org.gradle.api.file.FileVisitor
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.junit.Test
 import spock.lang.Specification
 
@@ -49,7 +52,58 @@ public class DefaultTestClassScannerTest extends Specification {
             visitor.visitFile({new File('class1.class')} as FileVisitDetails)
             visitor.visitFile({new File('class2.class')} as FileVisitDetails)
         }
+        then:
+        1 * detector.stopDetection()
+
+        0 * _._
+    }
+
+    def "passes class files to test class detector concurrently and detected classes to processor one at a time"() {
+        def executorFactory = new DefaultExecutorFactory()
+        DefaultTestClassScanner scanner = new DefaultTestClassScanner(files, detector, processor, executorFactory)
+        TestClassProcessor detectionProcessor = null
+
+        when:
+        scanner.run()
+
+        then:
+        1 * detector.startDetection(_) >> { TestClassProcessor p -> detectionProcessor = p }
+        1 * files.visit(_) >> { FileVisitor visitor ->
+            visitor.visitFile({new File('class1.class')} as FileVisitDetails)
+            visitor.visitFile({new File('class2.class')} as FileVisitDetails)
+        }
+        1 * detector.processTestClass(new File("class1.class")) >> { detectionProcessor.processTestClass(new DefaultTestClassRunInfo("class1")); true }
+        1 * detector.processTestClass(new File("class2.class")) >> false
+        1 * processor.processTestClass({ it.testClassName == "class1" })
+        then:
+        1 * detector.stopDetection()
 
         0 * _._
+
+        cleanup:
+        executorFactory.stop()
+    }
+
+    def "processor given to the detector during a concurrent scan forwards all calls to the test class processor"() {
+        def executorFactory = new DefaultExecutorFactory()
+        def resultProcessor = Mock(TestResultProcessor)
+        TestClassProcessor detectionProcessor = null
+        detector.startDetection(_) >> { TestClassProcessor p -> detectionProcessor = p }
+        new DefaultTestClassScanner(files, detector, processor, executorFactory).run()
+
+        when:
+        detectionProcessor.startProcessing(resultProcessor)
+        detectionProcessor.processTestClass(new DefaultTestClassRunInfo("class1"))
+        detectionProcessor.stop()
+
+        then:
+        1 * processor.startProcessing(resultProcessor)
+        then:
+        1 * processor.processTestClass({ it.testClassName == "class1" })
+        then:
+        1 * processor.stop()
+
+        cleanup:
+        executorFactory.stop()
     }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.detection
+
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class LibraryClassIndexTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def indexFile = tmpDir.file("index.bin")
+    def jar = tmpDir.file("lib.jar")
+
+    def setup() {
+        jar.bytes = new byte[10]
+        jar.lastModified = 1000
+    }
+
+    def "has no entries when nothing has been recorded"() {
+        when:
+        def index = LibraryClassIndex.read(indexFile)
+
+        then:
+        index.getJar(jar).getPackages() == null
+        index.getJar(jar).getLibraryClass("org/a/Base") == null
+    }
+
+    def "reuses the entries of an unchanged jar recorded by an earlier build"() {
+        given:
+        record()
+
+        when:
+        def jarIndex = LibraryClassIndex.read(indexFile).getJar(jar)
+
+        then:
+        jarIndex.getPackages() == ["org/a/"]
+        jarIndex.getLibraryClass("org/a/Base").getSuperClassName() == "org/Object"
+        jarIndex.getLibraryClass("org/a/Base").isTest()
+        jarIndex.getLibraryClass("org/a/Other") == null
+    }
+
+    @Unroll
+    def "discards the entries of a jar whose #change has changed"() {
+        given:
+        record()
+        modify(jar)
+
+        when:
+        def jarIndex = LibraryClassIndex.read(indexFile).getJar(jar)
+
+        then:
+        jarIndex.getPackages() == null
+        jarIndex.getLibraryClass("org/a/Base") == null
+
+        where:
+        change          | modify
+        "length"        | { TestFile file -> file.bytes = new byte[20]; file.lastModified = 1000 }
+        "modified time" | { TestFile file -> file.lastModified = 2000 }
+    }
+
+    def "does not rewrite the index when nothing has changed"() {
+        given:
+        record()
+        indexFile.lastModified = 0
+
+        when:
+        def index = LibraryClassIndex.read(indexFile)
+        index.getJar(jar)
+        index.write()
+
+        then:
+        indexFile.lastModified() == 0
+    }
+
+    def "drops jars that are no longer used"() {
+        def otherJar = tmpDir.file("other.jar")
+        otherJar.bytes = new byte[10]
+
+        given:
+        def index = LibraryClassIndex.read(indexFile)
+        index.getJar(jar).setPackages(["org/a/"])
+        index.getJar(otherJar).setPackages(["org/b/"])
+        index.write()
+
+        when:
+        index = LibraryClassIndex.read(indexFile)
+        index.getJar(jar)
+        index.write()
+
+        then:
+        LibraryClassIndex.read(indexFile).getJar(otherJar).getPackages() == null
+        LibraryClassIndex.read(indexFile).getJar(jar).getPackages() == ["org/a/"]
+    }
+
+    def "ignores a corrupt index file"() {
+        given:
+        indexFile.text = "corrupt"
+
+        when:
+        def index = LibraryClassIndex.read(indexFile)
+
+        then:
+        index.getJar(jar).getPackages() == null
+
+        when:
+        index.getJar(jar).setPackages(["org/a/"])
+        index.write()
+
+        then:
+        LibraryClassIndex.read(indexFile).getJar(jar).getPackages() == ["org/a/"]
+    }
+
+    private void record() {
+        def index = LibraryClassIndex.read(indexFile)
+        def jarIndex = index.getJar(jar)
+        jarIndex.setPackages(["org/a/"])
+        jarIndex.addLibraryClass("org/a/Base", new LibraryClassIndex.LibraryClass("org/Object", true))
+        index.changed()
+        index.write()
+    }
+}